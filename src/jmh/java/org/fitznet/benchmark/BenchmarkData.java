@@ -0,0 +1,44 @@
+package org.fitznet.benchmark;
+
+import org.fitznet.data.VoiceJoinDatabase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic data shared by the benchmarks.
+ */
+final class BenchmarkData {
+    private static final long FIRST_SNOWFLAKE = 1100000000000000000L;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @return a snowflake-shaped user ID for the n-th synthetic user
+     */
+    static long userId(int n) {
+        return FIRST_SNOWFLAKE + n * 4_194_304L + n;
+    }
+
+    /**
+     * Create a write-behind database at the given path holding {@code users} users, flushed to disk once.
+     */
+    static VoiceJoinDatabase populatedDatabase(Path file, int users) {
+        VoiceJoinDatabase database = new VoiceJoinDatabase(file.toString(), 60_000L, Integer.MAX_VALUE);
+        for (int i = 0; i < users; i++) {
+            database.incrementVoiceJoinCount(userId(i));
+        }
+        database.saveData();
+        return database;
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
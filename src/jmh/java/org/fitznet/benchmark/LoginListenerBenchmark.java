@@ -0,0 +1,117 @@
+package org.fitznet.benchmark;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.unions.AudioChannelUnion;
+import net.dv8tion.jda.api.events.guild.voice.GuildVoiceUpdateEvent;
+import org.fitznet.data.VoiceJoinDatabase;
+import org.fitznet.data.VoiceJoinHistory;
+import org.fitznet.listener.LoginListener;
+import org.fitznet.util.EmbedUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Per-event cost of {@link LoginListener#onGuildVoiceUpdate} with Mockito stand-ins for the JDA
+ * event, plus {@link EmbedUtil#createMilestoneEmbed}. Mock dispatch is part of the measured time,
+ * so compare results between runs rather than reading them as absolute gateway costs.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LoginListenerBenchmark {
+    private static final int USERS = 1_024;
+
+    private Path directory;
+    private VoiceJoinDatabase database;
+    private VoiceJoinHistory history;
+    private LoginListener listener;
+    private GuildVoiceUpdateEvent[] joins;
+    private Member member;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("login-listener-bench");
+        database = new VoiceJoinDatabase(directory.resolve("counts.json").toString(), 60_000L, Integer.MAX_VALUE);
+        history = new VoiceJoinHistory();
+
+        JDA jda = mock(JDA.class);
+        Guild guild = mock(Guild.class);
+        when(guild.getIdLong()).thenReturn(1L);
+        when(guild.getName()).thenReturn("Benchmark Guild");
+        when(guild.getIconUrl()).thenReturn("https://example.com/icon.png");
+        AudioChannelUnion channel = mock(AudioChannelUnion.class);
+        when(channel.getIdLong()).thenReturn(2L);
+
+        joins = new GuildVoiceUpdateEvent[USERS];
+        for (int i = 0; i < USERS; i++) {
+            Member joining = mockMember(guild, BenchmarkData.userId(i));
+            GuildVoiceUpdateEvent event = mock(GuildVoiceUpdateEvent.class);
+            when(event.getMember()).thenReturn(joining);
+            when(event.getGuild()).thenReturn(guild);
+            when(event.getChannelJoined()).thenReturn(channel);
+            when(event.getChannelLeft()).thenReturn(null);
+            joins[i] = event;
+        }
+        member = joins[0].getMember();
+
+        listener = LoginListener.builder()
+                .jda(jda)
+                .voiceDatabase(database)
+                .voiceHistory(history)
+                .build();
+    }
+
+    private static Member mockMember(Guild guild, long userId) {
+        Member member = mock(Member.class);
+        User user = mock(User.class);
+        when(member.getIdLong()).thenReturn(userId);
+        when(member.getGuild()).thenReturn(guild);
+        when(member.getUser()).thenReturn(user);
+        when(member.getEffectiveName()).thenReturn("user-" + userId);
+        when(member.getAsMention()).thenReturn("<@" + userId + ">");
+        when(user.getEffectiveAvatarUrl()).thenReturn("https://example.com/avatar.png");
+        return member;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.close();
+        history.close();
+        BenchmarkData.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public void onGuildVoiceUpdate() {
+        listener.onGuildVoiceUpdate(joins[next++ & (USERS - 1)]);
+    }
+
+    @Benchmark
+    public Object createMilestoneEmbed() {
+        return EmbedUtil.createMilestoneEmbed(member, 100);
+    }
+}
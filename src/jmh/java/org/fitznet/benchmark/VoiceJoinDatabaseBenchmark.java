@@ -0,0 +1,73 @@
+package org.fitznet.benchmark;
+
+import org.fitznet.data.VoiceJoinDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Increment and persistence costs of {@link VoiceJoinDatabase} at different store sizes.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VoiceJoinDatabaseBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int users;
+
+    private Path directory;
+    private VoiceJoinDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("voice-join-bench");
+        database = BenchmarkData.populatedDatabase(directory.resolve("counts.json"), users);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.close();
+        BenchmarkData.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Threads(1)
+    public long incrementSingleThreaded() {
+        return database.incrementVoiceJoinCount(BenchmarkData.userId(ThreadLocalRandom.current().nextInt(users)));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Threads(8)
+    public long incrementContended() {
+        return database.incrementVoiceJoinCount(BenchmarkData.userId(ThreadLocalRandom.current().nextInt(users)));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void saveData() {
+        database.saveData();
+    }
+}
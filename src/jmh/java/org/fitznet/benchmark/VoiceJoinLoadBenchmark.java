@@ -0,0 +1,59 @@
+package org.fitznet.benchmark;
+
+import org.fitznet.data.VoiceJoinDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start cost of loading a large JSON snapshot into a fresh {@link VoiceJoinDatabase}.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VoiceJoinLoadBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int users;
+
+    private Path directory;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("voice-join-load-bench");
+        snapshot = directory.resolve("counts.json");
+        BenchmarkData.populatedDatabase(snapshot, users).close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long coldLoad() {
+        VoiceJoinDatabase database = new VoiceJoinDatabase(snapshot.toString(), 60_000L, Integer.MAX_VALUE);
+        long probe = database.getVoiceJoinCount(BenchmarkData.userId(0));
+        database.close();
+        return probe;
+    }
+}
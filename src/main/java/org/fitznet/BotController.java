@@ -1,62 +1,369 @@
 package org.fitznet;
 
 import net.dv8tion.jda.api.JDA;
-import net.dv8tion.jda.api.JDABuilder;
-import net.dv8tion.jda.api.OnlineStatus;
-import net.dv8tion.jda.api.entities.Activity;
-import org.fitznet.listener.LoginListener;
-import org.springframework.beans.factory.annotation.Value;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import org.fitznet.announce.AnnouncementDispatcher;
+import org.fitznet.announce.CircuitBreaker;
+import org.fitznet.data.CountExports;
+import org.fitznet.data.CountPage;
+import org.fitznet.data.Leaderboard;
+import org.fitznet.data.LeaderboardIndex;
+import org.fitznet.data.LongCounterMap;
+import org.fitznet.data.VoiceJoinHistory;
+import org.fitznet.data.VoiceJoinStore;
+import org.fitznet.guild.GuildConfigService;
+import org.fitznet.guild.GuildSettings;
+import org.fitznet.listener.BotListeners;
+import org.fitznet.listener.VoiceEventPipeline;
+import org.fitznet.milestone.MilestoneConfig;
+import org.fitznet.milestone.MilestoneRules;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/bot")
 public class BotController {
-    private JDA jda;
-    private final String token;
+    private static final int MAX_LEADERBOARD_LIMIT = 1000;
+    private static final int MAX_COUNTS_LIMIT = 10_000;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final BotLifecycle lifecycle;
+    private final ShardManager shardManager;
+    private final ShardSettings shardSettings;
+    private final LeaderboardIndex leaderboard;
+    private final VoiceEventPipeline pipeline;
+    private final MilestoneRules milestones;
+    private final VoiceJoinStore store;
+    private final VoiceJoinHistory history;
+    private final GuildConfigService guildConfig;
+    private final BotListeners listeners;
+    private final CountExports exports = new CountExports();
 
-    public BotController(JDA jda, @Value("${discord.bot.token}") String token) {
-        this.jda = jda;
-        this.token = token;
+    /**
+     * @param lifecycle the bot's lifecycle when running unsharded, otherwise null
+     * @param shardManager the bot's shards when sharding is enabled, otherwise null
+     * @param store global join counts, streamed by {@code /counts}
+     * @param history per-guild join counts, streamed by {@code /counts?guild=}
+     * @param guildConfig per-guild settings, edited under {@code /guilds}
+     * @param listeners the bot's listeners, whose announcement load {@code /status} reports
+     */
+    public BotController(BotLifecycle lifecycle, ShardManager shardManager, ShardSettings shardSettings,
+                         LeaderboardIndex leaderboard, VoiceEventPipeline pipeline, MilestoneRules milestones,
+                         VoiceJoinStore store, VoiceJoinHistory history, GuildConfigService guildConfig,
+                         BotListeners listeners) {
+        this.lifecycle = lifecycle;
+        this.shardManager = shardManager;
+        this.shardSettings = shardSettings;
+        this.leaderboard = leaderboard;
+        this.pipeline = pipeline;
+        this.milestones = milestones;
+        this.store = store;
+        this.history = history;
+        this.guildConfig = guildConfig;
+        this.listeners = listeners;
     }
 
-    @PostMapping("/startup")
     public String startup() {
-        if (jda == null || jda.getStatus() == JDA.Status.SHUTDOWN) {
-            try {
-                jda = JDABuilder.createDefault(token)
-                        .setStatus(OnlineStatus.ONLINE)
-                        .setActivity(Activity.watching("The server... at all times"))
-                        .build().awaitReady();
-
-                // Add the LoginListener after JDA is ready
-                jda.addEventListener(new LoginListener(jda));
+        return startup(null);
+    }
 
-                return "Bot started successfully.";
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return "Failed to start bot: " + e.getMessage();
-            }
+    /**
+     * Start the bot, or with sharding enabled, one shard or every stopped shard in this process's range.
+     *
+     * @param shard shard ID to start; every stopped shard if omitted
+     */
+    @PostMapping("/startup")
+    public String startup(@RequestParam(required = false) Integer shard) {
+        if (shardManager != null) {
+            return startShards(shard);
+        }
+        if (shard != null) {
+            return "Sharding is not enabled.";
+        }
+        if (lifecycle.start()) {
+            return "Bot is starting. /status reports RUNNING once the gateway is ready.";
         }
-        return "Bot is already running.";
+        return switch (lifecycle.getState()) {
+            case STARTING -> "Bot is already starting.";
+            case RUNNING -> "Bot is already running.";
+            case STOPPING -> "Bot is still shutting down, try again shortly.";
+            case STOPPED -> "Failed to start bot, see the log for details.";
+        };
     }
 
-    @PostMapping("/shutdown")
     public String shutdown() {
-        if (jda != null && jda.getStatus() != JDA.Status.SHUTDOWN) {
-            jda.shutdown();
+        return shutdown(null);
+    }
+
+    /**
+     * Shut the bot down, or with sharding enabled, one shard or every running shard.
+     * Stopped shards can be started again with {@code /startup}.
+     *
+     * @param shard shard ID to stop; every running shard if omitted
+     */
+    @PostMapping("/shutdown")
+    public String shutdown(@RequestParam(required = false) Integer shard) {
+        if (shardManager != null) {
+            return shutdownShards(shard);
+        }
+        if (shard != null) {
+            return "Sharding is not enabled.";
+        }
+        if (lifecycle.stop()) {
             return "Bot is shutting down.";
         }
-        return "Bot is already shut down.";
+        return lifecycle.getState() == BotLifecycle.State.STOPPING
+                ? "Bot is already shutting down."
+                : "Bot is already shut down.";
     }
 
+    /**
+     * Connection status, per shard when sharding is enabled, followed by the load on the voice event
+     * pipeline and the announcement dispatcher and the state of its circuit breaker.
+     */
     @GetMapping("/status")
     public String getStatus() {
-        if (jda == null) {
+        return getConnectionStatus() + getLoadStatus();
+    }
+
+    private String getConnectionStatus() {
+        if (shardManager != null) {
+            return getShardStatus();
+        }
+        JDA.Status status = lifecycle.getStatus();
+        if (status == null) {
             return "Bot is not initialized.";
         }
-        return "Bot status: " + jda.getStatus();
+        return "Bot status: " + lifecycle.getState() + " (gateway " + status + ")";
+    }
+
+    private String getLoadStatus() {
+        VoiceEventPipeline.Stats events = pipeline.getStats();
+        StringBuilder status = new StringBuilder(String.format("%nVoice events: %d queued, %d dropped%s",
+                events.queueDepth(), events.dropped(), pipeline.isOverloaded() ? ", overloaded: shedding announcements" : ""));
+        AnnouncementDispatcher.Stats announcements = listeners == null ? null : listeners.getAnnouncementStats();
+        if (announcements != null) {
+            CircuitBreaker.Stats circuit = announcements.circuit();
+            status.append(String.format("%nAnnouncements: %d queued of %d, %d shed, %d dropped",
+                    announcements.pending(), announcements.capacity(), announcements.shed(), announcements.dropped()));
+            status.append(String.format("%nAnnouncement circuit: %s, %d failure(s) in a row, opened %d time(s)",
+                    circuit.state(), circuit.consecutiveFailures(), circuit.opened()));
+            if (circuit.state() == CircuitBreaker.State.OPEN) {
+                status.append(String.format(", next probe in %d ms", circuit.retryInMillis()));
+            }
+        }
+        return status.toString();
+    }
+
+    private String getShardStatus() {
+        StringBuilder status = new StringBuilder(String.format("Bot status: %d shard(s) running, %d queued, of %d total",
+                shardManager.getShardsRunning(), shardManager.getShardsQueued(), shardManager.getShardsTotal()));
+        for (int shardId : shardSettings.shardIds()) {
+            JDA shard = shardManager.getShardById(shardId);
+            if (shard == null) {
+                status.append(String.format("%nShard %d: STOPPED", shardId));
+            } else {
+                status.append(String.format("%nShard %d: %s, %d guild(s), %d ms ping",
+                        shardId, shard.getStatus(), shard.getGuildCache().size(), shard.getGatewayPing()));
+            }
+        }
+        return status.toString();
+    }
+
+    private boolean isRunning(int shardId) {
+        JDA shard = shardManager.getShardById(shardId);
+        return shard != null && shard.getStatus() != JDA.Status.SHUTDOWN;
+    }
+
+    private String startShards(Integer shard) {
+        if (shard != null) {
+            if (shard < 0 || shard >= shardManager.getShardsTotal()) {
+                return "Shard " + shard + " does not exist.";
+            }
+            if (isRunning(shard)) {
+                return "Shard " + shard + " is already running.";
+            }
+            shardManager.start(shard);
+            return "Shard " + shard + " is starting.";
+        }
+        List<Integer> started = new ArrayList<>();
+        for (int shardId : shardSettings.shardIds()) {
+            if (!isRunning(shardId)) {
+                shardManager.start(shardId);
+                started.add(shardId);
+            }
+        }
+        return started.isEmpty() ? "All shards are already running." : "Starting shards " + started + ".";
+    }
+
+    private String shutdownShards(Integer shard) {
+        if (shard != null) {
+            if (!isRunning(shard)) {
+                return "Shard " + shard + " is not running.";
+            }
+            shardManager.shutdown(shard);
+            return "Shard " + shard + " is shutting down.";
+        }
+        List<Integer> stopped = new ArrayList<>();
+        for (int shardId : shardSettings.shardIds()) {
+            if (isRunning(shardId)) {
+                shardManager.shutdown(shardId);
+                stopped.add(shardId);
+            }
+        }
+        return stopped.isEmpty() ? "All shards are already shut down." : "Shutting down shards " + stopped + ".";
+    }
+
+    /**
+     * Voice event pipeline settings and current queue depth.
+     */
+    @GetMapping("/pipeline")
+    public VoiceEventPipeline.Stats getPipelineStats() {
+        return pipeline.getStats();
+    }
+
+    /**
+     * Top users by voice joins, served from the in-memory leaderboard.
+     *
+     * @param limit maximum number of users to return
+     * @param guild guild ID to rank within; the global leaderboard if omitted
+     */
+    @GetMapping("/leaderboard")
+    public List<Leaderboard.Ranked> getLeaderboard(@RequestParam(defaultValue = "10") int limit,
+                                                   @RequestParam(required = false) Long guild) {
+        return leaderboard.top(guild, Math.max(0, Math.min(limit, MAX_LEADERBOARD_LIMIT)));
+    }
+
+    /**
+     * Every user's join count in ascending user ID order, one page at a time, read in place from the
+     * live store. Consecutive pages are cut from one walk of the store by {@link CountExports}. The
+     * response carries the cursor for the next page in {@code nextCursor} (JSON) and the
+     * {@value #NEXT_CURSOR_HEADER} header; both are absent or null on the last page.
+     *
+     * @param cursor the previous page's cursor; the first page if omitted
+     * @param limit maximum number of users in the page
+     * @param guild guild ID to count within, from the join history; global counts if omitted
+     * @param format {@code ndjson} for newline-delimited JSON; also chosen by {@code Accept: application/x-ndjson}
+     */
+    @GetMapping("/counts")
+    public ResponseEntity<StreamingResponseBody> getCounts(@RequestParam(required = false) Long cursor,
+                                                           @RequestParam(defaultValue = "1000") int limit,
+                                                           @RequestParam(required = false) Long guild,
+                                                           @RequestParam(required = false) String format,
+                                                           @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (limit < 1 || limit > MAX_COUNTS_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_COUNTS_LIMIT);
+        }
+        boolean ndjson = "ndjson".equalsIgnoreCase(format)
+                || (format == null && accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE));
+        if (format != null && !ndjson && !"json".equalsIgnoreCase(format)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be json or ndjson");
+        }
+
+        CountPage page = exports.page(guild, cursor, limit, countsIn(guild));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON);
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor().toString());
+        }
+        return response.body(ndjson ? page::writeNdjson : page::writeJson);
+    }
+
+    private Consumer<LongCounterMap.EntryConsumer> countsIn(Long guild) {
+        if (guild == null) {
+            return store::forEachCount;
+        }
+        long guildId = guild;
+        return consumer -> history.forEachUserTotal((totalGuildId, userId, total) -> {
+            if (totalGuildId == guildId) {
+                consumer.accept(userId, total);
+            }
+        });
+    }
+
+    /**
+     * Milestone rules currently in effect.
+     */
+    @GetMapping("/milestones")
+    public MilestoneConfig getMilestones() {
+        return milestones.getConfig();
+    }
+
+    /**
+     * Replace the milestone rules until the rules file next changes. Counts are untouched.
+     */
+    @PutMapping("/milestones")
+    public MilestoneConfig putMilestones(@RequestBody MilestoneConfig config) {
+        try {
+            milestones.apply(config);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        return milestones.getConfig();
+    }
+
+    /**
+     * Re-read the milestone rules file now instead of waiting for the next poll.
+     */
+    @PostMapping("/milestones/reload")
+    public MilestoneConfig reloadMilestones() {
+        milestones.reload();
+        return milestones.getConfig();
+    }
+
+    /**
+     * Settings of every guild that has changed them from the defaults, by guild ID.
+     */
+    @GetMapping("/guilds")
+    public Map<Long, GuildSettings> getGuilds() {
+        return guildConfig.getAll();
+    }
+
+    /**
+     * A guild's settings; the defaults if it has never changed them.
+     */
+    @GetMapping("/guilds/{guildId}/settings")
+    public GuildSettings getGuildSettings(@PathVariable long guildId) {
+        return guildConfig.get(guildId);
+    }
+
+    /**
+     * Replace a guild's settings. They are saved, and take effect on the next join without a restart.
+     */
+    @PutMapping("/guilds/{guildId}/settings")
+    public GuildSettings putGuildSettings(@PathVariable long guildId, @RequestBody GuildSettings settings) {
+        try {
+            return guildConfig.put(guildId, settings);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Return a guild to the default settings.
+     */
+    @DeleteMapping("/guilds/{guildId}/settings")
+    public GuildSettings deleteGuildSettings(@PathVariable long guildId) {
+        guildConfig.reset(guildId);
+        return guildConfig.get(guildId);
     }
 }
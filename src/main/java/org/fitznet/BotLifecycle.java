@@ -0,0 +1,182 @@
+package org.fitznet;
+
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.JDA;
+import org.fitznet.listener.BotListeners;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Owns the bot's JDA connection when running unsharded, moving it through
+ * {@link State#STOPPED} → {@link State#STARTING} → {@link State#RUNNING} → {@link State#STOPPING} → {@link State#STOPPED}.
+ * <p>
+ * The connection is started once the application context is ready rather than while it is being
+ * built. {@code JDABuilder.build()} returns straight away and JDA logs in on its own threads, so the
+ * HTTP port and Actuator come up without waiting for Discord's handshake; {@link #isReady()} and
+ * the {@code discord} health indicator report when the gateway has finished loading.
+ * </p>
+ * <p>
+ * {@link #start()} and {@link #stop()} are serialised, so of several concurrent calls exactly one
+ * acts and the rest return false; neither blocks on Discord. Waiting for the gateway to become
+ * ready or to finish shutting down happens on a single background thread, which moves the state
+ * on with a compare-and-set so a stop during login is never overwritten by the login completing.
+ * Restarts reuse the application's stores and listeners; only the gateway connection is new.
+ * </p>
+ */
+@Slf4j
+public class BotLifecycle implements AutoCloseable {
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+    private final DiscordClientFactory clientFactory;
+    private final BotListeners botListeners;
+    private final AtomicReference<State> state;
+    private final ExecutorService transitions = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bot-lifecycle");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile JDA jda;
+
+    /**
+     * Where the bot's connection is in its lifecycle.
+     */
+    public enum State {
+        /** No connection; {@link #start()} may begin one. */
+        STOPPED,
+        /** Logging in and loading guilds. */
+        STARTING,
+        /** Connected and receiving events. JDA reconnects by itself after gateway drops. */
+        RUNNING,
+        /** Disconnecting; events already received are still handled. */
+        STOPPING
+    }
+
+    /**
+     * @param client an already built JDA to manage instead of logging in, e.g. one supplied as a bean; may be null.
+     *               The listeners are added to it as {@link #start()} would, so it should be built
+     *               without awaiting ready for them to see the ready event.
+     */
+    public BotLifecycle(DiscordClientFactory clientFactory, BotListeners botListeners, JDA client) {
+        this.clientFactory = clientFactory;
+        this.botListeners = botListeners;
+        this.jda = client;
+        this.state = new AtomicReference<>(client == null ? State.STOPPED : State.RUNNING);
+        if (client != null && botListeners != null) {
+            botListeners.register(client);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        start();
+    }
+
+    /**
+     * Start logging in to Discord without waiting for the gateway to become ready.
+     *
+     * @return false if the bot was not {@link State#STOPPED} or the client could not be built
+     */
+    public synchronized boolean start() {
+        if (!state.compareAndSet(State.STOPPED, State.STARTING)) {
+            return false;
+        }
+        JDA client;
+        try {
+            client = clientFactory.builder().build();
+        } catch (RuntimeException e) {
+            log.error("Failed to start the Discord client", e);
+            state.set(State.STOPPED);
+            return false;
+        }
+        log.info("Discord client logging in with the {} gateway profile", clientFactory.getProfile());
+
+        // The gateway connects on JDA's threads, so the listeners are in place before the first event
+        botListeners.register(client);
+        jda = client;
+        transitions.execute(() -> awaitReady(client));
+        return true;
+    }
+
+    private void awaitReady(JDA client) {
+        try {
+            client.awaitReady();
+            if (state.compareAndSet(State.STARTING, State.RUNNING)) {
+                log.info("Discord client is ready");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Shut down while loading (stop() owns the transition) or the login was rejected
+            if (state.compareAndSet(State.STARTING, State.STOPPED)) {
+                log.error("Discord client failed to start", e);
+                client.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Disconnect from Discord, including while still logging in.
+     *
+     * @return false if the bot was not {@link State#STARTING} or {@link State#RUNNING}
+     */
+    public synchronized boolean stop() {
+        if (!state.compareAndSet(State.RUNNING, State.STOPPING)
+                && !state.compareAndSet(State.STARTING, State.STOPPING)) {
+            return false;
+        }
+        JDA client = jda;
+        client.shutdown();
+        transitions.execute(() -> awaitShutdown(client));
+        return true;
+    }
+
+    private void awaitShutdown(JDA client) {
+        try {
+            if (!client.awaitShutdown(SHUTDOWN_TIMEOUT)) {
+                log.warn("Discord client did not shut down within {}, cancelling its pending requests", SHUTDOWN_TIMEOUT);
+                client.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            state.set(State.STOPPED);
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * @return the current JDA instance, or null before the first start
+     */
+    public JDA getJda() {
+        return jda;
+    }
+
+    /**
+     * @return the gateway status, or null before the first start
+     */
+    public JDA.Status getStatus() {
+        JDA current = jda;
+        return current == null ? null : current.getStatus();
+    }
+
+    /**
+     * @return true once the gateway has loaded every guild and is receiving events
+     */
+    public boolean isReady() {
+        return state.get() == State.RUNNING && getStatus() == JDA.Status.CONNECTED;
+    }
+
+    @Override
+    public void close() {
+        stop();
+        transitions.shutdown();
+    }
+}
@@ -0,0 +1,155 @@
+package org.fitznet;
+
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.JDABuilder;
+import net.dv8tion.jda.api.OnlineStatus;
+import net.dv8tion.jda.api.entities.Activity;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.requests.RestConfig;
+import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.MemberCachePolicy;
+import net.dv8tion.jda.api.utils.SessionController;
+import net.dv8tion.jda.api.utils.SessionControllerAdapter;
+import net.dv8tion.jda.api.utils.cache.CacheFlag;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Builds the bot's JDA instances and shard managers, so startup and restarts use the same gateway settings.
+ * <p>
+ * The REST API and gateway URLs can be pointed somewhere other than Discord, such as the fake
+ * server the end-to-end harness runs. JDA does not ask the REST API where the gateway is, so the
+ * two are set separately.
+ * </p>
+ */
+@Slf4j
+public class DiscordClientFactory {
+    private final String token;
+    private final GatewayProfile profile;
+    private final String restBaseUrl;
+    private final String gatewayUrl;
+
+    /**
+     * How much of Discord's state the gateway subscribes to and caches.
+     */
+    public enum GatewayProfile {
+        /** {@link JDABuilder#createDefault(String)}: the default intents, cache flags and member cache. */
+        DEFAULT,
+        /**
+         * Only what voice join tracking needs: the voice state intent, voice states, and members
+         * while they are connected to voice. JDA always adds the GUILDS intent on top (it has no
+         * constant for it), which delivers the guild and channel events its guild cache, and so
+         * voice state dispatch, depends on. No member chunking and no other cache flags, so
+         * presences, emojis, stickers, scheduled events and idle members are never held in memory.
+         */
+        LEAN
+    }
+
+    public DiscordClientFactory(String token, GatewayProfile profile) {
+        this(token, profile, null, null);
+    }
+
+    /**
+     * @param restBaseUrl root of the REST API, e.g. {@code http://localhost:8090/api/v10/}; Discord's if blank or null
+     * @param gatewayUrl websocket URL of the gateway, e.g. {@code ws://localhost:8091}; Discord's if blank or null
+     */
+    public DiscordClientFactory(String token, GatewayProfile profile, String restBaseUrl, String gatewayUrl) {
+        this.token = token;
+        this.profile = profile;
+        this.restBaseUrl = restBaseUrl == null || restBaseUrl.isBlank() ? null : restBaseUrl;
+        this.gatewayUrl = gatewayUrl == null || gatewayUrl.isBlank() ? null : gatewayUrl;
+    }
+
+    public GatewayProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return a builder for the configured profile with the bot's status and activity set
+     */
+    public JDABuilder builder() {
+        JDABuilder builder = switch (profile) {
+            case DEFAULT -> JDABuilder.createDefault(token);
+            case LEAN -> JDABuilder.createLight(token, GatewayIntent.GUILD_VOICE_STATES)
+                    .enableCache(CacheFlag.VOICE_STATE)
+                    .disableCache(EnumSet.complementOf(EnumSet.of(CacheFlag.VOICE_STATE)))
+                    .setMemberCachePolicy(MemberCachePolicy.VOICE)
+                    .setChunkingFilter(ChunkingFilter.NONE);
+        };
+        if (restBaseUrl != null) {
+            builder.setRestConfig(restConfig());
+        }
+        if (gatewayUrl != null) {
+            builder.setSessionController(sessionController());
+        }
+        return builder
+                .setStatus(OnlineStatus.ONLINE)
+                .setActivity(Activity.watching("The server... at all times"));
+    }
+
+    /**
+     * @return a shard manager builder for the configured profile, running the shards in {@code shards}
+     */
+    public DefaultShardManagerBuilder shardManagerBuilder(ShardSettings shards) {
+        DefaultShardManagerBuilder builder = switch (profile) {
+            case DEFAULT -> DefaultShardManagerBuilder.createDefault(token);
+            case LEAN -> DefaultShardManagerBuilder.createLight(token, GatewayIntent.GUILD_VOICE_STATES)
+                    .enableCache(CacheFlag.VOICE_STATE)
+                    .disableCache(EnumSet.complementOf(EnumSet.of(CacheFlag.VOICE_STATE)))
+                    .setMemberCachePolicy(MemberCachePolicy.VOICE)
+                    .setChunkingFilter(ChunkingFilter.NONE);
+        };
+        if (restBaseUrl != null) {
+            builder.setRestConfig(restConfig());
+        }
+        if (gatewayUrl != null) {
+            builder.setSessionController(sessionController());
+        }
+        return builder
+                .setShardsTotal(shards.total())
+                .setShards(shards.minShard(), shards.maxShard())
+                .setStatus(OnlineStatus.ONLINE)
+                .setActivity(Activity.watching("The server... at all times"));
+    }
+
+    private RestConfig restConfig() {
+        log.info("Using REST API at {} instead of Discord", restBaseUrl);
+        return new RestConfig().setBaseUrl(restBaseUrl);
+    }
+
+    private SessionController sessionController() {
+        log.info("Using gateway at {} instead of Discord", gatewayUrl);
+        return new SessionControllerAdapter() {
+            @NotNull
+            @Override
+            public String getGateway() {
+                return gatewayUrl;
+            }
+
+            @NotNull
+            @Override
+            public ShardedGateway getShardedGateway(@NotNull JDA api) {
+                ShardedGateway gateway = super.getShardedGateway(api);
+                return new ShardedGateway(gatewayUrl, gateway.getShardTotal(), gateway.getConcurrency());
+            }
+        };
+    }
+
+    /**
+     * Log in the shards. They connect one after another in the background, as Discord requires,
+     * and each gets its listeners from {@code listenerProviders} as it is built.
+     */
+    public ShardManager startShards(ShardSettings shards, List<IntFunction<Object>> listenerProviders) {
+        log.info("Starting shards {}-{} of {} with the {} gateway profile",
+                shards.minShard(), shards.maxShard(), shards.total(), profile);
+        return shardManagerBuilder(shards)
+                .addEventListenerProviders(listenerProviders)
+                .build();
+    }
+}
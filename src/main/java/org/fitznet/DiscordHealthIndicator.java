@@ -0,0 +1,59 @@
+package org.fitznet;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports the Discord gateway as UP only once it is connected: the single JDA when unsharded,
+ * otherwise every shard in this process's range. Part of the readiness group, so
+ * {@code /actuator/health/readiness} stays OUT_OF_SERVICE while the bot is logging in or reconnecting.
+ */
+public class DiscordHealthIndicator implements HealthIndicator {
+    private final BotLifecycle lifecycle;
+    private final ShardManager shardManager;
+    private final ShardSettings shardSettings;
+
+    /**
+     * @param lifecycle the bot's lifecycle when running unsharded, otherwise null
+     * @param shardManager the bot's shards when sharding is enabled, otherwise null
+     */
+    public DiscordHealthIndicator(BotLifecycle lifecycle, ShardManager shardManager, ShardSettings shardSettings) {
+        this.lifecycle = lifecycle;
+        this.shardManager = shardManager;
+        this.shardSettings = shardSettings;
+    }
+
+    @Override
+    public Health health() {
+        if (shardManager != null) {
+            return shardHealth();
+        }
+        if (lifecycle == null) {
+            return Health.outOfService().build();
+        }
+        JDA.Status status = lifecycle.getStatus();
+        Health.Builder health = lifecycle.isReady() ? Health.up() : Health.outOfService();
+        return health
+                .withDetail("state", lifecycle.getState().name())
+                .withDetail("status", status == null ? "NOT_STARTED" : status.name())
+                .build();
+    }
+
+    private Health shardHealth() {
+        Map<String, String> shards = new LinkedHashMap<>();
+        boolean allConnected = true;
+        for (int shardId : shardSettings.shardIds()) {
+            JDA shard = shardManager.getShardById(shardId);
+            JDA.Status status = shard == null ? null : shard.getStatus();
+            allConnected &= status == JDA.Status.CONNECTED;
+            shards.put(Integer.toString(shardId), status == null ? "STOPPED" : status.name());
+        }
+        Health.Builder health = allConnected ? Health.up() : Health.outOfService();
+        return health.withDetail("shards", shards).build();
+    }
+}
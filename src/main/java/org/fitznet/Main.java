@@ -1,15 +1,44 @@
 package org.fitznet;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.api.JDA;
-import net.dv8tion.jda.api.JDABuilder;
-import net.dv8tion.jda.api.OnlineStatus;
-import net.dv8tion.jda.api.entities.Activity;
-import org.fitznet.listener.LoginListener;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import org.fitznet.archive.VoiceEventArchive;
+import org.fitznet.data.LeaderboardIndex;
+import org.fitznet.data.MappedVoiceJoinStore;
+import org.fitznet.data.PersistenceSettings;
+import org.fitznet.data.ShardedVoiceJoinStore;
+import org.fitznet.data.SqlVoiceJoinStore;
+import org.fitznet.data.VoiceJoinDatabase;
+import org.fitznet.data.VoiceJoinHistory;
+import org.fitznet.data.VoiceJoinStore;
+import org.fitznet.data.VoiceSessionTracker;
+import org.fitznet.guild.GuildConfigService;
+import org.fitznet.listener.BotListeners;
+import org.fitznet.listener.JoinDebouncer;
+import org.fitznet.listener.VoiceEventPipeline;
+import org.fitznet.metrics.BotMetrics;
+import org.fitznet.milestone.MilestoneRules;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.fitznet.util.Constants.GUILD_SETTINGS_FILENAME;
+import static org.fitznet.util.Constants.MILESTONE_RULES_FILENAME;
+import static org.fitznet.util.Constants.TOTALLY_LEGIT_DATABASE_FILENAME;
+import static org.fitznet.util.Constants.VOICE_JOIN_HISTORY_FILENAME;
+import static org.fitznet.util.Constants.VOICE_TIME_FILENAME;
 
 @Slf4j
 @SpringBootApplication
@@ -22,21 +51,225 @@ public class Main {
         SpringApplication.run(Main.class, args);
     }
 
+    /**
+     * Shards run by this process. {@code discord.shards.enabled} switches from a single JDA to a
+     * ShardManager running {@code discord.shards.range} (e.g. {@code 0-3}, all shards if blank)
+     * out of {@code discord.shards.total}.
+     */
+    @Bean
+    public ShardSettings shardSettings(@Value("${discord.shards.enabled:false}") boolean enabled,
+                                       @Value("${discord.shards.total:1}") int total,
+                                       @Value("${discord.shards.range:}") String range) {
+        return ShardSettings.of(enabled, total, range);
+    }
+
+    /**
+     * The voice join store shared by every listener this application creates.
+     * {@code voicejoin.store} selects the backend: {@code json} (default), {@code journal}, {@code mapped} or {@code h2}.
+     * With sharding enabled each shard gets its own partition, in its own file.
+     */
+    @Bean
+    @Primary
+    public VoiceJoinStore voiceJoinStore(@Value("${voicejoin.store:json}") String storeType,
+                                         @Value("${voicejoin.mapped-file:serverVoiceCount.bin}") String mappedFile,
+                                         @Value("${voicejoin.jdbc-url:jdbc:h2:file:./serverVoiceCount}") String jdbcUrl,
+                                         ShardSettings shardSettings) {
+        return openStore(storeType, TOTALLY_LEGIT_DATABASE_FILENAME, mappedFile, jdbcUrl, shardSettings);
+    }
+
+    /**
+     * Every user's total milliseconds in voice, kept by the same backend as join counts in files of its own.
+     */
+    @Bean
+    public VoiceJoinStore voiceTimeStore(@Value("${voicejoin.store:json}") String storeType,
+                                         @Value("${voicejoin.voice-time.file:" + VOICE_TIME_FILENAME + "}") String jsonFile,
+                                         @Value("${voicejoin.voice-time.mapped-file:serverVoiceTime.bin}") String mappedFile,
+                                         @Value("${voicejoin.voice-time.jdbc-url:jdbc:h2:file:./serverVoiceTime}") String jdbcUrl,
+                                         ShardSettings shardSettings) {
+        return openStore(storeType, jsonFile, mappedFile, jdbcUrl, shardSettings);
+    }
+
+    private static VoiceJoinStore openStore(String storeType, String jsonFile, String mappedFile, String jdbcUrl,
+                                            ShardSettings shardSettings) {
+        IntFunction<VoiceJoinStore> partition = shardId -> switch (storeType) {
+            case "journal" -> new VoiceJoinDatabase(PersistenceSettings.builder()
+                    .databaseFile(ShardedVoiceJoinStore.partitionFile(jsonFile, shardId))
+                    .journalEnabled(true)
+                    .build());
+            case "mapped" -> new MappedVoiceJoinStore(Path.of(ShardedVoiceJoinStore.partitionFile(mappedFile, shardId)));
+            case "h2" -> new SqlVoiceJoinStore(ShardedVoiceJoinStore.partitionFile(jdbcUrl, shardId));
+            default -> new VoiceJoinDatabase(PersistenceSettings.builder()
+                    .databaseFile(ShardedVoiceJoinStore.partitionFile(jsonFile, shardId))
+                    .build());
+        };
+        if (shardSettings.enabled()) {
+            return new ShardedVoiceJoinStore(partition, shardSettings.shardIds());
+        }
+        String file = switch (storeType) {
+            case "mapped" -> mappedFile;
+            case "h2" -> jdbcUrl;
+            default -> jsonFile;
+        };
+        List<Path> unread = ShardedVoiceJoinStore.otherPartitionFiles(file);
+        if (!unread.isEmpty()) {
+            log.warn("Sharding is disabled, so the counts in shard partitions {} are not read; "
+                    + "enable sharding with the same shards to see them again", unread);
+        }
+        return partition.apply(0);
+    }
+
+    /**
+     * Per-guild join buckets, saved every {@code voicejoin.history.flush-interval-ms} if they changed.
+     */
+    @Bean
+    public VoiceJoinHistory voiceJoinHistory(@Value("${voicejoin.history.file:" + VOICE_JOIN_HISTORY_FILENAME + "}") String historyFile,
+                                             @Value("${voicejoin.history.flush-interval-ms:60000}") long flushIntervalMillis) {
+        return new VoiceJoinHistory(new File(historyFile), flushIntervalMillis);
+    }
+
+    /**
+     * Open voice sessions; closing it on shutdown credits them before the stores are closed.
+     */
+    @Bean
+    public VoiceSessionTracker voiceSessionTracker(@Qualifier("voiceTimeStore") VoiceJoinStore voiceTimeStore,
+                                                   VoiceJoinHistory voiceJoinHistory) {
+        return new VoiceSessionTracker(voiceTimeStore, voiceJoinHistory);
+    }
+
+    @Bean
+    public LeaderboardIndex leaderboardIndex(VoiceJoinStore voiceJoinStore, VoiceJoinHistory voiceJoinHistory) {
+        return LeaderboardIndex.build(voiceJoinStore, voiceJoinHistory);
+    }
+
+    /**
+     * Worker lanes that voice joins are handled on, keyed by user so each user's joins stay in order.
+     */
+    @Bean
+    public VoiceEventPipeline voiceEventPipeline(@Value("${voicejoin.pipeline.lanes:4}") int lanes,
+                                                 @Value("${voicejoin.pipeline.queue-capacity:10000}") int queueCapacity,
+                                                 @Value("${voicejoin.pipeline.overflow:BLOCK}") VoiceEventPipeline.OverflowPolicy overflow) {
+        return new VoiceEventPipeline(lanes, queueCapacity, overflow);
+    }
+
+    /**
+     * Rejoins within {@code voicejoin.debounce.window-ms} of leaving are not counted; 0 counts every join.
+     */
     @Bean
-    public JDA discordBotClient() throws InterruptedException {
-        JDA jda = JDABuilder.createDefault(botToken)
-                .setStatus(OnlineStatus.ONLINE)
-                .setActivity(Activity.watching("The server... at all times"))
-                .build().awaitReady();
+    public JoinDebouncer joinDebouncer(@Value("${voicejoin.debounce.window-ms:10000}") long windowMillis,
+                                       @Value("${voicejoin.debounce.capacity:65536}") int capacity) {
+        return new JoinDebouncer(windowMillis, capacity);
+    }
 
-        // Add the LoginListener after JDA is created and ready
-        jda.addEventListener(new LoginListener(jda));
+    /**
+     * Every voice event, archived in daily segments under {@code voicejoin.archive.directory} for
+     * {@link org.fitznet.archive.ArchiveQuery}. Closed on shutdown, which writes the events still in memory.
+     */
+    @Bean
+    public VoiceEventArchive voiceEventArchive(@Value("${voicejoin.archive.enabled:true}") boolean enabled,
+                                               @Value("${voicejoin.archive.directory:voice-archive}") String directory,
+                                               @Value("${voicejoin.archive.retain-days:400}") int retainDays) {
+        return enabled ? new VoiceEventArchive(Path.of(directory), retainDays) : VoiceEventArchive.disabled();
+    }
 
-        return jda;
+    /**
+     * Bot meters, scraped from {@code /actuator/prometheus}.
+     */
+    @Bean
+    public BotMetrics botMetrics(MeterRegistry meterRegistry, VoiceJoinStore voiceJoinStore,
+                                 VoiceEventPipeline voiceEventPipeline, VoiceSessionTracker voiceSessionTracker,
+                                 JoinDebouncer joinDebouncer, VoiceEventArchive voiceEventArchive) {
+        BotMetrics metrics = new BotMetrics(meterRegistry);
+        metrics.bindStore(voiceJoinStore);
+        metrics.bindPipeline(voiceEventPipeline);
+        metrics.bindSessions(voiceSessionTracker);
+        metrics.bindDebouncer(joinDebouncer);
+        metrics.bindArchive(voiceEventArchive);
+        return metrics;
+    }
+
+    /**
+     * Milestone rules, reloaded whenever {@code voicejoin.milestones-file} changes.
+     */
+    @Bean
+    public MilestoneRules milestoneRules(@Value("${voicejoin.milestones-file:" + MILESTONE_RULES_FILENAME + "}") String rulesFile) {
+        return new MilestoneRules(new File(rulesFile));
+    }
+
+    /**
+     * Per-guild settings saved in {@code voicejoin.guild-settings-file}; milestone overrides are applied on top of the rules file.
+     */
+    @Bean
+    public GuildConfigService guildConfigService(@Value("${voicejoin.guild-settings-file:" + GUILD_SETTINGS_FILENAME + "}") String settingsFile,
+                                                 MilestoneRules milestoneRules) {
+        return new GuildConfigService(new File(settingsFile), milestoneRules);
+    }
+
+    @Bean
+    public BotListeners botListeners(VoiceJoinStore voiceJoinStore, VoiceJoinHistory voiceJoinHistory,
+                                     LeaderboardIndex leaderboardIndex, VoiceEventPipeline voiceEventPipeline,
+                                     BotMetrics botMetrics, MilestoneRules milestoneRules,
+                                     VoiceSessionTracker voiceSessionTracker,
+                                     @Qualifier("voiceTimeStore") VoiceJoinStore voiceTimeStore,
+                                     JoinDebouncer joinDebouncer, VoiceEventArchive voiceEventArchive,
+                                     GuildConfigService guildConfigService) {
+        return new BotListeners(voiceJoinStore, voiceJoinHistory, leaderboardIndex, voiceEventPipeline, botMetrics,
+                milestoneRules, voiceSessionTracker, voiceTimeStore, joinDebouncer, voiceEventArchive, guildConfigService);
+    }
+
+    /**
+     * Builds JDA with the gateway profile chosen by {@code discord.gateway.profile}: {@code DEFAULT} or {@code LEAN}.
+     * {@code discord.rest.base-url} and {@code discord.gateway.url} point it at another REST API and gateway than Discord's.
+     */
+    @Bean
+    public DiscordClientFactory discordClientFactory(
+            @Value("${discord.gateway.profile:DEFAULT}") DiscordClientFactory.GatewayProfile profile,
+            @Value("${discord.rest.base-url:}") String restBaseUrl,
+            @Value("${discord.gateway.url:}") String gatewayUrl) {
+        return new DiscordClientFactory(botToken, profile, restBaseUrl, gatewayUrl);
+    }
+
+    /**
+     * Logs in once the application is ready, so the context and HTTP port never wait on Discord.
+     * A JDA bean, if one is defined, is managed as-is instead.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "discord.shards.enabled", havingValue = "false", matchIfMissing = true)
+    public BotLifecycle botLifecycle(DiscordClientFactory discordClientFactory, BotListeners botListeners,
+                                     ObjectProvider<JDA> jda) {
+        return new BotLifecycle(discordClientFactory, botListeners, jda.getIfAvailable());
+    }
+
+    /**
+     * Shards connect in the background, one every few seconds, so this returns before they are all ready.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "discord.shards.enabled", havingValue = "true")
+    public ShardManager discordShardManager(DiscordClientFactory discordClientFactory, ShardSettings shardSettings,
+                                            BotListeners botListeners) {
+        ShardManager shardManager = discordClientFactory.startShards(shardSettings, botListeners.shardListenerProviders());
+        botListeners.attach(shardManager);
+        return shardManager;
+    }
+
+    /**
+     * Backs the {@code discord} health indicator, which the readiness group includes.
+     */
+    @Bean
+    public DiscordHealthIndicator discordHealthIndicator(ObjectProvider<BotLifecycle> botLifecycle,
+                                                         ObjectProvider<ShardManager> shardManager,
+                                                         ShardSettings shardSettings) {
+        return new DiscordHealthIndicator(botLifecycle.getIfAvailable(), shardManager.getIfAvailable(), shardSettings);
     }
 
     @Bean
-    public BotController botController(JDA jda, @Value("${discord.bot.token}") String token) {
-        return new BotController(jda, token);
+    public BotController botController(ObjectProvider<BotLifecycle> botLifecycle,
+                                       ObjectProvider<ShardManager> shardManager, ShardSettings shardSettings,
+                                       LeaderboardIndex leaderboardIndex, VoiceEventPipeline voiceEventPipeline,
+                                       MilestoneRules milestoneRules, VoiceJoinStore voiceJoinStore,
+                                       VoiceJoinHistory voiceJoinHistory, GuildConfigService guildConfigService,
+                                       BotListeners botListeners) {
+        return new BotController(botLifecycle.getIfAvailable(), shardManager.getIfAvailable(), shardSettings,
+                leaderboardIndex, voiceEventPipeline, milestoneRules, voiceJoinStore, voiceJoinHistory, guildConfigService,
+                botListeners);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package org.fitznet;
+
+import java.util.stream.IntStream;
+
+/**
+ * Which gateway shards this process runs.
+ *
+ * @param enabled whether to run a ShardManager instead of a single JDA
+ * @param total total shards across every process
+ * @param minShard first shard run by this process
+ * @param maxShard last shard run by this process, inclusive
+ */
+public record ShardSettings(boolean enabled, int total, int minShard, int maxShard) {
+
+    public ShardSettings {
+        if (enabled) {
+            if (total <= 0) {
+                throw new IllegalArgumentException("discord.shards.total must be positive when sharding is enabled");
+            }
+            if (minShard < 0 || maxShard >= total || minShard > maxShard) {
+                throw new IllegalArgumentException("Shard range " + minShard + "-" + maxShard + " is not within 0-" + (total - 1));
+            }
+        }
+    }
+
+    /**
+     * @param range {@code "min-max"}, a single shard ID, or blank for every shard
+     */
+    public static ShardSettings of(boolean enabled, int total, String range) {
+        if (range == null || range.isBlank()) {
+            return new ShardSettings(enabled, total, 0, Math.max(0, total - 1));
+        }
+        String[] bounds = range.trim().split("-", 2);
+        int min = Integer.parseInt(bounds[0].trim());
+        int max = bounds.length == 2 ? Integer.parseInt(bounds[1].trim()) : min;
+        return new ShardSettings(enabled, total, min, max);
+    }
+
+    /**
+     * @return the shard IDs this process runs, lowest first
+     */
+    public int[] shardIds() {
+        return IntStream.rangeClosed(minShard, maxShard).toArray();
+    }
+
+    public boolean runs(int shardId) {
+        return shardId >= minShard && shardId <= maxShard;
+    }
+}
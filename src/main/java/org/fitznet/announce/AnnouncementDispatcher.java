@@ -0,0 +1,482 @@
+package org.fitznet.announce;
+
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import org.fitznet.metrics.BotMetrics;
+import org.fitznet.util.EmbedUtil;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+
+import static org.fitznet.util.Constants.ANNOUNCEMENT_BUCKET_REFILL_MS;
+import static org.fitznet.util.Constants.ANNOUNCEMENT_BUCKET_SIZE;
+import static org.fitznet.util.Constants.ANNOUNCEMENT_QUEUE_CAPACITY;
+import static org.fitznet.util.Constants.ANNOUNCEMENT_TOTAL_CAPACITY;
+import static org.fitznet.util.Constants.ANNOUNCEMENT_WINDOW_MS;
+
+/**
+ * Sends milestone embeds to text channels in batches instead of one message per milestone.
+ * <p>
+ * Announcements for a channel are held for a short window and then sent together, up to
+ * {@value #MAX_EMBEDS_PER_MESSAGE} embeds per message. Each channel has at most one message in
+ * flight and a token bucket mirroring Discord's per-channel send limit, so the dispatcher waits
+ * for a token rather than handing JDA requests that would sit in its rate-limit queue; anything
+ * arriving meanwhile joins the next batch. Under sustained pressure the highest milestones go
+ * first: when more than two messages' worth is waiting, the lowest ones are merged into a single
+ * summary embed, and once a channel's queue is full the lowest milestone is dropped.
+ * </p>
+ * <p>
+ * Announcements are the first work given up under overload. While the voice event pipeline
+ * reports itself overloaded they are shed on arrival, so the lanes spend their time counting, and
+ * at most {@value org.fitznet.util.Constants#ANNOUNCEMENT_TOTAL_CAPACITY} wait across all
+ * channels. Sends go through a {@link CircuitBreaker}: after repeated server errors or timeouts
+ * from Discord, announcements stay queued instead of adding to JDA's retries, and one message
+ * probes for recovery after each cool-down. Errors Discord answers deliberately, such as a
+ * missing permission in one channel, do not count towards it.
+ * </p>
+ */
+@Slf4j
+public class AnnouncementDispatcher implements AutoCloseable {
+    /** Discord's limit on embeds in one message. */
+    public static final int MAX_EMBEDS_PER_MESSAGE = 10;
+
+    private final LongFunction<TextChannel> channels;
+    private final BotMetrics metrics;
+    private final long windowMillis;
+    private final int queueCapacity;
+    private final int bucketSize;
+    private final long nanosPerToken;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService scheduler;
+    private final Map<Long, ChannelQueue> queues = new ConcurrentHashMap<>();
+    private final CircuitBreaker breaker;
+    private final BooleanSupplier overloaded;
+    private final int totalCapacity;
+    private final AtomicInteger pendingTotal = new AtomicInteger();
+    private final AtomicLong shedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * One embed waiting to be sent.
+     *
+     * @param embed the embed to send
+     * @param priority higher is sent first and dropped last; the milestone count for milestone embeds
+     * @param summary one line describing the announcement, used in logs and merged summaries
+     */
+    public record Announcement(MessageEmbed embed, long priority, String summary) {
+    }
+
+    /**
+     * @param pending announcements waiting across every channel
+     * @param capacity most announcements that may wait across every channel
+     * @param shed announcements skipped because the bot was overloaded or Discord was failing
+     * @param dropped announcements dropped because a queue was full
+     * @param circuit state of the breaker guarding sends
+     */
+    public record Stats(int pending, int capacity, long shed, long dropped, CircuitBreaker.Stats circuit) {
+    }
+
+    /**
+     * A dispatcher with the default window, queue capacity and per-channel rate limit.
+     *
+     * @param channels looks up a text channel by ID, e.g. {@code jda::getTextChannelById}
+     * @param metrics counts sent, failed, merged and dropped announcements
+     */
+    public AnnouncementDispatcher(LongFunction<TextChannel> channels, BotMetrics metrics) {
+        this(channels, metrics, () -> false);
+    }
+
+    /**
+     * A dispatcher with the default window, capacities, rate limit and circuit breaker.
+     *
+     * @param channels looks up a text channel by ID
+     * @param metrics counts sent, failed, merged, dropped and shed announcements
+     * @param overloaded true while announcements should be shed, e.g. {@code pipeline::isOverloaded}
+     */
+    public AnnouncementDispatcher(LongFunction<TextChannel> channels, BotMetrics metrics, BooleanSupplier overloaded) {
+        this(channels, metrics, ANNOUNCEMENT_WINDOW_MS, ANNOUNCEMENT_QUEUE_CAPACITY,
+                ANNOUNCEMENT_BUCKET_SIZE, ANNOUNCEMENT_BUCKET_REFILL_MS, System::nanoTime,
+                new CircuitBreaker("Announcement"), ANNOUNCEMENT_TOTAL_CAPACITY, overloaded);
+    }
+
+    /**
+     * @param channels looks up a text channel by ID
+     * @param metrics counts sent, failed, merged and dropped announcements
+     * @param windowMillis how long to collect announcements for a channel before sending; zero or less sends each one immediately
+     * @param queueCapacity most announcements held per channel
+     * @param bucketSize messages a channel may send in a burst
+     * @param bucketRefillMillis time for an empty bucket to refill completely
+     * @param clock nanosecond time source for the token bucket
+     */
+    public AnnouncementDispatcher(LongFunction<TextChannel> channels, BotMetrics metrics, long windowMillis,
+                                  int queueCapacity, int bucketSize, long bucketRefillMillis, LongSupplier clock) {
+        this(channels, metrics, windowMillis, queueCapacity, bucketSize, bucketRefillMillis, clock,
+                new CircuitBreaker("Announcement"), ANNOUNCEMENT_TOTAL_CAPACITY, () -> false);
+    }
+
+    /**
+     * @param channels looks up a text channel by ID
+     * @param metrics counts sent, failed, merged, dropped and shed announcements
+     * @param windowMillis how long to collect announcements for a channel before sending; zero or less sends each one immediately
+     * @param queueCapacity most announcements held per channel
+     * @param bucketSize messages a channel may send in a burst
+     * @param bucketRefillMillis time for an empty bucket to refill completely
+     * @param clock nanosecond time source for the token bucket
+     * @param breaker pauses sends while Discord keeps failing
+     * @param totalCapacity most announcements held across every channel
+     * @param overloaded true while announcements should be shed
+     */
+    public AnnouncementDispatcher(LongFunction<TextChannel> channels, BotMetrics metrics, long windowMillis,
+                                  int queueCapacity, int bucketSize, long bucketRefillMillis, LongSupplier clock,
+                                  CircuitBreaker breaker, int totalCapacity, BooleanSupplier overloaded) {
+        this.channels = channels;
+        this.metrics = metrics;
+        this.windowMillis = windowMillis;
+        this.queueCapacity = Math.max(MAX_EMBEDS_PER_MESSAGE, queueCapacity);
+        this.bucketSize = Math.max(1, bucketSize);
+        this.nanosPerToken = TimeUnit.MILLISECONDS.toNanos(Math.max(0, bucketRefillMillis)) / this.bucketSize;
+        this.clock = clock;
+        this.breaker = breaker;
+        this.totalCapacity = Math.max(this.queueCapacity, totalCapacity);
+        this.overloaded = overloaded;
+        if (windowMillis > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "announcement-dispatcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * @return a dispatcher that sends every announcement immediately, in its own message
+     */
+    public static AnnouncementDispatcher direct(LongFunction<TextChannel> channels, BotMetrics metrics) {
+        return new AnnouncementDispatcher(channels, metrics, 0, MAX_EMBEDS_PER_MESSAGE, 1, 0, System::nanoTime);
+    }
+
+    /**
+     * Queue an embed for a channel.
+     *
+     * @param channelId text channel to post in
+     * @param announcement the embed and how important it is
+     */
+    public void announce(long channelId, Announcement announcement) {
+        if (overloaded.getAsBoolean()) {
+            shed(1, "the bot is overloaded", announcement.summary());
+            return;
+        }
+        if (scheduler == null) {
+            if (!breaker.tryAcquire()) {
+                shed(1, "Discord is failing", announcement.summary());
+                return;
+            }
+            send(channelId, new Batch(List.of(announcement.embed()), List.of(announcement), 1));
+            return;
+        }
+        ChannelQueue queue = queues.computeIfAbsent(channelId, id -> new ChannelQueue());
+        synchronized (queue) {
+            if (queue.pending.size() >= queueCapacity) {
+                if (!makeRoom(queue, announcement)) {
+                    return;
+                }
+            } else if (pendingTotal.get() >= totalCapacity) {
+                countDropped();
+                log.warn("Announcement queues full, dropping: {}", announcement.summary());
+                return;
+            }
+            queue.pending.add(announcement);
+            pendingTotal.incrementAndGet();
+            if (!queue.scheduled && !queue.inFlight) {
+                queue.scheduled = true;
+                schedule(channelId, windowMillis);
+            }
+        }
+    }
+
+    /**
+     * Drop the lowest-priority announcement to make room, unless the new one ranks lowest itself.
+     *
+     * @return true if the new announcement should be queued
+     */
+    private boolean makeRoom(ChannelQueue queue, Announcement incoming) {
+        int lowest = 0;
+        for (int i = 1; i < queue.pending.size(); i++) {
+            if (queue.pending.get(i).priority() < queue.pending.get(lowest).priority()) {
+                lowest = i;
+            }
+        }
+        countDropped();
+        Announcement dropped = queue.pending.get(lowest);
+        if (incoming.priority() <= dropped.priority()) {
+            log.warn("Announcement queue full, dropping: {}", incoming.summary());
+            return false;
+        }
+        queue.pending.remove(lowest);
+        pendingTotal.decrementAndGet();
+        log.warn("Announcement queue full, dropping: {}", dropped.summary());
+        return true;
+    }
+
+    private void countDropped() {
+        droppedCount.incrementAndGet();
+        metrics.milestoneDropped();
+    }
+
+    private void shed(int count, String reason, Object summaries) {
+        shedCount.addAndGet(count);
+        metrics.milestonesShed(count);
+        log.warn("Shedding {} announcement(s) because {}: {}", count, reason, summaries);
+    }
+
+    private void schedule(long channelId, long delayMillis) {
+        try {
+            scheduler.schedule(() -> flush(channelId), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Announcement dispatcher is closed, leaving channel {} for the final drain", channelId);
+        }
+    }
+
+    /**
+     * Send the next batch for a channel if it has a token and the circuit lets it through,
+     * otherwise try again once a token is due or the circuit may be probed.
+     */
+    private void flush(long channelId) {
+        ChannelQueue queue = queues.get(channelId);
+        Batch batch;
+        synchronized (queue) {
+            queue.scheduled = false;
+            if (queue.pending.isEmpty() || queue.inFlight) {
+                return;
+            }
+            long waitNanos = queue.takeToken(clock.getAsLong());
+            if (waitNanos > 0) {
+                queue.scheduled = true;
+                schedule(channelId, TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1);
+                return;
+            }
+            if (!breaker.tryAcquire()) {
+                queue.returnToken();
+                queue.scheduled = true;
+                schedule(channelId, breaker.getRetryDelayMillis() + 1);
+                return;
+            }
+            batch = nextBatch(queue, true);
+            queue.inFlight = true;
+        }
+        send(channelId, batch);
+    }
+
+    /**
+     * Take the highest-priority announcements off the queue, merging the rest into one summary
+     * embed when more than two messages' worth is waiting.
+     */
+    private Batch nextBatch(ChannelQueue queue, boolean mergeBacklog) {
+        List<Announcement> pending = queue.pending;
+        pending.sort(Comparator.comparingLong(Announcement::priority).reversed());
+        List<MessageEmbed> embeds = new ArrayList<>(MAX_EMBEDS_PER_MESSAGE);
+        if (mergeBacklog && pending.size() > 2 * MAX_EMBEDS_PER_MESSAGE) {
+            List<Announcement> sent = new ArrayList<>(pending.subList(0, MAX_EMBEDS_PER_MESSAGE - 1));
+            sent.forEach(announcement -> embeds.add(announcement.embed()));
+            List<String> merged = pending.subList(MAX_EMBEDS_PER_MESSAGE - 1, pending.size()).stream()
+                    .map(Announcement::summary)
+                    .toList();
+            embeds.add(EmbedUtil.createMilestoneSummaryEmbed(merged));
+            metrics.milestonesMerged(merged.size());
+            int total = pending.size();
+            pending.clear();
+            pendingTotal.addAndGet(-total);
+            return new Batch(embeds, sent, total);
+        }
+        int size = Math.min(MAX_EMBEDS_PER_MESSAGE, pending.size());
+        List<Announcement> sent = new ArrayList<>(pending.subList(0, size));
+        pending.subList(0, size).clear();
+        pendingTotal.addAndGet(-size);
+        sent.forEach(announcement -> embeds.add(announcement.embed()));
+        return new Batch(embeds, sent, size);
+    }
+
+    private void send(long channelId, Batch batch) {
+        TextChannel channel = channels.apply(channelId);
+        if (channel == null) {
+            breaker.release();
+            metrics.milestonesFailed(batch.announcements());
+            log.error("Bot channel not found! Cannot send {} announcement(s): {}", batch.announcements(), batch.summaries());
+            completed(channelId);
+            return;
+        }
+        try {
+            var action = batch.embeds().size() == 1
+                    ? channel.sendMessageEmbeds(batch.embeds().get(0))
+                    : channel.sendMessageEmbeds(batch.embeds());
+            action.queue(
+                    message -> {
+                        succeeded();
+                        metrics.announcementMessageSent();
+                        metrics.milestonesSent(batch.announcements());
+                        log.info("Announcement message sent with {} announcement(s): {}", batch.announcements(), batch.summaries());
+                        completed(channelId);
+                    },
+                    error -> {
+                        if (isOutage(error)) {
+                            breaker.recordFailure();
+                        } else {
+                            succeeded();
+                        }
+                        metrics.milestonesFailed(batch.announcements());
+                        log.error("Failed to send {} announcement(s): {}", batch.announcements(), batch.summaries(), error);
+                        completed(channelId);
+                    });
+        } catch (Exception e) {
+            breaker.release();
+            metrics.milestonesFailed(batch.announcements());
+            log.error("Error sending {} announcement(s): {}", batch.announcements(), batch.summaries(), e);
+            completed(channelId);
+        }
+    }
+
+    /**
+     * @return true unless Discord answered the request with a client error, which says nothing about its health
+     */
+    private static boolean isOutage(Throwable error) {
+        return !(error instanceof ErrorResponseException response) || response.isServerError();
+    }
+
+    /**
+     * Report a completed send to the breaker and, if that closed it, wake every channel that was held back.
+     */
+    private void succeeded() {
+        if (breaker.recordSuccess() && scheduler != null) {
+            queues.forEach((channelId, queue) -> {
+                synchronized (queue) {
+                    if (!queue.pending.isEmpty() && !queue.inFlight) {
+                        queue.scheduled = true;
+                        schedule(channelId, 0);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Release the channel's in-flight slot and schedule whatever piled up behind it.
+     */
+    private void completed(long channelId) {
+        ChannelQueue queue = queues.get(channelId);
+        if (queue == null) {
+            return;
+        }
+        synchronized (queue) {
+            queue.inFlight = false;
+            if (!queue.pending.isEmpty() && !queue.scheduled) {
+                queue.scheduled = true;
+                schedule(channelId, 0);
+            }
+        }
+    }
+
+    /**
+     * @return announcements waiting across every channel
+     */
+    public int getPendingCount() {
+        return pendingTotal.get();
+    }
+
+    public Stats getStats() {
+        return new Stats(pendingTotal.get(), totalCapacity, shedCount.get(), droppedCount.get(), breaker.getStats());
+    }
+
+    /**
+     * Stop the scheduler and send everything still queued, ignoring the window and the token bucket.
+     * Whatever the circuit breaker does not let through is shed.
+     */
+    @Override
+    public void close() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        queues.forEach((channelId, queue) -> {
+            while (true) {
+                Batch batch;
+                synchronized (queue) {
+                    if (queue.pending.isEmpty()) {
+                        break;
+                    }
+                    batch = nextBatch(queue, false);
+                }
+                if (!breaker.tryAcquire()) {
+                    shed(batch.announcements(), "Discord is failing", batch.summaries());
+                    continue;
+                }
+                send(channelId, batch);
+            }
+        });
+    }
+
+    /**
+     * @param embeds what goes into the message
+     * @param sent announcements sent as their own embed
+     * @param announcements how many announcements the message covers, including merged ones
+     */
+    private record Batch(List<MessageEmbed> embeds, List<Announcement> sent, int announcements) {
+        String summaries() {
+            List<String> lines = sent.stream().map(Announcement::summary).toList();
+            return announcements > sent.size()
+                    ? lines + " and " + (announcements - sent.size()) + " merged"
+                    : lines.toString();
+        }
+    }
+
+    /**
+     * Pending announcements and rate-limit state for one channel. Guarded by its own monitor.
+     */
+    private final class ChannelQueue {
+        final List<Announcement> pending = new ArrayList<>();
+        boolean scheduled;
+        boolean inFlight;
+        double tokens = bucketSize;
+        long refilledAt = clock.getAsLong();
+
+        /**
+         * @return zero if a token was taken, otherwise nanoseconds until one is available
+         */
+        long takeToken(long now) {
+            if (nanosPerToken == 0) {
+                return 0;
+            }
+            tokens = Math.min(bucketSize, tokens + (double) (now - refilledAt) / nanosPerToken);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) ((1 - tokens) * nanosPerToken);
+        }
+
+        /**
+         * Give back a token that was taken for a send that did not happen.
+         */
+        void returnToken() {
+            if (nanosPerToken != 0) {
+                tokens = Math.min(bucketSize, tokens + 1);
+            }
+        }
+    }
+}
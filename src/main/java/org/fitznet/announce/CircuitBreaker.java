@@ -0,0 +1,167 @@
+package org.fitznet.announce;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static org.fitznet.util.Constants.ANNOUNCEMENT_BREAKER_COOLDOWN_MS;
+import static org.fitznet.util.Constants.ANNOUNCEMENT_BREAKER_FAILURES;
+import static org.fitznet.util.Constants.ANNOUNCEMENT_BREAKER_MAX_COOLDOWN_MS;
+
+/**
+ * Stops calls to a failing dependency and lets one through now and then to see whether it has recovered.
+ * <p>
+ * The breaker is {@link State#CLOSED} while calls succeed. After a number of failures in a row it
+ * opens and refuses every call for a cool-down. The first call after the cool-down is let through
+ * as a probe while the others are still refused: if the probe succeeds the breaker closes again,
+ * if it fails the breaker reopens with twice the cool-down, up to a maximum. Calls are expected to
+ * be infrequent, so every method simply synchronizes on the breaker.
+ * </p>
+ */
+@Slf4j
+public class CircuitBreaker {
+    private final String name;
+    private final int failureThreshold;
+    private final long cooldownNanos;
+    private final long maxCooldownNanos;
+    private final LongSupplier clock;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long currentCooldownNanos;
+    private long openUntil;
+    private long openedCount;
+    private long rejectedCount;
+
+    public enum State {
+        /** Calls go through. */
+        CLOSED,
+        /** Calls are refused until the cool-down ends. */
+        OPEN,
+        /** One probe call is in flight; the others are refused until it completes. */
+        HALF_OPEN
+    }
+
+    /**
+     * @param state current state
+     * @param consecutiveFailures failures since the last success
+     * @param opened times the breaker has opened
+     * @param rejected calls refused while open or probing
+     * @param retryInMillis time until the next probe while open, otherwise zero
+     */
+    public record Stats(State state, int consecutiveFailures, long opened, long rejected, long retryInMillis) {
+    }
+
+    /**
+     * A breaker with the default announcement thresholds.
+     *
+     * @param name what the breaker guards, for logs
+     */
+    public CircuitBreaker(String name) {
+        this(name, ANNOUNCEMENT_BREAKER_FAILURES, ANNOUNCEMENT_BREAKER_COOLDOWN_MS, ANNOUNCEMENT_BREAKER_MAX_COOLDOWN_MS,
+                System::nanoTime);
+    }
+
+    /**
+     * @param name what the breaker guards, for logs
+     * @param failureThreshold failures in a row that open the breaker
+     * @param cooldownMillis how long the breaker stays open the first time
+     * @param maxCooldownMillis longest the cool-down grows to while probes keep failing
+     * @param clock nanosecond time source
+     */
+    public CircuitBreaker(String name, int failureThreshold, long cooldownMillis, long maxCooldownMillis,
+                          LongSupplier clock) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, cooldownMillis));
+        this.maxCooldownNanos = Math.max(cooldownNanos, TimeUnit.MILLISECONDS.toNanos(maxCooldownMillis));
+        this.clock = clock;
+        this.currentCooldownNanos = cooldownNanos;
+    }
+
+    /**
+     * Ask to make a call. Every permitted call must be followed by {@link #recordSuccess()},
+     * {@link #recordFailure()} or, if it was not made after all, {@link #release()}.
+     *
+     * @return true if the call may go ahead
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN && clock.getAsLong() - openUntil >= 0) {
+            state = State.HALF_OPEN;
+            log.info("{} circuit probing after {} failure(s) in a row", name, consecutiveFailures);
+            return true;
+        }
+        rejectedCount++;
+        return false;
+    }
+
+    /**
+     * The call succeeded, or failed for a reason that does not suggest an outage.
+     *
+     * @return true if this closed the breaker
+     */
+    public synchronized boolean recordSuccess() {
+        consecutiveFailures = 0;
+        currentCooldownNanos = cooldownNanos;
+        if (state == State.CLOSED) {
+            return false;
+        }
+        state = State.CLOSED;
+        log.info("{} circuit closed, calls resume", name);
+        return true;
+    }
+
+    /**
+     * The call failed in a way that suggests the dependency is down or overloaded.
+     */
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN) {
+            currentCooldownNanos = Math.min(maxCooldownNanos, currentCooldownNanos * 2);
+            open();
+        } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * A permitted call was not made. A pending probe is given back, so the next call probes instead.
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    /**
+     * @return milliseconds until a call may be attempted, zero if one may be attempted now
+     */
+    public synchronized long getRetryDelayMillis() {
+        return switch (state) {
+            case CLOSED -> 0;
+            case OPEN -> Math.max(0, TimeUnit.NANOSECONDS.toMillis(openUntil - clock.getAsLong()));
+            // The probe is in flight; wait about as long as a cool-down for it to report back
+            case HALF_OPEN -> TimeUnit.NANOSECONDS.toMillis(cooldownNanos);
+        };
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized Stats getStats() {
+        long retryIn = state == State.OPEN ? getRetryDelayMillis() : 0;
+        return new Stats(state, consecutiveFailures, openedCount, rejectedCount, retryIn);
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = clock.getAsLong() + currentCooldownNanos;
+        openedCount++;
+        log.warn("{} circuit opened after {} failure(s) in a row; next probe in {} ms",
+                name, consecutiveFailures, TimeUnit.NANOSECONDS.toMillis(currentCooldownNanos));
+    }
+}
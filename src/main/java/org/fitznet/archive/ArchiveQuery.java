@@ -0,0 +1,253 @@
+package org.fitznet.archive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.fitznet.data.LongCounterMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Aggregate queries over a {@link VoiceEventArchive}, run offline against its segment files.
+ * <p>
+ * Segments are scanned in parallel on the common fork/join pool, one day's segment per task, and
+ * each task folds the blocks of its segment into its own result before the results are combined,
+ * so no state is shared while scanning. Blocks outside the queried range are skipped by their
+ * header, and only the columns a query reads are decompressed. Damaged blocks are logged and
+ * skipped.
+ * </p>
+ * <pre>
+ * java -cp fitzbot.jar org.fitznet.archive.ArchiveQuery hours voice-archive 365
+ * java -cp fitzbot.jar org.fitznet.archive.ArchiveQuery channels voice-archive 30
+ * java -cp fitzbot.jar org.fitznet.archive.ArchiveQuery retention voice-archive 84
+ * </pre>
+ */
+@Slf4j
+public class ArchiveQuery {
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long WEEK_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final int MAX_RETENTION_WEEKS = 64;
+    private static final byte JOIN = (byte) VoiceEventArchive.EventType.JOIN.ordinal();
+
+    private final Path directory;
+
+    /**
+     * Folds one block into a partial result.
+     */
+    @FunctionalInterface
+    public interface BlockAccumulator<A> {
+        void accept(A result, EventBlock block);
+    }
+
+    /**
+     * Joins in one channel over the queried range.
+     */
+    public record ChannelJoins(long guildId, long channelId, long joins) {
+    }
+
+    public ArchiveQuery(Path directory) {
+        this.directory = directory;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: ArchiveQuery hours|channels|retention <archive directory> [days]");
+            System.exit(1);
+        }
+        ArchiveQuery query = new ArchiveQuery(Path.of(args[1]));
+        long toMillis = System.currentTimeMillis();
+        long fromMillis = toMillis - (args.length == 3 ? Long.parseLong(args[2]) : 365) * DAY_MILLIS;
+        long startNanos = System.nanoTime();
+        switch (args[0]) {
+            case "hours" -> {
+                long[] hours = query.joinsByHourOfDay(null, fromMillis, toMillis, ZoneOffset.UTC);
+                for (int hour = 0; hour < hours.length; hour++) {
+                    System.out.printf("%02d:00 %d%n", hour, hours[hour]);
+                }
+            }
+            case "channels" -> query.busiestChannels(null, fromMillis, toMillis, 20).forEach(channel ->
+                    System.out.printf("%d %d %d%n", channel.guildId(), channel.channelId(), channel.joins()));
+            case "retention" -> {
+                double[] curve = query.retention(null, fromMillis, toMillis, 12);
+                for (int week = 0; week < curve.length; week++) {
+                    System.out.printf("week %d %.3f%n", week, curve[week]);
+                }
+            }
+            default -> {
+                System.err.println("Unknown query: " + args[0]);
+                System.exit(1);
+            }
+        }
+        log.info("Query took {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Fold every block that overlaps {@code [fromMillis, toMillis)} into a result, in parallel.
+     * Blocks at either end of the range can hold events outside it, so accumulators check each timestamp.
+     *
+     * @param supplier creates an empty partial result for each task
+     * @param accumulator folds a block into a partial result
+     * @param combiner merges the second partial result into the first
+     */
+    public <A> A scan(long fromMillis, long toMillis, Supplier<A> supplier, BlockAccumulator<A> accumulator,
+                      BiConsumer<A, A> combiner) {
+        if (fromMillis >= toMillis) {
+            return supplier.get();
+        }
+        long firstDay = Math.floorDiv(fromMillis, DAY_MILLIS);
+        long lastDay = Math.floorDiv(toMillis - 1, DAY_MILLIS);
+        List<Path> segments = VoiceEventArchive.segments(directory).stream()
+                .filter(path -> {
+                    long day = VoiceEventArchive.segmentDay(path).toEpochDay();
+                    return day >= firstDay && day <= lastDay;
+                })
+                .toList();
+        return segments.parallelStream().collect(supplier,
+                (result, segment) -> scanSegment(segment, fromMillis, toMillis, result, accumulator),
+                combiner);
+    }
+
+    private static <A> void scanSegment(Path segment, long fromMillis, long toMillis, A result,
+                                        BlockAccumulator<A> accumulator) {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            long offset = 0;
+            EventBlock.Header header;
+            while ((header = EventBlock.readHeader(channel, offset)) != null) {
+                if (header.overlaps(fromMillis, toMillis)) {
+                    try {
+                        accumulator.accept(result, EventBlock.read(channel, header));
+                    } catch (IOException | IllegalStateException e) {
+                        log.warn("Skipping damaged block at offset {} of {}", offset, segment, e);
+                    }
+                }
+                offset += header.length();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read voice event segment " + segment, e);
+        }
+    }
+
+    /**
+     * Count joins by hour of the day.
+     *
+     * @param guildId only joins in this guild, or null for every guild
+     * @param offset the time zone offset hours are taken in; daylight saving time is not followed
+     * @return 24 counts, midnight first
+     */
+    public long[] joinsByHourOfDay(Long guildId, long fromMillis, long toMillis, ZoneOffset offset) {
+        long offsetMillis = offset.getTotalSeconds() * 1000L;
+        return scan(fromMillis, toMillis, () -> new long[24], (hours, block) -> {
+            long[] timestamps = block.timestamps();
+            byte[] types = block.types();
+            long[] guildIds = guildId == null ? null : block.guildIds();
+            for (int i = 0; i < block.size(); i++) {
+                long at = timestamps[i];
+                if (types[i] == JOIN && at >= fromMillis && at < toMillis
+                        && (guildIds == null || guildIds[i] == guildId)) {
+                    hours[(int) (Math.floorMod(at + offsetMillis, DAY_MILLIS) / HOUR_MILLIS)]++;
+                }
+            }
+        }, (hours, other) -> {
+            for (int hour = 0; hour < hours.length; hour++) {
+                hours[hour] += other[hour];
+            }
+        });
+    }
+
+    /**
+     * The channels with the most joins, busiest first.
+     *
+     * @param guildId only channels in this guild, or null for every guild
+     * @param limit most channels returned
+     */
+    public List<ChannelJoins> busiestChannels(Long guildId, long fromMillis, long toMillis, int limit) {
+        ChannelTally tally = scan(fromMillis, toMillis, ChannelTally::new, (result, block) -> {
+            long[] timestamps = block.timestamps();
+            byte[] types = block.types();
+            long[] guildIds = block.guildIds();
+            long[] channelIds = block.channelIds();
+            for (int i = 0; i < block.size(); i++) {
+                long at = timestamps[i];
+                if (types[i] == JOIN && at >= fromMillis && at < toMillis
+                        && (guildId == null || guildIds[i] == guildId)) {
+                    result.joins.incrementAndGet(channelIds[i]);
+                    result.guilds.put(channelIds[i], guildIds[i]);
+                }
+            }
+        }, (result, other) -> {
+            other.joins.forEach(result.joins::addAndGet);
+            other.guilds.forEach(result.guilds::put);
+        });
+        List<ChannelJoins> channels = new ArrayList<>(tally.joins.size());
+        tally.joins.forEach((channelId, joins) -> channels.add(new ChannelJoins(tally.guilds.get(channelId), channelId, joins)));
+        channels.sort(Comparator.comparingLong(ChannelJoins::joins).reversed()
+                .thenComparingLong(ChannelJoins::channelId));
+        return channels.subList(0, Math.min(limit, channels.size()));
+    }
+
+    /**
+     * Weekly retention of users, counted from the week of each user's first join in the range.
+     * Weeks are seven-day periods starting at {@code fromMillis}.
+     *
+     * @param guildId only joins in this guild, or null for every guild
+     * @param weeks length of the curve, at most 64
+     * @return for each week {@code k}, the share of users who joined again {@code k} weeks after their
+     *         first week, among users whose first week was at least {@code k} weeks before the range
+     *         ends; 0 where no user has been seen that long
+     */
+    public double[] retention(Long guildId, long fromMillis, long toMillis, int weeks) {
+        if (weeks <= 0 || weeks > MAX_RETENTION_WEEKS) {
+            throw new IllegalArgumentException("Retention weeks must be between 1 and " + MAX_RETENTION_WEEKS + ": " + weeks);
+        }
+        long rangeWeeks = Math.min(MAX_RETENTION_WEEKS, (toMillis - fromMillis + WEEK_MILLIS - 1) / WEEK_MILLIS);
+        long endMillis = Math.min(toMillis, fromMillis + rangeWeeks * WEEK_MILLIS);
+        // Bit w of a user's mask is set if they joined in week w of the range
+        LongCounterMap activeWeeks = scan(fromMillis, endMillis, LongCounterMap::new, (result, block) -> {
+            long[] timestamps = block.timestamps();
+            byte[] types = block.types();
+            long[] userIds = block.userIds();
+            long[] guildIds = guildId == null ? null : block.guildIds();
+            for (int i = 0; i < block.size(); i++) {
+                long at = timestamps[i];
+                if (types[i] == JOIN && at >= fromMillis && at < endMillis
+                        && (guildIds == null || guildIds[i] == guildId)) {
+                    result.orAndGet(userIds[i], 1L << ((at - fromMillis) / WEEK_MILLIS));
+                }
+            }
+        }, (result, other) -> other.forEach(result::orAndGet));
+        long[] observed = new long[weeks];
+        long[] retained = new long[weeks];
+        activeWeeks.forEach((userId, mask) -> {
+            int firstWeek = Long.numberOfTrailingZeros(mask);
+            for (int week = 0; week < weeks && firstWeek + week < rangeWeeks; week++) {
+                observed[week]++;
+                if ((mask & (1L << (firstWeek + week))) != 0) {
+                    retained[week]++;
+                }
+            }
+        });
+        double[] curve = new double[weeks];
+        for (int week = 0; week < weeks; week++) {
+            curve[week] = observed[week] == 0 ? 0 : (double) retained[week] / observed[week];
+        }
+        return curve;
+    }
+
+    /**
+     * Joins per channel, and the guild each channel belongs to.
+     */
+    private static final class ChannelTally {
+        final LongCounterMap joins = new LongCounterMap();
+        final LongCounterMap guilds = new LongCounterMap();
+    }
+}
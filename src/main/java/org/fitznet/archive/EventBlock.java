@@ -0,0 +1,408 @@
+package org.fitznet.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A block of archived voice events stored column by column: timestamps, guild IDs, channel IDs,
+ * user IDs and event types. Each column is encoded and deflated on its own, so a query decodes
+ * only the columns it reads.
+ * <p>
+ * On disk a block is a fixed header followed by the compressed columns:
+ * </p>
+ * <pre>
+ * int   magic "VEA1"
+ * int   event count
+ * long  smallest timestamp
+ * long  largest timestamp
+ * int[] compressed length of each column
+ * int[] encoded length of each column
+ * int   CRC32C of the compressed columns
+ * </pre>
+ * <p>
+ * Timestamps are zigzag varint deltas from the previous event, starting at the smallest timestamp.
+ * Each ID column is a dictionary of its distinct IDs, sorted and delta-encoded, followed by a varint
+ * index into the dictionary per event; a block rarely holds more than a few dozen guilds and
+ * channels, so these columns shrink to a byte or two per event before deflating. Event types are
+ * one byte per event.
+ * </p>
+ * <p>
+ * A block read from disk is not thread-safe; each is decoded and visited by one thread.
+ * </p>
+ */
+public final class EventBlock {
+    static final int MAGIC = 0x56454131;
+    private static final int TIMESTAMPS = 0;
+    private static final int GUILDS = 1;
+    private static final int CHANNELS = 2;
+    private static final int USERS = 3;
+    private static final int TYPES = 4;
+    private static final int COLUMNS = 5;
+    static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4 * COLUMNS * 2 + 4;
+
+    private final int size;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final byte[][] compressed;
+    private final int[] encodedLengths;
+    private long[] timestamps;
+    private long[] guildIds;
+    private long[] channelIds;
+    private long[] userIds;
+    private byte[] types;
+
+    private EventBlock(Header header, byte[][] compressed) {
+        this.size = header.size;
+        this.minTimestamp = header.minTimestamp;
+        this.maxTimestamp = header.maxTimestamp;
+        this.compressed = compressed;
+        this.encodedLengths = header.encodedLengths;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    /**
+     * @return epoch milliseconds of each event, in the order they were recorded
+     */
+    public long[] timestamps() {
+        if (timestamps == null) {
+            timestamps = decodeTimestamps(inflate(TIMESTAMPS));
+        }
+        return timestamps;
+    }
+
+    public long[] guildIds() {
+        if (guildIds == null) {
+            guildIds = decodeIds(inflate(GUILDS));
+        }
+        return guildIds;
+    }
+
+    public long[] channelIds() {
+        if (channelIds == null) {
+            channelIds = decodeIds(inflate(CHANNELS));
+        }
+        return channelIds;
+    }
+
+    public long[] userIds() {
+        if (userIds == null) {
+            userIds = decodeIds(inflate(USERS));
+        }
+        return userIds;
+    }
+
+    /**
+     * @return the {@link VoiceEventArchive.EventType} ordinal of each event
+     */
+    public byte[] types() {
+        if (types == null) {
+            types = inflate(TYPES);
+        }
+        return types;
+    }
+
+    /**
+     * Encode and compress the first {@code size} events of the given columns into one block, header included.
+     */
+    static byte[] encode(long[] timestamps, long[] guildIds, long[] channelIds, long[] userIds, byte[] types, int size) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, timestamps[i]);
+            max = Math.max(max, timestamps[i]);
+        }
+        byte[][] encoded = {
+                encodeTimestamps(timestamps, size, min),
+                encodeIds(guildIds, size),
+                encodeIds(channelIds, size),
+                encodeIds(userIds, size),
+                Arrays.copyOf(types, size)};
+        byte[][] columns = new byte[COLUMNS][];
+        int payload = 0;
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            for (int column = 0; column < COLUMNS; column++) {
+                columns[column] = deflate(deflater, encoded[column]);
+                payload += columns[column].length;
+            }
+        } finally {
+            deflater.end();
+        }
+        ByteBuffer block = ByteBuffer.allocate(HEADER_BYTES + payload);
+        block.putInt(MAGIC).putInt(size).putLong(min).putLong(max);
+        for (byte[] column : columns) {
+            block.putInt(column.length);
+        }
+        for (byte[] column : encoded) {
+            block.putInt(column.length);
+        }
+        CRC32C crc = new CRC32C();
+        for (byte[] column : columns) {
+            crc.update(column);
+        }
+        block.putInt((int) crc.getValue());
+        for (byte[] column : columns) {
+            block.put(column);
+        }
+        return block.array();
+    }
+
+    /**
+     * Read a block's header without its columns.
+     *
+     * @return the header, or null if the channel ends before a complete, plausible header or its columns
+     */
+    static Header readHeader(FileChannel channel, long offset) throws IOException {
+        long fileSize = channel.size();
+        if (offset + HEADER_BYTES > fileSize) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(channel, buffer, offset);
+        buffer.flip();
+        if (buffer.getInt() != MAGIC) {
+            return null;
+        }
+        int size = buffer.getInt();
+        long min = buffer.getLong();
+        long max = buffer.getLong();
+        int[] compressedLengths = new int[COLUMNS];
+        int[] encodedLengths = new int[COLUMNS];
+        long payload = 0;
+        for (int column = 0; column < COLUMNS; column++) {
+            compressedLengths[column] = buffer.getInt();
+            payload += compressedLengths[column];
+        }
+        for (int column = 0; column < COLUMNS; column++) {
+            encodedLengths[column] = buffer.getInt();
+        }
+        int crc = buffer.getInt();
+        if (size <= 0 || min > max || offset + HEADER_BYTES + payload > fileSize
+                || Arrays.stream(compressedLengths).anyMatch(length -> length < 0)
+                || Arrays.stream(encodedLengths).anyMatch(length -> length < 0)) {
+            return null;
+        }
+        return new Header(offset, size, min, max, compressedLengths, encodedLengths, crc);
+    }
+
+    /**
+     * Read and verify the columns of a block whose header has already been read.
+     *
+     * @throws IOException if the columns do not match the header's checksum
+     */
+    static EventBlock read(FileChannel channel, Header header) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate((int) (header.length() - HEADER_BYTES));
+        readFully(channel, payload, header.offset + HEADER_BYTES);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.array());
+        if ((int) crc.getValue() != header.crc) {
+            throw new IOException("Event block at offset " + header.offset + " fails its checksum");
+        }
+        payload.flip();
+        byte[][] columns = new byte[COLUMNS][];
+        for (int column = 0; column < COLUMNS; column++) {
+            columns[column] = new byte[header.compressedLengths[column]];
+            payload.get(columns[column]);
+        }
+        return new EventBlock(header, columns);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of event segment at offset " + (offset + buffer.position()));
+            }
+        }
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] input) {
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        byte[] output = new byte[Math.max(64, input.length / 2)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == output.length) {
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+            length += deflater.deflate(output, length, output.length - length);
+        }
+        return Arrays.copyOf(output, length);
+    }
+
+    private byte[] inflate(int column) {
+        byte[] output = new byte[encodedLengths[column]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed[column]);
+            int length = 0;
+            while (length < output.length && !inflater.finished()) {
+                int inflated = inflater.inflate(output, length, output.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != output.length) {
+                throw new IllegalStateException("Event block column " + column + " inflated to " + length
+                        + " bytes, expected " + output.length);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Event block column " + column + " is not valid deflate data", e);
+        } finally {
+            inflater.end();
+        }
+        return output;
+    }
+
+    private static byte[] encodeTimestamps(long[] timestamps, int size, long min) {
+        VarintWriter out = new VarintWriter(size * 2);
+        long previous = min;
+        for (int i = 0; i < size; i++) {
+            out.writeSigned(timestamps[i] - previous);
+            previous = timestamps[i];
+        }
+        return out.toByteArray();
+    }
+
+    private long[] decodeTimestamps(byte[] encoded) {
+        VarintReader in = new VarintReader(encoded);
+        long[] decoded = new long[size];
+        long previous = minTimestamp;
+        for (int i = 0; i < size; i++) {
+            previous += in.readSigned();
+            decoded[i] = previous;
+        }
+        return decoded;
+    }
+
+    private static byte[] encodeIds(long[] ids, int size) {
+        long[] dictionary = Arrays.copyOf(ids, size);
+        Arrays.sort(dictionary);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || dictionary[i] != dictionary[distinct - 1]) {
+                dictionary[distinct++] = dictionary[i];
+            }
+        }
+        VarintWriter out = new VarintWriter(distinct * 9 + size * 2);
+        out.writeUnsigned(distinct);
+        long previous = 0;
+        for (int i = 0; i < distinct; i++) {
+            out.writeSigned(dictionary[i] - previous);
+            previous = dictionary[i];
+        }
+        for (int i = 0; i < size; i++) {
+            out.writeUnsigned(Arrays.binarySearch(dictionary, 0, distinct, ids[i]));
+        }
+        return out.toByteArray();
+    }
+
+    private long[] decodeIds(byte[] encoded) {
+        VarintReader in = new VarintReader(encoded);
+        long[] dictionary = new long[(int) in.readUnsigned()];
+        long previous = 0;
+        for (int i = 0; i < dictionary.length; i++) {
+            previous += in.readSigned();
+            dictionary[i] = previous;
+        }
+        long[] decoded = new long[size];
+        for (int i = 0; i < size; i++) {
+            decoded[i] = dictionary[(int) in.readUnsigned()];
+        }
+        return decoded;
+    }
+
+    /**
+     * Position, event count, time span and column layout of a block, read without its columns.
+     */
+    record Header(long offset, int size, long minTimestamp, long maxTimestamp,
+                  int[] compressedLengths, int[] encodedLengths, int crc) {
+
+        /**
+         * @return bytes the block occupies, header included
+         */
+        long length() {
+            long length = HEADER_BYTES;
+            for (int compressedLength : compressedLengths) {
+                length += compressedLength;
+            }
+            return length;
+        }
+
+        boolean overlaps(long fromMillis, long toMillis) {
+            return maxTimestamp >= fromMillis && minTimestamp < toMillis;
+        }
+    }
+
+    private static final class VarintWriter {
+        private byte[] bytes;
+        private int length;
+
+        VarintWriter(int capacity) {
+            this.bytes = new byte[Math.max(16, capacity)];
+        }
+
+        void writeSigned(long value) {
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        void writeUnsigned(long value) {
+            if (length + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+
+    private static final class VarintReader {
+        private final byte[] bytes;
+        private int position;
+
+        VarintReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long readSigned() {
+            long value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readUnsigned() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package org.fitznet.archive;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import static org.fitznet.util.Constants.ARCHIVE_BLOCK_EVENTS;
+import static org.fitznet.util.Constants.ARCHIVE_FLUSH_INTERVAL_MS;
+
+/**
+ * Append-only archive of every voice join, leave and move, for offline analytics with {@link ArchiveQuery}.
+ * <p>
+ * Recording an event copies five primitives into in-memory columns under a short lock and returns.
+ * Once a block's worth of events has been recorded, or the flush interval passes, the columns are
+ * handed to a single writer thread that compresses them into an {@link EventBlock} and appends it
+ * to the segment for its day (UTC), {@code voice-events-YYYY-MM-DD.seg}; a batch that crosses midnight
+ * is split so that every segment holds exactly one day's events.
+ * Segments older than the retention period are deleted as the archive rolls over to a new day.
+ * </p>
+ * <p>
+ * If the writer falls behind by more than a few blocks, further blocks are dropped and counted
+ * rather than queued, so a slow disk never holds up the listener. A crash loses at most the events
+ * not yet written; a block torn by the crash is cut off when its segment is next opened, and
+ * readers stop at it.
+ * </p>
+ */
+@Slf4j
+public class VoiceEventArchive implements AutoCloseable {
+    static final String SEGMENT_PREFIX = "voice-events-";
+    static final String SEGMENT_SUFFIX = ".seg";
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int MAX_PENDING_BLOCKS = 16;
+    private static final int INITIAL_BATCH_CAPACITY = 256;
+
+    /**
+     * Kinds of archived event. The ordinal is what is stored, so new kinds go at the end.
+     */
+    public enum EventType { JOIN, LEAVE, MOVE }
+
+    private final Path directory;
+    private final int blockSize;
+    private final int retainDays;
+    private final ScheduledExecutorService writer;
+    private final AtomicInteger pendingBlocks = new AtomicInteger();
+    private final LongAdder archived = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final Object lock = new Object();
+    private Batch batch;
+    private boolean closed;
+
+    // Only touched by the writer thread
+    private LocalDate openDay;
+    private FileChannel segment;
+
+    /**
+     * Archive into {@code directory} with the default block size and flush interval.
+     *
+     * @param retainDays days of segments to keep; 0 keeps them all
+     */
+    public VoiceEventArchive(Path directory, int retainDays) {
+        this(directory, ARCHIVE_BLOCK_EVENTS, ARCHIVE_FLUSH_INTERVAL_MS, retainDays);
+    }
+
+    /**
+     * @param directory where segments are written; created if missing
+     * @param blockSize events per block; a block is written as soon as it is full
+     * @param flushIntervalMillis longest an event waits in memory before its block is written
+     * @param retainDays days of segments to keep; 0 keeps them all
+     */
+    public VoiceEventArchive(Path directory, int blockSize, long flushIntervalMillis, int retainDays) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Archive block size must be positive: " + blockSize);
+        }
+        if (flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Archive flush interval must be positive: " + flushIntervalMillis);
+        }
+        this.directory = directory;
+        this.blockSize = blockSize;
+        this.retainDays = Math.max(0, retainDays);
+        this.batch = new Batch(Math.min(blockSize, INITIAL_BATCH_CAPACITY));
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            log.error("Could not create voice event archive directory {}", directory, e);
+        }
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "voice-event-archive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(() -> handOff(takeBatch()), flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private VoiceEventArchive() {
+        this.directory = null;
+        this.blockSize = 0;
+        this.retainDays = 0;
+        this.writer = null;
+    }
+
+    /**
+     * An archive that records nothing.
+     */
+    public static VoiceEventArchive disabled() {
+        return new VoiceEventArchive();
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Events written to disk so far.
+     */
+    public long getArchivedCount() {
+        return archived.sum();
+    }
+
+    /**
+     * Events lost because the writer fell behind, failed to write, or the archive was closed.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Record an event. Never blocks on the disk.
+     *
+     * @param atMillis when the event happened, in epoch milliseconds
+     * @param channelId the channel joined, or for a leave the channel left
+     */
+    public void record(long atMillis, long guildId, long channelId, long userId, EventType type) {
+        if (!isEnabled()) {
+            return;
+        }
+        Batch full = null;
+        synchronized (lock) {
+            if (closed) {
+                dropped.increment();
+                return;
+            }
+            batch.add(atMillis, guildId, channelId, userId, (byte) type.ordinal());
+            if (batch.size == blockSize) {
+                full = batch;
+                batch = new Batch(blockSize);
+            }
+        }
+        handOff(full);
+    }
+
+    /**
+     * Hand every event recorded so far to the writer and wait until it has been written.
+     */
+    public void flush() {
+        if (!isEnabled()) {
+            return;
+        }
+        handOff(takeBatch());
+        try {
+            writer.submit(() -> { }).get();
+        } catch (ExecutionException | RejectedExecutionException e) {
+            log.warn("Could not flush the voice event archive", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write the remaining events and close the current segment.
+     */
+    @Override
+    public void close() {
+        if (!isEnabled()) {
+            return;
+        }
+        Batch last;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            last = batch.size > 0 ? batch : null;
+            batch = new Batch(1);
+        }
+        handOff(last);
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Voice event archive did not finish writing within 10 seconds");
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeSegment();
+    }
+
+    private Batch takeBatch() {
+        synchronized (lock) {
+            if (batch.size == 0) {
+                return null;
+            }
+            Batch taken = batch;
+            batch = new Batch(Math.min(blockSize, Math.max(INITIAL_BATCH_CAPACITY, taken.size)));
+            return taken;
+        }
+    }
+
+    private void handOff(Batch full) {
+        if (full == null) {
+            return;
+        }
+        if (pendingBlocks.incrementAndGet() > MAX_PENDING_BLOCKS) {
+            pendingBlocks.decrementAndGet();
+            dropped.add(full.size);
+            log.warn("Voice event archive is {} blocks behind; dropped {} events", MAX_PENDING_BLOCKS, full.size);
+            return;
+        }
+        try {
+            writer.execute(() -> {
+                try {
+                    write(full);
+                } finally {
+                    pendingBlocks.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingBlocks.decrementAndGet();
+            dropped.add(full.size);
+        }
+    }
+
+    private void write(Batch full) {
+        for (Batch day : full.splitByDay()) {
+            try {
+                byte[] block = EventBlock.encode(day.timestamps, day.guildIds, day.channelIds, day.userIds,
+                        day.types, day.size);
+                FileChannel channel = segmentFor(dayOf(day.timestamps[0]));
+                ByteBuffer buffer = ByteBuffer.wrap(block);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                archived.add(day.size);
+            } catch (IOException e) {
+                dropped.add(day.size);
+                log.error("Failed to archive {} voice events", day.size, e);
+            }
+        }
+    }
+
+    /**
+     * The open segment for a day, rolling over from the previous day's segment if needed.
+     */
+    private FileChannel segmentFor(LocalDate day) throws IOException {
+        if (day.equals(openDay)) {
+            return segment;
+        }
+        closeSegment();
+        Path path = directory.resolve(segmentName(day));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long valid = validLength(channel);
+        if (valid < channel.size()) {
+            log.warn("Cutting {} bytes of torn blocks off the end of {}", channel.size() - valid, path);
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+        segment = channel;
+        openDay = day;
+        deleteExpiredSegments(day);
+        return channel;
+    }
+
+    private void closeSegment() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.close();
+        } catch (IOException e) {
+            log.warn("Failed to close voice event segment for {}", openDay, e);
+        }
+        segment = null;
+        openDay = null;
+    }
+
+    private void deleteExpiredSegments(LocalDate today) {
+        if (retainDays == 0) {
+            return;
+        }
+        LocalDate oldestKept = today.minusDays(retainDays - 1L);
+        for (Path path : segments(directory)) {
+            LocalDate day = segmentDay(path);
+            if (day.isBefore(oldestKept)) {
+                try {
+                    Files.deleteIfExists(path);
+                    log.info("Deleted expired voice event segment {}", path);
+                } catch (IOException e) {
+                    log.warn("Failed to delete expired voice event segment {}", path, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the length of the run of complete blocks at the start of a segment
+     */
+    static long validLength(FileChannel channel) throws IOException {
+        long offset = 0;
+        EventBlock.Header header;
+        while ((header = EventBlock.readHeader(channel, offset)) != null) {
+            offset += header.length();
+        }
+        return offset;
+    }
+
+    /**
+     * @return the segment files in a directory, oldest day first
+     */
+    static List<Path> segments(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> segmentDay(path) != null).forEach(segments::add);
+        } catch (IOException e) {
+            log.error("Failed to list voice event segments in {}", directory, e);
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    /**
+     * @return the day a segment holds, or null if the path is not a segment
+     */
+    static LocalDate segmentDay(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    static String segmentName(LocalDate day) {
+        return SEGMENT_PREFIX + day + SEGMENT_SUFFIX;
+    }
+
+    static LocalDate dayOf(long epochMillis) {
+        return LocalDate.ofEpochDay(Math.floorDiv(epochMillis, DAY_MILLIS));
+    }
+
+    /**
+     * Events recorded since the last hand-off, one primitive array per column.
+     */
+    private static final class Batch {
+        long[] timestamps;
+        long[] guildIds;
+        long[] channelIds;
+        long[] userIds;
+        byte[] types;
+        int size;
+
+        Batch(int capacity) {
+            timestamps = new long[capacity];
+            guildIds = new long[capacity];
+            channelIds = new long[capacity];
+            userIds = new long[capacity];
+            types = new byte[capacity];
+        }
+
+        void add(long timestamp, long guildId, long channelId, long userId, byte type) {
+            if (size == timestamps.length) {
+                int capacity = size * 2;
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                guildIds = Arrays.copyOf(guildIds, capacity);
+                channelIds = Arrays.copyOf(channelIds, capacity);
+                userIds = Arrays.copyOf(userIds, capacity);
+                types = Arrays.copyOf(types, capacity);
+            }
+            timestamps[size] = timestamp;
+            guildIds[size] = guildId;
+            channelIds[size] = channelId;
+            userIds[size] = userId;
+            types[size] = type;
+            size++;
+        }
+
+        /**
+         * Split into one batch per day (UTC), so a segment only ever holds its own day's events.
+         * Batches almost never cross midnight, and are returned as they are when they do not.
+         */
+        List<Batch> splitByDay() {
+            long firstDay = Math.floorDiv(timestamps[0], DAY_MILLIS);
+            boolean sameDay = true;
+            for (int i = 1; i < size && sameDay; i++) {
+                sameDay = Math.floorDiv(timestamps[i], DAY_MILLIS) == firstDay;
+            }
+            if (sameDay) {
+                return List.of(this);
+            }
+            Map<Long, Batch> days = new TreeMap<>();
+            for (int i = 0; i < size; i++) {
+                days.computeIfAbsent(Math.floorDiv(timestamps[i], DAY_MILLIS), day -> new Batch(INITIAL_BATCH_CAPACITY))
+                        .add(timestamps[i], guildIds[i], channelIds[i], userIds[i], types[i]);
+            }
+            return new ArrayList<>(days.values());
+        }
+    }
+}
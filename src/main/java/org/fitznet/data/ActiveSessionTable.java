@@ -0,0 +1,242 @@
+package org.fitznet.data;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Concurrent table of open voice sessions, keyed by (guild ID, user ID) and holding the session's
+ * start time in epoch milliseconds.
+ * <p>
+ * Laid out like {@link LongCounterMap}: keys are spread over a fixed number of segments, each an
+ * open-addressing table with linear probing that stores guild, user and start time interleaved in
+ * a single {@code long[]}. Opening and closing a session take the segment's write lock and never
+ * allocate except when a segment grows. Closed sessions are removed with backward-shift deletion,
+ * so the table never fills with tombstones however many sessions come and go. A start time of zero
+ * marks an empty slot.
+ * </p>
+ */
+public class ActiveSessionTable {
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int STRIDE = 3;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    public ActiveSessionTable() {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(MIN_SEGMENT_CAPACITY);
+        }
+    }
+
+    /**
+     * Receives the open sessions of an {@link ActiveSessionTable} without boxing.
+     */
+    @FunctionalInterface
+    public interface SessionConsumer {
+        void accept(long guildId, long userId, long startMillis);
+    }
+
+    /**
+     * Open a session unless the user already has one in the guild, in which case the earlier start is kept.
+     *
+     * @param startMillis when the session started, epoch milliseconds; must be positive
+     * @return true if a new session was opened
+     */
+    public boolean open(long guildId, long userId, long startMillis) {
+        if (startMillis <= 0) {
+            throw new IllegalArgumentException("Start time must be positive: " + startMillis);
+        }
+        long hash = hash(guildId, userId);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.insertIfAbsent(guildId, userId, hash, startMillis);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Close the user's session in the guild.
+     *
+     * @return when the session started, or 0 if there was none
+     */
+    public long close(long guildId, long userId) {
+        long hash = hash(guildId, userId);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.remove(guildId, userId, hash);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return when the user's session in the guild started, or 0 if there is none
+     */
+    public long get(long guildId, long userId) {
+        long hash = hash(guildId, userId);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.readLock();
+        try {
+            int slot = segment.find(guildId, userId, hash);
+            return slot < 0 ? 0 : segment.table[slot * STRIDE + 2];
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return number of open sessions, summed over segments without a global lock
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Visit every open session. Each segment is read under its read lock, so the view is only
+     * weakly consistent across the whole table. The consumer must not modify the table.
+     */
+    public void forEach(SessionConsumer consumer) {
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                long[] table = segment.table;
+                for (int i = 0; i < table.length; i += STRIDE) {
+                    if (table[i + 2] != 0) {
+                        consumer.accept(table[i], table[i + 1], table[i + 2]);
+                    }
+                }
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (Long.SIZE - SEGMENT_BITS))];
+    }
+
+    private static long hash(long guildId, long userId) {
+        return mix(userId * 0x9e3779b97f4a7c15L ^ guildId);
+    }
+
+    /**
+     * MurmurHash3 finalizer, as in {@link LongCounterMap}.
+     */
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Segment {
+        final StampedLock lock = new StampedLock();
+        long[] table;
+        int capacity;
+        int size;
+        int resizeAt;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.table = new long[capacity * STRIDE];
+            this.resizeAt = (int) (capacity * LOAD_FACTOR);
+        }
+
+        /**
+         * @return the slot holding the key, or -1
+         */
+        int find(long guildId, long userId, long hash) {
+            int mask = capacity - 1;
+            for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                int index = slot * STRIDE;
+                if (table[index + 2] == 0) {
+                    return -1;
+                }
+                if (table[index] == guildId && table[index + 1] == userId) {
+                    return slot;
+                }
+            }
+        }
+
+        boolean insertIfAbsent(long guildId, long userId, long hash, long startMillis) {
+            int mask = capacity - 1;
+            for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                int index = slot * STRIDE;
+                if (table[index + 2] == 0) {
+                    table[index] = guildId;
+                    table[index + 1] = userId;
+                    table[index + 2] = startMillis;
+                    if (++size > resizeAt) {
+                        resize();
+                    }
+                    return true;
+                }
+                if (table[index] == guildId && table[index + 1] == userId) {
+                    return false;
+                }
+            }
+        }
+
+        long remove(long guildId, long userId, long hash) {
+            int slot = find(guildId, userId, hash);
+            if (slot < 0) {
+                return 0;
+            }
+            long startMillis = table[slot * STRIDE + 2];
+            int mask = capacity - 1;
+            int hole = slot;
+            // Shift back every later entry of the probe run that may legally sit in the hole
+            for (int next = (hole + 1) & mask; table[next * STRIDE + 2] != 0; next = (next + 1) & mask) {
+                int nextIndex = next * STRIDE;
+                int home = (int) hash(table[nextIndex], table[nextIndex + 1]) & mask;
+                boolean reachable = hole <= next ? home > hole && home <= next : home > hole || home <= next;
+                if (!reachable) {
+                    System.arraycopy(table, nextIndex, table, hole * STRIDE, STRIDE);
+                    hole = next;
+                }
+            }
+            int holeIndex = hole * STRIDE;
+            table[holeIndex] = 0;
+            table[holeIndex + 1] = 0;
+            table[holeIndex + 2] = 0;
+            size--;
+            return startMillis;
+        }
+
+        private void resize() {
+            long[] old = table;
+            int grownCapacity = capacity * 2;
+            long[] grown = new long[grownCapacity * STRIDE];
+            int mask = grownCapacity - 1;
+            for (int i = 0; i < old.length; i += STRIDE) {
+                if (old[i + 2] == 0) {
+                    continue;
+                }
+                int slot = (int) hash(old[i], old[i + 1]) & mask;
+                while (grown[slot * STRIDE + 2] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                System.arraycopy(old, i, grown, slot * STRIDE, STRIDE);
+            }
+            table = grown;
+            capacity = grownCapacity;
+            resizeAt = (int) (grownCapacity * LOAD_FACTOR);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.fitznet.data;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.fitznet.util.Constants.COUNT_EXPORTS_OPEN;
+import static org.fitznet.util.Constants.COUNT_EXPORT_IDLE_MS;
+import static org.fitznet.util.Constants.COUNT_EXPORT_WINDOW;
+
+/**
+ * Exports of user counts in progress, so that paging through every user walks the counts about
+ * once per window of users rather than once per page.
+ * <p>
+ * A request whose cursor does not continue an open export selects the next {@code window} users
+ * after the cursor in one pass with {@link CountPage#after} and answers with the front of them. The
+ * rest are kept under the page's next cursor, so the following pages are cut from memory with
+ * {@link CountPage#following} until the window runs out and the next request walks again. An
+ * export of N users therefore costs about N / window walks, instead of N / limit.
+ * </p>
+ * <p>
+ * A window takes 16 bytes per user. At most {@code maxOpen} are kept, dropping the least recently
+ * used first, and one left idle for {@code idleMillis} is dropped on the next request. A dropped
+ * or unknown cursor just takes a fresh window from that cursor, so a client only notices in
+ * latency. Counts are the ones seen when the window was taken.
+ * </p>
+ */
+public class CountExports {
+    private final int window;
+    private final int maxOpen;
+    private final long idleNanos;
+    private final LinkedHashMap<Key, Open> open = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param guildId guild the export counts within, or null for global counts
+     * @param cursor the next cursor of the page served last
+     */
+    private record Key(Long guildId, long cursor) {
+    }
+
+    private record Open(CountPage window, long touchedNanos) {
+    }
+
+    public CountExports() {
+        this(COUNT_EXPORT_WINDOW, COUNT_EXPORTS_OPEN, COUNT_EXPORT_IDLE_MS);
+    }
+
+    /**
+     * @param window number of users selected per walk of the counts
+     * @param maxOpen number of unfinished exports kept between requests
+     * @param idleMillis time after which an unfinished export is dropped
+     */
+    public CountExports(int window, int maxOpen, long idleMillis) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Export window must be positive: " + window);
+        }
+        this.window = window;
+        this.maxOpen = maxOpen;
+        this.idleNanos = idleMillis * 1_000_000L;
+    }
+
+    /**
+     * @param guildId guild the counts are within, or null for global counts; exports of different guilds never share a window
+     * @param cursor the previous page's cursor, or null for the first page
+     * @param limit maximum number of users in the page
+     * @param walk visits every user ID and count of the export, such as {@link VoiceJoinStore#forEachCount}
+     */
+    public CountPage page(Long guildId, Long cursor, int limit, Consumer<LongCounterMap.EntryConsumer> walk) {
+        long afterUserId = cursor == null ? Long.MIN_VALUE : cursor;
+        CountPage taken = cursor == null ? null : take(new Key(guildId, afterUserId));
+        if (taken == null) {
+            if (limit >= window) {
+                return CountPage.after(walk, afterUserId, limit);
+            }
+            taken = CountPage.after(walk, afterUserId, window);
+        }
+        CountPage page = taken.following(afterUserId, limit);
+        Long next = page.nextCursor();
+        if (next != null && taken.size() > 0 && next < taken.userId(taken.size() - 1)) {
+            keep(new Key(guildId, next), taken);
+        }
+        return page;
+    }
+
+    /**
+     * @return number of unfinished exports currently kept
+     */
+    public synchronized int openCount() {
+        return open.size();
+    }
+
+    private synchronized CountPage take(Key key) {
+        long now = System.nanoTime();
+        open.values().removeIf(export -> now - export.touchedNanos() > idleNanos);
+        Open export = open.remove(key);
+        return export == null ? null : export.window();
+    }
+
+    private synchronized void keep(Key key, CountPage taken) {
+        if (maxOpen <= 0) {
+            return;
+        }
+        open.put(key, new Open(taken, System.nanoTime()));
+        Iterator<Map.Entry<Key, Open>> eldest = open.entrySet().iterator();
+        while (open.size() > maxOpen) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+}
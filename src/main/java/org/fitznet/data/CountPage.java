@@ -0,0 +1,229 @@
+package org.fitznet.data;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.fitznet.util.JsonUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * One page of user counts in ascending user ID order, taken from a weakly consistent walk of live counts.
+ * <p>
+ * The walk is never copied: a bounded max-heap of primitive arrays keeps the {@code limit} smallest
+ * user IDs after the cursor, so a page costs one pass over the counts and memory proportional to
+ * the page size, however many users there are. Nothing is written while the walk holds the
+ * store's locks, so a slow client never blocks joins. The cursor for the next page is the last
+ * user ID returned; a user whose count changes between pages is reported with the count seen when
+ * its page was taken. A page can also be cut from a larger one with {@link #following}, which is how
+ * {@link CountExports} serves many pages from one walk.
+ * </p>
+ */
+public class CountPage {
+    private final long[] userIds;
+    private final long[] counts;
+    private final int size;
+    private final boolean hasMore;
+
+    private CountPage(long[] userIds, long[] counts, int size, boolean hasMore) {
+        this.userIds = userIds;
+        this.counts = counts;
+        this.size = size;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * @param walk visits every user ID and count, such as {@link VoiceJoinStore#forEachCount}
+     * @param afterUserId only users with a larger ID are included; the previous page's cursor
+     * @param limit maximum number of users in the page
+     */
+    public static CountPage after(Consumer<LongCounterMap.EntryConsumer> walk, long afterUserId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+        }
+        Selector selector = new Selector(afterUserId, limit);
+        walk.accept(selector::offer);
+        return selector.sorted();
+    }
+
+    /**
+     * Cut a page from this one without walking the counts again.
+     *
+     * @param afterUserId only users with a larger ID are included
+     * @param limit maximum number of users in the page
+     * @return the users of this page after the cursor; it has more if this page does or it stops short of this page's end
+     */
+    public CountPage following(long afterUserId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+        }
+        int from = Arrays.binarySearch(userIds, 0, size, afterUserId);
+        from = from >= 0 ? from + 1 : -from - 1;
+        int to = (int) Math.min(size, (long) from + limit);
+        return new CountPage(Arrays.copyOfRange(userIds, from, to), Arrays.copyOfRange(counts, from, to),
+                to - from, to < size || hasMore);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long userId(int index) {
+        return userIds[index];
+    }
+
+    public long count(int index) {
+        return counts[index];
+    }
+
+    /**
+     * @return the cursor for the next page, or null if this is the last one
+     */
+    public Long nextCursor() {
+        return hasMore ? userIds[size - 1] : null;
+    }
+
+    /**
+     * Write the page as {@code {"counts":[{"userId":..,"count":..},..],"nextCursor":..}}.
+     * The stream is flushed but left open.
+     */
+    public void writeJson(OutputStream out) throws IOException {
+        try (JsonGenerator json = generator(out)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("counts");
+            for (int i = 0; i < size; i++) {
+                writeEntry(json, i);
+            }
+            json.writeEndArray();
+            Long next = nextCursor();
+            if (next == null) {
+                json.writeNullField("nextCursor");
+            } else {
+                json.writeNumberField("nextCursor", next);
+            }
+            json.writeEndObject();
+        }
+    }
+
+    /**
+     * Write the page as newline-delimited JSON, one {@code {"userId":..,"count":..}} object per line.
+     * The stream is flushed but left open.
+     */
+    public void writeNdjson(OutputStream out) throws IOException {
+        try (JsonGenerator json = generator(out)) {
+            json.setRootValueSeparator(new SerializedString("\n"));
+            for (int i = 0; i < size; i++) {
+                writeEntry(json, i);
+            }
+            if (size > 0) {
+                json.writeRaw('\n');
+            }
+        }
+    }
+
+    private static JsonGenerator generator(OutputStream out) throws IOException {
+        return JsonUtils.MAPPER.getFactory()
+                .createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    private void writeEntry(JsonGenerator json, int index) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("userId", userIds[index]);
+        json.writeNumberField("count", counts[index]);
+        json.writeEndObject();
+    }
+
+    /**
+     * Max-heap on user ID holding the smallest IDs seen so far after the cursor. The arrays grow up
+     * to the limit as users arrive, so a large limit over few users stays small.
+     */
+    private static final class Selector {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private final long afterUserId;
+        private final int limit;
+        private long[] userIds;
+        private long[] counts;
+        private int size;
+        private boolean hasMore;
+
+        Selector(long afterUserId, int limit) {
+            this.afterUserId = afterUserId;
+            this.limit = limit;
+            this.userIds = new long[Math.min(limit, INITIAL_CAPACITY)];
+            this.counts = new long[userIds.length];
+        }
+
+        void offer(long userId, long count) {
+            if (userId <= afterUserId) {
+                return;
+            }
+            if (size < limit) {
+                if (size == userIds.length) {
+                    int capacity = (int) Math.min(limit, 2L * userIds.length);
+                    userIds = Arrays.copyOf(userIds, capacity);
+                    counts = Arrays.copyOf(counts, capacity);
+                }
+                int child = size++;
+                // Sift up
+                while (child > 0) {
+                    int parent = (child - 1) >>> 1;
+                    if (userIds[parent] >= userId) {
+                        break;
+                    }
+                    userIds[child] = userIds[parent];
+                    counts[child] = counts[parent];
+                    child = parent;
+                }
+                userIds[child] = userId;
+                counts[child] = count;
+                return;
+            }
+            hasMore = true;
+            if (userId < userIds[0]) {
+                siftDown(userId, count, size);
+            }
+        }
+
+        /**
+         * Place an entry at the root and sift it down within the first {@code heapSize} slots.
+         */
+        private void siftDown(long userId, long count, int heapSize) {
+            int parent = 0;
+            while (true) {
+                int child = 2 * parent + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && userIds[child + 1] > userIds[child]) {
+                    child++;
+                }
+                if (userIds[child] <= userId) {
+                    break;
+                }
+                userIds[parent] = userIds[child];
+                counts[parent] = counts[child];
+                parent = child;
+            }
+            userIds[parent] = userId;
+            counts[parent] = count;
+        }
+
+        /**
+         * Heap-sort in place into ascending user ID order.
+         */
+        CountPage sorted() {
+            for (int end = size - 1; end > 0; end--) {
+                long maxUserId = userIds[0];
+                long maxCount = counts[0];
+                siftDown(userIds[end], counts[end], end);
+                userIds[end] = maxUserId;
+                counts[end] = maxCount;
+            }
+            return new CountPage(userIds, counts, size, hasMore);
+        }
+    }
+}
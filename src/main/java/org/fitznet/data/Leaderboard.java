@@ -0,0 +1,185 @@
+package org.fitznet.data;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Ranking of users by voice join count, kept up to date one increment at a time.
+ * <p>
+ * Users are held in a skip list ordered by count (highest first) and then user ID, so an update is
+ * a remove and an insert in O(log n) and the top K are read in O(K) without copying or sorting the
+ * whole map. A Fenwick tree over counts (how many users have each count) answers "how many users
+ * are ahead of this one" in O(log max count), which gives a user's rank without walking the list.
+ * Ranks use competition ranking: users with equal counts share a rank.
+ * </p>
+ */
+public class Leaderboard {
+    private static final int LOCK_STRIPES = 64;
+    private static final Leaderboard EMPTY = new Leaderboard() {
+        @Override
+        public void update(long userId, long count) {
+            // Shared by every guild without a board, so it stays empty
+        }
+    };
+
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>();
+    private final LongCounterMap counts = new LongCounterMap();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final CountHistogram histogram = new CountHistogram();
+
+    public Leaderboard() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @return a shared leaderboard with nobody on it, which ignores updates
+     */
+    public static Leaderboard empty() {
+        return EMPTY;
+    }
+
+    /**
+     * A user's position on the leaderboard.
+     *
+     * @param userId Discord user ID
+     * @param count voice joins counted for the user
+     * @param rank 1-based rank, shared by users with the same count
+     */
+    public record Ranked(long userId, long count, long rank) {
+    }
+
+    private record Entry(long userId, long count) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int byCount = Long.compare(other.count, count);
+            return byCount != 0 ? byCount : Long.compare(userId, other.userId);
+        }
+    }
+
+    /**
+     * Move a user to their new count. Updates that would lower a user's count are ignored, so
+     * out-of-order updates cannot move anyone backwards.
+     *
+     * @param userId Discord user ID
+     * @param count the user's current count
+     */
+    public void update(long userId, long count) {
+        if (count <= 0) {
+            return;
+        }
+        synchronized (locks[(int) (userId & (LOCK_STRIPES - 1))]) {
+            long previous = counts.get(userId);
+            if (count <= previous) {
+                return;
+            }
+            if (previous > 0) {
+                ranking.remove(new Entry(userId, previous));
+            }
+            ranking.add(new Entry(userId, count));
+            counts.put(userId, count);
+            histogram.move(previous, count);
+        }
+    }
+
+    /**
+     * @param limit maximum number of users to return
+     * @return the highest-ranked users, best first
+     */
+    public List<Ranked> top(int limit) {
+        List<Ranked> top = new ArrayList<>(Math.max(0, Math.min(limit, 100)));
+        Iterator<Entry> iterator = ranking.iterator();
+        long rank = 0;
+        long previousCount = -1;
+        for (int position = 1; position <= limit && iterator.hasNext(); position++) {
+            Entry entry = iterator.next();
+            if (entry.count() != previousCount) {
+                rank = position;
+                previousCount = entry.count();
+            }
+            top.add(new Ranked(entry.userId(), entry.count(), rank));
+        }
+        return top;
+    }
+
+    /**
+     * @return the user's rank, or 0 if the user has no joins on this leaderboard
+     */
+    public long rank(long userId) {
+        long count = counts.get(userId);
+        return count == 0 ? 0 : histogram.countAbove(count) + 1;
+    }
+
+    /**
+     * @return the user's count on this leaderboard, or 0 if absent
+     */
+    public long count(long userId) {
+        return counts.get(userId);
+    }
+
+    /**
+     * @return number of users on the leaderboard
+     */
+    public int size() {
+        return counts.size();
+    }
+
+    /**
+     * Fenwick tree of how many users hold each count, growing as counts grow.
+     */
+    private static final class CountHistogram {
+        private long[] tree = new long[1024];
+        private long users;
+
+        synchronized void move(long from, long to) {
+            ensureCapacity(to);
+            if (from > 0) {
+                add(from, -1);
+            } else {
+                users++;
+            }
+            add(to, 1);
+        }
+
+        synchronized long countAbove(long count) {
+            return users - prefix(Math.min(count, tree.length - 1));
+        }
+
+        private void ensureCapacity(long count) {
+            if (count < tree.length) {
+                return;
+            }
+            int size = tree.length;
+            while (size <= count) {
+                size <<= 1;
+            }
+            long[] values = new long[tree.length];
+            for (int i = 1; i < tree.length; i++) {
+                values[i] = prefix(i) - prefix(i - 1);
+            }
+            tree = new long[size];
+            for (int i = 1; i < values.length; i++) {
+                if (values[i] != 0) {
+                    add(i, values[i]);
+                }
+            }
+        }
+
+        private void add(long index, long delta) {
+            for (int i = (int) index; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        private long prefix(long index) {
+            long sum = 0;
+            for (int i = (int) index; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+    }
+}
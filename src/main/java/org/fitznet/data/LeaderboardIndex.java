@@ -0,0 +1,73 @@
+package org.fitznet.data;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The global voice join {@link Leaderboard} plus one per guild, served entirely from memory.
+ * <p>
+ * Both kinds follow the same source whether built at startup or updated live: the global board
+ * holds the store's all-time counts, and the guild boards hold {@link VoiceJoinHistory}'s per-guild
+ * all-time totals, which pruning keeps. Counts only ever grow, so a board that has been running for
+ * weeks ranks the same users with the same counts as one rebuilt after a restart.
+ * </p>
+ */
+@Slf4j
+public class LeaderboardIndex {
+    private final Leaderboard global = new Leaderboard();
+    private final Map<Long, Leaderboard> guilds = new ConcurrentHashMap<>();
+
+    /**
+     * Build the index from the counts already persisted. This is the only time the full data set is
+     * walked; afterwards every join is applied incrementally.
+     *
+     * @param store global counts per user
+     * @param history per-guild counts per user
+     */
+    public static LeaderboardIndex build(VoiceJoinStore store, VoiceJoinHistory history) {
+        LeaderboardIndex index = new LeaderboardIndex();
+        store.forEachCount(index.global::update);
+        history.forEachUserTotal(index::recordGuildJoin);
+        log.info("Built voice join leaderboard for {} users across {} guilds", index.global.size(), index.guilds.size());
+        return index;
+    }
+
+    /**
+     * @param userId Discord user ID
+     * @param count the user's global count after the latest join
+     */
+    public void recordJoin(long userId, long count) {
+        global.update(userId, count);
+    }
+
+    /**
+     * @param guildId guild the join happened in
+     * @param userId Discord user ID
+     * @param count the user's count within the guild after the latest join
+     */
+    public void recordGuildJoin(long guildId, long userId, long count) {
+        guilds.computeIfAbsent(guildId, id -> new Leaderboard()).update(userId, count);
+    }
+
+    /**
+     * @param guildId guild to rank within, or null for the global leaderboard
+     * @return the guild's leaderboard, or the shared {@link Leaderboard#empty()} one if nobody has joined voice there
+     */
+    public Leaderboard get(Long guildId) {
+        if (guildId == null) {
+            return global;
+        }
+        return guilds.getOrDefault(guildId, Leaderboard.empty());
+    }
+
+    /**
+     * @param guildId guild to rank within, or null for the global leaderboard
+     * @param limit maximum number of users to return
+     */
+    public List<Leaderboard.Ranked> top(Long guildId, int limit) {
+        return get(guildId).top(limit);
+    }
+}
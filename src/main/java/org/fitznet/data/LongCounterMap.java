@@ -0,0 +1,404 @@
+package org.fitznet.data;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Concurrent map from a {@code long} key (a Discord snowflake) to a positive {@code long} counter.
+ * <p>
+ * Keys are spread over a fixed number of segments, each an open-addressing table with linear
+ * probing that stores keys and values interleaved in a single {@code long[]}. Increments take the
+ * segment's write lock and never allocate except when a segment grows; lookups use an optimistic
+ * read and only fall back to the read lock if a writer interfered. A value of zero marks an empty
+ * slot, so zero counts are never stored and read back as absent.
+ * </p>
+ * <p>
+ * {@link #snapshot()} captures every entry as of one instant without copying: it marks each
+ * segment's table as shared, and the first write to a shared segment afterwards copies the table
+ * before changing it. Writers are held off only while the segments are marked.
+ * </p>
+ * <p>
+ * Measured retained heap on JDK 17 (compressed oops), see {@code LongCounterMapFootprintTest}:
+ * <ul>
+ *     <li>1M users: {@code ConcurrentHashMap<Long, Long>} ~87 MB, this map ~33 MB</li>
+ *     <li>10M users: {@code ConcurrentHashMap<Long, Long>} ~866 MB, this map ~267 MB</li>
+ * </ul>
+ * </p>
+ */
+public class LongCounterMap {
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    public LongCounterMap() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize number of keys to pre-size for, avoiding rehashing during bulk loads
+     */
+    public LongCounterMap(int expectedSize) {
+        int perSegment = (int) Math.ceil(expectedSize / (double) SEGMENT_COUNT / LOAD_FACTOR);
+        int capacity = Math.max(MIN_SEGMENT_CAPACITY, Integer.highestOneBit(Math.max(1, perSegment - 1)) << 1);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    /**
+     * Receives the entries of a {@link LongCounterMap} without boxing.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+
+    /**
+     * @return the counter for the key, or 0 if absent
+     */
+    public long get(long key) {
+        long hash = mix(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != 0;
+    }
+
+    /**
+     * Add one to the key's counter, inserting it with a count of 1 if absent.
+     *
+     * @return the counter after incrementing
+     */
+    public long incrementAndGet(long key) {
+        return addAndGet(key, 1);
+    }
+
+    /**
+     * Add a positive amount to the key's counter, inserting it if absent.
+     *
+     * @return the counter after adding
+     */
+    public long addAndGet(long key, long delta) {
+        if (delta <= 0) {
+            throw new IllegalArgumentException("Delta must be positive: " + delta);
+        }
+        long hash = mix(key);
+        return segmentFor(hash).update(key, hash, delta, false);
+    }
+
+    /**
+     * Set the key's counter. A value of zero or less is ignored.
+     */
+    public void put(long key, long value) {
+        if (value <= 0) {
+            return;
+        }
+        long hash = mix(key);
+        segmentFor(hash).update(key, hash, value, true);
+    }
+
+    /**
+     * Set the key's counter to the larger of its current value and the given one.
+     *
+     * @return the counter after the update
+     */
+    public long putMax(long key, long value) {
+        long hash = mix(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            long current = segment.find(key, hash);
+            if (value > current) {
+                segment.store(key, hash, value);
+                return value;
+            }
+            return current;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Set bits in the key's value, inserting it if absent, so the map can hold a bit set per key.
+     *
+     * @param bits bits to set; zero leaves an absent key absent
+     * @return the value after the update
+     */
+    public long orAndGet(long key, long bits) {
+        long hash = mix(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            long current = segment.find(key, hash);
+            long updated = current | bits;
+            if (updated != current) {
+                segment.store(key, hash, updated);
+            }
+            return updated;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove the key's counter.
+     *
+     * @return the counter that was removed, or 0 if absent
+     */
+    public long remove(long key) {
+        long hash = mix(key);
+        return segmentFor(hash).remove(key, hash);
+    }
+
+    /**
+     * @return number of keys, summed over segments without a global lock
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Capture every entry as of this instant. Every segment's write lock is held while the tables
+     * are marked as shared, which takes a few microseconds; the tables are copied lazily by the
+     * next write to each segment, so the snapshot can be read at leisure while increments continue.
+     */
+    public Snapshot snapshot() {
+        long[] stamps = new long[SEGMENT_COUNT];
+        long[][] tables = new long[SEGMENT_COUNT][];
+        int size = 0;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            stamps[i] = segments[i].lock.writeLock();
+        }
+        try {
+            for (int i = 0; i < SEGMENT_COUNT; i++) {
+                Segment segment = segments[i];
+                segment.shared = true;
+                tables[i] = segment.table;
+                size += segment.size;
+            }
+        } finally {
+            for (int i = SEGMENT_COUNT - 1; i >= 0; i--) {
+                segments[i].lock.unlockWrite(stamps[i]);
+            }
+        }
+        return new Snapshot(tables, size);
+    }
+
+    /**
+     * Immutable point-in-time view of a {@link LongCounterMap}.
+     */
+    public static final class Snapshot {
+        private final long[][] tables;
+        private final int size;
+
+        private Snapshot(long[][] tables, int size) {
+            this.tables = tables;
+            this.size = size;
+        }
+
+        /**
+         * @return number of keys when the snapshot was taken
+         */
+        public int size() {
+            return size;
+        }
+
+        public void forEach(EntryConsumer consumer) {
+            for (long[] table : tables) {
+                for (int i = 0; i < table.length; i += 2) {
+                    if (table[i + 1] != 0) {
+                        consumer.accept(table[i], table[i + 1]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Visit every entry. Each segment is read under its read lock, so the view is consistent per
+     * segment but only weakly consistent across the whole map.
+     */
+    public void forEach(EntryConsumer consumer) {
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                long[] table = segment.table;
+                for (int i = 0; i < table.length; i += 2) {
+                    if (table[i + 1] != 0) {
+                        consumer.accept(table[i], table[i + 1]);
+                    }
+                }
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (Long.SIZE - SEGMENT_BITS))];
+    }
+
+    /**
+     * MurmurHash3 finalizer; snowflakes share their high timestamp bits, so they need mixing before
+     * their low bits are usable as a table index.
+     */
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Segment {
+        final StampedLock lock = new StampedLock();
+        long[] table;
+        int size;
+        int resizeAt;
+        /** The table is referenced by a snapshot and must be copied before it is written. */
+        boolean shared;
+
+        Segment(int capacity) {
+            this.table = new long[capacity * 2];
+            this.resizeAt = (int) (capacity * LOAD_FACTOR);
+        }
+
+        long get(long key, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            long value = find(key, hash);
+            if (lock.validate(stamp)) {
+                return value;
+            }
+            stamp = lock.readLock();
+            try {
+                return find(key, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        long find(long key, long hash) {
+            long[] t = table;
+            int mask = (t.length >> 1) - 1;
+            for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                long value = t[(slot << 1) + 1];
+                if (value == 0) {
+                    return 0;
+                }
+                if (t[slot << 1] == key) {
+                    return value;
+                }
+            }
+        }
+
+        long update(long key, long hash, long value, boolean replace) {
+            long stamp = lock.writeLock();
+            try {
+                long current = find(key, hash);
+                long updated = replace ? value : current + value;
+                store(key, hash, updated);
+                return updated;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Write a positive value for the key, inserting it if needed. Caller holds the write lock.
+         */
+        void store(long key, long hash, long value) {
+            if (shared) {
+                table = table.clone();
+                shared = false;
+            }
+            int mask = (table.length >> 1) - 1;
+            for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                int index = slot << 1;
+                if (table[index + 1] == 0) {
+                    table[index] = key;
+                    table[index + 1] = value;
+                    if (++size > resizeAt) {
+                        resize();
+                    }
+                    return;
+                }
+                if (table[index] == key) {
+                    table[index + 1] = value;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Clear the key's slot and shift later entries of its probe run back into the gap, so no
+         * tombstones are needed and lookups still stop at the first empty slot.
+         */
+        long remove(long key, long hash) {
+            long stamp = lock.writeLock();
+            try {
+                if (find(key, hash) == 0) {
+                    return 0;
+                }
+                if (shared) {
+                    table = table.clone();
+                    shared = false;
+                }
+                long[] t = table;
+                int mask = (t.length >> 1) - 1;
+                int gap = (int) hash & mask;
+                while (t[gap << 1] != key || t[(gap << 1) + 1] == 0) {
+                    gap = (gap + 1) & mask;
+                }
+                long removed = t[(gap << 1) + 1];
+                for (int slot = (gap + 1) & mask; t[(slot << 1) + 1] != 0; slot = (slot + 1) & mask) {
+                    int home = (int) mix(t[slot << 1]) & mask;
+                    // Move the entry back only if the gap lies between its home slot and where it sits
+                    if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                        t[gap << 1] = t[slot << 1];
+                        t[(gap << 1) + 1] = t[(slot << 1) + 1];
+                        gap = slot;
+                    }
+                }
+                t[gap << 1] = 0;
+                t[(gap << 1) + 1] = 0;
+                size--;
+                return removed;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private void resize() {
+            long[] old = table;
+            long[] grown = new long[old.length * 2];
+            int mask = (grown.length >> 1) - 1;
+            for (int i = 0; i < old.length; i += 2) {
+                if (old[i + 1] == 0) {
+                    continue;
+                }
+                int slot = (int) mix(old[i]) & mask;
+                while (grown[(slot << 1) + 1] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                grown[slot << 1] = old[i];
+                grown[(slot << 1) + 1] = old[i + 1];
+            }
+            table = grown;
+            resizeAt = (int) ((grown.length >> 1) * LOAD_FACTOR);
+        }
+    }
+}
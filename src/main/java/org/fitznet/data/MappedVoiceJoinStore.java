@@ -0,0 +1,346 @@
+package org.fitznet.data;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Voice join counts stored in a memory-mapped binary file.
+ * <p>
+ * The file is an open-addressing hash table with linear probing, so opening it only maps the file
+ * and checks the header; nothing is parsed or copied onto the heap. Lookups and increments work
+ * directly on the mapping, increments of existing users being a single atomic add.
+ * </p>
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * header  (64 bytes): magic (8) | version (4) | record size (4) | capacity (4) | size (4) | reserved
+ * records (32 bytes): user ID (8) | count (8) | reserved for future fields (16)
+ * </pre>
+ * A slot with a count of zero is empty. The table doubles into a new file that atomically replaces
+ * the old one once it is 70% full. A single mapping is limited to 2 GB, about 67M slots.
+ * </p>
+ */
+@Slf4j
+public class MappedVoiceJoinStore implements VoiceJoinStore {
+    static final long MAGIC = 0x46495A4E4554564AL; // "FIZNETVJ"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 32;
+
+    private static final int HEADER_VERSION = 8;
+    private static final int HEADER_RECORD_SIZE = 12;
+    private static final int HEADER_CAPACITY = 16;
+    private static final int HEADER_SIZE_FIELD = 20;
+    private static final int RECORD_COUNT = 8;
+    private static final int DEFAULT_CAPACITY = 1 << 12;
+    private static final float LOAD_FACTOR = 0.7f;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path path;
+    private final StampedLock resizeLock = new StampedLock();
+    private final Object insertLock = new Object();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int size;
+
+    public MappedVoiceJoinStore(Path path) {
+        this(path, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Map an existing counter file, or create one with the given number of slots.
+     *
+     * @param path counter file location
+     * @param initialCapacity slots to create a new file with, rounded up to a power of two
+     */
+    public MappedVoiceJoinStore(Path path, int initialCapacity) {
+        this.path = path;
+        try {
+            if (Files.exists(path) && Files.size(path) > 0) {
+                map(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+                log.info("Mapped {} user voice join counts from {}", size, path);
+            } else {
+                int slots = Math.max(16, Integer.highestOneBit(Math.max(1, initialCapacity - 1)) << 1);
+                createFile(path, slots);
+                map(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+                log.info("Created new voice join counter file {} with {} slots", path, slots);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open voice join counter file " + path, e);
+        }
+    }
+
+    private static void createFile(Path path, int slots) throws IOException {
+        try (FileChannel created = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer header = created.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(slots));
+            header.putLong(0, MAGIC);
+            header.putInt(HEADER_VERSION, VERSION);
+            header.putInt(HEADER_RECORD_SIZE, RECORD_SIZE);
+            header.putInt(HEADER_CAPACITY, slots);
+            header.putInt(HEADER_SIZE_FIELD, 0);
+            header.force();
+        }
+    }
+
+    private void map(FileChannel opened) throws IOException {
+        MappedByteBuffer mapped = opened.map(FileChannel.MapMode.READ_WRITE, 0, opened.size());
+        if (mapped.getLong(0) != MAGIC || mapped.getInt(HEADER_VERSION) != VERSION
+                || mapped.getInt(HEADER_RECORD_SIZE) != RECORD_SIZE) {
+            opened.close();
+            throw new IOException("Not a version " + VERSION + " voice join counter file");
+        }
+        int slots = mapped.getInt(HEADER_CAPACITY);
+        if (opened.size() != fileSize(slots)) {
+            opened.close();
+            throw new IOException("Counter file is " + opened.size() + " bytes, expected " + fileSize(slots));
+        }
+        this.channel = opened;
+        this.buffer = mapped;
+        this.capacity = slots;
+        this.size = mapped.getInt(HEADER_SIZE_FIELD);
+    }
+
+    private static long fileSize(int slots) {
+        return HEADER_SIZE + (long) slots * RECORD_SIZE;
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    /**
+     * MurmurHash3 finalizer, the same mixing {@link LongCounterMap} uses for snowflakes.
+     */
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * @return slot holding the user, or -1 if absent. Caller holds the resize lock.
+     */
+    private int findSlot(long userId) {
+        int mask = capacity - 1;
+        for (int slot = (int) mix(userId) & mask; ; slot = (slot + 1) & mask) {
+            int offset = offset(slot);
+            long count = (long) LONGS.getAcquire(buffer, offset + RECORD_COUNT);
+            if (count == 0) {
+                return -1;
+            }
+            if (buffer.getLong(offset) == userId) {
+                return slot;
+            }
+        }
+    }
+
+    @Override
+    public long getVoiceJoinCount(long userId) {
+        long stamp = resizeLock.readLock();
+        try {
+            int slot = findSlot(userId);
+            return slot < 0 ? 0 : (long) LONGS.getAcquire(buffer, offset(slot) + RECORD_COUNT);
+        } finally {
+            resizeLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long incrementVoiceJoinCount(long userId) {
+        return add(userId, 1, false);
+    }
+
+    @Override
+    public long addToCount(long userId, long amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be positive: " + amount);
+        }
+        return add(userId, amount, false);
+    }
+
+    /**
+     * Set a user's count, used when importing. A count of zero or less is ignored.
+     */
+    public void put(long userId, long count) {
+        if (count > 0) {
+            add(userId, count, true);
+        }
+    }
+
+    private long add(long userId, long delta, boolean replace) {
+        long result;
+        boolean grow;
+        long stamp = resizeLock.readLock();
+        try {
+            int slot = findSlot(userId);
+            if (slot >= 0 && !replace) {
+                return (long) LONGS.getAndAdd(buffer, offset(slot) + RECORD_COUNT, delta) + delta;
+            }
+            synchronized (insertLock) {
+                slot = findSlot(userId);
+                if (slot >= 0) {
+                    int countOffset = offset(slot) + RECORD_COUNT;
+                    if (replace) {
+                        LONGS.setRelease(buffer, countOffset, delta);
+                        return delta;
+                    }
+                    return (long) LONGS.getAndAdd(buffer, countOffset, delta) + delta;
+                }
+                result = insert(userId, delta);
+                grow = size > capacity * LOAD_FACTOR;
+            }
+        } finally {
+            resizeLock.unlockRead(stamp);
+        }
+        if (grow) {
+            grow();
+        }
+        return result;
+    }
+
+    /**
+     * Claim the first empty slot on the user's probe sequence. Caller holds the insert lock; the
+     * count is published last so lock-free readers never see a half-written record.
+     */
+    private long insert(long userId, long count) {
+        int mask = capacity - 1;
+        int slot = (int) mix(userId) & mask;
+        while ((long) LONGS.getAcquire(buffer, offset(slot) + RECORD_COUNT) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        int offset = offset(slot);
+        buffer.putLong(offset, userId);
+        LONGS.setRelease(buffer, offset + RECORD_COUNT, count);
+        buffer.putInt(HEADER_SIZE_FIELD, ++size);
+        return count;
+    }
+
+    /**
+     * Rehash into a file with twice the slots and atomically swap it in place of the current one.
+     */
+    private void grow() {
+        long stamp = resizeLock.writeLock();
+        try {
+            if (size <= capacity * LOAD_FACTOR) {
+                return;
+            }
+            int oldCapacity = capacity;
+            MappedByteBuffer old = buffer;
+            Path resized = path.resolveSibling(path.getFileName() + ".resize");
+            createFile(resized, oldCapacity * 2);
+            buffer.force();
+            channel.close();
+            map(FileChannel.open(resized, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            for (int slot = 0; slot < oldCapacity; slot++) {
+                long count = old.getLong(offset(slot) + RECORD_COUNT);
+                if (count != 0) {
+                    insert(old.getLong(offset(slot)), count);
+                }
+            }
+            buffer.force();
+            Files.move(resized, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Grew voice join counter file {} to {} slots", path, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to grow voice join counter file " + path, e);
+        } finally {
+            resizeLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Visit every stored user and count.
+     */
+    public void forEach(LongCounterMap.EntryConsumer consumer) {
+        long stamp = resizeLock.readLock();
+        try {
+            for (int slot = 0; slot < capacity; slot++) {
+                int offset = offset(slot);
+                long count = (long) LONGS.getAcquire(buffer, offset + RECORD_COUNT);
+                if (count != 0) {
+                    consumer.accept(buffer.getLong(offset), count);
+                }
+            }
+        } finally {
+            resizeLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void forEachCount(LongCounterMap.EntryConsumer consumer) {
+        forEach(consumer);
+    }
+
+    @Override
+    public boolean userExists(long userId) {
+        return getVoiceJoinCount(userId) != 0;
+    }
+
+    /**
+     * @return number of users stored
+     */
+    public int size() {
+        long stamp = resizeLock.readLock();
+        try {
+            synchronized (insertLock) {
+                return size;
+            }
+        } finally {
+            resizeLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void flush() {
+        long stamp = resizeLock.readLock();
+        try {
+            long start = System.nanoTime();
+            buffer.force();
+            flushNanos.addAndGet(System.nanoTime() - start);
+            flushCount.incrementAndGet();
+        } finally {
+            resizeLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Dirty pages are written by the OS, so only the explicit forces are counted and no byte total is kept.
+     */
+    @Override
+    public FlushStats getFlushStats() {
+        return new FlushStats(flushCount.get(), flushNanos.get(), 0);
+    }
+
+    @Override
+    public void close() {
+        long stamp = resizeLock.writeLock();
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close voice join counter file {}", path, e);
+        } finally {
+            resizeLock.unlockWrite(stamp);
+        }
+    }
+}
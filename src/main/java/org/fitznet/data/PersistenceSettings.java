@@ -0,0 +1,56 @@
+package org.fitznet.data;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import static org.fitznet.util.Constants.DATABASE_FLUSH_DIRTY_THRESHOLD;
+import static org.fitznet.util.Constants.DATABASE_FLUSH_INTERVAL_MS;
+import static org.fitznet.util.Constants.DATABASE_JOURNAL_COMPACTION_BYTES;
+import static org.fitznet.util.Constants.DATABASE_SNAPSHOTS_RETAINED;
+import static org.fitznet.util.Constants.TOTALLY_LEGIT_DATABASE_FILENAME;
+
+/**
+ * Tuning knobs for how {@link VoiceJoinDatabase} persists its counts.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class PersistenceSettings {
+    /** JSON snapshot file holding every user's count. */
+    @Builder.Default
+    private final String databaseFile = TOTALLY_LEGIT_DATABASE_FILENAME;
+
+    /** Maximum time between flushes of pending increments; zero or less writes through on every increment. */
+    @Builder.Default
+    private final long flushIntervalMillis = DATABASE_FLUSH_INTERVAL_MS;
+
+    /** Number of pending increments that triggers an early flush. */
+    @Builder.Default
+    private final int dirtyThreshold = DATABASE_FLUSH_DIRTY_THRESHOLD;
+
+    /** Append one record per increment to a journal instead of rewriting the snapshot on every flush. */
+    @Builder.Default
+    private final boolean journalEnabled = false;
+
+    /** Force the journal to stable storage on every group commit. */
+    @Builder.Default
+    private final boolean journalFsync = false;
+
+    /** Journal size after which it is folded into a fresh snapshot and truncated. */
+    @Builder.Default
+    private final long journalCompactionBytes = DATABASE_JOURNAL_COMPACTION_BYTES;
+
+    /** Previous snapshot files kept beside the current one, loaded if the current one is damaged. */
+    @Builder.Default
+    private final int snapshotsRetained = DATABASE_SNAPSHOTS_RETAINED;
+
+    public static PersistenceSettings defaults() {
+        return builder().build();
+    }
+
+    /**
+     * @return path of the journal that accompanies the snapshot file
+     */
+    public String getJournalFile() {
+        return databaseFile + ".journal";
+    }
+}
@@ -0,0 +1,277 @@
+package org.fitznet.data;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Voice join counts split into one partition per gateway shard.
+ * <p>
+ * Each shard's listener writes only to its own partition through {@link #forShard(int)}, so shards
+ * never share a lock, a flusher or a file. A user's count is the sum over every partition the
+ * process has open, i.e. the shards it runs. Reading the other open partitions takes no lock with
+ * the json and journal backends, a shared read lock with the mapped one and a query with H2. The
+ * voice event pipeline handles a user's joins in order whichever of those shards they arrive on,
+ * so within one process the totals returned by increments are exact.
+ * </p>
+ * <p>
+ * When the shards are spread over several processes, each only sees the joins counted by its own
+ * shards: a user active in guilds on different processes has a partial count in each, so
+ * milestones are judged on that process's share rather than the user's total (so one may be
+ * announced late, by several processes or not at all), and {@code /top} and the REST counts show
+ * the share too.
+ * </p>
+ * <p>
+ * Shard 0 uses the unsharded file name, so switching sharding on keeps the existing counts in
+ * partition 0. Switching it off again only sees partition 0; {@link #otherPartitionFiles} finds
+ * the partitions that are then left unread.
+ * </p>
+ */
+@Slf4j
+public class ShardedVoiceJoinStore implements VoiceJoinStore {
+    private static final String H2_FILE_URL = "jdbc:h2:file:";
+
+    private final IntFunction<VoiceJoinStore> partitionFactory;
+    private final Map<Integer, VoiceJoinStore> partitions = new ConcurrentHashMap<>();
+    private final int defaultShard;
+
+    /**
+     * @param partitionFactory opens the store for a shard ID
+     * @param shardIds shards run by this process; their partitions are opened now so their counts are visible immediately
+     */
+    public ShardedVoiceJoinStore(IntFunction<VoiceJoinStore> partitionFactory, int... shardIds) {
+        if (shardIds.length == 0) {
+            throw new IllegalArgumentException("A sharded store needs at least one shard");
+        }
+        this.partitionFactory = partitionFactory;
+        this.defaultShard = shardIds[0];
+        for (int shardId : shardIds) {
+            partition(shardId);
+        }
+        log.info("Opened voice join partitions for shards {}", partitions.keySet());
+    }
+
+    /**
+     * Insert the shard number before the file extension: {@code serverVoiceCount.json} becomes
+     * {@code serverVoiceCount.shard-3.json}. Shard 0 keeps the unsharded name. Options after a
+     * {@code ;} in a JDBC URL stay at the end.
+     */
+    public static String partitionFile(String file, int shardId) {
+        if (shardId == 0) {
+            return file;
+        }
+        int options = file.startsWith("jdbc:") ? file.indexOf(';') : -1;
+        if (options >= 0) {
+            return partitionFile(file.substring(0, options), shardId) + file.substring(options);
+        }
+        int dot = file.lastIndexOf('.');
+        int slash = Math.max(file.lastIndexOf('/'), file.lastIndexOf('\\'));
+        return dot > slash
+                ? file.substring(0, dot) + ".shard-" + shardId + file.substring(dot)
+                : file + ".shard-" + shardId;
+    }
+
+    /**
+     * Find the files of partitions other than shard 0's next to {@code file}, such as
+     * {@code serverVoiceCount.shard-3.json}. For an H2 file URL these are the partitions' database
+     * files; other JDBC URLs have no files to find.
+     *
+     * @param file shard 0's file name or JDBC URL, as given to {@link #partitionFile}
+     * @return the partition files that exist, sorted by name
+     */
+    public static List<Path> otherPartitionFiles(String file) {
+        String name = file;
+        boolean h2 = name.startsWith(H2_FILE_URL);
+        if (h2) {
+            name = name.substring(H2_FILE_URL.length());
+            int options = name.indexOf(';');
+            name = options < 0 ? name : name.substring(0, options);
+        } else if (name.startsWith("jdbc:")) {
+            return List.of();
+        }
+        Path path = Path.of(name).toAbsolutePath();
+        Path dir = path.getParent();
+        if (dir == null || !Files.isDirectory(dir)) {
+            return List.of();
+        }
+        String fileName = path.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String stem = dot < 0 ? fileName : fileName.substring(0, dot);
+        String extension = dot < 0 ? "" : Pattern.quote(fileName.substring(dot));
+        // H2 adds its own suffix, such as .mv.db, after the partition's name
+        Pattern partitionName = Pattern.compile(Pattern.quote(stem) + "\\.shard-\\d+" + extension + (h2 ? "\\..+" : ""));
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(candidate -> partitionName.matcher(candidate.getFileName().toString()).matches())
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Failed to look for shard partitions of {}", file, e);
+            return List.of();
+        }
+    }
+
+    private VoiceJoinStore partition(int shardId) {
+        return partitions.computeIfAbsent(shardId, partitionFactory::apply);
+    }
+
+    /**
+     * @return a store that increments only the shard's partition and reads totals across all of them
+     */
+    public VoiceJoinStore forShard(int shardId) {
+        return new ShardView(shardId, partition(shardId));
+    }
+
+    @Override
+    public long getVoiceJoinCount(long userId) {
+        long total = 0;
+        for (VoiceJoinStore partition : partitions.values()) {
+            total += partition.getVoiceJoinCount(userId);
+        }
+        return total;
+    }
+
+    private long countOutside(VoiceJoinStore excluded, long userId) {
+        long total = 0;
+        for (VoiceJoinStore partition : partitions.values()) {
+            if (partition != excluded) {
+                total += partition.getVoiceJoinCount(userId);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Increments that do not come from a shard's listener land in the first shard's partition.
+     */
+    @Override
+    public long incrementVoiceJoinCount(long userId) {
+        return forShard(defaultShard).incrementVoiceJoinCount(userId);
+    }
+
+    @Override
+    public long addToCount(long userId, long amount) {
+        return forShard(defaultShard).addToCount(userId, amount);
+    }
+
+    /**
+     * Visit each user once with their total over every partition. A user is reported by the first
+     * partition, in shard order, that holds them, so the walk needs no memory beyond the partitions'.
+     */
+    @Override
+    public void forEachCount(LongCounterMap.EntryConsumer consumer) {
+        VoiceJoinStore[] ordered = partitions.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(Map.Entry::getValue)
+                .toArray(VoiceJoinStore[]::new);
+        for (int i = 0; i < ordered.length; i++) {
+            int first = i;
+            ordered[i].forEachCount((userId, count) -> {
+                for (int earlier = 0; earlier < first; earlier++) {
+                    if (ordered[earlier].userExists(userId)) {
+                        return;
+                    }
+                }
+                long total = count;
+                for (int later = first + 1; later < ordered.length; later++) {
+                    total += ordered[later].getVoiceJoinCount(userId);
+                }
+                consumer.accept(userId, total);
+            });
+        }
+    }
+
+    @Override
+    public boolean userExists(long userId) {
+        for (VoiceJoinStore partition : partitions.values()) {
+            if (partition.userExists(userId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void flush() {
+        partitions.values().forEach(VoiceJoinStore::flush);
+    }
+
+    @Override
+    public FlushStats getFlushStats() {
+        long flushes = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for (VoiceJoinStore partition : partitions.values()) {
+            FlushStats stats = partition.getFlushStats();
+            flushes += stats.flushes();
+            nanos += stats.totalNanos();
+            bytes += stats.bytes();
+        }
+        return new FlushStats(flushes, nanos, bytes);
+    }
+
+    @Override
+    public void close() {
+        partitions.values().forEach(VoiceJoinStore::close);
+    }
+
+    /**
+     * One shard's window onto the store. Closing it is a no-op; the partition belongs to the sharded store.
+     */
+    private final class ShardView implements VoiceJoinStore {
+        private final int shardId;
+        private final VoiceJoinStore partition;
+
+        ShardView(int shardId, VoiceJoinStore partition) {
+            this.shardId = shardId;
+            this.partition = partition;
+        }
+
+        @Override
+        public long getVoiceJoinCount(long userId) {
+            return ShardedVoiceJoinStore.this.getVoiceJoinCount(userId);
+        }
+
+        @Override
+        public long incrementVoiceJoinCount(long userId) {
+            return partition.incrementVoiceJoinCount(userId) + countOutside(partition, userId);
+        }
+
+        @Override
+        public long addToCount(long userId, long amount) {
+            return partition.addToCount(userId, amount) + countOutside(partition, userId);
+        }
+
+        @Override
+        public void forEachCount(LongCounterMap.EntryConsumer consumer) {
+            ShardedVoiceJoinStore.this.forEachCount(consumer);
+        }
+
+        @Override
+        public boolean userExists(long userId) {
+            return ShardedVoiceJoinStore.this.userExists(userId);
+        }
+
+        @Override
+        public void flush() {
+            partition.flush();
+        }
+
+        @Override
+        public FlushStats getFlushStats() {
+            return partition.getFlushStats();
+        }
+
+        @Override
+        public void close() {
+            log.debug("Ignoring close of the view for shard {}", shardId);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package org.fitznet.data;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A snapshot file that is replaced atomically and keeps a ring of its previous versions.
+ * <p>
+ * A write goes to {@code <file>.tmp}, is followed by a trailer line holding the CRC32C and length
+ * of everything before it, and is forced to disk. The current file is then hard-linked (or copied)
+ * to {@code <file>.1} after shifting the older versions to {@code .2}, {@code .3} and so on, and the
+ * temporary file is renamed over it. A crash at any point leaves either the old or the new file in
+ * place, never a partial one.
+ * </p>
+ * <p>
+ * A read verifies the trailer and falls back through the ring, newest first, when a file is
+ * missing, truncated or corrupt. Files without a trailer, written before snapshots were
+ * checksummed, are accepted if they parse.
+ * </p>
+ */
+@Slf4j
+public class SnapshotFile {
+    private static final String TRAILER_PREFIX = "\n#snapshot crc32c=";
+    private static final Pattern TRAILER = Pattern.compile("\n#snapshot crc32c=([0-9a-f]{8}) length=(\\d+)\n$");
+    private static final int TRAILER_MAX_BYTES = 64;
+
+    private final Path path;
+    private final int retained;
+
+    /**
+     * Writes the body of a snapshot. The stream must not be closed.
+     */
+    @FunctionalInterface
+    public interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Parses the body of a snapshot. The stream ends where the body does.
+     */
+    @FunctionalInterface
+    public interface Reader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    /**
+     * @param path the current snapshot
+     * @param retained number of previous snapshots to keep beside it
+     */
+    public SnapshotFile(Path path, int retained) {
+        this.path = path;
+        this.retained = Math.max(0, retained);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @param generation 1 for the snapshot before the current one, 2 for the one before that, and so on
+     */
+    public Path previous(int generation) {
+        return path.resolveSibling(path.getFileName() + "." + generation);
+    }
+
+    /**
+     * Write a new snapshot and make it the current one.
+     *
+     * @return bytes written, including the trailer
+     */
+    public long write(Writer body) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        long bytes;
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            CRC32C crc = new CRC32C();
+            CountingOutputStream counted = new CountingOutputStream(new CheckedOutputStream(new BufferedOutputStream(file), crc));
+            body.write(counted);
+            counted.flush();
+            byte[] trailer = String.format("%s%08x length=%d\n", TRAILER_PREFIX, crc.getValue(), counted.count)
+                    .getBytes(StandardCharsets.US_ASCII);
+            file.write(trailer);
+            file.getChannel().force(true);
+            bytes = counted.count + trailer.length;
+        }
+        rotate();
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory();
+        return bytes;
+    }
+
+    /**
+     * Shift the previous snapshots one generation back and link the current one in as generation 1.
+     */
+    private void rotate() throws IOException {
+        if (retained == 0 || !Files.exists(path)) {
+            return;
+        }
+        for (int generation = retained - 1; generation >= 1; generation--) {
+            Path older = previous(generation);
+            if (Files.exists(older)) {
+                Files.move(older, previous(generation + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Path latest = previous(1);
+        Files.deleteIfExists(latest);
+        try {
+            Files.createLink(latest, path);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(path, latest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Make the rename itself durable. Not every platform can open a directory, in which case the
+     * rename is left to the file system.
+     */
+    private void syncDirectory() {
+        Path directory = path.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            log.trace("Could not sync directory {}", directory, e);
+        }
+    }
+
+    /**
+     * Read the newest intact snapshot: the current file, or failing that each previous one in turn.
+     *
+     * @return the parsed snapshot, or null if there is none at all
+     * @throws IOException if snapshots exist but none of them is intact
+     */
+    public <T> T read(Reader<T> reader) throws IOException {
+        IOException failure = null;
+        for (int generation = 0; generation <= retained; generation++) {
+            Path candidate = generation == 0 ? path : previous(generation);
+            if (!Files.exists(candidate) || Files.size(candidate) == 0) {
+                continue;
+            }
+            try {
+                T value = readVerified(candidate, reader);
+                if (generation > 0) {
+                    log.warn("Recovered from previous snapshot {}", candidate);
+                }
+                return value;
+            } catch (IOException e) {
+                log.error("Snapshot {} is damaged, trying the previous one", candidate, e);
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return null;
+    }
+
+    private static <T> T readVerified(Path file, Reader<T> reader) throws IOException {
+        long fileSize = Files.size(file);
+        Matcher trailer = TRAILER.matcher(readTail(file, fileSize));
+        if (!trailer.find()) {
+            // Written before snapshots carried a trailer; only a clean parse vouches for it, and
+            // a file cut short inside its trailer must not pass for one just because the body parses
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                TrailerScanningInputStream scanned = new TrailerScanningInputStream(in);
+                T value = reader.read(scanned);
+                scanned.transferTo(OutputStream.nullOutputStream());
+                if (scanned.sawTrailer) {
+                    throw new IOException("Snapshot " + file + " has a damaged trailer");
+                }
+                return value;
+            }
+        }
+        long expectedCrc = Long.parseLong(trailer.group(1), 16);
+        long length = Long.parseLong(trailer.group(2));
+        if (length + trailer.group().length() != fileSize) {
+            throw new IOException("Snapshot " + file + " is " + fileSize + " bytes but its trailer describes " + length);
+        }
+        CRC32C crc = new CRC32C();
+        T value;
+        try (CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file)), crc)) {
+            BoundedInputStream body = new BoundedInputStream(checked, length);
+            value = reader.read(body);
+            body.transferTo(OutputStream.nullOutputStream());
+        }
+        if (crc.getValue() != expectedCrc) {
+            throw new IOException(String.format("Snapshot %s checksum mismatch: expected %08x, got %08x",
+                    file, expectedCrc, crc.getValue()));
+        }
+        return value;
+    }
+
+    private static String readTail(Path file, long fileSize) throws IOException {
+        int tailSize = (int) Math.min(fileSize, TRAILER_MAX_BYTES);
+        byte[] tail = new byte[tailSize];
+        try (RandomAccessFile in = new RandomAccessFile(file.toFile(), "r")) {
+            in.seek(fileSize - tailSize);
+            in.readFully(tail);
+        }
+        return new String(tail, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Counts bytes on their way to the file and ignores close, so body writers that close their
+     * stream cannot close the file before the trailer is written.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Watches for the start of a trailer, a line beginning with {@code #}, which JSON never
+     * contains, and ignores close so the rest of the file can still be scanned.
+     */
+    private static final class TrailerScanningInputStream extends InputStream {
+        private final InputStream in;
+        private boolean afterNewline;
+        boolean sawTrailer;
+
+        TrailerScanningInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                scan((byte) b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            for (int i = 0; i < read; i++) {
+                scan(b[off + i]);
+            }
+            return read;
+        }
+
+        private void scan(byte b) {
+            sawTrailer |= afterNewline && b == '#';
+            afterNewline = b == '\n';
+        }
+
+        @Override
+        public void close() {
+            // The file is closed by the caller once all of it has been scanned
+        }
+    }
+
+    /**
+     * Ends after the body so parsers never see the trailer, and ignores close so the rest of the
+     * body can still be checksummed.
+     */
+    private static final class BoundedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The file is closed by the caller once the whole body has been checksummed
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package org.fitznet.data;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.fitznet.util.Constants.DATABASE_FLUSH_DIRTY_THRESHOLD;
+import static org.fitznet.util.Constants.DATABASE_FLUSH_INTERVAL_MS;
+
+/**
+ * Voice join counts in an embedded H2 database, written in batches.
+ * <p>
+ * Counts are loaded into memory at startup and served from there. Increments are also added to a
+ * table of pending per-user deltas, which the background flusher turns into multi-row
+ * {@code MERGE} statements of up to {@value #ROWS_PER_STATEMENT} users each, all in one
+ * transaction. The merge adds each delta to the stored count instead of overwriting it, so
+ * several stores can write to one database without losing each other's increments; each only sees
+ * the others' joins from when it loaded its counts. An embedded {@code jdbc:h2:file:} database is
+ * locked by the first process that opens it, so sharing one across bot processes needs
+ * {@code ;AUTO_SERVER=TRUE} on the URL or an H2 server URL. If a flush fails for any reason its
+ * deltas go back into the pending table for the next attempt.
+ * </p>
+ */
+@Slf4j
+public class SqlVoiceJoinStore implements VoiceJoinStore {
+    static final int ROWS_PER_STATEMENT = 100;
+    private static final String TABLE = "voice_join_counts";
+
+    private final LongCounterMap counts = new LongCounterMap();
+    private final ReentrantReadWriteLock pendingLock = new ReentrantReadWriteLock();
+    private LongCounterMap pending = new LongCounterMap();
+
+    private final Connection connection;
+    private final int dirtyThreshold;
+    private final AtomicInteger dirtyCount = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private final ScheduledExecutorService flusher;
+    private PreparedStatement fullBatch;
+
+    public SqlVoiceJoinStore(String jdbcUrl) {
+        this(jdbcUrl, DATABASE_FLUSH_INTERVAL_MS, DATABASE_FLUSH_DIRTY_THRESHOLD);
+    }
+
+    /**
+     * @param jdbcUrl database to open, e.g. {@code jdbc:h2:file:./serverVoiceCount}
+     * @param flushIntervalMillis maximum time between flushes of pending increments; zero or less writes through on every increment
+     * @param dirtyThreshold number of pending increments that triggers an early flush
+     */
+    public SqlVoiceJoinStore(String jdbcUrl, long flushIntervalMillis, int dirtyThreshold) {
+        this.dirtyThreshold = Math.max(1, dirtyThreshold);
+        try {
+            this.connection = DriverManager.getConnection(jdbcUrl);
+            createTable();
+            loadData();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to open voice join database " + jdbcUrl, e);
+        }
+
+        if (flushIntervalMillis > 0) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "voice-join-sql-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    private void createTable() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + TABLE
+                    + " (user_id BIGINT PRIMARY KEY, join_count BIGINT NOT NULL)");
+        }
+    }
+
+    private void loadData() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT user_id, join_count FROM " + TABLE)) {
+            while (rows.next()) {
+                counts.put(rows.getLong(1), rows.getLong(2));
+            }
+        }
+        log.info("Loaded {} user voice join counts from database", counts.size());
+    }
+
+    /**
+     * @return a {@code MERGE} adding {@code rows} (user ID, delta) pairs to the stored counts
+     */
+    static String mergeSql(int rows) {
+        StringBuilder sql = new StringBuilder("MERGE INTO ").append(TABLE).append(" t USING (VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "" : ", ").append("(CAST(? AS BIGINT), CAST(? AS BIGINT))");
+        }
+        return sql.append(") AS s(user_id, delta) ON t.user_id = s.user_id")
+                .append(" WHEN MATCHED THEN UPDATE SET join_count = t.join_count + s.delta")
+                .append(" WHEN NOT MATCHED THEN INSERT (user_id, join_count) VALUES (s.user_id, s.delta)")
+                .toString();
+    }
+
+    @Override
+    public long getVoiceJoinCount(long userId) {
+        return counts.get(userId);
+    }
+
+    @Override
+    public long incrementVoiceJoinCount(long userId) {
+        return addToCount(userId, 1);
+    }
+
+    @Override
+    public long addToCount(long userId, long amount) {
+        long newCount = counts.addAndGet(userId, amount);
+        pendingLock.readLock().lock();
+        try {
+            pending.addAndGet(userId, amount);
+        } finally {
+            pendingLock.readLock().unlock();
+        }
+        int dirty = dirtyCount.incrementAndGet();
+        if (flusher == null || closed.get()) {
+            flush();
+        } else if (dirty >= dirtyThreshold && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // Closed concurrently, close() flushes whatever is still pending
+                flushRequested.set(false);
+            }
+        }
+        return newCount;
+    }
+
+    @Override
+    public void forEachCount(LongCounterMap.EntryConsumer consumer) {
+        counts.forEach(consumer);
+    }
+
+    @Override
+    public boolean userExists(long userId) {
+        return counts.containsKey(userId);
+    }
+
+    /**
+     * Write every pending delta in one transaction.
+     */
+    @Override
+    public synchronized void flush() {
+        dirtyCount.set(0);
+        flushRequested.set(false);
+        LongCounterMap drained;
+        pendingLock.writeLock().lock();
+        try {
+            if (pending.size() == 0) {
+                return;
+            }
+            drained = pending;
+            pending = new LongCounterMap();
+        } finally {
+            pendingLock.writeLock().unlock();
+        }
+
+        long start = System.nanoTime();
+        int users = drained.size();
+        long[] rows = new long[users * 2];
+        int[] filled = new int[1];
+        drained.forEach((userId, delta) -> {
+            rows[filled[0]++] = userId;
+            rows[filled[0]++] = delta;
+        });
+        try {
+            writeDeltas(rows, filled[0] / 2);
+            flushNanos.addAndGet(System.nanoTime() - start);
+            flushCount.incrementAndGet();
+            log.debug("Flushed voice join increments for {} users", users);
+        } catch (SQLException | RuntimeException e) {
+            log.warn("Failed to flush voice join increments for {} users, retrying on the next flush", users, e);
+            pendingLock.readLock().lock();
+            try {
+                drained.forEach(pending::addAndGet);
+            } finally {
+                pendingLock.readLock().unlock();
+            }
+        }
+    }
+
+    private void writeDeltas(long[] rows, int users) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            int written = 0;
+            while (users - written >= ROWS_PER_STATEMENT) {
+                if (fullBatch == null) {
+                    fullBatch = connection.prepareStatement(mergeSql(ROWS_PER_STATEMENT));
+                }
+                bind(fullBatch, rows, written, ROWS_PER_STATEMENT);
+                fullBatch.executeUpdate();
+                written += ROWS_PER_STATEMENT;
+            }
+            if (written < users) {
+                try (PreparedStatement tail = connection.prepareStatement(mergeSql(users - written))) {
+                    bind(tail, rows, written, users - written);
+                    tail.executeUpdate();
+                }
+            }
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static void bind(PreparedStatement statement, long[] rows, int firstUser, int users) throws SQLException {
+        for (int i = 0; i < users * 2; i++) {
+            statement.setLong(i + 1, rows[firstUser * 2 + i]);
+        }
+    }
+
+    @Override
+    public FlushStats getFlushStats() {
+        return new FlushStats(flushCount.get(), flushNanos.get(), 0);
+    }
+
+    /**
+     * Stop the background flusher, write any pending increments and close the connection.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("Failed to close voice join database", e);
+        }
+    }
+}
@@ -1,66 +1,280 @@
 package org.fitznet.data;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.type.TypeReference;
 import lombok.extern.slf4j.Slf4j;
 import org.fitznet.util.JsonUtils;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.file.Path;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-import static org.fitznet.util.Constants.TOTALLY_LEGIT_DATABASE_FILENAME;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Voice join counts keyed by Discord user ID, persisted to a JSON snapshot file and optionally a journal.
+ * <p>
+ * By default the database runs in write-behind mode: increments only mark the store dirty and a
+ * background flusher coalesces them into a single file write per flush interval, or sooner once
+ * the number of pending increments reaches the dirty threshold. Pending changes are flushed on
+ * {@link #close()} and by a JVM shutdown hook. A flush interval of zero or less selects the old
+ * write-through behaviour where every increment rewrites the file.
+ * </p>
+ * <p>
+ * With the journal enabled a flush only appends the pending increments to a {@link VoiceJoinJournal}
+ * instead of rewriting every user's count. The journal is folded into a new snapshot once it grows
+ * past the compaction size and on close, and is replayed on top of the snapshot at startup.
+ * </p>
+ * <p>
+ * Snapshots are taken from a copy-on-write {@link LongCounterMap.Snapshot}, so increments carry on
+ * while one is written, and go through a {@link SnapshotFile}: a checksummed temporary file renamed
+ * over the old one, with the previous few kept alongside. A damaged snapshot is never loaded as an
+ * empty database; the newest intact previous one is loaded instead and the journal replayed on top.
+ * </p>
+ */
 @Slf4j
-public class VoiceJoinDatabase {
-    private final Map<Long, Long> voiceJoinCounts = new ConcurrentHashMap<>();
+public class VoiceJoinDatabase implements VoiceJoinStore {
+    private final LongCounterMap voiceJoinCounts = new LongCounterMap();
     private final String databaseFile;
+    private final SnapshotFile snapshotFile;
+    private final long flushIntervalMillis;
+    private final int dirtyThreshold;
+    private final long journalCompactionBytes;
+    private final VoiceJoinJournal journal;
+
+    private final AtomicInteger dirtyCount = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private final AtomicLong flushedBytes = new AtomicLong();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+    private final Thread shutdownHook;
 
     public VoiceJoinDatabase() {
-        this.databaseFile = TOTALLY_LEGIT_DATABASE_FILENAME;
+        this(PersistenceSettings.defaults());
+    }
+
+    /**
+     * @param databaseFile path of the JSON file backing this database
+     * @param flushIntervalMillis maximum time between flushes of pending increments; zero or less writes through on every increment
+     * @param dirtyThreshold number of pending increments that triggers an early flush
+     */
+    public VoiceJoinDatabase(String databaseFile, long flushIntervalMillis, int dirtyThreshold) {
+        this(PersistenceSettings.builder()
+                .databaseFile(databaseFile)
+                .flushIntervalMillis(flushIntervalMillis)
+                .dirtyThreshold(dirtyThreshold)
+                .build());
+    }
+
+    public VoiceJoinDatabase(PersistenceSettings settings) {
+        this.databaseFile = settings.getDatabaseFile();
+        this.flushIntervalMillis = settings.getFlushIntervalMillis();
+        this.dirtyThreshold = Math.max(1, settings.getDirtyThreshold());
+        this.journalCompactionBytes = settings.getJournalCompactionBytes();
+        this.snapshotFile = new SnapshotFile(Path.of(databaseFile), settings.getSnapshotsRetained());
         loadData();
+        this.journal = settings.isJournalEnabled() ? openJournal(settings) : null;
+
+        if (isWriteBehind()) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "voice-join-db-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushIfDirty, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+
+        this.shutdownHook = new Thread(this::flushIfDirty, "voice-join-db-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
     }
 
     /**
-     * Load voice join counts from JSON file
+     * Load voice join counts from the newest intact snapshot
      */
     private void loadData() {
         try {
-            File file = new File(databaseFile);
-            if (file.exists() && file.length() > 0) {
-                Map<Long, Long> loadedData = JsonUtils.MAPPER.readValue(file, new TypeReference<>() {
-                });
-                voiceJoinCounts.putAll(loadedData);
+            Map<Long, Long> loadedData = snapshotFile.read(in -> JsonUtils.MAPPER.readValue(in, new TypeReference<Map<Long, Long>>() {
+            }));
+            if (loadedData != null) {
+                loadedData.forEach(voiceJoinCounts::put);
                 log.info("Loaded {} user voice join counts from database", loadedData.size());
             } else {
-                boolean isNewFileCreated = file.createNewFile();
+                boolean isNewFileCreated = new File(databaseFile).createNewFile();
                 log.info("Created new voice join database file: {}", isNewFileCreated);
             }
         } catch (IOException e) {
-            log.error("Failed to load voice join data from file. Starting with empty database.", e);
+            log.error("No intact voice join snapshot could be loaded. Starting with empty database.", e);
+        }
+    }
+
+    /**
+     * Open the journal and replay it on top of the snapshot that was just loaded.
+     * Falls back to snapshot-only persistence if the journal cannot be opened.
+     */
+    private VoiceJoinJournal openJournal(PersistenceSettings settings) {
+        try {
+            return new VoiceJoinJournal(Path.of(settings.getJournalFile()), settings.isJournalFsync(),
+                    voiceJoinCounts::putMax);
+        } catch (IOException e) {
+            log.error("Failed to open voice join journal {}. Falling back to snapshot writes.", settings.getJournalFile(), e);
+            return null;
         }
     }
 
     /**
      * Save voice join counts to JSON file
      */
-    public void saveData() {
+    public synchronized void saveData() {
+        writeSnapshot(voiceJoinCounts.snapshot());
+    }
+
+    /**
+     * Write a snapshot to the database file. Only one snapshot is written at a time, but increments
+     * are not held off: they go to the live map while the snapshot is serialised.
+     *
+     * @return true once the snapshot is durable and has replaced the previous one
+     */
+    private synchronized boolean writeSnapshot(LongCounterMap.Snapshot snapshot) {
+        long start = System.nanoTime();
         try {
-            JsonUtils.MAPPER.writeValue(new File(databaseFile), voiceJoinCounts);
+            long bytes = snapshotFile.write(out -> {
+                try (JsonGenerator generator = JsonUtils.MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+                    writeCounts(generator, snapshot);
+                }
+            });
+            recordFlush(start, bytes);
             log.debug("Voice join counts saved to database successfully");
+            return true;
         } catch (IOException e) {
             log.warn("Failed to save voice join counts to file", e);
+            return false;
         }
     }
 
+    private void recordFlush(long startNanos, long bytes) {
+        flushNanos.addAndGet(System.nanoTime() - startNanos);
+        flushedBytes.addAndGet(bytes);
+        flushCount.incrementAndGet();
+    }
+
+    /**
+     * Stream every count as a JSON object of user ID to count, the same shape the snapshot is loaded from.
+     */
+    private static void writeCounts(JsonGenerator generator, LongCounterMap.Snapshot snapshot) throws IOException {
+        generator.writeStartObject();
+        IOException[] failure = new IOException[1];
+        snapshot.forEach((userId, count) -> {
+            if (failure[0] != null) {
+                return;
+            }
+            try {
+                generator.writeFieldName(Long.toString(userId));
+                generator.writeNumber(count);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Write the database to disk if any increments are pending since the last flush. If nothing
+     * could be written the increments stay pending, so the next flush or close tries again.
+     */
+    public void flushIfDirty() {
+        int pending = dirtyCount.getAndSet(0);
+        flushRequested.set(false);
+        if (pending <= 0) {
+            return;
+        }
+        boolean flushed = journal == null ? writeSnapshot(voiceJoinCounts.snapshot()) : commitJournal();
+        if (!flushed) {
+            dirtyCount.addAndGet(pending);
+            return;
+        }
+        log.debug("Flushed {} pending voice join increments", pending);
+    }
+
+    /**
+     * Group-commit the journal, compacting it into a fresh snapshot once it is large enough.
+     * If the journal cannot be written the snapshot is saved instead so no increments are lost.
+     *
+     * @return false if neither the journal nor a snapshot could be written
+     */
+    private boolean commitJournal() {
+        try {
+            long start = System.nanoTime();
+            recordFlush(start, journal.commit());
+        } catch (IOException e) {
+            log.warn("Failed to commit voice join journal, saving a full snapshot instead", e);
+            return compact();
+        }
+        if (journal.size() >= journalCompactionBytes) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Fold the journal into a new snapshot and drop the records it covers. Appends are held off
+     * only while the snapshot is captured and the journal marked; every record before the mark is
+     * covered by the snapshot, and records appended while it is written are kept. Compactions run
+     * one at a time, so a mark is never applied to a journal another compaction has already shortened.
+     *
+     * @return false if the snapshot could not be written
+     */
+    public synchronized boolean compact() {
+        if (journal == null) {
+            return writeSnapshot(voiceJoinCounts.snapshot());
+        }
+        LongCounterMap.Snapshot snapshot;
+        long mark;
+        synchronized (journal) {
+            snapshot = voiceJoinCounts.snapshot();
+            try {
+                mark = journal.mark();
+            } catch (IOException e) {
+                log.warn("Failed to commit voice join journal before compaction, keeping all of it", e);
+                mark = 0;
+            }
+        }
+        if (!writeSnapshot(snapshot)) {
+            return false;
+        }
+        if (mark == 0) {
+            return true;
+        }
+        try {
+            journal.discardBefore(mark);
+            log.debug("Compacted voice join journal into snapshot");
+        } catch (IOException e) {
+            log.warn("Failed to discard compacted voice join journal records", e);
+        }
+        return true;
+    }
+
     /**
      * Get the current voice join count for a user
      * @param userId Discord user ID
      * @return Current join count, or 0 if user not found
      */
+    @Override
     public long getVoiceJoinCount(long userId) {
-        return voiceJoinCounts.getOrDefault(userId, 0L);
+        return voiceJoinCounts.get(userId);
     }
 
     /**
@@ -68,19 +282,55 @@ public class VoiceJoinDatabase {
      * @param userId Discord user ID
      * @return New join count after incrementing
      */
+    @Override
     public long incrementVoiceJoinCount(long userId) {
-        long newCount = voiceJoinCounts.compute(userId, (key, oldCount) ->
-            oldCount == null ? 1L : oldCount + 1L);
-        saveData(); // Auto-save after each increment
+        return addToCount(userId, 1);
+    }
+
+    @Override
+    public long addToCount(long userId, long amount) {
+        long newCount = voiceJoinCounts.addAndGet(userId, amount);
+        appendToJournal(userId, newCount);
+        markDirty();
         return newCount;
     }
 
+    private void appendToJournal(long userId, long newCount) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.append(userId, newCount);
+        } catch (IOException e) {
+            log.warn("Failed to append to voice join journal, next flush will be saved as a snapshot", e);
+        }
+    }
+
     /**
-     * Get all voice join counts (read-only copy)
-     * @return Map of user IDs to join counts
+     * Record a pending change. In write-through mode the file is rewritten immediately, otherwise an early
+     * flush is requested once the dirty threshold is reached.
      */
-    public Map<Long, Long> getAllCounts() {
-        return new HashMap<>(voiceJoinCounts);
+    private void markDirty() {
+        int pending = dirtyCount.incrementAndGet();
+        if (!isWriteBehind() || closed.get()) {
+            flushIfDirty();
+        } else if (pending >= dirtyThreshold && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushIfDirty);
+            } catch (RejectedExecutionException e) {
+                // Closed concurrently, close() flushes whatever is still pending
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    private boolean isWriteBehind() {
+        return flushIntervalMillis > 0;
+    }
+
+    @Override
+    public void forEachCount(LongCounterMap.EntryConsumer consumer) {
+        voiceJoinCounts.forEach(consumer);
     }
 
     /**
@@ -88,7 +338,79 @@ public class VoiceJoinDatabase {
      * @param userId Discord user ID
      * @return true if user has at least one voice join recorded
      */
+    @Override
     public boolean userExists(long userId) {
         return voiceJoinCounts.containsKey(userId);
     }
+
+    @Override
+    public void flush() {
+        flushIfDirty();
+    }
+
+    /**
+     * @return number of times the database file has been written since this instance was created
+     */
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    @Override
+    public FlushStats getFlushStats() {
+        return new FlushStats(flushCount.get(), flushNanos.get(), flushedBytes.get());
+    }
+
+    /**
+     * Stop the background flusher and write any pending increments to disk.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flushIfDirty();
+        closeJournal();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // JVM is already shutting down, the hook is running or about to run
+        }
+    }
+
+    /**
+     * Stop the background flusher and release the journal without flushing or compacting, leaving
+     * the files as a crash right after the last commit would. For tests of recovery.
+     */
+    void abandon() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        compact();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.warn("Failed to close voice join journal", e);
+        }
+    }
 }
@@ -0,0 +1,88 @@
+package org.fitznet.data;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+import org.fitznet.util.JsonUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Converts voice join counts between the JSON snapshot format and the memory-mapped binary format
+ * used by {@link MappedVoiceJoinStore}. Both directions stream, so neither side is held in memory.
+ * <pre>
+ * java -cp fitzbot.jar org.fitznet.data.VoiceJoinFileConverter import serverVoiceCount.json serverVoiceCount.bin
+ * java -cp fitzbot.jar org.fitznet.data.VoiceJoinFileConverter export serverVoiceCount.bin serverVoiceCount.json
+ * </pre>
+ */
+@Slf4j
+public class VoiceJoinFileConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: VoiceJoinFileConverter import <json> <bin> | export <bin> <json>");
+            System.exit(1);
+        }
+        switch (args[0]) {
+            case "import" -> log.info("Imported {} users", importJson(Path.of(args[1]), Path.of(args[2])));
+            case "export" -> log.info("Exported {} users", exportJson(Path.of(args[1]), Path.of(args[2])));
+            default -> {
+                System.err.println("Unknown command: " + args[0]);
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Copy every count from a JSON snapshot into a binary counter file, overwriting counts already there.
+     *
+     * @return number of users imported
+     */
+    public static int importJson(Path jsonFile, Path binaryFile) throws IOException {
+        int imported = 0;
+        try (JsonParser parser = JsonUtils.MAPPER.getFactory().createParser(jsonFile.toFile());
+             MappedVoiceJoinStore store = new MappedVoiceJoinStore(binaryFile)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object of user IDs to counts in " + jsonFile);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                long userId = Long.parseLong(parser.getCurrentName());
+                parser.nextToken();
+                store.put(userId, parser.getLongValue());
+                imported++;
+            }
+            store.flush();
+        }
+        return imported;
+    }
+
+    /**
+     * Write every count in a binary counter file out as a JSON snapshot.
+     *
+     * @return number of users exported
+     */
+    public static int exportJson(Path binaryFile, Path jsonFile) throws IOException {
+        int[] exported = new int[1];
+        try (MappedVoiceJoinStore store = new MappedVoiceJoinStore(binaryFile);
+             JsonGenerator generator = JsonUtils.MAPPER.getFactory().createGenerator(jsonFile.toFile(), JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            store.forEach((userId, count) -> {
+                try {
+                    generator.writeFieldName(Long.toString(userId));
+                    generator.writeNumber(count);
+                    exported[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndObject();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return exported[0];
+    }
+}
@@ -0,0 +1,550 @@
+package org.fitznet.data;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import lombok.extern.slf4j.Slf4j;
+import org.fitznet.util.JsonUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.fitznet.util.Constants.DATABASE_SNAPSHOTS_RETAINED;
+import static org.fitznet.util.Constants.HISTORY_DAILY_BUCKETS;
+import static org.fitznet.util.Constants.HISTORY_FLUSH_INTERVAL_MS;
+import static org.fitznet.util.Constants.HISTORY_HOURLY_BUCKETS;
+
+/**
+ * Per-guild voice join counters with time-bucketed history.
+ * <p>
+ * Joins are counted per (guild, user) and per (guild, channel). Each key keeps a running total
+ * plus two ring buffers of primitive counters: one bucket per hour for the last
+ * {@value org.fitznet.util.Constants#HISTORY_HOURLY_BUCKETS} hours and one per UTC day for the
+ * last {@value org.fitznet.util.Constants#HISTORY_DAILY_BUCKETS} days. A window query such as
+ * "joins for user X in guild G over the last 7 days" sums at most that many buckets and never
+ * looks at raw events. Keys with no joins inside the daily window are pruned hourly: their rings
+ * are dropped and only their totals are kept, in one {@link LongCounterMap} per guild, so the rings'
+ * memory is bounded by the number of keys active within the retention window while totals are
+ * never lost. A pruned key that sees a join again resumes from its kept totals.
+ * </p>
+ * <p>
+ * Each (guild, user) key also totals the time the user has spent in voice in that guild, added
+ * by {@link VoiceSessionTracker} as sessions end, and kept like the join total.
+ * </p>
+ * <p>
+ * Pruning retires a series inside {@link ConcurrentHashMap#computeIfPresent}, which moves its totals
+ * aside before anyone can create the key again; an update that finds it already retired retries on
+ * the new series, so no join or voice time is lost to a concurrent prune.
+ * </p>
+ * <p>
+ * A persisted history is saved write-behind: changes mark it dirty and a background task writes
+ * a snapshot once per flush interval if anything changed, so a crash loses at most one interval
+ * of buckets and voice time. It is also saved on close.
+ * </p>
+ */
+@Slf4j
+public class VoiceJoinHistory implements AutoCloseable {
+    private static final long SECONDS_PER_HOUR = 3_600L;
+    private static final long SECONDS_PER_DAY = 86_400L;
+
+    private final Map<Key, BucketSeries> series = new ConcurrentHashMap<>();
+    private final SnapshotFile snapshotFile;
+    private final ScheduledExecutorService maintenance;
+    private final AtomicLong pendingChanges = new AtomicLong();
+    private final IdleTotals idleUsers = new IdleTotals();
+    private final IdleTotals idleChannels = new IdleTotals();
+
+    /**
+     * Create an in-memory history that is not persisted.
+     */
+    public VoiceJoinHistory() {
+        this(null);
+    }
+
+    /**
+     * @param historyFile JSON file the history is loaded from and saved to, or null to keep it in memory only
+     */
+    public VoiceJoinHistory(File historyFile) {
+        this(historyFile, HISTORY_FLUSH_INTERVAL_MS);
+    }
+
+    /**
+     * @param historyFile JSON file the history is loaded from and saved to, or null to keep it in memory only
+     * @param flushIntervalMillis how often pending changes are saved; zero or less saves only on close
+     */
+    public VoiceJoinHistory(File historyFile, long flushIntervalMillis) {
+        this.snapshotFile = historyFile == null ? null : new SnapshotFile(historyFile.toPath(), DATABASE_SNAPSHOTS_RETAINED);
+        loadData();
+        prune(Instant.now());
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "voice-join-history");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(() -> prune(Instant.now()), 1, 1, TimeUnit.HOURS);
+        if (snapshotFile != null && flushIntervalMillis > 0) {
+            maintenance.scheduleWithFixedDelay(this::flushIfDirty, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Which kind of ID a key's second component is.
+     */
+    public enum Scope { USER, CHANNEL }
+
+    private record Key(Scope scope, long guildId, long id) {
+    }
+
+    /**
+     * Count a join for both the user and the channel within a guild.
+     *
+     * @param guildId guild the join happened in
+     * @param channelId voice channel that was joined
+     * @param userId user who joined
+     * @param at time of the join
+     * @return the user's total joins in the guild, including this one
+     */
+    public long recordJoin(long guildId, long channelId, long userId, Instant at) {
+        long epochSecond = at.getEpochSecond();
+        record(new Key(Scope.CHANNEL, guildId, channelId), epochSecond);
+        long joins = record(new Key(Scope.USER, guildId, userId), epochSecond);
+        // Marked after the change so a flush that misses it still sees it pending
+        pendingChanges.incrementAndGet();
+        return joins;
+    }
+
+    /**
+     * Add time spent in voice to the user's total for the guild.
+     *
+     * @return the user's voice time in the guild, in milliseconds, including this session
+     */
+    public long recordVoiceTime(long guildId, long userId, long millis) {
+        Key key = new Key(Scope.USER, guildId, userId);
+        long total = seriesFor(key).addVoiceTime(millis);
+        while (total < 0) {
+            // Retired by a concurrent prune; the next lookup resumes from its kept totals
+            total = seriesFor(key).addVoiceTime(millis);
+        }
+        pendingChanges.incrementAndGet();
+        return total;
+    }
+
+    private long record(Key key, long epochSecond) {
+        long total = seriesFor(key).record(epochSecond);
+        while (total < 0) {
+            // Retired by a concurrent prune; the next lookup resumes from its kept totals
+            total = seriesFor(key).record(epochSecond);
+        }
+        return total;
+    }
+
+    /**
+     * @return the key's live series, created from its kept totals if it was pruned or is new
+     */
+    private BucketSeries seriesFor(Key key) {
+        BucketSeries bucketSeries = series.get(key);
+        if (bucketSeries != null) {
+            return bucketSeries;
+        }
+        return series.computeIfAbsent(key, absent -> {
+            IdleTotals idle = idleTotals(absent.scope());
+            return BucketSeries.resume(idle.takeJoins(absent.guildId(), absent.id()),
+                    idle.takeVoiceMillis(absent.guildId(), absent.id()));
+        });
+    }
+
+    private IdleTotals idleTotals(Scope scope) {
+        return scope == Scope.USER ? idleUsers : idleChannels;
+    }
+
+    /**
+     * @return milliseconds the user has spent in voice in the guild
+     */
+    public long getUserVoiceMillis(long guildId, long userId) {
+        BucketSeries bucketSeries = series.get(new Key(Scope.USER, guildId, userId));
+        return bucketSeries == null ? idleUsers.voiceMillis(guildId, userId) : bucketSeries.voiceMillis();
+    }
+
+    /**
+     * Receives a (guild, user) total.
+     */
+    @FunctionalInterface
+    public interface UserTotalConsumer {
+        void accept(long guildId, long userId, long total);
+    }
+
+    /**
+     * Visit the total of every (guild, user) key, pruned ones included.
+     */
+    public void forEachUserTotal(UserTotalConsumer consumer) {
+        series.forEach((key, bucketSeries) -> {
+            if (key.scope() == Scope.USER) {
+                consumer.accept(key.guildId(), key.id(), bucketSeries.total());
+            }
+        });
+        idleUsers.forEachJoins(consumer);
+    }
+
+    /**
+     * @return every join recorded for the user in the guild
+     */
+    public long getUserTotal(long guildId, long userId) {
+        return total(new Key(Scope.USER, guildId, userId));
+    }
+
+    /**
+     * @return every join recorded for the channel in the guild
+     */
+    public long getChannelTotal(long guildId, long channelId) {
+        return total(new Key(Scope.CHANNEL, guildId, channelId));
+    }
+
+    /**
+     * @param days number of UTC days to include, counting today; at most {@value org.fitznet.util.Constants#HISTORY_DAILY_BUCKETS}
+     * @return joins for the user in the guild over the last {@code days} days
+     */
+    public long getUserJoinsLastDays(long guildId, long userId, int days, Instant now) {
+        return lastDays(new Key(Scope.USER, guildId, userId), days, now);
+    }
+
+    /**
+     * @param days number of UTC days to include, counting today; at most {@value org.fitznet.util.Constants#HISTORY_DAILY_BUCKETS}
+     * @return joins to the channel over the last {@code days} days
+     */
+    public long getChannelJoinsLastDays(long guildId, long channelId, int days, Instant now) {
+        return lastDays(new Key(Scope.CHANNEL, guildId, channelId), days, now);
+    }
+
+    /**
+     * @param hours number of hours to include, counting the current one; at most {@value org.fitznet.util.Constants#HISTORY_HOURLY_BUCKETS}
+     * @return joins for the user in the guild over the last {@code hours} hours
+     */
+    public long getUserJoinsLastHours(long guildId, long userId, int hours, Instant now) {
+        BucketSeries bucketSeries = series.get(new Key(Scope.USER, guildId, userId));
+        return bucketSeries == null ? 0 : bucketSeries.sumHours(now.getEpochSecond() / SECONDS_PER_HOUR, hours);
+    }
+
+    private long total(Key key) {
+        BucketSeries bucketSeries = series.get(key);
+        return bucketSeries == null ? idleTotals(key.scope()).joins(key.guildId(), key.id()) : bucketSeries.total();
+    }
+
+    private long lastDays(Key key, int days, Instant now) {
+        BucketSeries bucketSeries = series.get(key);
+        return bucketSeries == null ? 0 : bucketSeries.sumDays(now.getEpochSecond() / SECONDS_PER_DAY, days);
+    }
+
+    /**
+     * Drop the rings of every key with no joins inside the daily window, keeping its totals.
+     *
+     * @return number of keys whose rings were dropped
+     */
+    public int prune(Instant now) {
+        long oldestKeptDay = now.getEpochSecond() / SECONDS_PER_DAY - HISTORY_DAILY_BUCKETS + 1;
+        int[] removed = new int[1];
+        for (Key key : series.keySet()) {
+            series.computeIfPresent(key, (idleKey, bucketSeries) -> {
+                if (!bucketSeries.retireIfIdle(oldestKeptDay)) {
+                    return bucketSeries;
+                }
+                idleTotals(idleKey.scope()).put(idleKey.guildId(), idleKey.id(), bucketSeries.total(), bucketSeries.voiceMillis());
+                removed[0]++;
+                return null;
+            });
+        }
+        if (removed[0] > 0) {
+            pendingChanges.incrementAndGet();
+            log.debug("Pruned {} idle voice join history keys", removed[0]);
+        }
+        return removed[0];
+    }
+
+    /**
+     * @return number of (guild, user) and (guild, channel) keys with live rings, excluding pruned ones
+     */
+    public int size() {
+        return series.size();
+    }
+
+    private void loadData() {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            List<SeriesSnapshot> snapshots = snapshotFile.read(in -> JsonUtils.MAPPER.readValue(in, new TypeReference<List<SeriesSnapshot>>() {
+            }));
+            if (snapshots == null) {
+                return;
+            }
+            for (SeriesSnapshot snapshot : snapshots) {
+                if (snapshot.daily() == null || snapshot.daily().length == 0) {
+                    idleTotals(snapshot.scope()).put(snapshot.guildId(), snapshot.id(), snapshot.total(), snapshot.voiceMillis());
+                } else {
+                    series.put(new Key(snapshot.scope(), snapshot.guildId(), snapshot.id()), BucketSeries.restore(snapshot));
+                }
+            }
+            log.info("Loaded voice join history for {} keys", snapshots.size());
+        } catch (IOException e) {
+            log.error("Failed to load voice join history. Starting with empty history.", e);
+        }
+    }
+
+    /**
+     * Save the history to its JSON file, if it has one, replacing the file only once the new one is complete.
+     */
+    public void saveData() {
+        pendingChanges.set(0);
+        if (!writeSnapshot()) {
+            pendingChanges.incrementAndGet();
+        }
+    }
+
+    /**
+     * Save the history if anything changed since it was last saved.
+     */
+    public void flushIfDirty() {
+        long pending = pendingChanges.getAndSet(0);
+        if (pending > 0 && !writeSnapshot()) {
+            // Try again on the next flush
+            pendingChanges.addAndGet(pending);
+        }
+    }
+
+    private synchronized boolean writeSnapshot() {
+        if (snapshotFile == null) {
+            return true;
+        }
+        List<SeriesSnapshot> snapshots = new ArrayList<>(series.size());
+        series.forEach((key, bucketSeries) -> snapshots.add(bucketSeries.snapshot(key)));
+        idleUsers.forEach((guildId, userId, total, voiceMillis) -> snapshots.add(SeriesSnapshot.idle(Scope.USER, guildId, userId, total, voiceMillis)));
+        idleChannels.forEach((guildId, channelId, total, voiceMillis) -> snapshots.add(SeriesSnapshot.idle(Scope.CHANNEL, guildId, channelId, total, voiceMillis)));
+        try {
+            snapshotFile.write(out -> JsonUtils.MAPPER.writeValue(out, snapshots));
+            log.debug("Voice join history saved for {} keys", snapshots.size());
+            return true;
+        } catch (IOException e) {
+            log.warn("Failed to save voice join history", e);
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        maintenance.shutdownNow();
+        try {
+            maintenance.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        prune(Instant.now());
+        saveData();
+    }
+
+    /**
+     * Serialised form of one key's counters. A pruned key has empty rings.
+     */
+    public record SeriesSnapshot(Scope scope, long guildId, long id, long total,
+                          long lastHour, int[] hourly, long lastDay, int[] daily, long voiceMillis) {
+        static SeriesSnapshot idle(Scope scope, long guildId, long id, long total, long voiceMillis) {
+            return new SeriesSnapshot(scope, guildId, id, total, Long.MIN_VALUE, new int[0], Long.MIN_VALUE, new int[0], voiceMillis);
+        }
+    }
+
+    /**
+     * Receives the kept totals of a pruned key.
+     */
+    @FunctionalInterface
+    private interface IdleTotalsConsumer {
+        void accept(long guildId, long id, long total, long voiceMillis);
+    }
+
+    /**
+     * Totals of pruned keys of one scope, as primitive maps per guild. Only keys without a live
+     * series are here: a key moves in when its series is pruned and out when it is created again,
+     * both inside the series map's per-key lock.
+     */
+    private static final class IdleTotals {
+        private final Map<Long, LongCounterMap> joins = new ConcurrentHashMap<>();
+        private final Map<Long, LongCounterMap> voiceMillis = new ConcurrentHashMap<>();
+
+        void put(long guildId, long id, long total, long millis) {
+            if (total > 0) {
+                joins.computeIfAbsent(guildId, guild -> new LongCounterMap()).put(id, total);
+            }
+            if (millis > 0) {
+                voiceMillis.computeIfAbsent(guildId, guild -> new LongCounterMap()).put(id, millis);
+            }
+        }
+
+        long joins(long guildId, long id) {
+            LongCounterMap counts = joins.get(guildId);
+            return counts == null ? 0 : counts.get(id);
+        }
+
+        long voiceMillis(long guildId, long id) {
+            LongCounterMap millis = voiceMillis.get(guildId);
+            return millis == null ? 0 : millis.get(id);
+        }
+
+        long takeJoins(long guildId, long id) {
+            LongCounterMap counts = joins.get(guildId);
+            return counts == null ? 0 : counts.remove(id);
+        }
+
+        long takeVoiceMillis(long guildId, long id) {
+            LongCounterMap millis = voiceMillis.get(guildId);
+            return millis == null ? 0 : millis.remove(id);
+        }
+
+        void forEachJoins(UserTotalConsumer consumer) {
+            joins.forEach((guildId, counts) -> counts.forEach((id, total) -> consumer.accept(guildId, id, total)));
+        }
+
+        /**
+         * Visit every key with a kept join total or voice time.
+         */
+        void forEach(IdleTotalsConsumer consumer) {
+            joins.forEach((guildId, counts) -> counts.forEach((id, total) -> consumer.accept(guildId, id, total, voiceMillis(guildId, id))));
+            voiceMillis.forEach((guildId, millis) -> millis.forEach((id, total) -> {
+                if (joins(guildId, id) == 0) {
+                    consumer.accept(guildId, id, 0, total);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Running total plus hourly and daily ring buffers for one key. Each ring remembers the most
+     * recent unit it was written in; advancing to a later unit clears the buckets skipped over.
+     */
+    private static final class BucketSeries {
+        private final int[] hourly = new int[HISTORY_HOURLY_BUCKETS];
+        private final int[] daily = new int[HISTORY_DAILY_BUCKETS];
+        private long lastHour = Long.MIN_VALUE;
+        private long lastDay = Long.MIN_VALUE;
+        private long total;
+        private long voiceMillis;
+        /** Pruned: its totals have moved to {@link IdleTotals} and it takes no more updates. */
+        private boolean retired;
+
+        /**
+         * @return a series carrying a pruned key's totals forward, with empty rings
+         */
+        static BucketSeries resume(long total, long voiceMillis) {
+            BucketSeries resumed = new BucketSeries();
+            resumed.total = total;
+            resumed.voiceMillis = voiceMillis;
+            return resumed;
+        }
+
+        /**
+         * @return the new total, or -1 if the series has been retired and the caller must look it up again
+         */
+        synchronized long record(long epochSecond) {
+            if (retired) {
+                return -1;
+            }
+            lastHour = add(hourly, lastHour, epochSecond / SECONDS_PER_HOUR);
+            lastDay = add(daily, lastDay, epochSecond / SECONDS_PER_DAY);
+            return ++total;
+        }
+
+        /**
+         * Count one event in the unit's bucket, rolling the ring forward if the unit is new.
+         * Events older than the ring are only reflected in the total.
+         *
+         * @return the ring's most recent unit after the update
+         */
+        private static long add(int[] ring, long last, long unit) {
+            int length = ring.length;
+            if (last == Long.MIN_VALUE || unit - last >= length) {
+                Arrays.fill(ring, 0);
+                last = unit;
+            } else if (unit > last) {
+                for (long cleared = last + 1; cleared <= unit; cleared++) {
+                    ring[(int) Math.floorMod(cleared, (long) length)] = 0;
+                }
+                last = unit;
+            } else if (last - unit >= length) {
+                return last;
+            }
+            ring[(int) Math.floorMod(unit, (long) length)]++;
+            return last;
+        }
+
+        private static long sum(int[] ring, long last, long currentUnit, int units) {
+            int length = ring.length;
+            long sum = 0;
+            for (long unit = currentUnit - Math.min(units, length) + 1; unit <= currentUnit; unit++) {
+                if (unit <= last && last - unit < length) {
+                    sum += ring[(int) Math.floorMod(unit, (long) length)];
+                }
+            }
+            return sum;
+        }
+
+        synchronized long sumHours(long currentHour, int hours) {
+            return sum(hourly, lastHour, currentHour, hours);
+        }
+
+        synchronized long sumDays(long currentDay, int days) {
+            return sum(daily, lastDay, currentDay, days);
+        }
+
+        synchronized long total() {
+            return total;
+        }
+
+        /**
+         * @return the new voice time, or -1 if the series has been retired
+         */
+        synchronized long addVoiceTime(long millis) {
+            if (retired) {
+                return -1;
+            }
+            voiceMillis += millis;
+            return voiceMillis;
+        }
+
+        synchronized long voiceMillis() {
+            return voiceMillis;
+        }
+
+        /**
+         * Retire the series if it has no joins on or after the given day.
+         *
+         * @return true if it is now retired
+         */
+        synchronized boolean retireIfIdle(long oldestKeptDay) {
+            if (lastDay >= oldestKeptDay) {
+                return false;
+            }
+            retired = true;
+            return true;
+        }
+
+        synchronized SeriesSnapshot snapshot(Key key) {
+            return new SeriesSnapshot(key.scope(), key.guildId(), key.id(), total,
+                    lastHour, hourly.clone(), lastDay, daily.clone(), voiceMillis);
+        }
+
+        static BucketSeries restore(SeriesSnapshot snapshot) {
+            BucketSeries restored = new BucketSeries();
+            restored.total = snapshot.total();
+            restored.lastHour = snapshot.lastHour();
+            restored.lastDay = snapshot.lastDay();
+            restored.voiceMillis = snapshot.voiceMillis();
+            System.arraycopy(snapshot.hourly(), 0, restored.hourly, 0, Math.min(snapshot.hourly().length, HISTORY_HOURLY_BUCKETS));
+            System.arraycopy(snapshot.daily(), 0, restored.daily, 0, Math.min(snapshot.daily().length, HISTORY_DAILY_BUCKETS));
+            return restored;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package org.fitznet.data;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import static org.fitznet.util.Constants.DATABASE_JOURNAL_BUFFER_BYTES;
+
+/**
+ * Append-only journal of voice join counts.
+ * <p>
+ * Every increment appends a fixed-width record holding the user ID, the user's count after the
+ * increment and a CRC32 of both. Records are staged in a direct buffer and written to the
+ * {@link FileChannel} on {@link #commit()}, optionally followed by an fsync, so one commit covers
+ * every increment since the previous one. Because records carry absolute counts and counts only
+ * grow, replay keeps the highest count seen per user and is insensitive to record order.
+ * </p>
+ * <p>
+ * On open the journal is scanned from the start; a short or corrupt final record (a torn write
+ * from a crash) ends the replay and is truncated away so new records append cleanly.
+ * </p>
+ * <p>
+ * Once a snapshot covering the records up to a {@link #mark()} is durable, {@link #discardBefore(long)}
+ * drops them while keeping every record appended since, so compaction never holds off appends
+ * while the snapshot is written. The kept records go to a new file that replaces the journal.
+ * </p>
+ */
+@Slf4j
+public class VoiceJoinJournal implements AutoCloseable {
+    static final int RECORD_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final Path path;
+    private FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(DATABASE_JOURNAL_BUFFER_BYTES);
+    private final CRC32 crc = new CRC32();
+    private final boolean fsync;
+    private long committedBytes;
+
+    /**
+     * Open (or create) a journal, replaying every intact record into the given consumer.
+     *
+     * @param path journal file location
+     * @param fsync whether {@link #commit()} forces the file to stable storage
+     * @param replay receives each recorded user ID and count, in file order
+     */
+    public VoiceJoinJournal(Path path, boolean fsync, LongCounterMap.EntryConsumer replay) throws IOException {
+        this.path = path;
+        this.fsync = fsync;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.committedBytes = replay(replay);
+            channel.truncate(committedBytes);
+            channel.position(committedBytes);
+        } catch (IOException | RuntimeException e) {
+            try {
+                channel.close();
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Read records from the start of the file until the end or the first damaged record.
+     *
+     * @return offset just past the last intact record
+     */
+    private long replay(LongCounterMap.EntryConsumer consumer) throws IOException {
+        ByteBuffer readBuffer = ByteBuffer.allocate(DATABASE_JOURNAL_BUFFER_BYTES - DATABASE_JOURNAL_BUFFER_BYTES % RECORD_SIZE);
+        long fileSize = channel.size();
+        long offset = 0;
+        int records = 0;
+
+        channel.position(0);
+        while (channel.read(readBuffer) > 0 || readBuffer.position() > 0) {
+            readBuffer.flip();
+            if (readBuffer.remaining() < RECORD_SIZE) {
+                break;
+            }
+            while (readBuffer.remaining() >= RECORD_SIZE) {
+                long userId = readBuffer.getLong();
+                long count = readBuffer.getLong();
+                int checksum = readBuffer.getInt();
+                if (checksum != checksum(userId, count)) {
+                    log.warn("Corrupt voice join journal record at offset {} in {}, discarding the remaining {} bytes",
+                            offset, path, fileSize - offset);
+                    return offset;
+                }
+                consumer.accept(userId, count);
+                offset += RECORD_SIZE;
+                records++;
+            }
+            readBuffer.compact();
+        }
+
+        if (offset < fileSize) {
+            log.warn("Discarding {} byte torn record at the end of voice join journal {}", fileSize - offset, path);
+        }
+        log.info("Replayed {} voice join journal records from {}", records, path);
+        return offset;
+    }
+
+    private int checksum(long userId, long count) {
+        crc.reset();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (userId >>> shift));
+        }
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (count >>> shift));
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Stage a record for the next commit. The buffer is written out early if it fills up.
+     *
+     * @param userId Discord user ID
+     * @param count the user's count after the increment
+     */
+    public synchronized void append(long userId, long count) throws IOException {
+        if (buffer.remaining() < RECORD_SIZE) {
+            writeBuffer();
+        }
+        buffer.putLong(userId).putLong(count).putInt(checksum(userId, count));
+    }
+
+    /**
+     * Write all staged records to the file and, if enabled, force them to disk.
+     *
+     * @return bytes written to the file by this commit
+     */
+    public synchronized long commit() throws IOException {
+        long written = writeBuffer();
+        if (fsync) {
+            channel.force(false);
+        }
+        return written;
+    }
+
+    private long writeBuffer() throws IOException {
+        long written = 0;
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        buffer.clear();
+        committedBytes += written;
+        return written;
+    }
+
+    /**
+     * Commit every staged record and return the end of the journal. Callers hold the journal's
+     * monitor across taking a snapshot and marking, so every record before the mark is covered by it.
+     *
+     * @return offset to pass to {@link #discardBefore(long)} once the snapshot is durable
+     */
+    public synchronized long mark() throws IOException {
+        commit();
+        return committedBytes;
+    }
+
+    /**
+     * Drop the records before the mark. The later records are copied to a new file, which is forced
+     * to disk and then renamed over the journal, so a crash leaves either the old journal or the
+     * compacted one, never a mix or a torn copy.
+     *
+     * @param mark offset returned by {@link #mark()}
+     */
+    public synchronized void discardBefore(long mark) throws IOException {
+        writeBuffer();
+        long kept = committedBytes - mark;
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long copied = 0;
+            while (copied < kept) {
+                long transferred = channel.transferTo(mark + copied, kept - copied, target);
+                if (transferred <= 0) {
+                    throw new IOException("Voice join journal " + path + " ended before offset " + committedBytes);
+                }
+                copied += transferred;
+            }
+            target.force(true);
+        }
+        try {
+            Files.move(compacted, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        FileChannel previous = channel;
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(kept);
+        committedBytes = kept;
+        previous.close();
+    }
+
+    /**
+     * @return bytes written to the journal file, excluding records still staged in memory
+     */
+    public synchronized long size() {
+        return committedBytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.fitznet.data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent voice join counts keyed by Discord user ID.
+ */
+public interface VoiceJoinStore extends AutoCloseable {
+
+    /**
+     * Get the current voice join count for a user
+     * @param userId Discord user ID
+     * @return Current join count, or 0 if user not found
+     */
+    long getVoiceJoinCount(long userId);
+
+    /**
+     * Increment voice join count for a user and return the new count
+     * @param userId Discord user ID
+     * @return New join count after incrementing
+     */
+    long incrementVoiceJoinCount(long userId);
+
+    /**
+     * Add to a user's count and return the new count. Stores holding totals other than joins, such
+     * as milliseconds spent in voice, add more than one at a time.
+     * @param userId Discord user ID
+     * @param amount Positive amount to add
+     * @return New count after adding
+     */
+    long addToCount(long userId, long amount);
+
+    /**
+     * Visit every user and count in place, without copying the store. The walk is weakly
+     * consistent: a count changed during it may be seen before or after the change, and users
+     * added during it may be missed, but no user is visited twice. The consumer must not write to the store.
+     * @param consumer receives each user ID and count
+     */
+    void forEachCount(LongCounterMap.EntryConsumer consumer);
+
+    /**
+     * Get all voice join counts (read-only copy). This boxes every entry, so bulk reads of a large
+     * store should use {@link #forEachCount(LongCounterMap.EntryConsumer)} instead.
+     * @return Map of user IDs to join counts
+     */
+    default Map<Long, Long> getAllCounts() {
+        Map<Long, Long> copy = new HashMap<>();
+        forEachCount(copy::put);
+        return copy;
+    }
+
+    /**
+     * Check if a user exists in the store
+     * @param userId Discord user ID
+     * @return true if user has at least one voice join recorded
+     */
+    boolean userExists(long userId);
+
+    /**
+     * Make every increment so far durable.
+     */
+    void flush();
+
+    /**
+     * Totals for every flush this store has made.
+     *
+     * @param flushes number of flushes to disk
+     * @param totalNanos time spent flushing
+     * @param bytes bytes written by those flushes, or 0 if the store cannot tell
+     */
+    record FlushStats(long flushes, long totalNanos, long bytes) {
+    }
+
+    /**
+     * @return flush totals since the store was opened
+     */
+    default FlushStats getFlushStats() {
+        return new FlushStats(0, 0, 0);
+    }
+
+    /**
+     * Flush and release any files or threads held by the store.
+     */
+    @Override
+    void close();
+}
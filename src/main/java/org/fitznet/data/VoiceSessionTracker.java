@@ -0,0 +1,195 @@
+package org.fitznet.data;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracks how long users spend in voice.
+ * <p>
+ * A join opens a session in an {@link ActiveSessionTable}; a leave closes it and adds its length
+ * to the user's total in a {@link VoiceJoinStore}, which persists it through the same batched
+ * write-behind path as join counts, and to the user's per-guild total in {@link VoiceJoinHistory}.
+ * A move between channels of the same guild keeps the session open. Times are epoch milliseconds
+ * taken when the event arrived from the gateway, so queueing in the pipeline does not skew them.
+ * </p>
+ * <p>
+ * Events missed while the gateway was down are repaired by {@link #reconcile(Map, long)}
+ * once it is ready again: users found in voice get a session if they had none, and sessions of
+ * users no longer in voice are closed at the time the connection was lost.
+ * </p>
+ */
+@Slf4j
+public class VoiceSessionTracker implements AutoCloseable {
+    private final ActiveSessionTable sessions;
+    private final VoiceJoinStore voiceTime;
+    private final VoiceJoinHistory history;
+    private volatile long disconnectedAtMillis;
+
+    /**
+     * @param voiceTime store for every user's total milliseconds in voice, or null to keep only the per-guild totals
+     * @param history per-guild totals
+     */
+    public VoiceSessionTracker(VoiceJoinStore voiceTime, VoiceJoinHistory history) {
+        this(new ActiveSessionTable(), voiceTime, history);
+    }
+
+    private VoiceSessionTracker(ActiveSessionTable sessions, VoiceJoinStore voiceTime, VoiceJoinHistory history) {
+        this.sessions = sessions;
+        this.voiceTime = voiceTime;
+        this.history = history;
+    }
+
+    /**
+     * A tracker sharing this one's open sessions but adding totals to another store, such as a shard's partition.
+     */
+    public VoiceSessionTracker withStore(VoiceJoinStore store) {
+        return new VoiceSessionTracker(sessions, store, history);
+    }
+
+    /**
+     * @return true if a session was opened; false if the user already had one in the guild
+     */
+    public boolean join(long guildId, long userId, long nowMillis) {
+        return sessions.open(guildId, userId, nowMillis);
+    }
+
+    /**
+     * A move between channels continues the session, opening one if the join was missed.
+     */
+    public void move(long guildId, long userId, long nowMillis) {
+        sessions.open(guildId, userId, nowMillis);
+    }
+
+    /**
+     * Close the user's session in the guild and add its length to their totals.
+     *
+     * @return the session's length in milliseconds, or 0 if there was no open session
+     */
+    public long leave(long guildId, long userId, long nowMillis) {
+        long startMillis = sessions.close(guildId, userId);
+        return startMillis == 0 ? 0 : credit(guildId, userId, nowMillis - startMillis);
+    }
+
+    private long credit(long guildId, long userId, long millis) {
+        if (millis <= 0) {
+            return 0;
+        }
+        if (voiceTime != null) {
+            voiceTime.addToCount(userId, millis);
+        }
+        history.recordVoiceTime(guildId, userId, millis);
+        return millis;
+    }
+
+    /**
+     * Note that the gateway connection was lost, so sessions found stale on reconcile end here.
+     */
+    public void disconnected(long nowMillis) {
+        disconnectedAtMillis = nowMillis;
+    }
+
+    /**
+     * Bring the sessions of the given guilds in line with who is in voice now, in one pass over the
+     * open sessions. Sessions in guilds not in the map are left alone.
+     *
+     * @param usersInVoice for each guild, IDs of every member currently connected to one of its voice channels
+     * @return number of sessions opened or closed
+     */
+    public int reconcile(Map<Long, long[]> usersInVoice, long nowMillis) {
+        Map<Long, long[]> present = new HashMap<>(usersInVoice.size() * 2);
+        usersInVoice.forEach((guildId, users) -> {
+            long[] sorted = users.clone();
+            Arrays.sort(sorted);
+            present.put(guildId, sorted);
+        });
+        long endMillis = disconnectedAtMillis > 0 ? Math.min(disconnectedAtMillis, nowMillis) : nowMillis;
+
+        int changed = 0;
+        long[] open = openSessions();
+        for (int i = 0; i < open.length; i += 2) {
+            long[] guildPresent = present.get(open[i]);
+            if (guildPresent != null && Arrays.binarySearch(guildPresent, open[i + 1]) < 0) {
+                long startMillis = sessions.close(open[i], open[i + 1]);
+                if (startMillis != 0) {
+                    credit(open[i], open[i + 1], endMillis - startMillis);
+                    changed++;
+                }
+            }
+        }
+        for (Map.Entry<Long, long[]> guild : present.entrySet()) {
+            long guildId = guild.getKey();
+            for (long userId : guild.getValue()) {
+                if (sessions.open(guildId, userId, nowMillis)) {
+                    changed++;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return (guild ID, user ID) pairs of every open session, flattened
+     */
+    private long[] openSessions() {
+        long[][] pairs = {new long[Math.max(16, sessions.size() * 2)]};
+        int[] length = {0};
+        sessions.forEach((guildId, userId, startMillis) -> {
+            if (length[0] == pairs[0].length) {
+                pairs[0] = Arrays.copyOf(pairs[0], length[0] * 2);
+            }
+            pairs[0][length[0]++] = guildId;
+            pairs[0][length[0]++] = userId;
+        });
+        return Arrays.copyOf(pairs[0], length[0]);
+    }
+
+    /**
+     * Forget the last disconnect once every guild has been reconciled.
+     */
+    public void reconciled() {
+        disconnectedAtMillis = 0;
+    }
+
+    /**
+     * @return the user's total time in voice across guilds, in milliseconds, excluding any open session
+     */
+    public long getVoiceMillis(long userId) {
+        return voiceTime == null ? 0 : voiceTime.getVoiceJoinCount(userId);
+    }
+
+    /**
+     * @return the user's time in voice in the guild, in milliseconds, including the open session if any
+     */
+    public long getGuildVoiceMillis(long guildId, long userId, long nowMillis) {
+        long startMillis = sessions.get(guildId, userId);
+        long open = startMillis == 0 ? 0 : Math.max(0, nowMillis - startMillis);
+        return history.getUserVoiceMillis(guildId, userId) + open;
+    }
+
+    /**
+     * @return when the user's open session in the guild started, or 0 if they are not in voice
+     */
+    public long getSessionStart(long guildId, long userId) {
+        return sessions.get(guildId, userId);
+    }
+
+    public int getActiveSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Close every open session at the current time, so time in voice up to shutdown is kept.
+     */
+    @Override
+    public void close() {
+        long nowMillis = System.currentTimeMillis();
+        long[] open = openSessions();
+        for (int i = 0; i < open.length; i += 2) {
+            leave(open[i], open[i + 1], nowMillis);
+        }
+        log.info("Closed {} open voice sessions on shutdown", open.length / 2);
+    }
+}
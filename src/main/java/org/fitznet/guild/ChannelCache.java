@@ -0,0 +1,122 @@
+package org.fitznet.guild;
+
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.events.channel.ChannelDeleteEvent;
+import net.dv8tion.jda.api.events.channel.update.GenericChannelUpdateEvent;
+import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.api.events.session.ReadyEvent;
+import net.dv8tion.jda.api.events.session.SessionRecreateEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+
+/**
+ * Resolved {@link TextChannel} handles by channel ID, and each guild's announcement channel.
+ * <p>
+ * A channel is looked up through JDA once and then served from the cache. Registered as a
+ * listener, the cache drops a channel when it is deleted or updated and drops a guild's channels
+ * when the bot leaves it, so a handle is never older than the channel it stands for; the whole
+ * cache is dropped when the gateway becomes ready or recreates its session, which replaces every
+ * JDA entity. Channels that cannot be found are not cached and are looked up again next time.
+ * </p>
+ */
+@Slf4j
+public class ChannelCache extends ListenerAdapter implements LongFunction<TextChannel> {
+    private final LongFunction<TextChannel> lookup;
+    private final GuildConfigService guildConfig;
+    private final long defaultChannelId;
+    private final Map<Long, TextChannel> channels = new ConcurrentHashMap<>();
+
+    /**
+     * @param lookup finds a text channel through JDA, such as {@code jda::getTextChannelById}
+     * @param guildConfig where each guild's announcement channel is configured
+     * @param defaultChannelId announcement channel of guilds that have not configured one, if it is in that guild
+     */
+    public ChannelCache(LongFunction<TextChannel> lookup, GuildConfigService guildConfig, long defaultChannelId) {
+        this.lookup = lookup;
+        this.guildConfig = guildConfig;
+        this.defaultChannelId = defaultChannelId;
+    }
+
+    /**
+     * @return the text channel, or null if JDA does not know it
+     */
+    @Override
+    public TextChannel apply(long channelId) {
+        TextChannel cached = channels.get(channelId);
+        if (cached != null) {
+            return cached;
+        }
+        TextChannel channel = lookup.apply(channelId);
+        if (channel != null) {
+            channels.put(channelId, channel);
+        }
+        return channel;
+    }
+
+    /**
+     * The channel a guild's milestones are announced in: the configured channel if it still
+     * exists, otherwise the default channel if it belongs to the guild, otherwise the guild's
+     * system channel.
+     *
+     * @return the channel ID, or 0 if the guild has nowhere to announce
+     */
+    public long announcementChannelId(Guild guild) {
+        long guildId = guild.getIdLong();
+        Long configured = guildConfig.get(guildId).announcementChannelId();
+        if (configured != null) {
+            if (apply(configured) != null) {
+                return configured;
+            }
+            log.warn("Announcement channel {} of guild {} no longer exists; using the default", configured, guildId);
+        }
+        TextChannel fallback = apply(defaultChannelId);
+        if (fallback != null && fallback.getGuild() != null && fallback.getGuild().getIdLong() == guildId) {
+            return defaultChannelId;
+        }
+        TextChannel system = guild.getSystemChannel();
+        return system == null ? 0 : system.getIdLong();
+    }
+
+    public int size() {
+        return channels.size();
+    }
+
+    /**
+     * Forget every cached channel.
+     */
+    public void invalidateAll() {
+        channels.clear();
+    }
+
+    @Override
+    public void onChannelDelete(@NotNull ChannelDeleteEvent event) {
+        channels.remove(event.getChannel().getIdLong());
+    }
+
+    @Override
+    public void onGenericChannelUpdate(@NotNull GenericChannelUpdateEvent<?> event) {
+        channels.remove(event.getChannel().getIdLong());
+    }
+
+    @Override
+    public void onGuildLeave(@NotNull GuildLeaveEvent event) {
+        long guildId = event.getGuild().getIdLong();
+        channels.values().removeIf(channel -> channel.getGuild().getIdLong() == guildId);
+    }
+
+    @Override
+    public void onReady(@NotNull ReadyEvent event) {
+        invalidateAll();
+    }
+
+    @Override
+    public void onSessionRecreate(@NotNull SessionRecreateEvent event) {
+        invalidateAll();
+    }
+}
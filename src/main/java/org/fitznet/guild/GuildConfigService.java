@@ -0,0 +1,151 @@
+package org.fitznet.guild;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import lombok.extern.slf4j.Slf4j;
+import org.fitznet.data.SnapshotFile;
+import org.fitznet.milestone.MilestoneRules;
+import org.fitznet.util.JsonUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+import static org.fitznet.util.Constants.DATABASE_SNAPSHOTS_RETAINED;
+
+/**
+ * Per-guild settings: where milestones are announced, which milestones apply and which features are on.
+ * <p>
+ * Reads come from an in-memory map and never touch the disk. Every change is written to the
+ * settings file before it returns, so settings edited over REST or with {@code /config} survive
+ * restarts, and milestone overrides are pushed into the {@link MilestoneRules} immediately.
+ * Changes are rare, so they are serialized and the whole file is rewritten each time.
+ * </p>
+ */
+@Slf4j
+public class GuildConfigService {
+    private final SnapshotFile settingsFile;
+    private final MilestoneRules milestones;
+    private final Map<Long, GuildSettings> settings = new ConcurrentHashMap<>();
+
+    /**
+     * Settings kept in memory only, with no milestone overrides.
+     */
+    public GuildConfigService() {
+        this(null, null);
+    }
+
+    /**
+     * @param settingsFile JSON file the settings are loaded from and saved to; null keeps them in memory only
+     * @param milestones receives each guild's milestone overrides; may be null
+     */
+    public GuildConfigService(File settingsFile, MilestoneRules milestones) {
+        this.settingsFile = settingsFile == null ? null : new SnapshotFile(settingsFile.toPath(), DATABASE_SNAPSHOTS_RETAINED);
+        this.milestones = milestones;
+        load();
+    }
+
+    /**
+     * @return the guild's settings, or {@link GuildSettings#DEFAULTS} if it has never been configured
+     */
+    public GuildSettings get(long guildId) {
+        return settings.getOrDefault(guildId, GuildSettings.DEFAULTS);
+    }
+
+    /**
+     * @return the settings of every configured guild, by guild ID
+     */
+    public Map<Long, GuildSettings> getAll() {
+        return new TreeMap<>(settings);
+    }
+
+    public boolean isEnabled(long guildId, GuildSettings.Feature feature) {
+        return get(guildId).isEnabled(feature);
+    }
+
+    /**
+     * Replace a guild's settings and save them.
+     *
+     * @return the settings now in effect
+     * @throws IllegalArgumentException if a milestone rule is invalid; the current settings are kept
+     * @throws UncheckedIOException if the settings could not be saved; they are in effect regardless
+     */
+    public synchronized GuildSettings put(long guildId, GuildSettings guildSettings) {
+        guildSettings.validate();
+        GuildSettings previous = get(guildId);
+        if (milestones != null && !Objects.equals(previous.milestones(), guildSettings.milestones())) {
+            milestones.overrideGuild(guildId, guildSettings.milestones());
+        }
+        if (guildSettings.equals(GuildSettings.DEFAULTS)) {
+            settings.remove(guildId);
+        } else {
+            settings.put(guildId, guildSettings);
+        }
+        log.info("Guild {} settings changed: {}", guildId, guildSettings);
+        save();
+        return guildSettings;
+    }
+
+    /**
+     * Change part of a guild's settings and save them.
+     *
+     * @param change derives the new settings from the current ones
+     * @return the settings now in effect
+     */
+    public synchronized GuildSettings update(long guildId, UnaryOperator<GuildSettings> change) {
+        return put(guildId, change.apply(get(guildId)));
+    }
+
+    /**
+     * Forget a guild's settings, returning it to the defaults.
+     */
+    public synchronized void reset(long guildId) {
+        put(guildId, GuildSettings.DEFAULTS);
+    }
+
+    private void load() {
+        if (settingsFile == null) {
+            return;
+        }
+        Map<Long, GuildSettings> loaded;
+        try {
+            loaded = settingsFile.read(in -> JsonUtils.MAPPER.readValue(in, new TypeReference<Map<Long, GuildSettings>>() {
+            }));
+        } catch (IOException e) {
+            log.error("Failed to load guild settings from {}. Starting with defaults.", settingsFile.getPath(), e);
+            return;
+        }
+        if (loaded == null) {
+            log.info("No guild settings file found at {}. Every guild uses the defaults.", settingsFile.getPath());
+            return;
+        }
+        loaded.forEach((guildId, guildSettings) -> {
+            try {
+                guildSettings.validate();
+                if (milestones != null && guildSettings.milestones() != null) {
+                    milestones.overrideGuild(guildId, guildSettings.milestones());
+                }
+                settings.put(guildId, guildSettings);
+            } catch (IllegalArgumentException e) {
+                log.error("Ignoring invalid settings for guild {}", guildId, e);
+            }
+        });
+        log.info("Loaded settings for {} guild(s)", settings.size());
+    }
+
+    private void save() {
+        if (settingsFile == null) {
+            return;
+        }
+        try {
+            Map<Long, GuildSettings> snapshot = getAll();
+            settingsFile.write(out -> JsonUtils.MAPPER.writeValue(out, snapshot));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save guild settings to " + settingsFile.getPath(), e);
+        }
+    }
+}
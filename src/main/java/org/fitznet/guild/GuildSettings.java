@@ -0,0 +1,77 @@
+package org.fitznet.guild;
+
+import org.fitznet.milestone.MilestoneConfig;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One guild's settings, as stored in the guild settings file and exchanged over REST.
+ * <pre>
+ * {
+ *   "announcementChannelId": 1216911261703340125,
+ *   "milestones": [{"type": "every", "interval": 100}],
+ *   "disabledFeatures": ["LEADERBOARD"]
+ * }
+ * </pre>
+ *
+ * @param announcementChannelId text channel milestones are announced in; null for the default channel
+ * @param milestones milestone rules replacing those of the rules file for this guild; null to use the rules file
+ * @param disabledFeatures features turned off in this guild
+ */
+public record GuildSettings(Long announcementChannelId, List<MilestoneConfig.RuleSpec> milestones,
+                           Set<Feature> disabledFeatures) {
+
+    /** Settings of a guild that has never been configured. */
+    public static final GuildSettings DEFAULTS = new GuildSettings(null, null, null);
+
+    public GuildSettings {
+        milestones = milestones == null ? null : List.copyOf(milestones);
+        disabledFeatures = disabledFeatures == null || disabledFeatures.isEmpty()
+                ? Set.of()
+                : Set.copyOf(EnumSet.copyOf(disabledFeatures));
+    }
+
+    /**
+     * Parts of the bot that can be turned off per guild.
+     */
+    public enum Feature {
+        /** Milestone announcements; joins are still counted. */
+        MILESTONES,
+        /** The {@code /top} command. */
+        LEADERBOARD
+    }
+
+    public boolean isEnabled(Feature feature) {
+        return !disabledFeatures.contains(feature);
+    }
+
+    public GuildSettings withAnnouncementChannelId(Long channelId) {
+        return new GuildSettings(channelId, milestones, disabledFeatures);
+    }
+
+    public GuildSettings withMilestones(List<MilestoneConfig.RuleSpec> rules) {
+        return new GuildSettings(announcementChannelId, rules, disabledFeatures);
+    }
+
+    public GuildSettings withFeature(Feature feature, boolean enabled) {
+        EnumSet<Feature> disabled = EnumSet.noneOf(Feature.class);
+        disabled.addAll(disabledFeatures);
+        if (enabled) {
+            disabled.remove(feature);
+        } else {
+            disabled.add(feature);
+        }
+        return new GuildSettings(announcementChannelId, milestones, disabled);
+    }
+
+    /**
+     * @throws IllegalArgumentException if a milestone rule is invalid
+     */
+    void validate() {
+        if (milestones != null) {
+            milestones.forEach(MilestoneConfig.RuleSpec::toRule);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.fitznet.listener;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.session.ReadyEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import org.fitznet.announce.AnnouncementDispatcher;
+import org.fitznet.archive.VoiceEventArchive;
+import org.fitznet.data.LeaderboardIndex;
+import org.fitznet.data.ShardedVoiceJoinStore;
+import org.fitznet.data.VoiceJoinHistory;
+import org.fitznet.data.VoiceJoinStore;
+import org.fitznet.data.VoiceSessionTracker;
+import org.fitznet.guild.ChannelCache;
+import org.fitznet.guild.GuildConfigService;
+import org.fitznet.metrics.BotMetrics;
+import org.fitznet.milestone.MilestoneRules;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+
+import static org.fitznet.util.Constants.BOT_MESSAGE_CHANNEL_ID;
+
+/**
+ * Attaches the bot's event listeners and slash commands to a JDA instance or to every shard of a ShardManager.
+ * The stores are shared, so every JDA the application starts records into the same counts; with a
+ * {@link ShardedVoiceJoinStore} each shard writes to its own partition.
+ */
+public class BotListeners {
+    private final VoiceJoinStore voiceJoinStore;
+    private final VoiceJoinHistory voiceJoinHistory;
+    private final LeaderboardIndex leaderboard;
+    private final VoiceEventPipeline pipeline;
+    private final BotMetrics metrics;
+    private final MilestoneRules milestones;
+    private final VoiceSessionTracker sessions;
+    private final VoiceJoinStore voiceTimeStore;
+    private final JoinDebouncer debouncer;
+    private final VoiceEventArchive archive;
+    private final GuildConfigService guildConfig;
+    private final AtomicReference<JDA> jda = new AtomicReference<>();
+    private final AtomicReference<ShardManager> shardManager = new AtomicReference<>();
+    private final AtomicBoolean commandsRegistered = new AtomicBoolean();
+    private AnnouncementDispatcher announcer;
+    private Object[] jdaListeners;
+
+    /**
+     * @param sessions voice session tracker writing to {@code voiceTimeStore}
+     * @param voiceTimeStore every user's total time in voice; with sharding, each shard adds to its own partition
+     * @param debouncer shared by every listener, so a user's leave and rejoin match on any shard
+     * @param archive shared by every listener, so every shard's events go to the same segments
+     * @param guildConfig per-guild settings read by the listeners and edited with {@code /config}
+     */
+    public BotListeners(VoiceJoinStore voiceJoinStore, VoiceJoinHistory voiceJoinHistory,
+                        LeaderboardIndex leaderboard, VoiceEventPipeline pipeline, BotMetrics metrics,
+                        MilestoneRules milestones, VoiceSessionTracker sessions, VoiceJoinStore voiceTimeStore,
+                        JoinDebouncer debouncer, VoiceEventArchive archive, GuildConfigService guildConfig) {
+        this.voiceJoinStore = voiceJoinStore;
+        this.voiceJoinHistory = voiceJoinHistory;
+        this.leaderboard = leaderboard;
+        this.pipeline = pipeline;
+        this.metrics = metrics;
+        this.milestones = milestones;
+        this.sessions = sessions;
+        this.voiceTimeStore = voiceTimeStore;
+        this.debouncer = debouncer;
+        this.archive = archive;
+        this.guildConfig = guildConfig;
+    }
+
+    /**
+     * Add the listeners to a JDA instance that may still be logging in. The slash commands they
+     * answer are registered once the gateway is ready. The listeners and their announcement
+     * dispatcher are created on the first call and reused for every later JDA, so a restart only
+     * replaces the connection: counts, queued announcements and caches carry over.
+     *
+     * @param jda the JDA instance to attach to
+     */
+    public synchronized void register(JDA jda) {
+        this.jda.set(jda);
+        metrics.bindJda(jda);
+        if (jdaListeners == null) {
+            ChannelCache channels = new ChannelCache(channelId -> {
+                JDA current = this.jda.get();
+                return current == null ? null : current.getTextChannelById(channelId);
+            }, guildConfig, BOT_MESSAGE_CHANNEL_ID);
+            announcer = new AnnouncementDispatcher(channels, metrics, pipeline::isOverloaded);
+            jdaListeners = new Object[]{
+                    LoginListener.builder()
+                            .voiceDatabase(voiceJoinStore)
+                            .voiceHistory(voiceJoinHistory)
+                            .leaderboard(leaderboard)
+                            .pipeline(pipeline)
+                            .metrics(metrics)
+                            .milestones(milestones)
+                            .announcer(announcer)
+                            .sessions(sessions)
+                            .debouncer(debouncer)
+                            .archive(archive)
+                            .guildConfig(guildConfig)
+                            .channels(channels)
+                            .build(),
+                    new LeaderboardCommandListener(leaderboard, guildConfig),
+                    new GuildConfigCommandListener(guildConfig),
+                    channels,
+                    new CommandRegistrar()};
+        }
+        jda.addEventListener(jdaListeners);
+    }
+
+    /**
+     * Listener providers for a ShardManager: every shard gets its own listeners as it is built,
+     * including shards restarted later. Milestones for every shard share one announcement dispatcher
+     * and channel cache, and the slash commands are registered once, by the first shard to become ready.
+     */
+    public synchronized List<IntFunction<Object>> shardListenerProviders() {
+        if (announcer != null) {
+            announcer.close();
+        }
+        ChannelCache channels = new ChannelCache(channelId -> {
+            ShardManager manager = shardManager.get();
+            return manager == null ? null : manager.getTextChannelById(channelId);
+        }, guildConfig, BOT_MESSAGE_CHANNEL_ID);
+        announcer = new AnnouncementDispatcher(channels, metrics, pipeline::isOverloaded);
+        AnnouncementDispatcher shardAnnouncer = announcer;
+        return List.of(
+                shardId -> LoginListener.builder()
+                        .voiceDatabase(storeForShard(voiceJoinStore, shardId))
+                        .voiceHistory(voiceJoinHistory)
+                        .leaderboard(leaderboard)
+                        .pipeline(pipeline)
+                        .metrics(metrics)
+                        .milestones(milestones)
+                        .announcer(shardAnnouncer)
+                        .sessions(sessions.withStore(storeForShard(voiceTimeStore, shardId)))
+                        .debouncer(debouncer)
+                        .archive(archive)
+                        .guildConfig(guildConfig)
+                        .channels(channels)
+                        .build(),
+                shardId -> new LeaderboardCommandListener(leaderboard, guildConfig),
+                shardId -> new GuildConfigCommandListener(guildConfig),
+                shardId -> channels,
+                shardId -> new CommandRegistrar());
+    }
+
+    /**
+     * Point announcements and metrics at a started ShardManager.
+     */
+    public void attach(ShardManager manager) {
+        shardManager.set(manager);
+        metrics.bindShards(manager);
+    }
+
+    /**
+     * @return load and circuit state of the announcement dispatcher, or null before any listener was created
+     */
+    public synchronized AnnouncementDispatcher.Stats getAnnouncementStats() {
+        return announcer == null ? null : announcer.getStats();
+    }
+
+    private static VoiceJoinStore storeForShard(VoiceJoinStore store, int shardId) {
+        return store instanceof ShardedVoiceJoinStore sharded ? sharded.forShard(shardId) : store;
+    }
+
+    /**
+     * Registers the global slash commands from whichever JDA or shard is ready first.
+     */
+    private final class CommandRegistrar extends ListenerAdapter {
+        @Override
+        public void onReady(@NotNull ReadyEvent event) {
+            if (commandsRegistered.compareAndSet(false, true)) {
+                event.getJDA().updateCommands()
+                        .addCommands(LeaderboardCommandListener.command(), GuildConfigCommandListener.command())
+                        .queue();
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.fitznet.listener;
+
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.channel.ChannelType;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.commands.DefaultMemberPermissions;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
+import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
+import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
+import org.fitznet.guild.GuildConfigService;
+import org.fitznet.guild.GuildSettings;
+import org.fitznet.milestone.MilestoneConfig;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Answers the {@code /config} slash command, which shows and changes the settings of the guild it is used in.
+ * Only members who can manage the server are offered the command. Changes are saved and take
+ * effect on the next join, without a restart; replies are only shown to the member who asked.
+ */
+@Slf4j
+public class GuildConfigCommandListener extends ListenerAdapter {
+    public static final String COMMAND_NAME = "config";
+
+    private final GuildConfigService guildConfig;
+
+    public GuildConfigCommandListener(GuildConfigService guildConfig) {
+        this.guildConfig = guildConfig;
+    }
+
+    /**
+     * @return the command definition to register with Discord
+     */
+    public static SlashCommandData command() {
+        OptionData feature = new OptionData(OptionType.STRING, "name", "Feature to change", true);
+        for (GuildSettings.Feature value : GuildSettings.Feature.values()) {
+            feature.addChoice(value.name().toLowerCase(Locale.ROOT), value.name());
+        }
+        return Commands.slash(COMMAND_NAME, "Show or change the bot's settings for this server")
+                .setGuildOnly(true)
+                .setDefaultPermissions(DefaultMemberPermissions.enabledFor(Permission.MANAGE_SERVER))
+                .addSubcommands(
+                        new SubcommandData("show", "Show this server's settings"),
+                        new SubcommandData("channel", "Choose where milestones are announced")
+                                .addOptions(new OptionData(OptionType.CHANNEL, "channel",
+                                        "Text channel for announcements; leave out to use the default", false)
+                                        .setChannelTypes(ChannelType.TEXT)),
+                        new SubcommandData("milestones", "Choose which join counts are announced")
+                                .addOption(OptionType.STRING, "values", "Counts such as 1,100,500", false)
+                                .addOption(OptionType.INTEGER, "every", "Announce every multiple of this count", false),
+                        new SubcommandData("feature", "Turn a feature on or off")
+                                .addOptions(feature)
+                                .addOption(OptionType.BOOLEAN, "enabled", "Whether the feature is on", true),
+                        new SubcommandData("reset", "Go back to the default settings"));
+    }
+
+    @Override
+    public void onSlashCommandInteraction(@NotNull SlashCommandInteractionEvent event) {
+        if (!COMMAND_NAME.equals(event.getName())) {
+            return;
+        }
+        Guild guild = event.getGuild();
+        String reply;
+        if (guild == null) {
+            reply = "Settings can only be changed in a server.";
+        } else {
+            try {
+                reply = handle(event, guild.getIdLong());
+            } catch (IllegalArgumentException e) {
+                reply = "Not changed: " + e.getMessage();
+            } catch (UncheckedIOException e) {
+                log.error("Failed to save settings of guild {}", guild.getIdLong(), e);
+                reply = "Changed, but the settings could not be saved and will be lost on restart.";
+            }
+        }
+        String subcommand = event.getSubcommandName();
+        event.reply(reply).setEphemeral(true).queue(
+                success -> log.debug("Answered /{} {}", COMMAND_NAME, subcommand),
+                error -> log.error("Failed to reply to /{} {}", COMMAND_NAME, subcommand, error)
+        );
+    }
+
+    private String handle(SlashCommandInteractionEvent event, long guildId) {
+        String subcommand = event.getSubcommandName() == null ? "show" : event.getSubcommandName();
+        GuildSettings settings = switch (subcommand) {
+            case "channel" -> {
+                Long channelId = event.getOption("channel", null, option -> option.getAsChannel().getIdLong());
+                yield guildConfig.update(guildId, current -> current.withAnnouncementChannelId(channelId));
+            }
+            case "milestones" -> {
+                List<MilestoneConfig.RuleSpec> rules = parseMilestones(
+                        event.getOption("values", null, OptionMapping::getAsString),
+                        event.getOption("every", null, OptionMapping::getAsLong));
+                yield guildConfig.update(guildId, current -> current.withMilestones(rules));
+            }
+            case "feature" -> {
+                GuildSettings.Feature feature = GuildSettings.Feature.valueOf(event.getOption("name", OptionMapping::getAsString));
+                boolean enabled = event.getOption("enabled", true, OptionMapping::getAsBoolean);
+                yield guildConfig.update(guildId, current -> current.withFeature(feature, enabled));
+            }
+            case "reset" -> {
+                guildConfig.reset(guildId);
+                yield guildConfig.get(guildId);
+            }
+            default -> guildConfig.get(guildId);
+        };
+        return describe(settings);
+    }
+
+    /**
+     * @return the rules, or null for the defaults if neither option is given
+     * @throws IllegalArgumentException if the values are not positive whole numbers
+     */
+    static List<MilestoneConfig.RuleSpec> parseMilestones(String values, Long every) {
+        if (values != null && every != null) {
+            throw new IllegalArgumentException("give either values or every, not both");
+        }
+        if (every != null) {
+            return List.of(MilestoneConfig.RuleSpec.every(every));
+        }
+        if (values == null || values.isBlank()) {
+            return null;
+        }
+        try {
+            long[] thresholds = Arrays.stream(values.split("[,\\s]+"))
+                    .filter(value -> !value.isEmpty())
+                    .mapToLong(Long::parseLong)
+                    .toArray();
+            return List.of(MilestoneConfig.RuleSpec.explicit(thresholds));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("milestones must be whole numbers separated by commas: " + values);
+        }
+    }
+
+    static String describe(GuildSettings settings) {
+        String channel = settings.announcementChannelId() == null
+                ? "default"
+                : "<#" + settings.announcementChannelId() + ">";
+        String milestones = settings.milestones() == null
+                ? "default"
+                : settings.milestones().stream().map(GuildConfigCommandListener::describe).collect(Collectors.joining(", "));
+        String disabled = settings.disabledFeatures().isEmpty()
+                ? "none"
+                : settings.disabledFeatures().stream()
+                        .map(feature -> feature.name().toLowerCase(Locale.ROOT))
+                        .sorted()
+                        .collect(Collectors.joining(", "));
+        return String.format("Announcement channel: %s%nMilestones: %s%nDisabled features: %s", channel, milestones, disabled);
+    }
+
+    private static String describe(MilestoneConfig.RuleSpec rule) {
+        return switch (rule.type()) {
+            case EXPLICIT -> Arrays.stream(rule.values()).mapToObj(Long::toString).collect(Collectors.joining(", "));
+            case EVERY -> "every " + rule.interval();
+            case GEOMETRIC -> "from " + rule.first() + " times " + rule.factor();
+        };
+    }
+}
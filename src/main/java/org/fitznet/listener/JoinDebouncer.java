@@ -0,0 +1,182 @@
+package org.fitznet.listener;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collapses join/leave flapping: a join within the window after the same user left voice in the
+ * same guild is treated as a continuation of the earlier session and not counted again.
+ * <p>
+ * Recent leaves are kept in a fixed-size, lock-free hash table: a single {@link AtomicLongArray}
+ * in which each slot packs a 32-bit fingerprint of (guild, user) with the 32-bit time of the leave,
+ * relative to when the debouncer was created. Slots are claimed and cleared with compare-and-set,
+ * so the event and lane threads never block each other. Memory is fixed at construction; an entry
+ * older than the window counts as empty and is reused, and when every slot a key may use holds a
+ * live entry the oldest one is evicted. A fingerprint collision can at worst suppress one join.
+ * </p>
+ */
+public class JoinDebouncer {
+    private static final int MAX_PROBES = 8;
+    private static final long STAMP_MASK = 0xffffffffL;
+
+    private final long windowMillis;
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final long baseMillis;
+    private final LongAdder suppressed = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    /**
+     * @param windowMillis rejoins within this long after a leave are not counted; zero disables debouncing
+     * @param capacity number of recent leaves remembered, rounded up to a power of two
+     */
+    public JoinDebouncer(long windowMillis, int capacity) {
+        if (windowMillis < 0 || windowMillis > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Debounce window must be between 0 and " + Integer.MAX_VALUE + " ms: " + windowMillis);
+        }
+        int size = Integer.highestOneBit(Math.max(MAX_PROBES, capacity) - 1) << 1;
+        this.windowMillis = windowMillis;
+        this.slots = new AtomicLongArray(windowMillis == 0 ? MAX_PROBES : size);
+        this.mask = slots.length() - 1;
+        this.baseMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * @return a debouncer that counts every join
+     */
+    public static JoinDebouncer disabled() {
+        return new JoinDebouncer(0, MAX_PROBES);
+    }
+
+    public boolean isEnabled() {
+        return windowMillis > 0;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * Remember that the user left voice in the guild.
+     */
+    public void recordLeave(long guildId, long userId, long nowMillis) {
+        if (!isEnabled()) {
+            return;
+        }
+        long hash = hash(guildId, userId);
+        int fingerprint = fingerprint(hash);
+        long stamp = stamp(nowMillis);
+        long entry = ((long) fingerprint << 32) | stamp;
+        int home = (int) hash & mask;
+
+        while (true) {
+            // A free slot is only claimed once no probe holds the user's own entry, which is
+            // overwritten instead, so a user never has two live leaves
+            int claimSlot = -1;
+            long claimEntry = 0;
+            int oldestSlot = -1;
+            long oldestEntry = 0;
+            long oldestAge = -1;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int slot = (home + probe) & mask;
+                long current = slots.get(slot);
+                long age = age(current, stamp);
+                if (current != 0 && (int) (current >>> 32) == fingerprint) {
+                    claimSlot = slot;
+                    claimEntry = current;
+                    break;
+                }
+                if (current == 0 || age >= windowMillis) {
+                    if (claimSlot < 0) {
+                        claimSlot = slot;
+                        claimEntry = current;
+                    }
+                } else if (age > oldestAge) {
+                    oldestSlot = slot;
+                    oldestEntry = current;
+                    oldestAge = age;
+                }
+            }
+            if (claimSlot >= 0) {
+                if (slots.compareAndSet(claimSlot, claimEntry, entry)) {
+                    return;
+                }
+                // Lost the slot to another thread; look again
+                continue;
+            }
+            if (slots.compareAndSet(oldestSlot, oldestEntry, entry)) {
+                evicted.increment();
+            }
+            return;
+        }
+    }
+
+    /**
+     * Check a join against the user's recent leaves in the guild, consuming the matching leave.
+     *
+     * @return true if the join is a rejoin within the window and should not be counted
+     */
+    public boolean suppressRejoin(long guildId, long userId, long nowMillis) {
+        if (!isEnabled()) {
+            return false;
+        }
+        long hash = hash(guildId, userId);
+        int fingerprint = fingerprint(hash);
+        long stamp = stamp(nowMillis);
+        int home = (int) hash & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (home + probe) & mask;
+            long current = slots.get(slot);
+            if (current != 0 && (int) (current >>> 32) == fingerprint && age(current, stamp) < windowMillis
+                    && slots.compareAndSet(slot, current, 0)) {
+                suppressed.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return joins not counted because they were rejoins within the window
+     */
+    public long getSuppressedCount() {
+        return suppressed.sum();
+    }
+
+    /**
+     * @return leaves forgotten early because their slots were needed for newer ones
+     */
+    public long getEvictedCount() {
+        return evicted.sum();
+    }
+
+    private long stamp(long nowMillis) {
+        return (nowMillis - baseMillis) & STAMP_MASK;
+    }
+
+    /**
+     * Milliseconds between an entry's leave and now, modulo 2^32; an entry stamped "in the future"
+     * by a slightly earlier clock reading wraps to a huge age and is treated as expired.
+     */
+    private static long age(long entry, long stamp) {
+        return (stamp - (entry & STAMP_MASK)) & STAMP_MASK;
+    }
+
+    private static int fingerprint(long hash) {
+        int fingerprint = (int) (hash >>> 32);
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    /**
+     * MurmurHash3 finalizer over both IDs, as used by the primitive counter maps.
+     */
+    private static long hash(long guildId, long userId) {
+        long h = userId * 0x9e3779b97f4a7c15L ^ guildId;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
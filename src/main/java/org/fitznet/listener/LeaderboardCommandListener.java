@@ -0,0 +1,82 @@
+package org.fitznet.listener;
+
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
+import org.fitznet.data.Leaderboard;
+import org.fitznet.data.LeaderboardIndex;
+import org.fitznet.guild.GuildConfigService;
+import org.fitznet.guild.GuildSettings;
+import org.fitznet.util.EmbedUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Answers the {@code /top} slash command with the voice join leaderboard of the guild it is used in.
+ * The reply is built from the in-memory {@link LeaderboardIndex}, so it never touches the store.
+ * Guilds that turned the leaderboard off get a short reply only the caller sees.
+ */
+@Slf4j
+public class LeaderboardCommandListener extends ListenerAdapter {
+    public static final String COMMAND_NAME = "top";
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 25;
+
+    private final LeaderboardIndex leaderboard;
+    private final GuildConfigService guildConfig;
+
+    public LeaderboardCommandListener(LeaderboardIndex leaderboard) {
+        this(leaderboard, new GuildConfigService());
+    }
+
+    public LeaderboardCommandListener(LeaderboardIndex leaderboard, GuildConfigService guildConfig) {
+        this.leaderboard = leaderboard;
+        this.guildConfig = guildConfig;
+    }
+
+    /**
+     * @return the command definition to register with Discord
+     */
+    public static SlashCommandData command() {
+        return Commands.slash(COMMAND_NAME, "Show who has joined voice the most")
+                .addOption(OptionType.INTEGER, "limit", "How many users to show (1-" + MAX_LIMIT + ")", false);
+    }
+
+    @Override
+    public void onSlashCommandInteraction(@NotNull SlashCommandInteractionEvent event) {
+        if (!COMMAND_NAME.equals(event.getName())) {
+            return;
+        }
+        Guild guild = event.getGuild();
+        if (guild != null && !guildConfig.isEnabled(guild.getIdLong(), GuildSettings.Feature.LEADERBOARD)) {
+            event.reply("The leaderboard is turned off in this server.").setEphemeral(true).queue(
+                    success -> log.debug("Declined /{} in guild {}", COMMAND_NAME, guild.getIdLong()),
+                    error -> log.error("Failed to reply to /{}", COMMAND_NAME, error)
+            );
+            return;
+        }
+        int limit = clampLimit(event.getOption("limit", DEFAULT_LIMIT, OptionMapping::getAsInt));
+        Leaderboard board = leaderboard.get(guild == null ? null : guild.getIdLong());
+
+        List<Leaderboard.Ranked> top = board.top(limit);
+        long callerId = event.getUser().getIdLong();
+        long callerCount = board.count(callerId);
+        Leaderboard.Ranked caller = callerCount == 0 ? null : new Leaderboard.Ranked(callerId, callerCount, board.rank(callerId));
+        String title = guild == null ? "Voice Join Leaderboard" : guild.getName() + " Voice Join Leaderboard";
+
+        event.replyEmbeds(EmbedUtil.createLeaderboardEmbed(title, top, caller)).queue(
+                success -> log.debug("Sent /{} leaderboard with {} entries", COMMAND_NAME, top.size()),
+                error -> log.error("Failed to reply to /{}", COMMAND_NAME, error)
+        );
+    }
+
+    private static int clampLimit(int limit) {
+        return Math.max(1, Math.min(MAX_LIMIT, limit));
+    }
+}
@@ -1,16 +1,39 @@
 package org.fitznet.listener;
 
+import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.MessageEmbed;
-import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.GuildVoiceState;
+import net.dv8tion.jda.api.entities.channel.middleman.AudioChannel;
 import net.dv8tion.jda.api.events.guild.voice.GuildVoiceUpdateEvent;
+import net.dv8tion.jda.api.events.session.ReadyEvent;
+import net.dv8tion.jda.api.events.session.SessionDisconnectEvent;
+import net.dv8tion.jda.api.events.session.SessionRecreateEvent;
+import net.dv8tion.jda.api.events.session.SessionResumeEvent;
+import net.dv8tion.jda.api.events.session.ShutdownEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.fitznet.announce.AnnouncementDispatcher;
+import org.fitznet.archive.VoiceEventArchive;
+import org.fitznet.data.LeaderboardIndex;
 import org.fitznet.data.VoiceJoinDatabase;
+import org.fitznet.data.VoiceJoinHistory;
+import org.fitznet.data.VoiceJoinStore;
+import org.fitznet.data.VoiceSessionTracker;
+import org.fitznet.guild.ChannelCache;
+import org.fitznet.guild.GuildConfigService;
+import org.fitznet.guild.GuildSettings;
+import org.fitznet.metrics.BotMetrics;
+import org.fitznet.milestone.MilestoneRules;
 import org.fitznet.util.EmbedUtil;
 import org.jetbrains.annotations.NotNull;
 
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
 import static org.fitznet.util.Constants.BOT_MESSAGE_CHANNEL_ID;
 
 /**
@@ -18,15 +41,32 @@ import static org.fitznet.util.Constants.BOT_MESSAGE_CHANNEL_ID;
  * <p>
  * This listener monitors guild voice update events to detect when users join voice channels
  * from not being in any voice channel (pure joins, not moves between channels).
- * When a user reaches certain milestones (1, 100, 500, 1000, 2000, 5000 joins),
- * a congratulatory message is sent to the designated bot channel.
+ * When a user reaches a milestone of the guild's {@link MilestoneRules} (by default 1, 100, 500,
+ * 1000, 2000 and 5000 joins), a congratulatory message is sent to the guild's announcement
+ * channel, as configured in its {@link GuildSettings} and resolved through a {@link ChannelCache}.
+ * </p>
+ * <p>
+ * A rejoin shortly after leaving, typically a flapping connection, is debounced by a
+ * {@link JoinDebouncer} and not counted again.
+ * Joins, leaves and moves also open, close and continue voice sessions in a {@link VoiceSessionTracker},
+ * which is reconciled against the guilds' voice states whenever the gateway becomes ready or
+ * recreates its session. Every event, debounced or not, is also recorded in a {@link VoiceEventArchive}.
  * </p>
  */
 @Slf4j
 public class LoginListener extends ListenerAdapter {
-    private final VoiceJoinDatabase voiceDatabase;
-    private final int[] loginMilestones = {1, 100, 500, 1000, 2000, 5000};
-    private final JDA jda;
+    private final VoiceJoinStore voiceDatabase;
+    private final VoiceJoinHistory voiceHistory;
+    private final LeaderboardIndex leaderboard;
+    private final VoiceEventPipeline pipeline;
+    private final BotMetrics metrics;
+    private final MilestoneRules milestones;
+    private final AnnouncementDispatcher announcer;
+    private final VoiceSessionTracker sessions;
+    private final JoinDebouncer debouncer;
+    private final VoiceEventArchive archive;
+    private final GuildConfigService guildConfig;
+    private final ChannelCache channels;
 
     /**
      * Constructs a new LoginListener with the specified JDA instance.
@@ -35,21 +75,150 @@ public class LoginListener extends ListenerAdapter {
      * @param jda the JDA instance used for Discord API interactions
      */
     public LoginListener(JDA jda) {
-        this.jda = jda;
-        this.voiceDatabase = new VoiceJoinDatabase();
+        this(jda, null, null, null, null, null, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * Constructs a new LoginListener that records joins in the given store and history.
+     * Any collaborator left null gets the same default the single-argument constructor uses.
+     *
+     * @param jda the JDA instance used for Discord API interactions
+     * @param voiceDatabase the store holding every user's voice join count
+     * @param voiceHistory per-guild, time-bucketed join counters
+     * @param leaderboard rankings kept current with every join
+     * @param pipeline worker lanes that joins are handled on, keeping them off JDA's event thread
+     * @param metrics meters for received and handled events and milestone announcements
+     * @param milestones which join counts are announced in each guild
+     * @param announcer batches milestone embeds per channel; without one, each is sent immediately
+     * @param sessions voice session tracker; without one, session time is kept in the history only
+     * @param debouncer decides which rejoins are flapping and not counted; without one, every join is counted
+     * @param archive records every voice event for offline analytics; without one, events are not archived
+     * @param guildConfig per-guild settings; without one, every guild uses the defaults
+     * @param channels resolves each guild's announcement channel; without one, channels are looked up through {@code jda}
+     */
+    @Builder
+    public LoginListener(JDA jda, VoiceJoinStore voiceDatabase, VoiceJoinHistory voiceHistory,
+                         LeaderboardIndex leaderboard, VoiceEventPipeline pipeline, BotMetrics metrics,
+                         MilestoneRules milestones, AnnouncementDispatcher announcer, VoiceSessionTracker sessions,
+                         JoinDebouncer debouncer, VoiceEventArchive archive, GuildConfigService guildConfig,
+                         ChannelCache channels) {
+        this.voiceDatabase = voiceDatabase != null ? voiceDatabase : new VoiceJoinDatabase();
+        this.voiceHistory = voiceHistory != null ? voiceHistory : new VoiceJoinHistory();
+        this.leaderboard = leaderboard != null ? leaderboard : new LeaderboardIndex();
+        this.pipeline = pipeline != null ? pipeline : VoiceEventPipeline.direct();
+        this.metrics = metrics != null ? metrics : BotMetrics.noop();
+        this.milestones = milestones != null ? milestones : new MilestoneRules();
+        this.guildConfig = guildConfig != null ? guildConfig : new GuildConfigService();
+        this.channels = channels != null
+                ? channels
+                : new ChannelCache(channelId -> jda.getTextChannelById(channelId), this.guildConfig, BOT_MESSAGE_CHANNEL_ID);
+        this.announcer = announcer != null ? announcer : AnnouncementDispatcher.direct(this.channels, this.metrics);
+        this.sessions = sessions != null ? sessions : new VoiceSessionTracker(null, this.voiceHistory);
+        this.debouncer = debouncer != null ? debouncer : JoinDebouncer.disabled();
+        this.archive = archive != null ? archive : VoiceEventArchive.disabled();
     }
 
     /**
      * Handles guild voice update events from Discord.
-     * Only processes events where a user joins a voice channel from not being in one.
+     * Joins from not being in a voice channel are counted; joins, leaves and moves all update the
+     * user's voice session. Events are handed to the pipeline keyed by user, so this returns to JDA
+     * without touching the disk and each user's events are handled in order.
      *
      * @param event the guild voice update event containing voice channel change information
      */
     @Override
     public void onGuildVoiceUpdate(@NotNull GuildVoiceUpdateEvent event) {
+        long receivedNanos = System.nanoTime();
+        long receivedMillis = System.currentTimeMillis();
+        long userId = event.getMember().getIdLong();
+        long guildId = event.getGuild().getIdLong();
         if (isUserJoiningVoiceChannel(event)) {
-            handleVoiceChannelJoin(event);
+            metrics.eventReceived(BotMetrics.VoiceEventType.JOIN);
+            archive(event, VoiceEventArchive.EventType.JOIN, receivedMillis, guildId, userId);
+            pipeline.submit(userId, () -> {
+                sessions.join(guildId, userId, receivedMillis);
+                if (debouncer.suppressRejoin(guildId, userId, receivedMillis)) {
+                    log.debug("Not counting rejoin of {} within {} ms of leaving", userId, debouncer.getWindowMillis());
+                } else {
+                    handleVoiceChannelJoin(event);
+                }
+                metrics.eventProcessed(receivedNanos);
+            });
+        } else if (event.getChannelJoined() == null) {
+            metrics.eventReceived(BotMetrics.VoiceEventType.LEAVE);
+            archive(event, VoiceEventArchive.EventType.LEAVE, receivedMillis, guildId, userId);
+            pipeline.submit(userId, () -> {
+                sessions.leave(guildId, userId, receivedMillis);
+                debouncer.recordLeave(guildId, userId, receivedMillis);
+                metrics.eventProcessed(receivedNanos);
+            });
+        } else {
+            metrics.eventReceived(BotMetrics.VoiceEventType.MOVE);
+            archive(event, VoiceEventArchive.EventType.MOVE, receivedMillis, guildId, userId);
+            pipeline.submit(userId, () -> {
+                sessions.move(guildId, userId, receivedMillis);
+                metrics.eventProcessed(receivedNanos);
+            });
+        }
+    }
+
+    /**
+     * Record an event in the archive, against the channel left for a leave and the channel joined otherwise.
+     */
+    private void archive(GuildVoiceUpdateEvent event, VoiceEventArchive.EventType type, long atMillis,
+                         long guildId, long userId) {
+        if (archive.isEnabled()) {
+            AudioChannel channel = type == VoiceEventArchive.EventType.LEAVE ? event.getChannelLeft() : event.getChannelJoined();
+            archive.record(atMillis, guildId, channel.getIdLong(), userId, type);
+        }
+    }
+
+    @Override
+    public void onReady(@NotNull ReadyEvent event) {
+        reconcileSessions(event.getJDA());
+    }
+
+    @Override
+    public void onSessionRecreate(@NotNull SessionRecreateEvent event) {
+        reconcileSessions(event.getJDA());
+    }
+
+    /**
+     * A resumed session replays every missed event, so no reconcile is needed.
+     */
+    @Override
+    public void onSessionResume(@NotNull SessionResumeEvent event) {
+        sessions.reconciled();
+    }
+
+    @Override
+    public void onSessionDisconnect(@NotNull SessionDisconnectEvent event) {
+        sessions.disconnected(event.getTimeDisconnected().toInstant().toEpochMilli());
+    }
+
+    @Override
+    public void onShutdown(@NotNull ShutdownEvent event) {
+        sessions.disconnected(event.getTimeShutdown().toInstant().toEpochMilli());
+    }
+
+    /**
+     * Open sessions for members found in voice and close those of members who left while the
+     * gateway was down, for every guild this JDA instance serves.
+     *
+     * @param jda the JDA instance whose guilds are reconciled
+     */
+    private void reconcileSessions(JDA jda) {
+        long nowMillis = System.currentTimeMillis();
+        Map<Long, long[]> usersInVoice = new HashMap<>();
+        for (Guild guild : jda.getGuildCache()) {
+            usersInVoice.put(guild.getIdLong(), guild.getVoiceStates().stream()
+                    .filter(GuildVoiceState::inAudioChannel)
+                    .mapToLong(state -> state.getMember().getIdLong())
+                    .toArray());
         }
+        int changed = sessions.reconcile(usersInVoice, nowMillis);
+        sessions.reconciled();
+        log.info("Reconciled voice sessions: {} opened or closed, {} active", changed, sessions.getActiveSessionCount());
     }
 
     /**
@@ -66,21 +235,23 @@ public class LoginListener extends ListenerAdapter {
 
     /**
      * Processes a voice channel join event by updating user statistics and checking for milestones.
-     * Increments the user's voice join count in the database, logs the event,
-     * and checks if the user has reached any milestone thresholds.
+     * Increments the user's voice join count in the database and the guild history, moves the user
+     * up the leaderboards, logs the event, and checks if the user has reached any milestone thresholds.
      *
      * @param event the guild voice update event representing a voice channel join
      */
     private void handleVoiceChannelJoin(GuildVoiceUpdateEvent event) {
         Member user = event.getMember();
         long userId = user.getIdLong();
+        long guildId = event.getGuild().getIdLong();
 
         long newCount = voiceDatabase.incrementVoiceJoinCount(userId);
+        long guildCount = voiceHistory.recordJoin(guildId, event.getChannelJoined().getIdLong(), userId, Instant.now());
+        leaderboard.recordJoin(userId, newCount);
+        leaderboard.recordGuildJoin(guildId, userId, guildCount);
 
         logVoiceJoin(user, event.getGuild().getName(), newCount);
-        checkForMilestone(event.getMember(), newCount);
-
-        log.debug("Current database stats: {}", voiceDatabase.getAllCounts());
+        checkForMilestone(user, event.getGuild(), newCount);
     }
 
     /**
@@ -98,59 +269,42 @@ public class LoginListener extends ListenerAdapter {
     }
 
     /**
-     * Checks if a user has reached any milestone and triggers congratulatory message if so.
-     * Milestones are defined as specific join counts (1, 100, 500, 1000, 2000, 5000).
-     * Only sends one milestone message per join event, even if multiple milestones are reached.
+     * Checks if a user has reached a milestone of the guild and triggers congratulatory message if so.
+     * The user's next milestone is precomputed, so this is a single comparison for most joins.
+     * Guilds with milestone announcements turned off still advance the user's next milestone.
      *
      * @param member the Discord member to check for milestones
+     * @param guild the guild whose milestone rules and announcement channel apply
      * @param count the current total join count for the user
      */
-    private void checkForMilestone(Member member, long count) {
-        for (int milestone : loginMilestones) {
-            if (count == milestone) {
-                sendMilestoneMessage(member, milestone);
-                break;
-            }
+    private void checkForMilestone(Member member, Guild guild, long count) {
+        if (milestones.reached(guild.getIdLong(), member.getIdLong(), count)
+                && guildConfig.isEnabled(guild.getIdLong(), GuildSettings.Feature.MILESTONES)) {
+            sendMilestoneMessage(member, guild, count);
         }
     }
 
     /**
-     * Sends a milestone congratulations message to the designated bot channel.
-     * Creates an embed message using the EmbedUtil and queues it for delivery.
-     * Handles cases where the bot channel is not found or message sending fails.
+     * Hands a milestone congratulations embed to the announcement dispatcher for the guild's announcement channel.
+     * The dispatcher batches it with other announcements for the channel and reports delivery failures.
      *
      * @param member the Discord member who reached the milestone
+     * @param guild the guild the milestone was reached in
      * @param milestone the milestone number that was reached
      */
-    private void sendMilestoneMessage(Member member, int milestone) {
-        TextChannel botChannel = getBotChannel();
-        if (botChannel == null) {
-            log.error("Bot channel not found! Cannot send milestone message for {} at {} joins",
-                    member.getEffectiveName(), milestone);
+    private void sendMilestoneMessage(Member member, Guild guild, long milestone) {
+        long channelId = channels.announcementChannelId(guild);
+        if (channelId == 0) {
+            log.debug("Guild {} has no announcement channel; not announcing {} joins", guild.getIdLong(), milestone);
             return;
         }
-
         try {
             MessageEmbed embed = EmbedUtil.createMilestoneEmbed(member, milestone);
-            botChannel.sendMessageEmbeds(embed)
-                    .queue(
-                            message -> log.info("Milestone message sent for {} reaching {} joins. Message: {}",
-                                    member.getEffectiveName(), milestone, message.toString()),
-                            error -> log.error("Failed to send milestone message for {} at {} joins",
-                                    member.getEffectiveName(), milestone, error)
-                    );
+            announcer.announce(channelId, new AnnouncementDispatcher.Announcement(
+                    embed, milestone, String.format("%s reached %d joins", member.getEffectiveName(), milestone)));
         } catch (Exception e) {
+            metrics.milestonesFailed(1);
             log.error("Error creating milestone embed for {}", member.getEffectiveName(), e);
         }
     }
-
-    /**
-     * Retrieves the designated bot message channel from Discord.
-     * Uses the channel ID defined in Constants to find the appropriate text channel.
-     *
-     * @return the TextChannel where bot messages should be sent, or null if not found
-     */
-    private TextChannel getBotChannel() {
-        return jda.getTextChannelById(BOT_MESSAGE_CHANNEL_ID);
-    }
 }
@@ -0,0 +1,195 @@
+package org.fitznet.listener;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.fitznet.util.Constants.PIPELINE_SHED_FRACTION;
+
+/**
+ * Moves voice event handling off JDA's event thread onto a fixed set of worker lanes.
+ * <p>
+ * Each lane is a single thread draining its own bounded queue. Work is routed to a lane by user
+ * ID, so events for the same user are always handled in arrival order (keeping milestone
+ * detection exact) while different users are processed in parallel. When a lane's queue is full
+ * the {@link OverflowPolicy} decides whether the event thread waits for room or the event is
+ * dropped. Well before that, once the lanes are {@link org.fitznet.util.Constants#PIPELINE_SHED_FRACTION half}
+ * full, the pipeline reports itself {@linkplain #isOverloaded() overloaded} so that optional work
+ * such as milestone announcements can be shed while joins are still counted. A pipeline with
+ * zero lanes runs every task inline on the caller's thread.
+ * </p>
+ */
+@Slf4j
+public class VoiceEventPipeline implements AutoCloseable {
+    private static final Runnable STOP = () -> {
+    };
+
+    private final Lane[] lanes;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final int shedDepth;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * What to do with an event whose lane is full.
+     */
+    public enum OverflowPolicy {
+        /** Wait on the event thread until the lane has room, slowing the gateway down instead of losing joins. */
+        BLOCK,
+        /** Discard the event and count it as dropped. */
+        DROP
+    }
+
+    /**
+     * Snapshot of the pipeline's configuration and load.
+     */
+    public record Stats(int lanes, int queueCapacity, OverflowPolicy overflowPolicy,
+                        int queueDepth, int shedDepth, long submitted, long dropped) {
+    }
+
+    /**
+     * @param laneCount number of worker threads; zero handles every event inline
+     * @param queueCapacity maximum queued events per lane
+     * @param overflowPolicy what to do when a lane's queue is full
+     */
+    public VoiceEventPipeline(int laneCount, int queueCapacity, OverflowPolicy overflowPolicy) {
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.lanes = new Lane[Math.max(0, laneCount)];
+        this.shedDepth = (int) Math.ceil((double) lanes.length * Math.max(1, queueCapacity) * PIPELINE_SHED_FRACTION);
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i, queueCapacity);
+        }
+    }
+
+    /**
+     * @return a pipeline that runs every task on the calling thread
+     */
+    public static VoiceEventPipeline direct() {
+        return new VoiceEventPipeline(0, 0, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Queue a task behind every earlier task submitted for the same key.
+     *
+     * @param key ordering key, the user ID the event belongs to
+     * @param task work to run
+     * @return false if the task was dropped
+     */
+    public boolean submit(long key, Runnable task) {
+        submitted.incrementAndGet();
+        if (lanes.length == 0) {
+            task.run();
+            return true;
+        }
+        if (closed) {
+            dropped.incrementAndGet();
+            log.warn("Voice event pipeline is closed, dropping event for {}", key);
+            return false;
+        }
+
+        Lane lane = lanes[(int) Math.floorMod(key, (long) lanes.length)];
+        if (overflowPolicy == OverflowPolicy.DROP) {
+            if (!lane.queue.offer(task)) {
+                long total = dropped.incrementAndGet();
+                log.warn("Voice event lane {} is full, dropped event for {} ({} dropped so far)", lane.index, key, total);
+                return false;
+            }
+            return true;
+        }
+        try {
+            lane.queue.put(task);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * @return events waiting across every lane
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * @return true while the lanes are so full that optional work should be skipped; never for an inline pipeline
+     */
+    public boolean isOverloaded() {
+        return lanes.length > 0 && getQueueDepth() >= shedDepth;
+    }
+
+    public Stats getStats() {
+        return new Stats(lanes.length, queueCapacity, overflowPolicy, getQueueDepth(), shedDepth,
+                submitted.get(), dropped.get());
+    }
+
+    /**
+     * Stop accepting events, let the lanes finish what is already queued and wait for them to exit.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Lane lane : lanes) {
+            try {
+                lane.queue.put(STOP);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lane.thread.interrupt();
+            }
+        }
+        for (Lane lane : lanes) {
+            try {
+                lane.thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static final class Lane implements Runnable {
+        final int index;
+        final BlockingQueue<Runnable> queue;
+        final Thread thread;
+
+        Lane(int index, int capacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+            this.thread = new Thread(this, "voice-event-lane-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (task == STOP) {
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("Voice event handler failed on lane {}", index, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.fitznet.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import org.fitznet.archive.VoiceEventArchive;
+import org.fitznet.data.VoiceJoinStore;
+import org.fitznet.data.VoiceSessionTracker;
+import org.fitznet.listener.JoinDebouncer;
+import org.fitznet.listener.VoiceEventPipeline;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Micrometer meters for the bot runtime, published through the Actuator Prometheus endpoint.
+ * <p>
+ * Voice events and milestones are counted as they happen. Persistence and JDA meters are
+ * function-based and read their values from the bound store and JDA instance when scraped, so the
+ * hot path pays nothing for them. The JDA instance can be re-bound after a restart.
+ * </p>
+ */
+public class BotMetrics {
+    private final MeterRegistry registry;
+    private final Counter joinsReceived;
+    private final Counter leavesReceived;
+    private final Counter movesReceived;
+    private final Counter eventsProcessed;
+    private final Counter milestonesSent;
+    private final Counter milestonesFailed;
+    private final Counter milestonesDropped;
+    private final Counter milestonesShed;
+    private final Counter milestonesMerged;
+    private final Counter announcementMessages;
+    private final Timer handlerLatency;
+    private final AtomicReference<JDA> jda = new AtomicReference<>();
+    private final AtomicReference<ShardManager> shards = new AtomicReference<>();
+
+    /**
+     * The kind of voice state change an event represents.
+     */
+    public enum VoiceEventType { JOIN, LEAVE, MOVE }
+
+    public BotMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.joinsReceived = receivedCounter(VoiceEventType.JOIN);
+        this.leavesReceived = receivedCounter(VoiceEventType.LEAVE);
+        this.movesReceived = receivedCounter(VoiceEventType.MOVE);
+        this.eventsProcessed = Counter.builder("fitzbot.voice.events.processed")
+                .description("Voice events (joins, leaves and moves) fully handled")
+                .register(registry);
+        this.milestonesSent = Counter.builder("fitzbot.milestones")
+                .tag("result", "sent")
+                .description("Milestone announcements")
+                .register(registry);
+        this.milestonesFailed = Counter.builder("fitzbot.milestones")
+                .tag("result", "failed")
+                .description("Milestone announcements")
+                .register(registry);
+        this.milestonesDropped = Counter.builder("fitzbot.milestones")
+                .tag("result", "dropped")
+                .description("Milestone announcements")
+                .register(registry);
+        this.milestonesShed = Counter.builder("fitzbot.milestones")
+                .tag("result", "shed")
+                .description("Milestone announcements")
+                .register(registry);
+        this.milestonesMerged = Counter.builder("fitzbot.milestones.merged")
+                .description("Milestone announcements folded into a summary embed under load")
+                .register(registry);
+        this.announcementMessages = Counter.builder("fitzbot.announcements.messages")
+                .description("Discord messages sent for milestone announcements")
+                .register(registry);
+        this.handlerLatency = Timer.builder("fitzbot.voice.handler.latency")
+                .description("Time from receiving a voice event (join, leave or move) to finishing its handling, including queueing")
+                .publishPercentileHistogram()
+                .register(registry);
+
+        Gauge.builder("fitzbot.jda.gateway.ping", this, BotMetrics::gatewayPing)
+                .description("Latest heartbeat round trip to the Discord gateway, averaged over shards")
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("fitzbot.jda.ratelimit.pool.queue.size", this, BotMetrics::rateLimitPoolQueueSize)
+                .description("Tasks scheduled on JDA's rate-limit pool; requests waiting in rate-limit buckets are not counted")
+                .register(registry);
+    }
+
+    /**
+     * @return metrics backed by a private in-memory registry, for listeners built outside Spring
+     */
+    public static BotMetrics noop() {
+        return new BotMetrics(new SimpleMeterRegistry());
+    }
+
+    private Counter receivedCounter(VoiceEventType type) {
+        return Counter.builder("fitzbot.voice.events.received")
+                .tag("type", type.name().toLowerCase())
+                .description("Voice state updates received from the gateway")
+                .register(registry);
+    }
+
+    private double gatewayPing() {
+        ShardManager manager = shards.get();
+        if (manager != null) {
+            return manager.getAverageGatewayPing();
+        }
+        JDA current = jda.get();
+        return current == null ? Double.NaN : current.getGatewayPing();
+    }
+
+    /**
+     * JDA keeps pending REST requests in per-bucket queues of its rate limiter, which it does not
+     * expose; this only counts the bucket wake-ups and other work scheduled on the pool.
+     */
+    private double rateLimitPoolQueueSize() {
+        ShardManager manager = shards.get();
+        if (manager == null) {
+            JDA current = jda.get();
+            return current == null ? Double.NaN : queueSize(current.getRateLimitPool());
+        }
+        // Shards usually share one rate-limit pool, so count each pool once
+        Set<ScheduledExecutorService> pools = Collections.newSetFromMap(new IdentityHashMap<>());
+        manager.getShardCache().forEach(shard -> pools.add(shard.getRateLimitPool()));
+        double size = 0;
+        for (ScheduledExecutorService pool : pools) {
+            size += queueSize(pool);
+        }
+        return size;
+    }
+
+    private static double queueSize(ScheduledExecutorService pool) {
+        return pool instanceof ThreadPoolExecutor executor ? executor.getQueue().size() : 0;
+    }
+
+    /**
+     * Publish flush count, time and bytes of the given store.
+     */
+    public void bindStore(VoiceJoinStore store) {
+        FunctionTimer.builder("fitzbot.persistence.flush", store,
+                        s -> s.getFlushStats().flushes(),
+                        s -> s.getFlushStats().totalNanos(),
+                        TimeUnit.NANOSECONDS)
+                .description("Voice join store flushes to disk")
+                .register(registry);
+        FunctionCounter.builder("fitzbot.persistence.flushed", store, s -> s.getFlushStats().bytes())
+                .description("Bytes written by voice join store flushes")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Publish queue depth and drops of the voice event pipeline.
+     */
+    public void bindPipeline(VoiceEventPipeline pipeline) {
+        Gauge.builder("fitzbot.voice.pipeline.queue.depth", pipeline, VoiceEventPipeline::getQueueDepth)
+                .description("Voice events waiting across every pipeline lane")
+                .register(registry);
+        FunctionCounter.builder("fitzbot.voice.pipeline.dropped", pipeline, p -> p.getStats().dropped())
+                .description("Voice events dropped because their lane was full or closed")
+                .register(registry);
+    }
+
+    /**
+     * Publish how many joins the debouncer suppressed and how many remembered leaves it had to evict.
+     */
+    public void bindDebouncer(JoinDebouncer debouncer) {
+        FunctionCounter.builder("fitzbot.voice.joins.suppressed", debouncer, JoinDebouncer::getSuppressedCount)
+                .description("Rejoins within the debounce window that were not counted as joins")
+                .register(registry);
+        FunctionCounter.builder("fitzbot.voice.debounce.evicted", debouncer, JoinDebouncer::getEvictedCount)
+                .description("Recent leaves forgotten before their window ended because the debounce table was full")
+                .register(registry);
+    }
+
+    /**
+     * Publish how many voice events were archived and how many the archive had to drop.
+     */
+    public void bindArchive(VoiceEventArchive archive) {
+        FunctionCounter.builder("fitzbot.archive.events", archive, VoiceEventArchive::getArchivedCount)
+                .description("Voice events written to the event archive")
+                .register(registry);
+        FunctionCounter.builder("fitzbot.archive.dropped", archive, VoiceEventArchive::getDroppedCount)
+                .description("Voice events not archived because the archive writer fell behind or failed")
+                .register(registry);
+    }
+
+    /**
+     * Publish the number of open voice sessions.
+     */
+    public void bindSessions(VoiceSessionTracker sessions) {
+        Gauge.builder("fitzbot.voice.sessions.active", sessions, VoiceSessionTracker::getActiveSessionCount)
+                .description("Users currently in a voice channel, per the session tracker")
+                .register(registry);
+    }
+
+    /**
+     * Point the JDA gauges at a (new) JDA instance.
+     */
+    public void bindJda(JDA current) {
+        jda.set(current);
+    }
+
+    /**
+     * Point the JDA gauges at every shard of a ShardManager.
+     */
+    public void bindShards(ShardManager manager) {
+        shards.set(manager);
+    }
+
+    public void eventReceived(VoiceEventType type) {
+        switch (type) {
+            case JOIN -> joinsReceived.increment();
+            case LEAVE -> leavesReceived.increment();
+            case MOVE -> movesReceived.increment();
+        }
+    }
+
+    /**
+     * @param receivedNanos {@link System#nanoTime()} when the event arrived from the gateway
+     */
+    public void eventProcessed(long receivedNanos) {
+        eventsProcessed.increment();
+        handlerLatency.record(System.nanoTime() - receivedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void milestonesSent(int count) {
+        milestonesSent.increment(count);
+    }
+
+    public void milestonesFailed(int count) {
+        milestonesFailed.increment(count);
+    }
+
+    public void milestoneDropped() {
+        milestonesDropped.increment();
+    }
+
+    public void milestonesShed(int count) {
+        milestonesShed.increment(count);
+    }
+
+    public void milestonesMerged(int count) {
+        milestonesMerged.increment(count);
+    }
+
+    public void announcementMessageSent() {
+        announcementMessages.increment();
+    }
+}
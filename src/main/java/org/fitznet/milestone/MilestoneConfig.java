@@ -0,0 +1,75 @@
+package org.fitznet.milestone;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Milestone rules as written in the rules file.
+ * <pre>
+ * {
+ *   "defaults": [{"type": "explicit", "values": [1, 100, 500, 1000, 2000, 5000]}],
+ *   "guilds": {
+ *     "123456789": [{"type": "every", "interval": 250}, {"type": "geometric", "first": 10, "factor": 2}]
+ *   }
+ * }
+ * </pre>
+ *
+ * @param defaults rules for guilds without their own entry
+ * @param guilds rules by guild ID; a guild's rules replace the defaults rather than adding to them
+ */
+public record MilestoneConfig(List<RuleSpec> defaults, Map<Long, List<RuleSpec>> guilds) {
+
+    public MilestoneConfig {
+        defaults = defaults == null ? List.of() : List.copyOf(defaults);
+        guilds = guilds == null ? Map.of() : Map.copyOf(guilds);
+    }
+
+    /**
+     * Kind of series a rule describes.
+     */
+    public enum Type {
+        @JsonProperty("explicit") EXPLICIT,
+        @JsonProperty("every") EVERY,
+        @JsonProperty("geometric") GEOMETRIC
+    }
+
+    /**
+     * One rule. Only the fields its type uses need to be set.
+     *
+     * @param type which series this is
+     * @param values milestones of an {@code explicit} rule
+     * @param interval spacing of an {@code every} rule
+     * @param first first milestone of a {@code geometric} rule
+     * @param factor growth of a {@code geometric} rule, greater than 1
+     */
+    public record RuleSpec(Type type, long[] values, long interval, long first, double factor) {
+
+        public static RuleSpec explicit(long... values) {
+            return new RuleSpec(Type.EXPLICIT, values, 0, 0, 0);
+        }
+
+        public static RuleSpec every(long interval) {
+            return new RuleSpec(Type.EVERY, null, interval, 0, 0);
+        }
+
+        public static RuleSpec geometric(long first, double factor) {
+            return new RuleSpec(Type.GEOMETRIC, null, 0, first, factor);
+        }
+
+        /**
+         * @throws IllegalArgumentException if the fields do not describe a valid rule
+         */
+        public MilestoneRule toRule() {
+            if (type == null) {
+                throw new IllegalArgumentException("Milestone rule is missing its type");
+            }
+            return switch (type) {
+                case EXPLICIT -> MilestoneRule.explicit(values == null ? new long[0] : values);
+                case EVERY -> MilestoneRule.every(interval);
+                case GEOMETRIC -> MilestoneRule.geometric(first, factor);
+            };
+        }
+    }
+}
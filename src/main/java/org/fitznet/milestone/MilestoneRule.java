@@ -0,0 +1,93 @@
+package org.fitznet.milestone;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A series of voice join counts worth announcing.
+ * <p>
+ * A rule only has to answer "what is the first milestone above this count", which lets the engine
+ * compute a user's next threshold once per milestone instead of testing every rule on every join.
+ * </p>
+ */
+@FunctionalInterface
+public interface MilestoneRule {
+    /** Returned by {@link #nextAfter(long)} when no milestone remains. */
+    long NONE = Long.MAX_VALUE;
+
+    /**
+     * @param count a join count, zero or more
+     * @return the smallest milestone strictly greater than {@code count}, or {@link #NONE}
+     */
+    long nextAfter(long count);
+
+    /**
+     * @return true if {@code count} is itself a milestone
+     */
+    default boolean isMilestone(long count) {
+        return count > 0 && nextAfter(count - 1) == count;
+    }
+
+    /**
+     * A fixed set of milestones, such as 1, 100, 500.
+     */
+    static MilestoneRule explicit(long... thresholds) {
+        long[] sorted = Arrays.stream(thresholds).distinct().sorted().toArray();
+        if (sorted.length == 0 || sorted[0] <= 0) {
+            throw new IllegalArgumentException("Explicit milestones must be positive and non-empty: " + Arrays.toString(thresholds));
+        }
+        return count -> {
+            int index = Arrays.binarySearch(sorted, count + 1);
+            int next = index >= 0 ? index : -index - 1;
+            return next < sorted.length ? sorted[next] : NONE;
+        };
+    }
+
+    /**
+     * Every multiple of {@code interval}: interval, 2 * interval, ...
+     */
+    static MilestoneRule every(long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Milestone interval must be positive: " + interval);
+        }
+        return count -> count > NONE - interval ? NONE : (count / interval + 1) * interval;
+    }
+
+    /**
+     * {@code first}, then each milestone multiplied by {@code factor} and rounded: 10, 20, 40, ... for (10, 2).
+     * Each step grows by at least one, so factors close to 1 still terminate.
+     */
+    static MilestoneRule geometric(long first, double factor) {
+        if (first <= 0 || !(factor > 1.0)) {
+            throw new IllegalArgumentException("Geometric milestones need first > 0 and factor > 1: " + first + ", " + factor);
+        }
+        return count -> {
+            long threshold = first;
+            while (threshold <= count) {
+                double scaled = Math.rint(threshold * factor);
+                if (scaled >= NONE) {
+                    return NONE;
+                }
+                threshold = Math.max(threshold + 1, (long) scaled);
+            }
+            return threshold;
+        };
+    }
+
+    /**
+     * The union of several rules: a count is a milestone if any of them says so.
+     */
+    static MilestoneRule anyOf(List<MilestoneRule> rules) {
+        if (rules.size() == 1) {
+            return rules.get(0);
+        }
+        MilestoneRule[] all = rules.toArray(new MilestoneRule[0]);
+        return count -> {
+            long next = NONE;
+            for (MilestoneRule rule : all) {
+                next = Math.min(next, rule.nextAfter(count));
+            }
+            return next;
+        };
+    }
+}
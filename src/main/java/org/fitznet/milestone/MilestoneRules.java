@@ -0,0 +1,256 @@
+package org.fitznet.milestone;
+
+import lombok.extern.slf4j.Slf4j;
+import org.fitznet.data.LongCounterMap;
+import org.fitznet.util.JsonUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.fitznet.util.Constants.DEFAULT_LOGIN_MILESTONES;
+import static org.fitznet.util.Constants.MILESTONE_RELOAD_INTERVAL_MS;
+
+/**
+ * Decides which voice join counts are announced, per guild.
+ * <p>
+ * Each rule set caches every user's next milestone, so a join that is not a milestone costs one
+ * map lookup and one comparison. The rule sets are immutable and swapped as a whole on reload;
+ * the fresh sets start with empty caches that refill from each user's count on their next join,
+ * so reloading never touches the stored counts or the JDA connection. When backed by a file, the
+ * file is polled for changes and reloaded automatically; a file that fails to parse keeps the
+ * current rules.
+ * </p>
+ * <p>
+ * Guild overrides set with {@link #overrideGuild(long, List)}, such as those from the guild
+ * settings, take precedence over the rules file and survive its reloads.
+ * </p>
+ */
+@Slf4j
+public class MilestoneRules implements AutoCloseable {
+    private final File rulesFile;
+    private final ScheduledExecutorService reloader;
+    private final Map<Long, List<MilestoneConfig.RuleSpec>> guildOverrides = new ConcurrentHashMap<>();
+    private volatile RuleSets ruleSets;
+    private volatile long loadedModified;
+
+    /**
+     * Rules with the built-in default milestones and no rules file.
+     */
+    public MilestoneRules() {
+        this(defaultConfig());
+    }
+
+    /**
+     * Fixed rules with no rules file; they can still be replaced with {@link #apply(MilestoneConfig)}.
+     */
+    public MilestoneRules(MilestoneConfig config) {
+        this.rulesFile = null;
+        this.reloader = null;
+        this.ruleSets = RuleSets.of(config, Map.of());
+    }
+
+    /**
+     * @param rulesFile JSON rules file; the built-in defaults are used while it is missing
+     * @param reloadIntervalMillis how often to check the file for changes; zero or less disables polling
+     */
+    public MilestoneRules(File rulesFile, long reloadIntervalMillis) {
+        this.rulesFile = rulesFile;
+        this.ruleSets = RuleSets.of(defaultConfig(), Map.of());
+        reload();
+        if (reloadIntervalMillis > 0) {
+            this.reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "milestone-rules-reloader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reloader.scheduleWithFixedDelay(this::reloadIfModified,
+                    reloadIntervalMillis, reloadIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.reloader = null;
+        }
+    }
+
+    public MilestoneRules(File rulesFile) {
+        this(rulesFile, MILESTONE_RELOAD_INTERVAL_MS);
+    }
+
+    /**
+     * @return the built-in milestones for every guild
+     */
+    public static MilestoneConfig defaultConfig() {
+        return new MilestoneConfig(List.of(MilestoneConfig.RuleSpec.explicit(DEFAULT_LOGIN_MILESTONES)), Map.of());
+    }
+
+    /**
+     * Check a user's new count against the milestones of the guild the join happened in.
+     * Counts must reach this method in increasing order per user, which the voice event pipeline guarantees.
+     *
+     * @param guildId guild the join happened in
+     * @param userId user who joined
+     * @param count the user's count after the join
+     * @return true if {@code count} is a milestone
+     */
+    public boolean reached(long guildId, long userId, long count) {
+        return ruleSets.forGuild(guildId).reached(userId, count);
+    }
+
+    /**
+     * @return the first milestone above {@code count} in the guild, or {@link MilestoneRule#NONE}
+     */
+    public long nextMilestone(long guildId, long count) {
+        return ruleSets.forGuild(guildId).rule.nextAfter(count);
+    }
+
+    /**
+     * @return the rules from the rules file or the last {@link #apply(MilestoneConfig)}, without guild overrides
+     */
+    public MilestoneConfig getConfig() {
+        return ruleSets.config;
+    }
+
+    /**
+     * Replace the rules in effect.
+     *
+     * @throws IllegalArgumentException if any rule is invalid; the current rules are kept
+     */
+    public synchronized void apply(MilestoneConfig config) {
+        ruleSets = RuleSets.of(config, guildOverrides);
+        log.info("Milestone rules applied: {} default rule(s), {} guild override(s)",
+                config.defaults().size(), config.guilds().size());
+    }
+
+    /**
+     * Read the rules file again, falling back to the built-in defaults if it no longer exists.
+     *
+     * @return false if there is no rules file or it could not be loaded
+     */
+    public boolean reload() {
+        if (rulesFile == null) {
+            return false;
+        }
+        long modified = rulesFile.lastModified();
+        if (!rulesFile.exists()) {
+            if (loadedModified != 0) {
+                apply(defaultConfig());
+                loadedModified = 0;
+            }
+            return false;
+        }
+        try {
+            apply(JsonUtils.MAPPER.readValue(rulesFile, MilestoneConfig.class));
+            loadedModified = modified;
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Failed to load milestone rules from {}. Keeping the current rules.", rulesFile, e);
+            loadedModified = modified;
+            return false;
+        }
+    }
+
+    /**
+     * Replace one guild's rules, whatever the rules file says, or go back to the file's rules for it.
+     * Other guilds keep their cached thresholds.
+     *
+     * @param specs the guild's rules, or null to remove the override
+     * @throws IllegalArgumentException if any rule is invalid; the current rules are kept
+     */
+    public synchronized void overrideGuild(long guildId, List<MilestoneConfig.RuleSpec> specs) {
+        List<MilestoneConfig.RuleSpec> effective = specs != null ? specs : ruleSets.config.guilds().get(guildId);
+        RuleSet guildSet = effective == null ? null : RuleSet.of(effective);
+        if (specs == null) {
+            guildOverrides.remove(guildId);
+        } else {
+            guildOverrides.put(guildId, List.copyOf(specs));
+        }
+        ruleSets = ruleSets.withGuild(guildId, guildSet);
+    }
+
+    private void reloadIfModified() {
+        if (rulesFile.lastModified() != loadedModified) {
+            reload();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    /**
+     * The compiled rules: one rule set for the defaults and one per guild override.
+     */
+    private record RuleSets(MilestoneConfig config, RuleSet defaults, Map<Long, RuleSet> guilds) {
+
+        static RuleSets of(MilestoneConfig config, Map<Long, List<MilestoneConfig.RuleSpec>> overrides) {
+            Map<Long, RuleSet> guilds = new HashMap<>();
+            config.guilds().forEach((guildId, specs) -> guilds.put(guildId, RuleSet.of(specs)));
+            overrides.forEach((guildId, specs) -> guilds.put(guildId, RuleSet.of(specs)));
+            return new RuleSets(config, RuleSet.of(config.defaults()), guilds);
+        }
+
+        /**
+         * @param guildSet the guild's rule set, or null for the defaults
+         */
+        RuleSets withGuild(long guildId, RuleSet guildSet) {
+            Map<Long, RuleSet> updated = new HashMap<>(guilds);
+            if (guildSet == null) {
+                updated.remove(guildId);
+            } else {
+                updated.put(guildId, guildSet);
+            }
+            return new RuleSets(config, defaults, updated);
+        }
+
+        RuleSet forGuild(long guildId) {
+            if (guilds.isEmpty()) {
+                return defaults;
+            }
+            return guilds.getOrDefault(guildId, defaults);
+        }
+    }
+
+    /**
+     * A compiled rule plus each user's next threshold under it.
+     */
+    private static final class RuleSet {
+        private final MilestoneRule rule;
+        private final LongCounterMap nextThresholds = new LongCounterMap();
+
+        private RuleSet(MilestoneRule rule) {
+            this.rule = rule;
+        }
+
+        static RuleSet of(List<MilestoneConfig.RuleSpec> specs) {
+            if (specs.isEmpty()) {
+                return new RuleSet(count -> MilestoneRule.NONE);
+            }
+            return new RuleSet(MilestoneRule.anyOf(specs.stream().map(MilestoneConfig.RuleSpec::toRule).toList()));
+        }
+
+        boolean reached(long userId, long count) {
+            long next = nextThresholds.get(userId);
+            if (count < next) {
+                return false;
+            }
+            if (next == 0) {
+                next = rule.nextAfter(count - 1);
+                if (count < next) {
+                    nextThresholds.put(userId, next);
+                    return false;
+                }
+            }
+            boolean reached = count == next || rule.isMilestone(count);
+            nextThresholds.put(userId, rule.nextAfter(count));
+            return reached;
+        }
+    }
+}
@@ -4,4 +4,55 @@ public class Constants {
     public static final Long BOT_MESSAGE_CHANNEL_ID = 1216911261703340125L;
     public static final String TOTALLY_LEGIT_DATABASE_FILENAME = "serverVoiceCount.json";
 
+    // Write-behind persistence: flush at most once per interval, or sooner once enough joins are pending
+    public static final long DATABASE_FLUSH_INTERVAL_MS = 5_000L;
+    public static final int DATABASE_FLUSH_DIRTY_THRESHOLD = 100;
+
+    // Journal persistence: fold the journal into a new snapshot once it grows past this size
+    public static final long DATABASE_JOURNAL_COMPACTION_BYTES = 4L * 1024 * 1024;
+    public static final int DATABASE_JOURNAL_BUFFER_BYTES = 64 * 1024;
+
+    // Snapshots: previous snapshot files kept beside the current one for rollback
+    public static final int DATABASE_SNAPSHOTS_RETAINED = 3;
+
+    // Per-guild join history: two days of hourly buckets and five weeks of daily buckets per key
+    public static final String VOICE_JOIN_HISTORY_FILENAME = "serverVoiceHistory.json";
+    public static final int HISTORY_HOURLY_BUCKETS = 48;
+    public static final int HISTORY_DAILY_BUCKETS = 35;
+    public static final long HISTORY_FLUSH_INTERVAL_MS = 60_000L;
+
+    // Count export: pages are cut from a window of users selected in one walk; a few windows are kept between requests.
+    // A window is 16 bytes per user, so selecting one and keeping the open ones takes at most 5 MB whatever the user count
+    public static final int COUNT_EXPORT_WINDOW = 65_536;
+    public static final int COUNT_EXPORTS_OPEN = 4;
+    public static final long COUNT_EXPORT_IDLE_MS = 300_000L;
+
+    // Voice sessions: every user's total milliseconds in voice, persisted like join counts
+    public static final String VOICE_TIME_FILENAME = "serverVoiceTime.json";
+
+    // Milestones: announced when no rules file overrides them; the rules file is checked for changes this often
+    public static final long[] DEFAULT_LOGIN_MILESTONES = {1, 100, 500, 1000, 2000, 5000};
+    public static final String MILESTONE_RULES_FILENAME = "milestones.json";
+    public static final long MILESTONE_RELOAD_INTERVAL_MS = 10_000L;
+
+    // Per-guild settings: announcement channel, milestone overrides and disabled features
+    public static final String GUILD_SETTINGS_FILENAME = "guildSettings.json";
+
+    // Milestone announcements: coalesce per channel for a short window, at most 5 messages per 5 seconds per channel
+    public static final long ANNOUNCEMENT_WINDOW_MS = 1_000L;
+    public static final int ANNOUNCEMENT_BUCKET_SIZE = 5;
+    public static final long ANNOUNCEMENT_BUCKET_REFILL_MS = 5_000L;
+    public static final int ANNOUNCEMENT_QUEUE_CAPACITY = 100;
+
+    // Overload protection: announcements waiting across every channel, pause after this many failed sends in a row
+    // and probe again after the cool-down, which doubles while probes fail; skip announcements while the pipeline is this full
+    public static final int ANNOUNCEMENT_TOTAL_CAPACITY = 1_000;
+    public static final int ANNOUNCEMENT_BREAKER_FAILURES = 5;
+    public static final long ANNOUNCEMENT_BREAKER_COOLDOWN_MS = 30_000L;
+    public static final long ANNOUNCEMENT_BREAKER_MAX_COOLDOWN_MS = 300_000L;
+    public static final double PIPELINE_SHED_FRACTION = 0.5;
+
+    // Voice event archive: events per compressed block, and the longest an event waits in memory before being written
+    public static final int ARCHIVE_BLOCK_EVENTS = 1 << 15;
+    public static final long ARCHIVE_FLUSH_INTERVAL_MS = 60_000L;
 }
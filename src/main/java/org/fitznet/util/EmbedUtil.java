@@ -5,7 +5,10 @@ import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.MessageEmbed;
 
+import org.fitznet.data.Leaderboard;
+
 import java.awt.Color;
+import java.util.List;
 
 @Slf4j
 public class EmbedUtil {
@@ -30,4 +33,58 @@ public class EmbedUtil {
         embed.setTimestamp(java.time.Instant.now());
         return embed.build();
     }
+
+    /**
+     * Creates an embed listing the top of a voice join leaderboard.
+     *
+     * @param title        Heading, e.g. the guild the leaderboard is for.
+     * @param entries      The ranked users to list, best first.
+     * @param callerRank   The requesting user's entry, or null if they have no joins.
+     * @return MessageEmbed A pre-configured MessageEmbed object.
+     */
+    public static MessageEmbed createLeaderboardEmbed(String title, List<Leaderboard.Ranked> entries, Leaderboard.Ranked callerRank) {
+        EmbedBuilder embed = new EmbedBuilder();
+        embed.setTitle(title);
+        if (entries.isEmpty()) {
+            embed.setDescription("Nobody has joined voice yet.");
+        } else {
+            StringBuilder lines = new StringBuilder();
+            for (Leaderboard.Ranked entry : entries) {
+                lines.append(String.format("**#%d** <@%d> - %d join(s)%n", entry.rank(), entry.userId(), entry.count()));
+            }
+            embed.setDescription(lines.toString());
+        }
+        if (callerRank != null) {
+            embed.setFooter(String.format("You are #%d with %d join(s)", callerRank.rank(), callerRank.count()));
+        }
+        embed.setColor(Color.decode("#1F8B4C"));
+        return embed.build();
+    }
+
+    /**
+     * Creates one embed standing in for several milestone announcements that were merged under load.
+     *
+     * @param lines        One line per merged announcement, e.g. "@User reached 100 joins".
+     * @return MessageEmbed A pre-configured MessageEmbed object.
+     */
+    public static MessageEmbed createMilestoneSummaryEmbed(List<String> lines) {
+        EmbedBuilder embed = new EmbedBuilder();
+        embed.setTitle(String.format("...and %d more milestone(s)!", lines.size()));
+        StringBuilder description = new StringBuilder();
+        int listed = 0;
+        for (String line : lines) {
+            if (description.length() + line.length() + 32 > MessageEmbed.DESCRIPTION_MAX_LENGTH) {
+                break;
+            }
+            description.append(line).append('\n');
+            listed++;
+        }
+        if (listed < lines.size()) {
+            description.append(String.format("and %d others", lines.size() - listed));
+        }
+        embed.setDescription(description.toString());
+        embed.setColor(Color.decode("#1F8B4C"));
+        embed.setTimestamp(java.time.Instant.now());
+        return embed.build();
+    }
 }
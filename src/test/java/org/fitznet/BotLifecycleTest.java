@@ -0,0 +1,199 @@
+package org.fitznet;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.JDABuilder;
+import org.fitznet.listener.BotListeners;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class BotLifecycleTest {
+    private DiscordClientFactory clientFactory;
+    private JDABuilder builder;
+    private BotListeners botListeners;
+    private CountDownLatch ready;
+    private BotLifecycle lifecycle;
+
+    @BeforeEach
+    void setUp() {
+        clientFactory = mock(DiscordClientFactory.class);
+        builder = mock(JDABuilder.class);
+        botListeners = mock(BotListeners.class);
+        ready = new CountDownLatch(1);
+        when(clientFactory.builder()).thenReturn(builder);
+        when(builder.build()).thenAnswer(invocation -> newClient());
+        lifecycle = new BotLifecycle(clientFactory, botListeners, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        lifecycle.close();
+    }
+
+    /**
+     * A client that becomes ready when {@link #ready} is counted down and fails to load if shut down first.
+     */
+    private JDA newClient() throws InterruptedException {
+        JDA client = mock(JDA.class);
+        CountDownLatch shutdown = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            shutdown.countDown();
+            return null;
+        }).when(client).shutdown();
+        when(client.awaitReady()).thenAnswer(invocation -> {
+            while (!ready.await(10, TimeUnit.MILLISECONDS)) {
+                if (shutdown.getCount() == 0) {
+                    throw new IllegalStateException("JDA was shut down while loading");
+                }
+            }
+            return client;
+        });
+        when(client.awaitShutdown(any(Duration.class))).thenAnswer(invocation -> shutdown.await(1, TimeUnit.SECONDS));
+        return client;
+    }
+
+    private void awaitState(BotLifecycle.State expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (lifecycle.getState() != expected) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for " + expected + ", still " + lifecycle.getState());
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void shouldRegisterListenersOnSuppliedClient() throws InterruptedException {
+        // Given
+        JDA client = newClient();
+
+        // When
+        BotLifecycle supplied = new BotLifecycle(clientFactory, botListeners, client);
+
+        // Then
+        verify(botListeners).register(client);
+        assertEquals(BotLifecycle.State.RUNNING, supplied.getState());
+        supplied.close();
+    }
+
+    @Test
+    void shouldMoveThroughStartingToRunning() throws InterruptedException {
+        // When
+        boolean started = lifecycle.start();
+
+        // Then
+        assertTrue(started);
+        assertEquals(BotLifecycle.State.STARTING, lifecycle.getState());
+        verify(botListeners).register(lifecycle.getJda());
+
+        ready.countDown();
+        awaitState(BotLifecycle.State.RUNNING);
+    }
+
+    @Test
+    void shouldBuildOneClientForConcurrentStarts() throws Exception {
+        // Given
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 8; i++) {
+            results.add(callers.submit(() -> {
+                go.await();
+                return lifecycle.start();
+            }));
+        }
+        go.countDown();
+        int started = 0;
+        for (Future<Boolean> result : results) {
+            started += result.get(5, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        callers.shutdown();
+
+        // Then
+        assertEquals(1, started);
+        verify(builder, times(1)).build();
+        verify(botListeners, times(1)).register(any());
+    }
+
+    @Test
+    void shouldStopWhileStillLoggingIn() throws InterruptedException {
+        // Given
+        lifecycle.start();
+        JDA client = lifecycle.getJda();
+
+        // When
+        boolean stopped = lifecycle.stop();
+
+        // Then
+        assertTrue(stopped);
+        awaitState(BotLifecycle.State.STOPPED);
+        verify(client).shutdown();
+        assertFalse(lifecycle.stop());
+    }
+
+    @Test
+    void shouldRejectStartWhileStopping() throws InterruptedException {
+        // Given
+        lifecycle.start();
+        ready.countDown();
+        awaitState(BotLifecycle.State.RUNNING);
+        JDA client = lifecycle.getJda();
+        doNothing().when(client).shutdown();
+
+        // When
+        lifecycle.stop();
+
+        // Then
+        assertEquals(BotLifecycle.State.STOPPING, lifecycle.getState());
+        assertFalse(lifecycle.start());
+        verify(builder, times(1)).build();
+    }
+
+    @Test
+    void shouldRestartWithTheSameListeners() throws InterruptedException {
+        // Given
+        ready.countDown();
+        lifecycle.start();
+        awaitState(BotLifecycle.State.RUNNING);
+        JDA first = lifecycle.getJda();
+        lifecycle.stop();
+        awaitState(BotLifecycle.State.STOPPED);
+
+        // When
+        boolean restarted = lifecycle.start();
+
+        // Then
+        assertTrue(restarted);
+        awaitState(BotLifecycle.State.RUNNING);
+        assertNotSame(first, lifecycle.getJda());
+        verify(botListeners).register(first);
+        verify(botListeners).register(lifecycle.getJda());
+    }
+
+    @Test
+    void shouldReturnToStoppedWhenTheClientCannotBeBuilt() {
+        // Given
+        when(builder.build()).thenThrow(new IllegalArgumentException("Token may not be empty"));
+
+        // When
+        boolean started = lifecycle.start();
+
+        // Then
+        assertFalse(started);
+        assertEquals(BotLifecycle.State.STOPPED, lifecycle.getState());
+        verifyNoInteractions(botListeners);
+    }
+}
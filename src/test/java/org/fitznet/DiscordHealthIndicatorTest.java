@@ -0,0 +1,97 @@
+package org.fitznet;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DiscordHealthIndicatorTest {
+    private static final ShardSettings UNSHARDED = ShardSettings.of(false, 1, "");
+
+    @Test
+    void shouldBeOutOfServiceBeforeTheBotStarts() {
+        // Given
+        BotLifecycle lifecycle = new BotLifecycle(null, null, null);
+
+        // When
+        Health health = new DiscordHealthIndicator(lifecycle, null, UNSHARDED).health();
+
+        // Then
+        assertEquals(Status.OUT_OF_SERVICE, health.getStatus());
+        assertEquals("NOT_STARTED", health.getDetails().get("status"));
+    }
+
+    @Test
+    void shouldBeOutOfServiceWhileTheGatewayConnects() {
+        // Given
+        JDA jda = mock(JDA.class);
+        when(jda.getStatus()).thenReturn(JDA.Status.LOADING_SUBSYSTEMS);
+        BotLifecycle lifecycle = new BotLifecycle(null, null, jda);
+
+        // When
+        Health health = new DiscordHealthIndicator(lifecycle, null, UNSHARDED).health();
+
+        // Then
+        assertEquals(Status.OUT_OF_SERVICE, health.getStatus());
+        assertEquals("LOADING_SUBSYSTEMS", health.getDetails().get("status"));
+    }
+
+    @Test
+    void shouldBeUpOnceConnected() {
+        // Given
+        JDA jda = mock(JDA.class);
+        when(jda.getStatus()).thenReturn(JDA.Status.CONNECTED);
+        BotLifecycle lifecycle = new BotLifecycle(null, null, jda);
+
+        // When
+        Health health = new DiscordHealthIndicator(lifecycle, null, UNSHARDED).health();
+
+        // Then
+        assertEquals(Status.UP, health.getStatus());
+    }
+
+    @Test
+    void shouldWaitForEveryShardInRange() {
+        // Given
+        ShardSettings shards = ShardSettings.of(true, 4, "0-2");
+        ShardManager shardManager = mock(ShardManager.class);
+        JDA connected = mock(JDA.class);
+        when(connected.getStatus()).thenReturn(JDA.Status.CONNECTED);
+        JDA connecting = mock(JDA.class);
+        when(connecting.getStatus()).thenReturn(JDA.Status.CONNECTING_TO_WEBSOCKET);
+        when(shardManager.getShardById(0)).thenReturn(connected);
+        when(shardManager.getShardById(1)).thenReturn(connecting);
+
+        // When
+        Health health = new DiscordHealthIndicator(null, shardManager, shards).health();
+
+        // Then
+        assertEquals(Status.OUT_OF_SERVICE, health.getStatus());
+        assertEquals(Map.of("0", "CONNECTED", "1", "CONNECTING_TO_WEBSOCKET", "2", "STOPPED"),
+                health.getDetails().get("shards"));
+    }
+
+    @Test
+    void shouldBeUpWhenEveryShardIsConnected() {
+        // Given
+        ShardSettings shards = ShardSettings.of(true, 2, "");
+        ShardManager shardManager = mock(ShardManager.class);
+        JDA connected = mock(JDA.class);
+        when(connected.getStatus()).thenReturn(JDA.Status.CONNECTED);
+        when(shardManager.getShardById(0)).thenReturn(connected);
+        when(shardManager.getShardById(1)).thenReturn(connected);
+
+        // When
+        Health health = new DiscordHealthIndicator(null, shardManager, shards).health();
+
+        // Then
+        assertEquals(Status.UP, health.getStatus());
+    }
+}
@@ -11,7 +11,12 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.Mockito.verify;
 
 @SpringBootTest
-@TestPropertySource(properties = "discord.bot.token=test-token")
+@TestPropertySource(properties = {
+        "discord.bot.token=test-token",
+        // Keep the files the context writes out of the working tree
+        "voicejoin.voice-time.file=build/serverVoiceTime.json",
+        "voicejoin.history.file=build/serverVoiceHistory.json"
+})
 class MainTest {
 
     @MockBean
@@ -0,0 +1,210 @@
+package org.fitznet.announce;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.requests.restaction.MessageCreateAction;
+import org.fitznet.metrics.BotMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.net.SocketTimeoutException;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class AnnouncementDispatcherTest {
+    private static final long CHANNEL_ID = 42L;
+
+    private TextChannel channel;
+    private SimpleMeterRegistry registry;
+    private BotMetrics metrics;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        channel = mock(TextChannel.class);
+        MessageCreateAction action = mock(MessageCreateAction.class);
+        when(channel.sendMessageEmbeds(anyCollection())).thenReturn(action);
+        when(channel.sendMessageEmbeds(any(MessageEmbed.class))).thenReturn(action);
+        doAnswer(invocation -> {
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(action).queue(any(), any());
+        registry = new SimpleMeterRegistry();
+        metrics = new BotMetrics(registry);
+    }
+
+    private AnnouncementDispatcher dispatcher(long windowMillis, int bucketSize, long refillMillis) {
+        return new AnnouncementDispatcher(id -> id == CHANNEL_ID ? channel : null, metrics,
+                windowMillis, 100, bucketSize, refillMillis, System::nanoTime);
+    }
+
+    private static AnnouncementDispatcher.Announcement announcement(long priority) {
+        MessageEmbed embed = new EmbedBuilder().setTitle("Milestone " + priority).build();
+        return new AnnouncementDispatcher.Announcement(embed, priority, "user reached " + priority);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldCoalesceAnnouncementsIntoMessagesOfTenEmbeds() {
+        // Given
+        AnnouncementDispatcher dispatcher = dispatcher(50, 5, 5_000);
+        ArgumentCaptor<Collection<MessageEmbed>> batches = ArgumentCaptor.forClass(Collection.class);
+
+        // When
+        for (int i = 1; i <= 11; i++) {
+            dispatcher.announce(CHANNEL_ID, announcement(i));
+        }
+
+        // Then
+        verify(channel, timeout(2_000).times(1)).sendMessageEmbeds(batches.capture());
+        verify(channel, timeout(2_000).times(1)).sendMessageEmbeds(any(MessageEmbed.class));
+        assertEquals(10, batches.getValue().size());
+        assertEquals("Milestone 11", batches.getValue().iterator().next().getTitle());
+        assertEquals(11.0, registry.get("fitzbot.milestones").tag("result", "sent").counter().count());
+        assertEquals(2.0, registry.get("fitzbot.announcements.messages").counter().count());
+        dispatcher.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldMergeBacklogIntoSummaryEmbed() {
+        // Given
+        AnnouncementDispatcher dispatcher = dispatcher(50, 5, 5_000);
+        ArgumentCaptor<Collection<MessageEmbed>> batches = ArgumentCaptor.forClass(Collection.class);
+
+        // When
+        for (int i = 1; i <= 25; i++) {
+            dispatcher.announce(CHANNEL_ID, announcement(i));
+        }
+
+        // Then
+        verify(channel, timeout(2_000)).sendMessageEmbeds(batches.capture());
+        List<MessageEmbed> embeds = List.copyOf(batches.getValue());
+        assertEquals(10, embeds.size());
+        assertEquals("...and 16 more milestone(s)!", embeds.get(9).getTitle());
+        assertEquals(16.0, registry.get("fitzbot.milestones.merged").counter().count());
+        assertEquals(0, dispatcher.getPendingCount());
+        dispatcher.close();
+    }
+
+    @Test
+    void shouldDropLowestPriorityWhenQueueIsFull() {
+        // Given
+        AnnouncementDispatcher dispatcher = new AnnouncementDispatcher(id -> channel, metrics,
+                10_000, 10, 5, 5_000, System::nanoTime);
+        for (int i = 1; i <= 10; i++) {
+            dispatcher.announce(CHANNEL_ID, announcement(i + 1));
+        }
+
+        // When
+        dispatcher.announce(CHANNEL_ID, announcement(1));
+        dispatcher.announce(CHANNEL_ID, announcement(100));
+
+        // Then
+        assertEquals(10, dispatcher.getPendingCount());
+        assertEquals(2.0, registry.get("fitzbot.milestones").tag("result", "dropped").counter().count());
+        dispatcher.close();
+    }
+
+    @Test
+    void shouldHoldAnnouncementsWhileBucketIsEmpty() {
+        // Given
+        AnnouncementDispatcher dispatcher = dispatcher(20, 1, 3_600_000);
+        dispatcher.announce(CHANNEL_ID, announcement(1));
+        verify(channel, timeout(2_000)).sendMessageEmbeds(any(MessageEmbed.class));
+
+        // When
+        dispatcher.announce(CHANNEL_ID, announcement(2));
+
+        // Then
+        verify(channel, after(200).times(1)).sendMessageEmbeds(any(MessageEmbed.class));
+        assertEquals(1, dispatcher.getPendingCount());
+        dispatcher.close();
+        verify(channel, times(2)).sendMessageEmbeds(any(MessageEmbed.class));
+    }
+
+    @Test
+    void shouldCountMissingChannelAsFailure() {
+        // Given
+        AnnouncementDispatcher dispatcher = AnnouncementDispatcher.direct(id -> null, metrics);
+
+        // When
+        dispatcher.announce(CHANNEL_ID, announcement(1));
+
+        // Then
+        assertEquals(1.0, registry.get("fitzbot.milestones").tag("result", "failed").counter().count());
+    }
+
+    @Test
+    void shouldDropWhenAllQueuesAreFull() {
+        // Given
+        AnnouncementDispatcher dispatcher = new AnnouncementDispatcher(id -> channel, metrics, 10_000, 10, 5, 5_000,
+                System::nanoTime, new CircuitBreaker("Test"), 10, () -> false);
+        for (int i = 1; i <= 10; i++) {
+            dispatcher.announce(CHANNEL_ID, announcement(i));
+        }
+
+        // When
+        dispatcher.announce(CHANNEL_ID + 1, announcement(100));
+
+        // Then
+        assertEquals(10, dispatcher.getPendingCount());
+        assertEquals(1, dispatcher.getStats().dropped());
+        assertEquals(1.0, registry.get("fitzbot.milestones").tag("result", "dropped").counter().count());
+        dispatcher.close();
+    }
+
+    @Test
+    void shouldShedAnnouncementsWhileOverloaded() {
+        // Given
+        AnnouncementDispatcher dispatcher = new AnnouncementDispatcher(id -> channel, metrics, 0, 10, 1, 0,
+                System::nanoTime, new CircuitBreaker("Test"), 100, () -> true);
+
+        // When
+        dispatcher.announce(CHANNEL_ID, announcement(1));
+
+        // Then
+        verify(channel, never()).sendMessageEmbeds(any(MessageEmbed.class));
+        assertEquals(1, dispatcher.getStats().shed());
+        assertEquals(1.0, registry.get("fitzbot.milestones").tag("result", "shed").counter().count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldHoldAnnouncementsWhileCircuitIsOpen() {
+        // Given
+        TextChannel failing = mock(TextChannel.class);
+        MessageCreateAction action = mock(MessageCreateAction.class);
+        when(failing.sendMessageEmbeds(any(MessageEmbed.class))).thenReturn(action);
+        when(failing.sendMessageEmbeds(anyCollection())).thenReturn(action);
+        doAnswer(invocation -> {
+            ((Consumer<Throwable>) invocation.getArgument(1)).accept(new SocketTimeoutException("timed out"));
+            return null;
+        }).when(action).queue(any(), any());
+        CircuitBreaker breaker = new CircuitBreaker("Test", 1, 3_600_000, 3_600_000, System::nanoTime);
+        AnnouncementDispatcher dispatcher = new AnnouncementDispatcher(id -> failing, metrics, 20, 10, 5, 5_000,
+                System::nanoTime, breaker, 100, () -> false);
+        dispatcher.announce(CHANNEL_ID, announcement(1));
+        verify(failing, timeout(2_000)).sendMessageEmbeds(any(MessageEmbed.class));
+
+        // When
+        dispatcher.announce(CHANNEL_ID, announcement(2));
+
+        // Then
+        verify(failing, after(200).times(1)).sendMessageEmbeds(any(MessageEmbed.class));
+        assertEquals(CircuitBreaker.State.OPEN, dispatcher.getStats().circuit().state());
+        assertEquals(1, dispatcher.getPendingCount());
+        dispatcher.close();
+        assertEquals(1, dispatcher.getStats().shed());
+        assertEquals(0, dispatcher.getPendingCount());
+    }
+}
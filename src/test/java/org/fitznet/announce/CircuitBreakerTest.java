@@ -0,0 +1,104 @@
+package org.fitznet.announce;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+    private final AtomicLong now = new AtomicLong();
+
+    private CircuitBreaker breaker() {
+        return new CircuitBreaker("Test", 3, 1_000, 3_000, now::get);
+    }
+
+    private void advanceMillis(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Test
+    void shouldOpenAfterConsecutiveFailures() {
+        // Given
+        CircuitBreaker breaker = breaker();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        // When
+        breaker.recordFailure();
+
+        // Then
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1_000, breaker.getRetryDelayMillis());
+        assertEquals(1, breaker.getStats().opened());
+        assertEquals(1, breaker.getStats().rejected());
+    }
+
+    @Test
+    void shouldLetOneProbeThroughAfterCooldownAndCloseOnSuccess() {
+        // Given
+        CircuitBreaker breaker = breaker();
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        advanceMillis(1_000);
+
+        // When
+        boolean probe = breaker.tryAcquire();
+        boolean second = breaker.tryAcquire();
+        boolean closed = breaker.recordSuccess();
+
+        // Then
+        assertTrue(probe);
+        assertFalse(second);
+        assertTrue(closed);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertEquals(0, breaker.getStats().consecutiveFailures());
+    }
+
+    @Test
+    void shouldDoubleCooldownWhileProbesFail() {
+        // Given
+        CircuitBreaker breaker = breaker();
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            advanceMillis(breaker.getRetryDelayMillis());
+            assertTrue(breaker.tryAcquire());
+            breaker.recordFailure();
+        }
+
+        // Then
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(3_000, breaker.getRetryDelayMillis());
+        assertEquals(4, breaker.getStats().opened());
+    }
+
+    @Test
+    void shouldGiveProbeBackWhenCallIsNotMade() {
+        // Given
+        CircuitBreaker breaker = breaker();
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        advanceMillis(1_000);
+        assertTrue(breaker.tryAcquire());
+
+        // When
+        breaker.release();
+
+        // Then
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+}
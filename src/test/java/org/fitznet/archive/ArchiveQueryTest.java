@@ -0,0 +1,146 @@
+package org.fitznet.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fitznet.archive.VoiceEventArchive.EventType.JOIN;
+import static org.fitznet.archive.VoiceEventArchive.EventType.LEAVE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveQueryTest {
+    private static final long HOUR_MILLIS = 3_600_000L;
+    private static final long WEEK_MILLIS = 7 * 24 * HOUR_MILLIS;
+    private static final long START = LocalDate.of(2024, 1, 1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+    private static final long GUILD_ID = 1L;
+    private static final long OTHER_GUILD_ID = 2L;
+
+    private static VoiceEventArchive archive(Path directory) {
+        return new VoiceEventArchive(directory, 1_000, 60_000, 0);
+    }
+
+    @Test
+    void shouldCountJoinsByHourOfDay(@TempDir Path tempDir) {
+        // Given
+        VoiceEventArchive archive = archive(tempDir);
+        archive.record(START + 9 * HOUR_MILLIS, GUILD_ID, 10L, 100L, JOIN);
+        archive.record(START + 24 * HOUR_MILLIS + 9 * HOUR_MILLIS + 5, GUILD_ID, 10L, 101L, JOIN);
+        archive.record(START + 9 * HOUR_MILLIS + 10, GUILD_ID, 10L, 100L, LEAVE);
+        archive.record(START + 23 * HOUR_MILLIS, OTHER_GUILD_ID, 20L, 102L, JOIN);
+        archive.close();
+        ArchiveQuery query = new ArchiveQuery(tempDir);
+
+        // When
+        long[] utc = query.joinsByHourOfDay(null, START, START + WEEK_MILLIS, ZoneOffset.UTC);
+        long[] shifted = query.joinsByHourOfDay(GUILD_ID, START, START + WEEK_MILLIS, ZoneOffset.ofHours(-2));
+
+        // Then
+        assertEquals(2, utc[9]);
+        assertEquals(1, utc[23]);
+        assertEquals(3, Arrays.stream(utc).sum());
+        assertEquals(2, shifted[7]);
+        assertEquals(0, shifted[21]);
+    }
+
+    @Test
+    void shouldOnlyCountJoinsInsideRange(@TempDir Path tempDir) {
+        // Given
+        VoiceEventArchive archive = archive(tempDir);
+        archive.record(START - 1, GUILD_ID, 10L, 100L, JOIN);
+        archive.record(START, GUILD_ID, 10L, 101L, JOIN);
+        archive.record(START + HOUR_MILLIS, GUILD_ID, 10L, 102L, JOIN);
+        archive.close();
+
+        // When
+        long[] hours = new ArchiveQuery(tempDir).joinsByHourOfDay(null, START, START + HOUR_MILLIS, ZoneOffset.UTC);
+
+        // Then
+        assertEquals(1, hours[0]);
+        assertEquals(0, hours[23]);
+        assertEquals(0, hours[1]);
+    }
+
+    @Test
+    void shouldRankBusiestChannels(@TempDir Path tempDir) {
+        // Given
+        VoiceEventArchive archive = archive(tempDir);
+        for (int day = 0; day < 5; day++) {
+            long at = START + day * 24 * HOUR_MILLIS;
+            archive.record(at, GUILD_ID, 10L, 100L, JOIN);
+            archive.record(at + 1, GUILD_ID, 11L, 101L, JOIN);
+            archive.record(at + 2, GUILD_ID, 11L, 102L, JOIN);
+            archive.record(at + 3, OTHER_GUILD_ID, 20L, 103L, JOIN);
+            archive.record(at + 4, OTHER_GUILD_ID, 20L, 104L, JOIN);
+            archive.record(at + 5, OTHER_GUILD_ID, 20L, 105L, JOIN);
+            archive.record(at + 6, GUILD_ID, 12L, 100L, LEAVE);
+        }
+        archive.close();
+        ArchiveQuery query = new ArchiveQuery(tempDir);
+
+        // When
+        List<ArchiveQuery.ChannelJoins> all = query.busiestChannels(null, START, START + WEEK_MILLIS, 2);
+        List<ArchiveQuery.ChannelJoins> guild = query.busiestChannels(GUILD_ID, START, START + WEEK_MILLIS, 10);
+
+        // Then
+        assertEquals(List.of(new ArchiveQuery.ChannelJoins(OTHER_GUILD_ID, 20L, 15),
+                new ArchiveQuery.ChannelJoins(GUILD_ID, 11L, 10)), all);
+        assertEquals(List.of(new ArchiveQuery.ChannelJoins(GUILD_ID, 11L, 10),
+                new ArchiveQuery.ChannelJoins(GUILD_ID, 10L, 5)), guild);
+    }
+
+    @Test
+    void shouldComputeWeeklyRetentionFromFirstJoin(@TempDir Path tempDir) {
+        // Given
+        VoiceEventArchive archive = archive(tempDir);
+        // User 1 joins every week, user 2 only in weeks 0 and 2, user 3 first joins in week 2
+        for (int week = 0; week < 3; week++) {
+            archive.record(START + week * WEEK_MILLIS, GUILD_ID, 10L, 1L, JOIN);
+        }
+        archive.record(START + HOUR_MILLIS, GUILD_ID, 10L, 2L, JOIN);
+        archive.record(START + 2 * WEEK_MILLIS + HOUR_MILLIS, GUILD_ID, 10L, 2L, JOIN);
+        archive.record(START + 2 * WEEK_MILLIS + 2 * HOUR_MILLIS, GUILD_ID, 10L, 3L, JOIN);
+        archive.close();
+
+        // When
+        double[] curve = new ArchiveQuery(tempDir).retention(null, START, START + 3 * WEEK_MILLIS, 4);
+
+        // Then
+        assertArrayEquals(new double[]{1.0, 0.5, 1.0, 0.0}, curve, 1e-9);
+    }
+
+    @Test
+    void shouldSkipDamagedBlock(@TempDir Path tempDir) throws IOException {
+        // Given
+        VoiceEventArchive archive = new VoiceEventArchive(tempDir, 1, 60_000, 0);
+        archive.record(START, GUILD_ID, 10L, 100L, JOIN);
+        archive.record(START + 1, GUILD_ID, 10L, 101L, JOIN);
+        archive.close();
+        Path segment = VoiceEventArchive.segments(tempDir).get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[EventBlock.HEADER_BYTES] ^= 0x55;
+        Files.write(segment, bytes);
+
+        // When
+        long[] hours = new ArchiveQuery(tempDir).joinsByHourOfDay(null, START, START + HOUR_MILLIS, ZoneOffset.UTC);
+
+        // Then
+        assertEquals(1, hours[0]);
+    }
+
+    @Test
+    void shouldReturnEmptyResultWithoutSegments(@TempDir Path tempDir) {
+        // When
+        List<ArchiveQuery.ChannelJoins> channels = new ArchiveQuery(tempDir.resolve("missing"))
+                .busiestChannels(null, START, START + WEEK_MILLIS, 10);
+
+        // Then
+        assertTrue(channels.isEmpty());
+    }
+}
@@ -0,0 +1,149 @@
+package org.fitznet.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoiceEventArchiveTest {
+    private static final long DAY_MILLIS = 86_400_000L;
+    private static final long MIDNIGHT = LocalDate.of(2024, 3, 1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+
+    private static List<long[]> readAll(Path directory) {
+        return new ArchiveQuery(directory).scan(Long.MIN_VALUE, Long.MAX_VALUE, ArrayList<long[]>::new, (events, block) -> {
+            for (int i = 0; i < block.size(); i++) {
+                events.add(new long[]{block.timestamps()[i], block.guildIds()[i], block.channelIds()[i],
+                        block.userIds()[i], block.types()[i]});
+            }
+        }, List::addAll);
+    }
+
+    @Test
+    void shouldReadBackEveryColumn(@TempDir Path tempDir) {
+        // Given
+        VoiceEventArchive archive = new VoiceEventArchive(tempDir, 1_000, 60_000, 0);
+
+        // When
+        archive.record(MIDNIGHT + 5_000, 1L, 10L, 100L, VoiceEventArchive.EventType.JOIN);
+        archive.record(MIDNIGHT + 1_000, 1L, 11L, 101L, VoiceEventArchive.EventType.MOVE);
+        archive.record(MIDNIGHT + 9_000, 2L, 20L, 100L, VoiceEventArchive.EventType.LEAVE);
+        archive.close();
+
+        // Then
+        List<long[]> events = readAll(tempDir);
+        assertEquals(3, events.size());
+        assertArrayEquals(new long[]{MIDNIGHT + 5_000, 1L, 10L, 100L, 0}, events.get(0));
+        assertArrayEquals(new long[]{MIDNIGHT + 1_000, 1L, 11L, 101L, 2}, events.get(1));
+        assertArrayEquals(new long[]{MIDNIGHT + 9_000, 2L, 20L, 100L, 1}, events.get(2));
+        assertEquals(3, archive.getArchivedCount());
+    }
+
+    @Test
+    void shouldWriteFullBlocksWithoutWaitingForFlush(@TempDir Path tempDir) {
+        // Given
+        VoiceEventArchive archive = new VoiceEventArchive(tempDir, 100, 3_600_000, 0);
+
+        // When
+        for (int i = 0; i < 250; i++) {
+            archive.record(MIDNIGHT + i, 1L, 10L, i, VoiceEventArchive.EventType.JOIN);
+        }
+        archive.flush();
+
+        // Then
+        assertEquals(250, archive.getArchivedCount());
+        assertEquals(250, readAll(tempDir).size());
+        archive.close();
+    }
+
+    @Test
+    void shouldRollSegmentsAtMidnight(@TempDir Path tempDir) {
+        // Given
+        VoiceEventArchive archive = new VoiceEventArchive(tempDir, 1_000, 60_000, 0);
+
+        // When
+        archive.record(MIDNIGHT - 1, 1L, 10L, 100L, VoiceEventArchive.EventType.JOIN);
+        archive.record(MIDNIGHT, 1L, 10L, 101L, VoiceEventArchive.EventType.JOIN);
+        archive.record(MIDNIGHT + DAY_MILLIS, 1L, 10L, 102L, VoiceEventArchive.EventType.JOIN);
+        archive.close();
+
+        // Then
+        assertEquals(List.of(
+                tempDir.resolve("voice-events-2024-02-29.seg"),
+                tempDir.resolve("voice-events-2024-03-01.seg"),
+                tempDir.resolve("voice-events-2024-03-02.seg")), VoiceEventArchive.segments(tempDir));
+    }
+
+    @Test
+    void shouldCutTornBlockWhenSegmentIsReopened(@TempDir Path tempDir) throws IOException {
+        // Given
+        VoiceEventArchive first = new VoiceEventArchive(tempDir, 1_000, 60_000, 0);
+        first.record(MIDNIGHT, 1L, 10L, 100L, VoiceEventArchive.EventType.JOIN);
+        first.close();
+        Path segment = VoiceEventArchive.segments(tempDir).get(0);
+        long intact = Files.size(segment);
+        Files.write(segment, new byte[]{0x56, 0x45, 0x41, 0x31, 0, 0}, StandardOpenOption.APPEND);
+
+        // When
+        VoiceEventArchive second = new VoiceEventArchive(tempDir, 1_000, 60_000, 0);
+        second.record(MIDNIGHT + 1, 1L, 10L, 101L, VoiceEventArchive.EventType.JOIN);
+        second.close();
+
+        // Then
+        assertTrue(Files.size(segment) > intact);
+        assertEquals(2, readAll(tempDir).size());
+    }
+
+    @Test
+    void shouldDeleteSegmentsOlderThanRetention(@TempDir Path tempDir) throws IOException {
+        // Given
+        Files.createFile(tempDir.resolve("voice-events-2024-02-01.seg"));
+        Files.createFile(tempDir.resolve("voice-events-2024-02-28.seg"));
+        VoiceEventArchive archive = new VoiceEventArchive(tempDir, 1_000, 60_000, 3);
+
+        // When
+        archive.record(MIDNIGHT, 1L, 10L, 100L, VoiceEventArchive.EventType.JOIN);
+        archive.close();
+
+        // Then
+        assertFalse(Files.exists(tempDir.resolve("voice-events-2024-02-01.seg")));
+        assertTrue(Files.exists(tempDir.resolve("voice-events-2024-02-28.seg")));
+    }
+
+    @Test
+    void shouldDropEventsAfterClose(@TempDir Path tempDir) {
+        // Given
+        VoiceEventArchive archive = new VoiceEventArchive(tempDir, 1_000, 60_000, 0);
+        archive.close();
+
+        // When
+        archive.record(MIDNIGHT, 1L, 10L, 100L, VoiceEventArchive.EventType.JOIN);
+
+        // Then
+        assertEquals(1, archive.getDroppedCount());
+        assertTrue(VoiceEventArchive.segments(tempDir).isEmpty());
+    }
+
+    @Test
+    void shouldRecordNothingWhenDisabled() {
+        // Given
+        VoiceEventArchive archive = VoiceEventArchive.disabled();
+
+        // When
+        archive.record(MIDNIGHT, 1L, 10L, 100L, VoiceEventArchive.EventType.JOIN);
+        archive.close();
+
+        // Then
+        assertFalse(archive.isEnabled());
+        assertEquals(0, archive.getArchivedCount());
+        assertEquals(0, archive.getDroppedCount());
+    }
+}
@@ -0,0 +1,84 @@
+package org.fitznet.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActiveSessionTableTest {
+
+    @Test
+    void shouldKeepTheFirstStartOfASession() {
+        // Given
+        ActiveSessionTable table = new ActiveSessionTable();
+
+        // When
+        boolean opened = table.open(1L, 100L, 1_000L);
+        boolean reopened = table.open(1L, 100L, 2_000L);
+
+        // Then
+        assertTrue(opened);
+        assertFalse(reopened);
+        assertEquals(1_000L, table.get(1L, 100L));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void shouldKeySessionsByGuildAndUser() {
+        // Given
+        ActiveSessionTable table = new ActiveSessionTable();
+        table.open(1L, 100L, 1_000L);
+        table.open(2L, 100L, 2_000L);
+
+        // When
+        long closed = table.close(1L, 100L);
+
+        // Then
+        assertEquals(1_000L, closed);
+        assertEquals(0L, table.get(1L, 100L));
+        assertEquals(2_000L, table.get(2L, 100L));
+        assertEquals(0L, table.close(1L, 100L));
+    }
+
+    @Test
+    void shouldStayConsistentThroughManyOpensAndCloses() {
+        // Given
+        ActiveSessionTable table = new ActiveSessionTable();
+        Map<String, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        // When
+        for (int i = 0; i < 200_000; i++) {
+            long guildId = random.nextInt(4);
+            long userId = random.nextInt(5_000);
+            String key = guildId + ":" + userId;
+            if (random.nextBoolean()) {
+                long start = 1 + random.nextInt(1_000_000);
+                if (table.open(guildId, userId, start)) {
+                    expected.put(key, start);
+                }
+            } else {
+                Long start = expected.remove(key);
+                assertEquals(start == null ? 0L : start, table.close(guildId, userId));
+            }
+        }
+
+        // Then
+        assertEquals(expected.size(), table.size());
+        Map<String, Long> actual = new HashMap<>();
+        table.forEach((guildId, userId, start) -> actual.put(guildId + ":" + userId, start));
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void shouldRejectNonPositiveStartTimes() {
+        // Given
+        ActiveSessionTable table = new ActiveSessionTable();
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> table.open(1L, 100L, 0L));
+    }
+}
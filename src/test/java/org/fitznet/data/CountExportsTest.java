@@ -0,0 +1,104 @@
+package org.fitznet.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountExportsTest {
+
+    private static LongCounterMap countsFor(int users) {
+        LongCounterMap counts = new LongCounterMap();
+        for (long userId = 1; userId <= users; userId++) {
+            counts.put(userId * 7_919L, userId);
+        }
+        return counts;
+    }
+
+    private static List<Long> export(CountExports exports, Long guildId, int limit, Consumer<LongCounterMap.EntryConsumer> walk) {
+        List<Long> seen = new ArrayList<>();
+        Long cursor = null;
+        do {
+            CountPage page = exports.page(guildId, cursor, limit, walk);
+            for (int i = 0; i < page.size(); i++) {
+                seen.add(page.userId(i));
+            }
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return seen;
+    }
+
+    @Test
+    void shouldWalkOncePerWindowAndReturnEveryUserInOrder() {
+        // Given
+        LongCounterMap counts = countsFor(10_000);
+        AtomicInteger walks = new AtomicInteger();
+        Consumer<LongCounterMap.EntryConsumer> walk = consumer -> {
+            walks.incrementAndGet();
+            counts.forEach(consumer);
+        };
+        CountExports exports = new CountExports(3_000, 4, 60_000L);
+
+        // When
+        List<Long> seen = export(exports, null, 250, walk);
+
+        // Then
+        assertEquals(10_000, seen.size());
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals((i + 1) * 7_919L, seen.get(i));
+        }
+        assertEquals(4, walks.get());
+        assertEquals(0, exports.openCount());
+    }
+
+    @Test
+    void shouldWalkAgainWhenTheExportWasDropped() {
+        // Given
+        LongCounterMap counts = countsFor(100);
+        AtomicInteger walks = new AtomicInteger();
+        Consumer<LongCounterMap.EntryConsumer> walk = consumer -> {
+            walks.incrementAndGet();
+            counts.forEach(consumer);
+        };
+        CountExports exports = new CountExports(50, 1, 60_000L);
+        CountPage first = exports.page(null, null, 10, walk);
+
+        // When another export pushes the first one out
+        exports.page(1L, null, 10, walk);
+        CountPage second = exports.page(null, first.nextCursor(), 10, walk);
+
+        // Then
+        assertEquals(11 * 7_919L, second.userId(0));
+        assertEquals(10, second.size());
+        assertEquals(3, walks.get());
+    }
+
+    @Test
+    void shouldKeepExportsOfDifferentGuildsApart() {
+        // Given
+        LongCounterMap global = countsFor(30);
+        LongCounterMap guild = countsFor(12);
+        CountExports exports = new CountExports(100, 4, 60_000L);
+
+        // When
+        CountPage globalFirst = exports.page(null, null, 5, global::forEach);
+        CountPage guildFirst = exports.page(1L, null, 5, guild::forEach);
+        List<Long> guildRest = new ArrayList<>();
+        for (Long cursor = guildFirst.nextCursor(); cursor != null; ) {
+            CountPage page = exports.page(1L, cursor, 5, global::forEach);
+            for (int i = 0; i < page.size(); i++) {
+                guildRest.add(page.userId(i));
+            }
+            cursor = page.nextCursor();
+        }
+
+        // Then the guild's pages come from its own window, not the global one
+        assertEquals(5, globalFirst.size());
+        assertEquals(7, guildRest.size());
+        assertEquals(12 * 7_919L, guildRest.get(guildRest.size() - 1));
+    }
+}
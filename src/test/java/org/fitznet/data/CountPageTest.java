@@ -0,0 +1,142 @@
+package org.fitznet.data;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.fitznet.util.JsonUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountPageTest {
+
+    private static LongCounterMap countsFor(long... userIds) {
+        LongCounterMap counts = new LongCounterMap();
+        for (long userId : userIds) {
+            counts.incrementAndGet(userId);
+        }
+        return counts;
+    }
+
+    @Test
+    void shouldReturnUsersInAscendingIdOrder() {
+        // Given
+        LongCounterMap counts = countsFor(30L, 10L, 20L, 10L);
+
+        // When
+        CountPage page = CountPage.after(counts::forEach, Long.MIN_VALUE, 10);
+
+        // Then
+        assertEquals(3, page.size());
+        assertEquals(10L, page.userId(0));
+        assertEquals(2L, page.count(0));
+        assertEquals(20L, page.userId(1));
+        assertEquals(30L, page.userId(2));
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void shouldPageThroughEveryUserExactlyOnce() {
+        // Given
+        Random random = new Random(42);
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        LongCounterMap counts = new LongCounterMap();
+        for (int i = 0; i < 5_000; i++) {
+            long userId = random.nextLong() >>> 1;
+            expected.put(userId, counts.incrementAndGet(userId));
+        }
+
+        // When
+        List<Long> seen = new ArrayList<>();
+        long cursor = Long.MIN_VALUE;
+        while (true) {
+            CountPage page = CountPage.after(counts::forEach, cursor, 333);
+            for (int i = 0; i < page.size(); i++) {
+                seen.add(page.userId(i));
+                assertEquals(expected.get(page.userId(i)), page.count(i));
+            }
+            if (page.nextCursor() == null) {
+                break;
+            }
+            cursor = page.nextCursor();
+        }
+
+        // Then
+        assertEquals(new ArrayList<>(expected.keySet()), seen);
+    }
+
+    @Test
+    void shouldEndOnAnExactlyFullPage() {
+        // Given
+        LongCounterMap counts = countsFor(1L, 2L, 3L, 4L);
+
+        // When
+        CountPage first = CountPage.after(counts::forEach, Long.MIN_VALUE, 2);
+        CountPage last = CountPage.after(counts::forEach, first.nextCursor(), 2);
+
+        // Then
+        assertEquals(2L, first.nextCursor());
+        assertEquals(2, last.size());
+        assertNull(last.nextCursor());
+    }
+
+    @Test
+    void shouldWriteJsonWithCursor() throws IOException {
+        // Given
+        CountPage page = CountPage.after(countsFor(5L, 6L, 7L)::forEach, Long.MIN_VALUE, 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        page.writeJson(out);
+
+        // Then
+        JsonNode json = JsonUtils.MAPPER.readTree(out.toByteArray());
+        assertEquals(2, json.get("counts").size());
+        assertEquals(5L, json.get("counts").get(0).get("userId").asLong());
+        assertEquals(1L, json.get("counts").get(0).get("count").asLong());
+        assertEquals(6L, json.get("nextCursor").asLong());
+    }
+
+    @Test
+    void shouldWriteOneObjectPerLineAsNdjson() throws IOException {
+        // Given
+        CountPage page = CountPage.after(countsFor(5L, 6L, 6L)::forEach, Long.MIN_VALUE, 10);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        page.writeNdjson(out);
+
+        // Then
+        assertEquals("{\"userId\":5,\"count\":1}\n{\"userId\":6,\"count\":2}\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldCutFollowingPagesFromALargerOne() {
+        // Given
+        CountPage window = CountPage.after(countsFor(5L, 6L, 7L, 8L, 9L)::forEach, Long.MIN_VALUE, 4);
+
+        // When
+        CountPage middle = window.following(5L, 2);
+        CountPage rest = window.following(7L, 10);
+
+        // Then
+        assertEquals(2, middle.size());
+        assertEquals(6L, middle.userId(0));
+        assertEquals(7L, middle.nextCursor());
+        assertEquals(1, rest.size());
+        assertEquals(8L, rest.userId(0));
+        assertEquals(8L, rest.nextCursor(), "the window stops short of user 9");
+    }
+
+    @Test
+    void shouldRejectNonPositiveLimit() {
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> CountPage.after(countsFor(1L)::forEach, 0L, 0));
+    }
+}
@@ -0,0 +1,15 @@
+package org.fitznet.data;
+
+import java.nio.file.Path;
+
+class JournalVoiceJoinStoreConformanceTest extends VoiceJoinStoreConformanceTest {
+
+    @Override
+    protected VoiceJoinStore open(Path dir) {
+        return new VoiceJoinDatabase(PersistenceSettings.builder()
+                .databaseFile(dir.resolve("counts.json").toString())
+                .flushIntervalMillis(50L)
+                .journalEnabled(true)
+                .build());
+    }
+}
@@ -0,0 +1,11 @@
+package org.fitznet.data;
+
+import java.nio.file.Path;
+
+class JsonVoiceJoinStoreConformanceTest extends VoiceJoinStoreConformanceTest {
+
+    @Override
+    protected VoiceJoinStore open(Path dir) {
+        return new VoiceJoinDatabase(dir.resolve("counts.json").toString(), 50L, 100);
+    }
+}
@@ -0,0 +1,137 @@
+package org.fitznet.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.fitznet.util.Constants.HISTORY_DAILY_BUCKETS;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class LeaderboardTest {
+
+    @Test
+    void shouldReturnTopUsersInOrder() {
+        // Given
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.update(1L, 5L);
+        leaderboard.update(2L, 10L);
+        leaderboard.update(3L, 7L);
+
+        // When
+        List<Leaderboard.Ranked> top = leaderboard.top(2);
+
+        // Then
+        assertEquals(List.of(new Leaderboard.Ranked(2L, 10L, 1), new Leaderboard.Ranked(3L, 7L, 2)), top);
+    }
+
+    @Test
+    void shouldMoveUserUpOnIncrement() {
+        // Given
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.update(1L, 5L);
+        leaderboard.update(2L, 6L);
+
+        // When
+        leaderboard.update(1L, 6L);
+        leaderboard.update(1L, 7L);
+
+        // Then
+        assertEquals(1L, leaderboard.top(1).get(0).userId());
+        assertEquals(1L, leaderboard.rank(1L));
+        assertEquals(2L, leaderboard.rank(2L));
+        assertEquals(2, leaderboard.size());
+    }
+
+    @Test
+    void shouldShareRankForTies() {
+        // Given
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.update(1L, 3L);
+        leaderboard.update(2L, 3L);
+        leaderboard.update(3L, 1L);
+
+        // Then
+        assertEquals(1L, leaderboard.rank(1L));
+        assertEquals(1L, leaderboard.rank(2L));
+        assertEquals(3L, leaderboard.rank(3L));
+        assertEquals(List.of(1L, 1L, 3L), leaderboard.top(10).stream().map(Leaderboard.Ranked::rank).toList());
+        assertEquals(0L, leaderboard.rank(99L));
+    }
+
+    @Test
+    void shouldIgnoreStaleUpdatesAndGrowPastInitialCounts() {
+        // Given
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.update(1L, 5_000L);
+        leaderboard.update(2L, 100L);
+
+        // When
+        leaderboard.update(1L, 4_999L);
+
+        // Then
+        assertEquals(5_000L, leaderboard.count(1L));
+        assertEquals(1L, leaderboard.rank(1L));
+        assertEquals(2L, leaderboard.rank(2L));
+    }
+
+    @Test
+    void shouldKeepGuildLeaderboardsSeparate() {
+        // Given
+        LeaderboardIndex index = new LeaderboardIndex();
+
+        // When
+        index.recordJoin(1L, 3L);
+        index.recordGuildJoin(100L, 1L, 2L);
+        index.recordGuildJoin(200L, 1L, 1L);
+        index.recordGuildJoin(200L, 2L, 4L);
+
+        // Then
+        assertEquals(3L, index.top(null, 1).get(0).count());
+        assertEquals(2L, index.top(100L, 5).get(0).count());
+        assertEquals(2L, index.top(200L, 5).get(0).userId());
+        assertTrue(index.top(300L, 5).isEmpty());
+    }
+
+    @Test
+    void shouldShareOneEmptyLeaderboardForUnknownGuilds() {
+        // Given
+        LeaderboardIndex index = new LeaderboardIndex();
+
+        // When
+        Leaderboard first = index.get(300L);
+        Leaderboard second = index.get(400L);
+        first.update(1L, 1L);
+
+        // Then
+        assertSame(Leaderboard.empty(), first);
+        assertSame(first, second);
+        assertTrue(second.top(5).isEmpty());
+        assertEquals(0, second.size());
+    }
+
+    @Test
+    void shouldMatchRebuiltGuildBoardAfterHistoryIsPruned() {
+        // Given
+        Instant longAgo = Instant.parse("2024-01-01T12:00:00Z");
+        Instant now = longAgo.plus(Duration.ofDays(HISTORY_DAILY_BUCKETS + 5L));
+        VoiceJoinHistory history = new VoiceJoinHistory();
+        LeaderboardIndex live = LeaderboardIndex.build(mock(VoiceJoinStore.class), history);
+        for (int i = 0; i < 5; i++) {
+            live.recordGuildJoin(100L, 1L, history.recordJoin(100L, 10L, 1L, longAgo));
+        }
+        live.recordGuildJoin(100L, 2L, history.recordJoin(100L, 10L, 2L, now));
+
+        // When user 1 is pruned and joins again
+        history.prune(now);
+        live.recordGuildJoin(100L, 1L, history.recordJoin(100L, 10L, 1L, now));
+        LeaderboardIndex rebuilt = LeaderboardIndex.build(mock(VoiceJoinStore.class), history);
+
+        // Then the count carries on from before the prune
+        assertEquals(6L, live.get(100L).count(1L));
+        assertEquals(rebuilt.top(100L, 10), live.top(100L, 10));
+        history.close();
+    }
+}
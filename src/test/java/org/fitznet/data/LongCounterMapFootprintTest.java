@@ -0,0 +1,72 @@
+package org.fitznet.data;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.lang.ref.Reference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Heap footprint comparison between the old {@code ConcurrentHashMap<Long, Long>} and {@link LongCounterMap}.
+ * Needs a large heap, so it only runs when asked for:
+ * {@code ./gradlew test --tests '*LongCounterMapFootprintTest' -Dfootprint=true}
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "footprint", matches = "true")
+class LongCounterMapFootprintTest {
+    private static final long FIRST_SNOWFLAKE = 1100000000000000000L;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1_000_000, 10_000_000})
+    void shouldUseLessHeapThanBoxedMap(int users) {
+        long boxedBytes = measure(() -> {
+            Map<Long, Long> map = new ConcurrentHashMap<>();
+            for (int i = 0; i < users; i++) {
+                map.put(snowflake(i), count(i));
+            }
+            return map;
+        });
+        long primitiveBytes = measure(() -> {
+            LongCounterMap map = new LongCounterMap();
+            for (int i = 0; i < users; i++) {
+                map.put(snowflake(i), count(i));
+            }
+            return map;
+        });
+
+        log.info("{} users: ConcurrentHashMap<Long, Long> {} MB ({} B/user), LongCounterMap {} MB ({} B/user)",
+                users, boxedBytes / 1_000_000, boxedBytes / users, primitiveBytes / 1_000_000, primitiveBytes / users);
+        assertTrue(primitiveBytes < boxedBytes / 2);
+    }
+
+    private static long snowflake(int i) {
+        return FIRST_SNOWFLAKE + i * 4_194_304L + i;
+    }
+
+    private static long count(int i) {
+        // Above the Long cache range so the boxed map pays for real Long instances, as it does in production
+        return 1_000L + i % 5_000;
+    }
+
+    private static long measure(Supplier<Object> builder) {
+        long before = usedHeap();
+        Object retained = builder.get();
+        long after = usedHeap();
+        Reference.reachabilityFence(retained);
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,183 @@
+package org.fitznet.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongCounterMapTest {
+
+    @Test
+    void shouldIncrementAndGet() {
+        // Given
+        LongCounterMap map = new LongCounterMap();
+
+        // When
+        map.incrementAndGet(123L);
+        long count = map.incrementAndGet(123L);
+
+        // Then
+        assertEquals(2L, count);
+        assertEquals(2L, map.get(123L));
+        assertTrue(map.containsKey(123L));
+        assertFalse(map.containsKey(456L));
+        assertEquals(0L, map.get(456L));
+    }
+
+    @Test
+    void shouldSupportZeroKeyAndIgnoreZeroValues() {
+        // Given
+        LongCounterMap map = new LongCounterMap();
+
+        // When
+        map.incrementAndGet(0L);
+        map.put(7L, 0L);
+
+        // Then
+        assertEquals(1L, map.get(0L));
+        assertFalse(map.containsKey(7L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void shouldGrowAndKeepAllEntries() {
+        // Given
+        LongCounterMap map = new LongCounterMap();
+        long base = 1216911261703340125L;
+
+        // When
+        for (int i = 0; i < 100_000; i++) {
+            map.put(base + i * 4_194_304L, i + 1);
+        }
+
+        // Then
+        assertEquals(100_000, map.size());
+        Map<Long, Long> copy = new HashMap<>();
+        map.forEach(copy::put);
+        assertEquals(100_000, copy.size());
+        assertEquals(50_001L, copy.get(base + 50_000 * 4_194_304L));
+    }
+
+    @Test
+    void shouldKeepHighestValueWithPutMax() {
+        // Given
+        LongCounterMap map = new LongCounterMap();
+        map.put(1L, 10L);
+
+        // When
+        map.putMax(1L, 5L);
+        map.putMax(2L, 3L);
+
+        // Then
+        assertEquals(10L, map.get(1L));
+        assertEquals(3L, map.get(2L));
+    }
+
+    @Test
+    void shouldSetBitsWithOrAndGet() {
+        // Given
+        LongCounterMap map = new LongCounterMap();
+
+        // When
+        map.orAndGet(1L, 0b01L);
+        long updated = map.orAndGet(1L, Long.MIN_VALUE);
+        map.orAndGet(2L, 0L);
+
+        // Then
+        assertEquals(Long.MIN_VALUE | 0b01L, updated);
+        assertEquals(updated, map.get(1L));
+        assertFalse(map.containsKey(2L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void shouldRemoveKeysAndKeepTheRestReachable() {
+        // Given
+        LongCounterMap map = new LongCounterMap();
+        long base = 1216911261703340125L;
+        for (int i = 0; i < 10_000; i++) {
+            map.put(base + i * 4_194_304L, i + 1);
+        }
+
+        // When
+        long removed = 0;
+        for (int i = 0; i < 10_000; i += 2) {
+            removed += map.remove(base + i * 4_194_304L) > 0 ? 1 : 0;
+        }
+
+        // Then
+        assertEquals(5_000L, removed);
+        assertEquals(5_000, map.size());
+        assertEquals(0L, map.remove(base));
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i % 2 == 0 ? 0L : i + 1, map.get(base + i * 4_194_304L));
+        }
+    }
+
+    @Test
+    void shouldKeepSnapshotUnchangedByLaterWrites() {
+        // Given
+        LongCounterMap map = new LongCounterMap();
+        for (long key = 1; key <= 1_000; key++) {
+            map.put(key, key);
+        }
+
+        // When
+        LongCounterMap.Snapshot snapshot = map.snapshot();
+        for (long key = 1; key <= 2_000; key++) {
+            map.incrementAndGet(key);
+        }
+
+        // Then
+        Map<Long, Long> captured = new HashMap<>();
+        snapshot.forEach(captured::put);
+        assertEquals(1_000, snapshot.size());
+        assertEquals(1_000, captured.size());
+        assertEquals(500L, captured.get(500L));
+        assertEquals(501L, map.get(500L));
+        assertEquals(2_000, map.size());
+    }
+
+    @Test
+    void shouldNotLoseConcurrentIncrements() throws InterruptedException {
+        // Given
+        LongCounterMap map = new LongCounterMap();
+        int threads = 8;
+        int incrementsPerThread = 50_000;
+        int users = 1_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // When
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < incrementsPerThread; i++) {
+                    map.incrementAndGet(i % users);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        // Then
+        long total = 0;
+        for (int user = 0; user < users; user++) {
+            total += map.get(user);
+        }
+        assertEquals((long) threads * incrementsPerThread, total);
+        assertEquals(users, map.size());
+    }
+}
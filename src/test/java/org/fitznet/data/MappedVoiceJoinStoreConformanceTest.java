@@ -0,0 +1,11 @@
+package org.fitznet.data;
+
+import java.nio.file.Path;
+
+class MappedVoiceJoinStoreConformanceTest extends VoiceJoinStoreConformanceTest {
+
+    @Override
+    protected VoiceJoinStore open(Path dir) {
+        return new MappedVoiceJoinStore(dir.resolve("counts.bin"));
+    }
+}
@@ -0,0 +1,82 @@
+package org.fitznet.data;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.fitznet.util.JsonUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedVoiceJoinStoreTest {
+
+    @Test
+    void shouldPersistIncrementsAcrossReopen(@TempDir Path tempDir) {
+        // Given
+        Path file = tempDir.resolve("counts.bin");
+        try (MappedVoiceJoinStore store = new MappedVoiceJoinStore(file)) {
+            store.incrementVoiceJoinCount(123L);
+            store.incrementVoiceJoinCount(123L);
+            store.incrementVoiceJoinCount(456L);
+        }
+
+        // When
+        try (MappedVoiceJoinStore reopened = new MappedVoiceJoinStore(file)) {
+            // Then
+            assertEquals(2L, reopened.getVoiceJoinCount(123L));
+            assertEquals(1L, reopened.getVoiceJoinCount(456L));
+            assertTrue(reopened.userExists(456L));
+            assertFalse(reopened.userExists(789L));
+            assertEquals(2, reopened.size());
+        }
+    }
+
+    @Test
+    void shouldGrowWithoutLosingCounts(@TempDir Path tempDir) {
+        // Given
+        Path file = tempDir.resolve("counts.bin");
+        long base = 1216911261703340125L;
+
+        // When
+        try (MappedVoiceJoinStore store = new MappedVoiceJoinStore(file, 16)) {
+            for (int i = 0; i < 10_000; i++) {
+                store.incrementVoiceJoinCount(base + i);
+            }
+            store.incrementVoiceJoinCount(base);
+        }
+
+        // Then
+        try (MappedVoiceJoinStore reopened = new MappedVoiceJoinStore(file)) {
+            assertEquals(10_000, reopened.size());
+            assertEquals(2L, reopened.getVoiceJoinCount(base));
+            assertEquals(1L, reopened.getVoiceJoinCount(base + 9_999));
+        }
+    }
+
+    @Test
+    void shouldRoundTripThroughJson(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path json = tempDir.resolve("counts.json");
+        Path binary = tempDir.resolve("counts.bin");
+        Path exported = tempDir.resolve("exported.json");
+        Map<Long, Long> counts = new HashMap<>();
+        for (long userId = 1; userId <= 500; userId++) {
+            counts.put(userId * 7_919L, userId);
+        }
+        JsonUtils.MAPPER.writeValue(json.toFile(), counts);
+
+        // When
+        int imported = VoiceJoinFileConverter.importJson(json, binary);
+        int exportedCount = VoiceJoinFileConverter.exportJson(binary, exported);
+
+        // Then
+        assertEquals(500, imported);
+        assertEquals(500, exportedCount);
+        Map<Long, Long> roundTripped = JsonUtils.MAPPER.readValue(exported.toFile(), new TypeReference<>() {});
+        assertEquals(counts, roundTripped);
+    }
+}
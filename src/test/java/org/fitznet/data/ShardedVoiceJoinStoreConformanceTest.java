@@ -0,0 +1,13 @@
+package org.fitznet.data;
+
+import java.nio.file.Path;
+
+class ShardedVoiceJoinStoreConformanceTest extends VoiceJoinStoreConformanceTest {
+
+    @Override
+    protected VoiceJoinStore open(Path dir) {
+        return new ShardedVoiceJoinStore(shardId -> new VoiceJoinDatabase(
+                ShardedVoiceJoinStore.partitionFile(dir.resolve("counts.json").toString(), shardId), 50L, 100),
+                0, 1, 2);
+    }
+}
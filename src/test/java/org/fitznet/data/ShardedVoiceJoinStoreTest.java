@@ -0,0 +1,104 @@
+package org.fitznet.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedVoiceJoinStoreTest {
+
+    private static ShardedVoiceJoinStore open(Path dir, int... shardIds) {
+        return new ShardedVoiceJoinStore(shardId -> new VoiceJoinDatabase(
+                ShardedVoiceJoinStore.partitionFile(dir.resolve("counts.json").toString(), shardId), 60_000L, 1_000),
+                shardIds);
+    }
+
+    @Test
+    void shouldReturnTotalsAcrossShards(@TempDir Path tempDir) {
+        // Given
+        ShardedVoiceJoinStore store = open(tempDir, 0, 1);
+        VoiceJoinStore shard0 = store.forShard(0);
+        VoiceJoinStore shard1 = store.forShard(1);
+
+        // When
+        shard0.incrementVoiceJoinCount(7L);
+        shard1.incrementVoiceJoinCount(7L);
+        long total = shard0.incrementVoiceJoinCount(7L);
+
+        // Then
+        assertEquals(3L, total);
+        assertEquals(3L, store.getVoiceJoinCount(7L));
+        assertEquals(Map.of(7L, 3L), store.getAllCounts());
+        store.close();
+    }
+
+    @Test
+    void shouldVisitUsersInSeveralShardsOnce(@TempDir Path tempDir) {
+        // Given
+        ShardedVoiceJoinStore store = open(tempDir, 0, 1, 2);
+        store.forShard(1).incrementVoiceJoinCount(7L);
+        store.forShard(2).incrementVoiceJoinCount(7L);
+        store.forShard(2).incrementVoiceJoinCount(8L);
+        Map<Long, Long> visited = new HashMap<>();
+
+        // When
+        store.forEachCount((userId, count) -> assertNull(visited.put(userId, count), "visited twice: " + userId));
+
+        // Then
+        assertEquals(Map.of(7L, 2L, 8L, 1L), visited);
+        store.close();
+    }
+
+    @Test
+    void shouldKeepEachShardInItsOwnFile(@TempDir Path tempDir) {
+        // Given
+        ShardedVoiceJoinStore store = open(tempDir, 0, 3);
+
+        // When
+        store.forShard(0).incrementVoiceJoinCount(1L);
+        store.forShard(3).incrementVoiceJoinCount(1L);
+        store.close();
+
+        // Then
+        assertTrue(Files.exists(tempDir.resolve("counts.json")));
+        assertTrue(Files.exists(tempDir.resolve("counts.shard-3.json")));
+        ShardedVoiceJoinStore reopened = open(tempDir, 0, 3);
+        assertEquals(2L, reopened.getVoiceJoinCount(1L));
+        reopened.close();
+    }
+
+    @Test
+    void shouldNameShardFilesBeforeExtension() {
+        assertEquals("counts.json", ShardedVoiceJoinStore.partitionFile("counts.json", 0));
+        assertEquals("data/counts.shard-2.json", ShardedVoiceJoinStore.partitionFile("data/counts.json", 2));
+        assertEquals("data.d/counts.shard-2", ShardedVoiceJoinStore.partitionFile("data.d/counts", 2));
+        assertEquals("jdbc:h2:file:./counts.shard-2;AUTO_SERVER=TRUE",
+                ShardedVoiceJoinStore.partitionFile("jdbc:h2:file:./counts;AUTO_SERVER=TRUE", 2));
+    }
+
+    @Test
+    void shouldFindPartitionsLeftBehindWhenShardingIsOff(@TempDir Path tempDir) throws Exception {
+        // Given
+        Files.createFile(tempDir.resolve("counts.json"));
+        Files.createFile(tempDir.resolve("counts.shard-1.json"));
+        Files.createFile(tempDir.resolve("counts.shard-12.json"));
+        Files.createFile(tempDir.resolve("counts.shard-1.json.journal"));
+        Files.createFile(tempDir.resolve("other.shard-1.json"));
+        Files.createFile(tempDir.resolve("h2.shard-3.mv.db"));
+
+        // When
+        List<Path> json = ShardedVoiceJoinStore.otherPartitionFiles(tempDir.resolve("counts.json").toString());
+        List<Path> h2 = ShardedVoiceJoinStore.otherPartitionFiles("jdbc:h2:file:" + tempDir.resolve("h2") + ";AUTO_SERVER=TRUE");
+
+        // Then
+        assertEquals(List.of(tempDir.resolve("counts.shard-1.json"), tempDir.resolve("counts.shard-12.json")), json);
+        assertEquals(List.of(tempDir.resolve("h2.shard-3.mv.db")), h2);
+        assertEquals(List.of(), ShardedVoiceJoinStore.otherPartitionFiles("jdbc:h2:tcp://localhost/counts"));
+    }
+}
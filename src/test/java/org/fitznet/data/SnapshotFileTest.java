@@ -0,0 +1,152 @@
+package org.fitznet.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotFileTest {
+
+    private static void write(SnapshotFile snapshot, String body) throws IOException {
+        snapshot.write(out -> out.write(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String read(SnapshotFile snapshot) throws IOException {
+        return snapshot.read(in -> new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldReadBackWithoutTrailer(@TempDir Path tempDir) throws IOException {
+        // Given
+        SnapshotFile snapshot = new SnapshotFile(tempDir.resolve("counts.json"), 2);
+
+        // When
+        write(snapshot, "{\"1\":2}");
+
+        // Then
+        assertEquals("{\"1\":2}", read(snapshot));
+        assertFalse(Files.exists(tempDir.resolve("counts.json.tmp")));
+    }
+
+    @Test
+    void shouldKeepRingOfPreviousSnapshots(@TempDir Path tempDir) throws IOException {
+        // Given
+        SnapshotFile snapshot = new SnapshotFile(tempDir.resolve("counts.json"), 2);
+
+        // When
+        for (int version = 1; version <= 4; version++) {
+            write(snapshot, "v" + version);
+        }
+
+        // Then
+        assertEquals("v4", read(snapshot));
+        assertTrue(Files.readString(snapshot.previous(1)).startsWith("v3"));
+        assertTrue(Files.readString(snapshot.previous(2)).startsWith("v2"));
+        assertFalse(Files.exists(snapshot.previous(3)));
+    }
+
+    @Test
+    void shouldFallBackWhenCurrentIsCorrupt(@TempDir Path tempDir) throws IOException {
+        // Given
+        SnapshotFile snapshot = new SnapshotFile(tempDir.resolve("counts.json"), 2);
+        write(snapshot, "older");
+        write(snapshot, "newer");
+        byte[] bytes = Files.readAllBytes(snapshot.getPath());
+        bytes[0] ^= 0x20;
+        Files.write(snapshot.getPath(), bytes);
+
+        // When
+        String recovered = read(snapshot);
+
+        // Then
+        assertEquals("older", recovered);
+    }
+
+    @Test
+    void shouldFallBackWhenCurrentIsTruncated(@TempDir Path tempDir) throws IOException {
+        // Given
+        SnapshotFile snapshot = new SnapshotFile(tempDir.resolve("counts.json"), 2);
+        write(snapshot, "older");
+        write(snapshot, "newer");
+        Files.write(snapshot.getPath(), "new".getBytes(StandardCharsets.UTF_8));
+
+        // When
+        String recovered = snapshot.read(in -> {
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            if (!body.endsWith("er")) {
+                throw new IOException("Unexpected end of snapshot");
+            }
+            return body;
+        });
+
+        // Then
+        assertEquals("older", recovered);
+    }
+
+    @Test
+    void shouldFallBackWhenTrailerIsCutShort(@TempDir Path tempDir) throws IOException {
+        // Given
+        SnapshotFile snapshot = new SnapshotFile(tempDir.resolve("counts.json"), 2);
+        write(snapshot, "{\"1\":1}");
+        write(snapshot, "{\"1\":2}");
+        byte[] current = Files.readAllBytes(snapshot.getPath());
+        Files.write(snapshot.getPath(), Arrays.copyOf(current, current.length / 2));
+
+        // When the parser, like Jackson, stops reading at the end of the object
+        String recovered = snapshot.read(in -> {
+            StringBuilder body = new StringBuilder();
+            int b;
+            while ((b = in.read()) >= 0) {
+                body.append((char) b);
+                if (b == '}') {
+                    break;
+                }
+            }
+            return body.toString();
+        });
+
+        // Then
+        assertEquals("{\"1\":1}", recovered);
+    }
+
+    @Test
+    void shouldAcceptFileWrittenBeforeChecksums(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path path = tempDir.resolve("counts.json");
+        Files.writeString(path, "{\"7\":3}");
+
+        // When
+        String body = read(new SnapshotFile(path, 2));
+
+        // Then
+        assertEquals("{\"7\":3}", body);
+    }
+
+    @Test
+    void shouldReturnNullWithoutAnySnapshot(@TempDir Path tempDir) throws IOException {
+        // When / Then
+        assertNull(read(new SnapshotFile(tempDir.resolve("counts.json"), 2)));
+    }
+
+    @Test
+    void shouldFailWhenEverySnapshotIsDamaged(@TempDir Path tempDir) throws IOException {
+        // Given
+        SnapshotFile snapshot = new SnapshotFile(tempDir.resolve("counts.json"), 1);
+        write(snapshot, "older");
+        write(snapshot, "newer");
+        for (Path path : new Path[]{snapshot.getPath(), snapshot.previous(1)}) {
+            byte[] bytes = Files.readAllBytes(path);
+            bytes[1] ^= 0x20;
+            Files.write(path, bytes);
+        }
+
+        // When / Then
+        assertThrows(IOException.class, () -> read(snapshot));
+    }
+}
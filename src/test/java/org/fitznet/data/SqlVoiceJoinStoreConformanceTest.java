@@ -0,0 +1,55 @@
+package org.fitznet.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlVoiceJoinStoreConformanceTest extends VoiceJoinStoreConformanceTest {
+
+    @Override
+    protected VoiceJoinStore open(Path dir) {
+        return new SqlVoiceJoinStore("jdbc:h2:file:" + dir.resolve("counts").toAbsolutePath(), 50L, 100);
+    }
+
+    @Test
+    void shouldAddIncrementsFromStoresSharingOneDatabase() {
+        // Given
+        VoiceJoinStore first = open(tempDir);
+        VoiceJoinStore second = open(tempDir);
+
+        // When
+        first.incrementVoiceJoinCount(1L);
+        second.incrementVoiceJoinCount(1L);
+        second.incrementVoiceJoinCount(1L);
+        first.close();
+        second.close();
+
+        // Then
+        VoiceJoinStore reopened = open(tempDir);
+        assertEquals(3L, reopened.getVoiceJoinCount(1L));
+        reopened.close();
+    }
+
+    @Test
+    void shouldSplitLargeFlushesIntoSeveralStatements() {
+        // Given
+        VoiceJoinStore store = new SqlVoiceJoinStore("jdbc:h2:file:" + tempDir.resolve("counts").toAbsolutePath(), 60_000L, 10_000);
+        int users = SqlVoiceJoinStore.ROWS_PER_STATEMENT * 2 + 7;
+
+        // When
+        for (int i = 0; i < users; i++) {
+            store.incrementVoiceJoinCount(i);
+        }
+        store.flush();
+        long flushes = store.getFlushStats().flushes();
+        store.close();
+
+        // Then
+        VoiceJoinStore reopened = open(tempDir);
+        assertEquals(1L, flushes);
+        assertEquals(users, reopened.getAllCounts().size());
+        reopened.close();
+    }
+}
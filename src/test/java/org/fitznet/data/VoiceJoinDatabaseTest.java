@@ -0,0 +1,120 @@
+package org.fitznet.data;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.fitznet.util.JsonUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoiceJoinDatabaseTest {
+
+    @Test
+    void shouldCoalesceIncrementsIntoFewWrites(@TempDir Path tempDir) throws IOException {
+        // Given
+        File file = tempDir.resolve("counts.json").toFile();
+        int increments = 1_000;
+        int threshold = 100;
+        VoiceJoinDatabase database = new VoiceJoinDatabase(file.getPath(), 60_000L, threshold);
+
+        // When
+        for (int i = 0; i < increments; i++) {
+            database.incrementVoiceJoinCount(i % 10);
+        }
+        database.close();
+
+        // Then
+        assertTrue(database.getFlushCount() > 0);
+        assertTrue(database.getFlushCount() <= increments / threshold + 1,
+                "Expected at most " + (increments / threshold + 1) + " writes but got " + database.getFlushCount());
+
+        Map<Long, Long> saved = JsonUtils.MAPPER.readValue(file, new TypeReference<>() {});
+        assertEquals(10, saved.size());
+        assertEquals(100L, saved.get(3L));
+    }
+
+    @Test
+    void shouldFlushPendingIncrementsOnClose(@TempDir Path tempDir) throws IOException {
+        // Given
+        File file = tempDir.resolve("counts.json").toFile();
+        VoiceJoinDatabase database = new VoiceJoinDatabase(file.getPath(), 60_000L, 1_000);
+
+        // When
+        database.incrementVoiceJoinCount(123L);
+        database.incrementVoiceJoinCount(123L);
+
+        // Then
+        assertEquals(0, database.getFlushCount());
+        database.close();
+        assertEquals(1, database.getFlushCount());
+
+        VoiceJoinDatabase reloaded = new VoiceJoinDatabase(file.getPath(), 60_000L, 1_000);
+        assertEquals(2L, reloaded.getVoiceJoinCount(123L));
+        reloaded.close();
+    }
+
+    @Test
+    void shouldKeepIncrementsPendingAfterFailedFlush(@TempDir Path tempDir) throws IOException {
+        // Given a database whose directory is a plain file, so nothing can be written there
+        Path directory = tempDir.resolve("data");
+        Files.writeString(directory, "not a directory");
+        File file = directory.resolve("counts.json").toFile();
+        VoiceJoinDatabase database = new VoiceJoinDatabase(file.getPath(), 60_000L, 1_000);
+        database.incrementVoiceJoinCount(123L);
+        database.flushIfDirty();
+
+        // When the disk recovers
+        Files.delete(directory);
+        Files.createDirectory(directory);
+        database.flushIfDirty();
+
+        // Then
+        assertEquals(1, database.getFlushCount());
+        VoiceJoinDatabase reloaded = new VoiceJoinDatabase(file.getPath(), 60_000L, 1_000);
+        assertEquals(1L, reloaded.getVoiceJoinCount(123L));
+        reloaded.close();
+        database.close();
+    }
+
+    @Test
+    void shouldWriteThroughWhenIntervalDisabled(@TempDir Path tempDir) {
+        // Given
+        File file = tempDir.resolve("counts.json").toFile();
+        VoiceJoinDatabase database = new VoiceJoinDatabase(file.getPath(), 0L, 1);
+
+        // When
+        database.incrementVoiceJoinCount(1L);
+        database.incrementVoiceJoinCount(2L);
+
+        // Then
+        assertEquals(2, database.getFlushCount());
+        database.close();
+    }
+
+    @Test
+    void shouldLoadPreviousSnapshotWhenCurrentIsTruncated(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path file = tempDir.resolve("counts.json");
+        VoiceJoinDatabase database = new VoiceJoinDatabase(file.toString(), 60_000L, 1_000);
+        database.incrementVoiceJoinCount(1L);
+        database.saveData();
+        database.incrementVoiceJoinCount(1L);
+        database.close();
+        byte[] current = Files.readAllBytes(file);
+
+        // When a crash leaves the current snapshot cut short
+        Files.write(file, Arrays.copyOf(current, current.length / 2));
+        VoiceJoinDatabase recovered = new VoiceJoinDatabase(file.toString(), 60_000L, 1_000);
+
+        // Then
+        assertEquals(1L, recovered.getVoiceJoinCount(1L));
+        recovered.close();
+    }
+}
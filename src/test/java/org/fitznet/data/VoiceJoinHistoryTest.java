@@ -0,0 +1,159 @@
+package org.fitznet.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fitznet.util.Constants.HISTORY_DAILY_BUCKETS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoiceJoinHistoryTest {
+    private static final long GUILD = 1L;
+    private static final long OTHER_GUILD = 2L;
+    private static final long CHANNEL = 10L;
+    private static final long USER = 100L;
+    private static final Instant NOW = Instant.parse("2024-06-15T12:00:00Z");
+
+    private final VoiceJoinHistory history = new VoiceJoinHistory();
+
+    @AfterEach
+    void tearDown() {
+        history.close();
+    }
+
+    @Test
+    void shouldKeepGuildsSeparate() {
+        // When
+        history.recordJoin(GUILD, CHANNEL, USER, NOW);
+        history.recordJoin(GUILD, CHANNEL, USER, NOW);
+        history.recordJoin(OTHER_GUILD, CHANNEL, USER, NOW);
+
+        // Then
+        assertEquals(2L, history.getUserTotal(GUILD, USER));
+        assertEquals(1L, history.getUserTotal(OTHER_GUILD, USER));
+        assertEquals(2L, history.getChannelTotal(GUILD, CHANNEL));
+    }
+
+    @Test
+    void shouldCountJoinsWithinLastDays() {
+        // Given
+        history.recordJoin(GUILD, CHANNEL, USER, NOW.minus(Duration.ofDays(10)));
+        history.recordJoin(GUILD, CHANNEL, USER, NOW.minus(Duration.ofDays(6)));
+        history.recordJoin(GUILD, CHANNEL, USER, NOW.minus(Duration.ofDays(1)));
+        history.recordJoin(GUILD, CHANNEL, USER, NOW);
+
+        // Then
+        assertEquals(3L, history.getUserJoinsLastDays(GUILD, USER, 7, NOW));
+        assertEquals(1L, history.getUserJoinsLastDays(GUILD, USER, 1, NOW));
+        assertEquals(4L, history.getChannelJoinsLastDays(GUILD, CHANNEL, 30, NOW));
+        assertEquals(4L, history.getUserTotal(GUILD, USER));
+    }
+
+    @Test
+    void shouldCountJoinsWithinLastHours() {
+        // Given
+        history.recordJoin(GUILD, CHANNEL, USER, NOW.minus(Duration.ofHours(3)));
+        history.recordJoin(GUILD, CHANNEL, USER, NOW.minus(Duration.ofMinutes(30)));
+
+        // Then
+        assertEquals(1L, history.getUserJoinsLastHours(GUILD, USER, 2, NOW));
+        assertEquals(2L, history.getUserJoinsLastHours(GUILD, USER, 24, NOW));
+    }
+
+    @Test
+    void shouldAgeOutOldBucketsAndPruneIdleKeys() {
+        // Given
+        history.recordJoin(GUILD, CHANNEL, USER, NOW.minus(Duration.ofDays(60)));
+        history.recordVoiceTime(GUILD, USER, 9_000L);
+        history.recordJoin(GUILD, CHANNEL, USER + 1, NOW);
+
+        // When
+        int removed = history.prune(NOW);
+
+        // Then the idle user's rings are gone but their totals are kept
+        assertEquals(1, removed);
+        assertEquals(2, history.size());
+        assertEquals(1L, history.getUserTotal(GUILD, USER));
+        assertEquals(9_000L, history.getUserVoiceMillis(GUILD, USER));
+        assertEquals(0L, history.getUserJoinsLastDays(GUILD, USER, HISTORY_DAILY_BUCKETS, NOW));
+        assertEquals(1L, history.getUserTotal(GUILD, USER + 1));
+        assertEquals(2L, history.getChannelTotal(GUILD, CHANNEL));
+    }
+
+    @Test
+    void shouldResumePrunedTotalsOnNextJoinAndAcrossRestart(@TempDir Path tempDir) {
+        // Given
+        File file = tempDir.resolve("history.json").toFile();
+        VoiceJoinHistory persisted = new VoiceJoinHistory(file, 0L);
+        persisted.recordJoin(GUILD, CHANNEL, USER, NOW.minus(Duration.ofDays(60)));
+        persisted.recordJoin(GUILD, CHANNEL, USER, NOW.minus(Duration.ofDays(59)));
+        persisted.prune(NOW);
+
+        // When
+        long joins = persisted.recordJoin(GUILD, CHANNEL + 1, USER, NOW);
+        long lastDay = persisted.getUserJoinsLastDays(GUILD, USER, 1, NOW);
+        persisted.recordJoin(GUILD, CHANNEL, USER + 1, NOW.minus(Duration.ofDays(60)));
+        persisted.close();
+        VoiceJoinHistory reloaded = new VoiceJoinHistory(file, 0L);
+
+        // Then
+        assertEquals(3L, joins);
+        assertEquals(3L, reloaded.getUserTotal(GUILD, USER));
+        assertEquals(1L, lastDay);
+        assertEquals(1L, reloaded.getUserTotal(GUILD, USER + 1));
+        assertEquals(3L, reloaded.getChannelTotal(GUILD, CHANNEL));
+        List<Long> totals = new ArrayList<>();
+        reloaded.forEachUserTotal((guildId, userId, total) -> totals.add(total));
+        assertEquals(4L, totals.stream().mapToLong(Long::longValue).sum());
+        reloaded.close();
+    }
+
+    @Test
+    void shouldPersistAcrossRestart(@TempDir Path tempDir) {
+        // Given
+        File file = tempDir.resolve("history.json").toFile();
+        VoiceJoinHistory persisted = new VoiceJoinHistory(file);
+        Instant recent = Instant.now();
+        persisted.recordJoin(GUILD, CHANNEL, USER, recent);
+        persisted.close();
+
+        // When
+        VoiceJoinHistory reloaded = new VoiceJoinHistory(file);
+
+        // Then
+        assertEquals(1L, reloaded.getUserJoinsLastDays(GUILD, USER, 7, recent));
+        assertEquals(1L, reloaded.getChannelTotal(GUILD, CHANNEL));
+        reloaded.close();
+    }
+
+    @Test
+    void shouldSaveRecentBucketsWithoutClose(@TempDir Path tempDir) throws InterruptedException {
+        // Given
+        File file = tempDir.resolve("history.json").toFile();
+        VoiceJoinHistory running = new VoiceJoinHistory(file, 200L);
+        Instant recent = Instant.now();
+        running.recordJoin(GUILD, CHANNEL, USER, recent);
+        running.recordVoiceTime(GUILD, USER, 5_000L);
+
+        // When the process is killed after the first flush
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!file.exists() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        VoiceJoinHistory reloaded = new VoiceJoinHistory(file, 0L);
+
+        // Then
+        assertEquals(1L, reloaded.getUserJoinsLastHours(GUILD, USER, 1, recent));
+        assertEquals(1L, reloaded.getChannelJoinsLastDays(GUILD, CHANNEL, 1, recent));
+        assertEquals(5_000L, reloaded.getUserVoiceMillis(GUILD, USER));
+        reloaded.close();
+        running.close();
+    }
+}
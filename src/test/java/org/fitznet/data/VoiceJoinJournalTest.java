@@ -0,0 +1,124 @@
+package org.fitznet.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoiceJoinJournalTest {
+
+    @Test
+    void shouldReplayCommittedRecords(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path path = tempDir.resolve("counts.journal");
+        try (VoiceJoinJournal journal = new VoiceJoinJournal(path, false, (userId, count) -> {})) {
+            journal.append(1L, 1L);
+            journal.append(2L, 1L);
+            journal.append(1L, 2L);
+        }
+
+        // When
+        Map<Long, Long> replayed = new HashMap<>();
+        try (VoiceJoinJournal reopened = new VoiceJoinJournal(path, false, replayed::put)) {
+            // Then every record is replayed and kept
+            assertEquals(Map.of(1L, 2L, 2L, 1L), replayed);
+            assertEquals(Files.size(path), reopened.size());
+        }
+    }
+
+    @Test
+    void shouldDiscardTornFinalRecord(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path path = tempDir.resolve("counts.journal");
+        try (VoiceJoinJournal journal = new VoiceJoinJournal(path, true, (userId, count) -> {})) {
+            journal.append(1L, 5L);
+        }
+        Files.write(path, new byte[]{1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+        // When
+        Map<Long, Long> replayed = new HashMap<>();
+        try (VoiceJoinJournal journal = new VoiceJoinJournal(path, false, replayed::put)) {
+            journal.append(2L, 1L);
+        }
+
+        // Then
+        assertEquals(Map.of(1L, 5L), replayed);
+        assertEquals(2L * VoiceJoinJournal.RECORD_SIZE, Files.size(path));
+    }
+
+    @Test
+    void shouldStopAtCorruptRecord(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path path = tempDir.resolve("counts.journal");
+        try (VoiceJoinJournal journal = new VoiceJoinJournal(path, false, (userId, count) -> {})) {
+            journal.append(1L, 1L);
+            journal.append(2L, 1L);
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[VoiceJoinJournal.RECORD_SIZE + 3] ^= 0x7F;
+        Files.write(path, bytes);
+
+        // When
+        Map<Long, Long> replayed = new HashMap<>();
+        new VoiceJoinJournal(path, false, replayed::put).close();
+
+        // Then
+        assertEquals(Map.of(1L, 1L), replayed);
+    }
+
+    @Test
+    void shouldKeepRecordsAppendedAfterMark(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path path = tempDir.resolve("counts.journal");
+        try (VoiceJoinJournal journal = new VoiceJoinJournal(path, false, (userId, count) -> {})) {
+            journal.append(1L, 1L);
+            journal.append(2L, 1L);
+            long mark = journal.mark();
+            journal.append(3L, 1L);
+            journal.append(1L, 2L);
+
+            // When
+            journal.discardBefore(mark);
+            journal.append(2L, 2L);
+
+            // Then
+            assertEquals(2L * VoiceJoinJournal.RECORD_SIZE, journal.size());
+        }
+        Map<Long, Long> replayed = new HashMap<>();
+        new VoiceJoinJournal(path, false, replayed::put).close();
+        assertEquals(Map.of(3L, 1L, 1L, 2L, 2L, 2L), replayed);
+        assertFalse(Files.exists(tempDir.resolve("counts.journal.compact")));
+    }
+
+    @Test
+    void shouldRecoverDatabaseFromSnapshotAndJournal(@TempDir Path tempDir) throws IOException {
+        // Given
+        PersistenceSettings settings = PersistenceSettings.builder()
+                .databaseFile(tempDir.resolve("counts.json").toString())
+                .flushIntervalMillis(60_000L)
+                .journalEnabled(true)
+                .build();
+        VoiceJoinDatabase database = new VoiceJoinDatabase(settings);
+        database.incrementVoiceJoinCount(1L);
+        database.compact();
+        database.incrementVoiceJoinCount(1L);
+        database.incrementVoiceJoinCount(2L);
+
+        // When the process dies after a group commit without compacting
+        database.flushIfDirty();
+        database.abandon();
+
+        // Then
+        try (VoiceJoinDatabase recovered = new VoiceJoinDatabase(settings)) {
+            assertEquals(2L, recovered.getVoiceJoinCount(1L));
+            assertEquals(1L, recovered.getVoiceJoinCount(2L));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.fitznet.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Behaviour every {@link VoiceJoinStore} backend must share. Each backend extends this with a
+ * concrete test class that says how to open it; opening again in the same directory must see
+ * everything written before the previous instance was closed.
+ */
+abstract class VoiceJoinStoreConformanceTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Open the store kept in {@code dir}, creating it if needed.
+     */
+    protected abstract VoiceJoinStore open(Path dir);
+
+    @Test
+    void shouldStartEmpty() {
+        // Given
+        VoiceJoinStore store = open(tempDir);
+
+        // When / Then
+        assertEquals(0L, store.getVoiceJoinCount(1L));
+        assertFalse(store.userExists(1L));
+        assertTrue(store.getAllCounts().isEmpty());
+        store.close();
+    }
+
+    @Test
+    void shouldReturnNewCountFromIncrement() {
+        // Given
+        VoiceJoinStore store = open(tempDir);
+
+        // When
+        long first = store.incrementVoiceJoinCount(1L);
+        long second = store.incrementVoiceJoinCount(1L);
+        store.incrementVoiceJoinCount(2L);
+
+        // Then
+        assertEquals(1L, first);
+        assertEquals(2L, second);
+        assertEquals(2L, store.getVoiceJoinCount(1L));
+        assertTrue(store.userExists(2L));
+        assertEquals(Map.of(1L, 2L, 2L, 1L), store.getAllCounts());
+        store.close();
+    }
+
+    @Test
+    void shouldAddAmountsAndKeepThemAcrossReopen() {
+        // Given
+        VoiceJoinStore store = open(tempDir);
+
+        // When
+        long first = store.addToCount(1L, 90_000L);
+        long second = store.addToCount(1L, 1_500L);
+        store.incrementVoiceJoinCount(1L);
+        store.close();
+        VoiceJoinStore reopened = open(tempDir);
+
+        // Then
+        assertEquals(90_000L, first);
+        assertEquals(91_500L, second);
+        assertEquals(91_501L, reopened.getVoiceJoinCount(1L));
+        reopened.close();
+    }
+
+    @Test
+    void shouldReturnIndependentCopyOfAllCounts() {
+        // Given
+        VoiceJoinStore store = open(tempDir);
+        store.incrementVoiceJoinCount(1L);
+
+        // When
+        Map<Long, Long> copy = store.getAllCounts();
+        store.incrementVoiceJoinCount(1L);
+
+        // Then
+        assertEquals(1L, copy.get(1L));
+        assertEquals(2L, store.getVoiceJoinCount(1L));
+        store.close();
+    }
+
+    @Test
+    void shouldKeepCountsAcrossReopen() {
+        // Given
+        VoiceJoinStore store = open(tempDir);
+        for (int i = 0; i < 250; i++) {
+            store.incrementVoiceJoinCount(1_000L + i % 25);
+        }
+
+        // When
+        store.close();
+        VoiceJoinStore reopened = open(tempDir);
+
+        // Then
+        assertEquals(25, reopened.getAllCounts().size());
+        assertEquals(10L, reopened.getVoiceJoinCount(1_007L));
+        assertEquals(11L, reopened.incrementVoiceJoinCount(1_007L));
+        reopened.close();
+    }
+
+    @Test
+    void shouldCountConcurrentIncrementsExactly() throws InterruptedException {
+        // Given
+        VoiceJoinStore store = open(tempDir);
+        List<Thread> threads = new ArrayList<>();
+
+        // When
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    store.incrementVoiceJoinCount(i % 10);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        store.close();
+
+        // Then
+        VoiceJoinStore reopened = open(tempDir);
+        for (long userId = 0; userId < 10; userId++) {
+            assertEquals(400L, reopened.getVoiceJoinCount(userId));
+        }
+        reopened.close();
+    }
+
+    @Test
+    void shouldAllowClosingTwice() {
+        // Given
+        VoiceJoinStore store = open(tempDir);
+        store.incrementVoiceJoinCount(1L);
+
+        // When
+        store.close();
+
+        // Then
+        assertDoesNotThrow(store::close);
+    }
+}
@@ -0,0 +1,118 @@
+package org.fitznet.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class VoiceSessionTrackerTest {
+    private static final long GUILD = 10L;
+
+    @Test
+    void shouldCreditSessionLengthOnLeave() {
+        // Given
+        VoiceJoinStore voiceTime = mock(VoiceJoinStore.class);
+        VoiceJoinHistory history = new VoiceJoinHistory();
+        VoiceSessionTracker tracker = new VoiceSessionTracker(voiceTime, history);
+        tracker.join(GUILD, 100L, 1_000L);
+
+        // When
+        long length = tracker.leave(GUILD, 100L, 61_000L);
+
+        // Then
+        assertEquals(60_000L, length);
+        verify(voiceTime).addToCount(100L, 60_000L);
+        assertEquals(60_000L, history.getUserVoiceMillis(GUILD, 100L));
+        assertEquals(0, tracker.getActiveSessionCount());
+    }
+
+    @Test
+    void shouldContinueTheSessionAcrossMoves() {
+        // Given
+        VoiceJoinHistory history = new VoiceJoinHistory();
+        VoiceSessionTracker tracker = new VoiceSessionTracker(null, history);
+        tracker.join(GUILD, 100L, 1_000L);
+
+        // When
+        tracker.move(GUILD, 100L, 5_000L);
+        tracker.leave(GUILD, 100L, 9_000L);
+
+        // Then
+        assertEquals(8_000L, history.getUserVoiceMillis(GUILD, 100L));
+    }
+
+    @Test
+    void shouldIgnoreLeaveWithoutSession() {
+        // Given
+        VoiceJoinStore voiceTime = mock(VoiceJoinStore.class);
+        VoiceSessionTracker tracker = new VoiceSessionTracker(voiceTime, new VoiceJoinHistory());
+
+        // When
+        long length = tracker.leave(GUILD, 100L, 5_000L);
+
+        // Then
+        assertEquals(0L, length);
+        verify(voiceTime, never()).addToCount(100L, 5_000L);
+    }
+
+    @Test
+    void shouldReconcileAgainstVoiceStatesAfterReconnect() {
+        // Given
+        VoiceJoinHistory history = new VoiceJoinHistory();
+        VoiceSessionTracker tracker = new VoiceSessionTracker(null, history);
+        tracker.join(GUILD, 100L, 1_000L);
+        tracker.join(GUILD, 200L, 2_000L);
+        tracker.join(GUILD + 1, 300L, 3_000L);
+        tracker.join(GUILD + 2, 600L, 4_000L);
+        tracker.disconnected(10_000L);
+
+        // When: 100 and 600 left and 400 and 500 joined while the gateway was down
+        int changed = tracker.reconcile(Map.of(GUILD, new long[]{400L, 200L}, GUILD + 2, new long[]{500L}), 50_000L);
+
+        // Then
+        assertEquals(4, changed);
+        assertEquals(6_000L, history.getUserVoiceMillis(GUILD + 2, 600L));
+        assertEquals(50_000L, tracker.getSessionStart(GUILD + 2, 500L));
+        assertEquals(9_000L, history.getUserVoiceMillis(GUILD, 100L));
+        assertEquals(0L, tracker.getSessionStart(GUILD, 100L));
+        assertEquals(2_000L, tracker.getSessionStart(GUILD, 200L));
+        assertEquals(50_000L, tracker.getSessionStart(GUILD, 400L));
+        assertEquals(3_000L, tracker.getSessionStart(GUILD + 1, 300L));
+    }
+
+    @Test
+    void shouldIncludeTheOpenSessionInGuildTime() {
+        // Given
+        VoiceJoinHistory history = new VoiceJoinHistory();
+        VoiceSessionTracker tracker = new VoiceSessionTracker(null, history);
+        tracker.join(GUILD, 100L, 1_000L);
+        tracker.leave(GUILD, 100L, 2_000L);
+        tracker.join(GUILD, 100L, 5_000L);
+
+        // When
+        long millis = tracker.getGuildVoiceMillis(GUILD, 100L, 7_500L);
+
+        // Then
+        assertEquals(3_500L, millis);
+    }
+
+    @Test
+    void shouldShareOpenSessionsWithStoreViews() {
+        // Given
+        VoiceJoinStore shardStore = mock(VoiceJoinStore.class);
+        VoiceSessionTracker tracker = new VoiceSessionTracker(null, new VoiceJoinHistory());
+        VoiceSessionTracker shardTracker = tracker.withStore(shardStore);
+
+        // When
+        tracker.join(GUILD, 100L, 1_000L);
+        shardTracker.leave(GUILD, 100L, 4_000L);
+
+        // Then
+        verify(shardStore).addToCount(100L, 3_000L);
+        assertEquals(0, tracker.getActiveSessionCount());
+    }
+}
@@ -0,0 +1,152 @@
+package org.fitznet.guild;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.entities.channel.unions.ChannelUnion;
+import net.dv8tion.jda.api.events.channel.ChannelDeleteEvent;
+import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ChannelCacheTest {
+    private static final long GUILD_ID = 7L;
+    private static final long OTHER_GUILD_ID = 8L;
+    private static final long DEFAULT_CHANNEL_ID = 100L;
+    private static final long CONFIGURED_CHANNEL_ID = 200L;
+    private static final long SYSTEM_CHANNEL_ID = 300L;
+
+    @Mock private Guild mockGuild;
+    @Mock private Guild mockOtherGuild;
+    @Mock private TextChannel mockDefaultChannel;
+    @Mock private TextChannel mockConfiguredChannel;
+    @Mock private TextChannel mockSystemChannel;
+
+    private final Map<Long, TextChannel> channels = new HashMap<>();
+    private final AtomicInteger lookups = new AtomicInteger();
+    private GuildConfigService guildConfig;
+    private ChannelCache cache;
+
+    @BeforeEach
+    void setUp() {
+        when(mockGuild.getIdLong()).thenReturn(GUILD_ID);
+        when(mockOtherGuild.getIdLong()).thenReturn(OTHER_GUILD_ID);
+        when(mockDefaultChannel.getGuild()).thenReturn(mockGuild);
+        when(mockConfiguredChannel.getGuild()).thenReturn(mockGuild);
+        when(mockSystemChannel.getIdLong()).thenReturn(SYSTEM_CHANNEL_ID);
+        channels.put(DEFAULT_CHANNEL_ID, mockDefaultChannel);
+        channels.put(CONFIGURED_CHANNEL_ID, mockConfiguredChannel);
+
+        guildConfig = new GuildConfigService();
+        cache = new ChannelCache(channelId -> {
+            lookups.incrementAndGet();
+            return channels.get(channelId);
+        }, guildConfig, DEFAULT_CHANNEL_ID);
+    }
+
+    @Test
+    void shouldLookUpChannelOnce() {
+        // When
+        TextChannel first = cache.apply(CONFIGURED_CHANNEL_ID);
+        TextChannel second = cache.apply(CONFIGURED_CHANNEL_ID);
+
+        // Then
+        assertSame(mockConfiguredChannel, first);
+        assertSame(mockConfiguredChannel, second);
+        assertEquals(1, lookups.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void shouldNotCacheMissingChannel() {
+        // When
+        cache.apply(999L);
+        cache.apply(999L);
+
+        // Then
+        assertEquals(2, lookups.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void shouldDropDeletedChannel() {
+        // Given
+        cache.apply(CONFIGURED_CHANNEL_ID);
+        ChannelUnion deleted = mock(ChannelUnion.class);
+        when(deleted.getIdLong()).thenReturn(CONFIGURED_CHANNEL_ID);
+        ChannelDeleteEvent event = mock(ChannelDeleteEvent.class);
+        when(event.getChannel()).thenReturn(deleted);
+
+        // When
+        cache.onChannelDelete(event);
+        channels.remove(CONFIGURED_CHANNEL_ID);
+
+        // Then
+        assertNull(cache.apply(CONFIGURED_CHANNEL_ID));
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    void shouldDropChannelsOfLeftGuild() {
+        // Given
+        cache.apply(DEFAULT_CHANNEL_ID);
+        cache.apply(CONFIGURED_CHANNEL_ID);
+        GuildLeaveEvent event = mock(GuildLeaveEvent.class);
+        when(event.getGuild()).thenReturn(mockGuild);
+
+        // When
+        cache.onGuildLeave(event);
+
+        // Then
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void shouldAnnounceInConfiguredChannel() {
+        // Given
+        guildConfig.update(GUILD_ID, settings -> settings.withAnnouncementChannelId(CONFIGURED_CHANNEL_ID));
+
+        // When / Then
+        assertEquals(CONFIGURED_CHANNEL_ID, cache.announcementChannelId(mockGuild));
+    }
+
+    @Test
+    void shouldFallBackToDefaultChannelWhenConfiguredChannelIsGone() {
+        // Given
+        guildConfig.update(GUILD_ID, settings -> settings.withAnnouncementChannelId(999L));
+
+        // When / Then
+        assertEquals(DEFAULT_CHANNEL_ID, cache.announcementChannelId(mockGuild));
+    }
+
+    @Test
+    void shouldUseSystemChannelOfGuildWithoutDefaultChannel() {
+        // Given
+        when(mockOtherGuild.getSystemChannel()).thenReturn(mockSystemChannel);
+
+        // When / Then
+        assertEquals(SYSTEM_CHANNEL_ID, cache.announcementChannelId(mockOtherGuild));
+    }
+
+    @Test
+    void shouldReturnZeroWhenGuildHasNowhereToAnnounce() {
+        // Given
+        when(mockOtherGuild.getSystemChannel()).thenReturn(null);
+
+        // When / Then
+        assertEquals(0, cache.announcementChannelId(mockOtherGuild));
+    }
+}
@@ -0,0 +1,123 @@
+package org.fitznet.guild;
+
+import org.fitznet.milestone.MilestoneConfig;
+import org.fitznet.milestone.MilestoneRules;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GuildConfigServiceTest {
+    private static final long GUILD_ID = 7L;
+    private static final long OTHER_GUILD_ID = 8L;
+
+    @Test
+    void shouldReturnDefaultsForUnconfiguredGuild() {
+        // Given
+        GuildConfigService service = new GuildConfigService();
+
+        // When
+        GuildSettings settings = service.get(GUILD_ID);
+
+        // Then
+        assertSame(GuildSettings.DEFAULTS, settings);
+        assertTrue(service.isEnabled(GUILD_ID, GuildSettings.Feature.MILESTONES));
+        assertTrue(service.getAll().isEmpty());
+    }
+
+    @Test
+    void shouldPersistSettingsAcrossRestarts(@TempDir Path tempDir) {
+        // Given
+        File file = tempDir.resolve("guildSettings.json").toFile();
+        GuildConfigService service = new GuildConfigService(file, null);
+        service.update(GUILD_ID, settings -> settings
+                .withAnnouncementChannelId(123L)
+                .withMilestones(List.of(MilestoneConfig.RuleSpec.every(50)))
+                .withFeature(GuildSettings.Feature.LEADERBOARD, false));
+
+        // When
+        GuildConfigService reloaded = new GuildConfigService(file, null);
+
+        // Then
+        GuildSettings settings = reloaded.get(GUILD_ID);
+        assertEquals(123L, settings.announcementChannelId());
+        assertEquals(MilestoneConfig.Type.EVERY, settings.milestones().get(0).type());
+        assertEquals(50, settings.milestones().get(0).interval());
+        assertEquals(Set.of(GuildSettings.Feature.LEADERBOARD), settings.disabledFeatures());
+        assertFalse(reloaded.isEnabled(GUILD_ID, GuildSettings.Feature.LEADERBOARD));
+        assertSame(GuildSettings.DEFAULTS, reloaded.get(OTHER_GUILD_ID));
+    }
+
+    @Test
+    void shouldForgetGuildOnReset(@TempDir Path tempDir) {
+        // Given
+        File file = tempDir.resolve("guildSettings.json").toFile();
+        GuildConfigService service = new GuildConfigService(file, null);
+        service.update(GUILD_ID, settings -> settings.withAnnouncementChannelId(123L));
+        service.update(OTHER_GUILD_ID, settings -> settings.withAnnouncementChannelId(456L));
+
+        // When
+        service.reset(GUILD_ID);
+
+        // Then
+        assertEquals(Map.of(OTHER_GUILD_ID, GuildSettings.DEFAULTS.withAnnouncementChannelId(456L)), service.getAll());
+        assertSame(GuildSettings.DEFAULTS, new GuildConfigService(file, null).get(GUILD_ID));
+    }
+
+    @Test
+    void shouldApplyMilestoneOverrideImmediately() {
+        // Given
+        MilestoneRules milestones = new MilestoneRules();
+        GuildConfigService service = new GuildConfigService(null, milestones);
+
+        // When
+        service.update(GUILD_ID, settings -> settings.withMilestones(List.of(MilestoneConfig.RuleSpec.every(3))));
+
+        // Then
+        assertFalse(milestones.reached(GUILD_ID, 42L, 1));
+        assertTrue(milestones.reached(GUILD_ID, 42L, 3));
+        assertTrue(milestones.reached(OTHER_GUILD_ID, 42L, 1));
+
+        // When
+        service.reset(GUILD_ID);
+
+        // Then
+        assertTrue(milestones.reached(GUILD_ID, 43L, 1));
+    }
+
+    @Test
+    void shouldRejectInvalidMilestonesAndKeepSettings() {
+        // Given
+        MilestoneRules milestones = new MilestoneRules();
+        GuildConfigService service = new GuildConfigService(null, milestones);
+        service.update(GUILD_ID, settings -> settings.withAnnouncementChannelId(123L));
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> service.update(GUILD_ID,
+                settings -> settings.withMilestones(List.of(MilestoneConfig.RuleSpec.every(0)))));
+        assertEquals(GuildSettings.DEFAULTS.withAnnouncementChannelId(123L), service.get(GUILD_ID));
+        assertTrue(milestones.reached(GUILD_ID, 42L, 1));
+    }
+
+    @Test
+    void shouldReapplyOverridesFromFileOnStartup(@TempDir Path tempDir) {
+        // Given
+        File file = tempDir.resolve("guildSettings.json").toFile();
+        new GuildConfigService(file, null)
+                .update(GUILD_ID, settings -> settings.withMilestones(List.of(MilestoneConfig.RuleSpec.explicit(2))));
+        MilestoneRules milestones = new MilestoneRules();
+
+        // When
+        new GuildConfigService(file, milestones);
+
+        // Then
+        assertFalse(milestones.reached(GUILD_ID, 42L, 1));
+        assertTrue(milestones.reached(GUILD_ID, 42L, 2));
+    }
+}
@@ -0,0 +1,759 @@
+package org.fitznet.harness;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+
+/**
+ * An in-process stand-in for Discord's gateway and REST API that JDA can log in to, so the full
+ * bot can be driven end to end without a network or a real token.
+ * <p>
+ * The guilds, voice channels and members are the ones a {@link VoiceEventScript} touches. Each
+ * guild also gets a text channel, which is its system channel and so where milestones are
+ * announced, and the bot owns every guild so that it may post anywhere. After IDENTIFY the
+ * gateway sends READY and, if the bot asked for the GUILDS intent, a full GUILD_CREATE per guild
+ * as Discord does; {@link #replay} then sends the script as VOICE_STATE_UPDATE dispatches at its
+ * scheduled offsets. Messages the bot posts through REST are
+ * recorded rather than delivered. To weigh the caches a gateway profile can turn off, each guild can
+ * also carry a number of custom emojis, stickers and scheduled events.
+ * </p>
+ * <p>
+ * The gateway is a bare RFC 6455 websocket speaking JSON, with zlib-stream compression when JDA
+ * asks for it (its default); ETF is not supported. One session is served at a time, so the bot
+ * must run a single shard. Heartbeats are acknowledged, member requests get an empty chunk and a
+ * RESUME is answered with INVALID_SESSION, which makes JDA identify again. REST routes other than
+ * the few JDA needs to log in, register commands and send messages answer 404.
+ * </p>
+ */
+@Slf4j
+public class FakeDiscordServer implements AutoCloseable {
+    /** User ID of the bot, which is also its application ID. */
+    public static final long BOT_USER_ID = 999L;
+
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final String JOINED_AT = "2024-01-01T00:00:00.000000+00:00";
+    private static final long DISCORD_EPOCH = 1_420_070_400_000L;
+    /** IDs of a guild's emojis, stickers and scheduled events start here, clear of channel and user IDs. */
+    private static final long EXTRA_ID_BASE = 10_000_000_000L;
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 41_250L;
+    /** IDENTIFY intents bit of GUILDS, which guild and channel create, update and delete events need. */
+    private static final int GUILDS_INTENT = 1;
+    private static final Pattern CHANNEL_MESSAGES = Pattern.compile("channels/(\\d+)/messages");
+    private static final Pattern APPLICATION_COMMANDS = Pattern.compile("applications/\\d+(/guilds/\\d+)?/commands");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<Long, GuildLayout> guilds = new TreeMap<>();
+    private final int extrasPerGuild;
+    private final List<PostedMessage> postedMessages = new CopyOnWriteArrayList<>();
+    private final AtomicLong messageSequence = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final CountDownLatch guildsSent = new CountDownLatch(1);
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "fake-discord");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private HttpServer rest;
+    private ServerSocket gateway;
+    private volatile Session session;
+
+    /**
+     * A message the bot posted to a channel.
+     *
+     * @param body the JSON request body, with the content and embeds
+     */
+    public record PostedMessage(long channelId, String body) {
+    }
+
+    private record GuildLayout(long guildId, SortedSet<Long> voiceChannelIds, SortedSet<Long> userIds) {
+    }
+
+    /**
+     * @param script the events that will be replayed; their guilds, channels and users are what the gateway loads
+     */
+    public FakeDiscordServer(VoiceEventScript script) {
+        this(script, 0);
+    }
+
+    /**
+     * @param script the events that will be replayed; their guilds, channels and users are what the gateway loads
+     * @param extrasPerGuild number of custom emojis, and likewise of stickers and scheduled events, in each guild
+     */
+    public FakeDiscordServer(VoiceEventScript script, int extrasPerGuild) {
+        this.extrasPerGuild = extrasPerGuild;
+        for (VoiceEventScript.Event event : script.events()) {
+            GuildLayout guild = guilds.computeIfAbsent(event.guildId(),
+                    id -> new GuildLayout(id, new TreeSet<>(), new TreeSet<>()));
+            guild.userIds().add(event.userId());
+            if (event.leftChannelId() != 0) {
+                guild.voiceChannelIds().add(event.leftChannelId());
+            }
+            if (event.joinedChannelId() != 0) {
+                guild.voiceChannelIds().add(event.joinedChannelId());
+            }
+        }
+    }
+
+    /**
+     * @return the text channel a guild's milestones are announced in
+     */
+    public static long textChannelId(long guildId) {
+        // VoiceEventScript numbers voice channels from guildId * 1000 + 1
+        return guildId * 1_000L;
+    }
+
+    /**
+     * Listen for REST and gateway connections on loopback ports chosen by the system.
+     */
+    public FakeDiscordServer start() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        rest = HttpServer.create(new InetSocketAddress(loopback, 0), 0);
+        rest.createContext("/api/v10/", this::handleRest);
+        rest.setExecutor(connections);
+        rest.start();
+
+        gateway = new ServerSocket(0, 50, loopback);
+        connections.execute(this::acceptGatewayConnections);
+        log.info("Fake Discord listening at {} and {}", getRestBaseUrl(), getGatewayUrl());
+        return this;
+    }
+
+    /**
+     * @return the value for {@code discord.rest.base-url}
+     */
+    public String getRestBaseUrl() {
+        return "http://127.0.0.1:" + rest.getAddress().getPort() + "/api/v10/";
+    }
+
+    /**
+     * @return the value for {@code discord.gateway.url}
+     */
+    public String getGatewayUrl() {
+        return "ws://127.0.0.1:" + gateway.getLocalPort();
+    }
+
+    /**
+     * Wait until a session has identified and been sent every guild.
+     *
+     * @return false if that did not happen within the timeout
+     */
+    public boolean awaitGuildsSent(long timeout, TimeUnit unit) throws InterruptedException {
+        return guildsSent.await(timeout, unit);
+    }
+
+    /**
+     * Send every event of the script as a VOICE_STATE_UPDATE to the current session, each no
+     * earlier than its offset from now. Writes block while JDA is behind on reading, so a flood
+     * faster than the bot can decode is slowed to its pace rather than buffered here.
+     *
+     * @return the number of events sent
+     */
+    public int replay(VoiceEventScript script) throws IOException {
+        Session current = session;
+        if (current == null) {
+            throw new IllegalStateException("No gateway session has identified yet");
+        }
+        int sent = 0;
+        long start = System.nanoTime();
+        for (VoiceEventScript.Event event : script.events()) {
+            long scheduled = start + event.offsetNanos();
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            current.dispatch("VOICE_STATE_UPDATE", voiceState(event));
+            sent++;
+        }
+        return sent;
+    }
+
+    /**
+     * @return messages posted so far, in the order they arrived
+     */
+    public List<PostedMessage> getPostedMessages() {
+        return Collections.unmodifiableList(postedMessages);
+    }
+
+    /**
+     * @return gateway dispatches (op 0) sent over every session
+     */
+    public long getDispatchCount() {
+        return dispatched.get();
+    }
+
+    @Override
+    public void close() {
+        if (rest != null) {
+            rest.stop(0);
+        }
+        try {
+            if (gateway != null) {
+                gateway.close();
+            }
+        } catch (IOException e) {
+            log.debug("Could not close the fake gateway", e);
+        }
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("Could not close a gateway connection", e);
+            }
+        }
+        connections.shutdownNow();
+    }
+
+    // REST
+
+    private void handleRest(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath().substring("/api/v10/".length());
+            String method = exchange.getRequestMethod();
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            Matcher messages = CHANNEL_MESSAGES.matcher(path);
+
+            if (method.equals("GET") && path.equals("users/@me")) {
+                respond(exchange, 200, botUser());
+            } else if (method.equals("GET") && path.equals("gateway")) {
+                respond(exchange, 200, object("url", getGatewayUrl()));
+            } else if (method.equals("GET") && path.equals("gateway/bot")) {
+                respond(exchange, 200, object(
+                        "url", getGatewayUrl(),
+                        "shards", 1,
+                        "session_start_limit", object("total", 1000, "remaining", 1000,
+                                "reset_after", 0, "max_concurrency", 1)));
+            } else if (method.equals("POST") && messages.matches()) {
+                long channelId = Long.parseLong(messages.group(1));
+                postedMessages.add(new PostedMessage(channelId, new String(body, StandardCharsets.UTF_8)));
+                respond(exchange, 200, message(channelId, body));
+            } else if (method.equals("PUT") && APPLICATION_COMMANDS.matcher(path).matches()) {
+                respond(exchange, 200, List.of());
+            } else {
+                log.debug("Fake Discord has no route for {} {}", method, path);
+                respond(exchange, 404, object("message", "404: Not Found", "code", 0));
+            }
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, Object json) throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(json);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private Map<String, Object> message(long channelId, byte[] request) throws IOException {
+        JsonNode posted = mapper.readTree(request);
+        long id = (System.currentTimeMillis() - DISCORD_EPOCH) << 22 | (messageSequence.incrementAndGet() & 0x3FFFFF);
+        return object(
+                "id", id(id),
+                "channel_id", id(channelId),
+                "guild_id", id(channelId / 1_000L),
+                "type", 0,
+                "content", posted.path("content").asText(""),
+                "author", botUser(),
+                "timestamp", JOINED_AT,
+                "edited_timestamp", null,
+                "tts", false,
+                "mention_everyone", false,
+                "mentions", List.of(),
+                "mention_roles", List.of(),
+                "attachments", List.of(),
+                "embeds", List.of(),
+                "components", List.of(),
+                "pinned", false,
+                "flags", 0);
+    }
+
+    // Gateway
+
+    private void acceptGatewayConnections() {
+        while (!gateway.isClosed()) {
+            try {
+                Socket socket = gateway.accept();
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!gateway.isClosed()) {
+                    log.warn("Fake gateway stopped accepting connections", e);
+                }
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            String requestLine = readLine(in);
+            Map<String, String> headers = new HashMap<>();
+            for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+                int colon = line.indexOf(':');
+                headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+            }
+            out.write(("HTTP/1.1 101 Switching Protocols\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + acceptKey(headers.get("sec-websocket-key")) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            Session connection = new Session(out, requestLine.contains("compress=zlib-stream"));
+            connection.send(object("op", 10, "d", object("heartbeat_interval", HEARTBEAT_INTERVAL_MILLIS)));
+            connection.read(in);
+        } catch (IOException e) {
+            log.debug("Fake gateway connection ended", e);
+        } finally {
+            sockets.remove(socket);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new EOFException("Connection closed during the websocket handshake");
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static String acceptKey(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    /**
+     * One websocket connection from JDA. The reader thread answers the client while
+     * {@link #replay} dispatches from another, so every write holds the session's lock.
+     */
+    private final class Session {
+        private final OutputStream out;
+        private final Deflater deflater;
+        private int sequence;
+        private final byte[] deflated = new byte[8192];
+
+        Session(OutputStream out, boolean compressed) {
+            this.out = out;
+            this.deflater = compressed ? new Deflater() : null;
+        }
+
+        void read(InputStream in) throws IOException {
+            ByteArrayOutputStream message = new ByteArrayOutputStream();
+            while (true) {
+                int first = in.read();
+                if (first < 0) {
+                    return;
+                }
+                int second = readByte(in);
+                boolean fin = (first & 0x80) != 0;
+                int opcode = first & 0x0F;
+                long length = second & 0x7F;
+                if (length == 126) {
+                    length = (long) readByte(in) << 8 | readByte(in);
+                } else if (length == 127) {
+                    length = 0;
+                    for (int i = 0; i < 8; i++) {
+                        length = length << 8 | readByte(in);
+                    }
+                }
+                byte[] mask = (second & 0x80) != 0 ? in.readNBytes(4) : null;
+                byte[] payload = in.readNBytes((int) length);
+                if (mask != null) {
+                    for (int i = 0; i < payload.length; i++) {
+                        payload[i] ^= mask[i & 3];
+                    }
+                }
+
+                switch (opcode) {
+                    case 0x8 -> {
+                        writeFrame(0x8, payload);
+                        return;
+                    }
+                    case 0x9 -> writeFrame(0xA, payload);
+                    case 0xA -> {
+                    }
+                    default -> {
+                        message.write(payload);
+                        if (fin) {
+                            handle(mapper.readTree(message.toByteArray()));
+                            message.reset();
+                        }
+                    }
+                }
+            }
+        }
+
+        private int readByte(InputStream in) throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Gateway connection closed mid-frame");
+            }
+            return b;
+        }
+
+        private void handle(JsonNode payload) throws IOException {
+            switch (payload.path("op").asInt(-1)) {
+                case 1 -> send(object("op", 11));
+                case 2 -> identify(payload.path("d"));
+                case 6 -> send(object("op", 9, "d", false));
+                case 8 -> {
+                    JsonNode request = payload.path("d");
+                    dispatch("GUILD_MEMBERS_CHUNK", object(
+                            "guild_id", request.path("guild_id").asText(),
+                            "members", List.of(),
+                            "chunk_index", 0,
+                            "chunk_count", 1,
+                            "nonce", request.path("nonce").isMissingNode() ? null : request.path("nonce").asText()));
+                }
+                default -> log.debug("Fake gateway ignored op {}", payload.path("op"));
+            }
+        }
+
+        private void identify(JsonNode identify) throws IOException {
+            JsonNode shard = identify.path("shard");
+            if (shard.isArray() && shard.path(1).asInt(1) > 1) {
+                log.warn("Fake gateway serves a single shard, but shard {} identified", shard);
+            }
+            List<Map<String, Object>> unavailable = new ArrayList<>();
+            for (long guildId : guilds.keySet()) {
+                unavailable.add(object("id", id(guildId), "unavailable", true));
+            }
+            dispatch("READY", object(
+                    "v", 10,
+                    "user", botUser(),
+                    "guilds", unavailable,
+                    "session_id", "fake-session-" + System.nanoTime(),
+                    "resume_gateway_url", getGatewayUrl(),
+                    "shard", List.of(0, 1),
+                    "application", object("id", id(BOT_USER_ID), "flags", 0),
+                    "private_channels", List.of(),
+                    "relationships", List.of(),
+                    "presences", List.of()));
+            if ((identify.path("intents").asInt() & GUILDS_INTENT) != 0) {
+                for (GuildLayout guild : guilds.values()) {
+                    dispatch("GUILD_CREATE", guildCreate(guild));
+                }
+            } else {
+                log.warn("Fake gateway sends no GUILD_CREATE, the bot did not ask for the GUILDS intent");
+            }
+            session = this;
+            guildsSent.countDown();
+        }
+
+        synchronized void dispatch(String type, Object data) throws IOException {
+            // Numbered under the lock so sequence numbers reach JDA in order
+            send(object("op", 0, "t", type, "s", ++sequence, "d", data));
+            dispatched.incrementAndGet();
+        }
+
+        synchronized void send(Object payload) throws IOException {
+            byte[] json = mapper.writeValueAsBytes(payload);
+            if (deflater == null) {
+                writeFrame(0x1, json);
+                return;
+            }
+            // zlib-stream: one compression context for the whole connection, each message sync-flushed
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 16);
+            deflater.setInput(json);
+            int count;
+            do {
+                count = deflater.deflate(deflated, 0, deflated.length, Deflater.SYNC_FLUSH);
+                compressed.write(deflated, 0, count);
+            } while (count == deflated.length);
+            writeFrame(0x2, compressed.toByteArray());
+        }
+
+        private synchronized void writeFrame(int opcode, byte[] payload) throws IOException {
+            out.write(0x80 | opcode);
+            if (payload.length < 126) {
+                out.write(payload.length);
+            } else if (payload.length <= 0xFFFF) {
+                out.write(126);
+                out.write(payload.length >>> 8);
+                out.write(payload.length);
+            } else {
+                out.write(127);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) ((long) payload.length >>> shift));
+                }
+            }
+            out.write(payload);
+            out.flush();
+        }
+    }
+
+    // Payloads
+
+    private Map<String, Object> guildCreate(GuildLayout guild) {
+        long guildId = guild.guildId();
+        long textChannelId = textChannelId(guildId);
+        List<Map<String, Object>> channels = new ArrayList<>();
+        channels.add(object(
+                "id", id(textChannelId),
+                "type", 0,
+                "guild_id", id(guildId),
+                "name", "milestones",
+                "position", 0,
+                "permission_overwrites", List.of(),
+                "parent_id", null,
+                "topic", null,
+                "nsfw", false,
+                "last_message_id", null,
+                "rate_limit_per_user", 0));
+        int position = 1;
+        for (long channelId : guild.voiceChannelIds()) {
+            channels.add(object(
+                    "id", id(channelId),
+                    "type", 2,
+                    "guild_id", id(guildId),
+                    "name", "voice-" + channelId,
+                    "position", position++,
+                    "permission_overwrites", List.of(),
+                    "parent_id", null,
+                    "nsfw", false,
+                    "bitrate", 64000,
+                    "user_limit", 0,
+                    "rtc_region", null,
+                    "last_message_id", null,
+                    "rate_limit_per_user", 0));
+        }
+        List<Map<String, Object>> members = new ArrayList<>();
+        members.add(member(BOT_USER_ID, true));
+        for (long userId : guild.userIds()) {
+            members.add(member(userId, false));
+        }
+
+        Map<String, Object> everyone = object(
+                "id", id(guildId),
+                "name", "@everyone",
+                "color", 0,
+                "hoist", false,
+                "icon", null,
+                "unicode_emoji", null,
+                "position", 0,
+                "permissions", "104324673",
+                "managed", false,
+                "mentionable", false,
+                "flags", 0);
+        Map<String, Object> payload = object(
+                "id", id(guildId),
+                "name", "Guild " + guildId,
+                "icon", null,
+                "splash", null,
+                "discovery_splash", null,
+                "banner", null,
+                "description", null,
+                "owner_id", id(BOT_USER_ID),
+                "afk_channel_id", null,
+                "afk_timeout", 300,
+                "system_channel_id", id(textChannelId),
+                "system_channel_flags", 0,
+                "rules_channel_id", null,
+                "public_updates_channel_id", null,
+                "verification_level", 0,
+                "default_message_notifications", 0,
+                "explicit_content_filter", 0,
+                "mfa_level", 0,
+                "nsfw_level", 0,
+                "premium_tier", 0,
+                "premium_subscription_count", 0,
+                "premium_progress_bar_enabled", false,
+                "preferred_locale", "en-US",
+                "vanity_url_code", null,
+                "max_members", 500_000,
+                "features", List.of(),
+                "roles", List.of(everyone),
+                "emojis", emojis(guildId),
+                "stickers", stickers(guildId));
+        payload.putAll(object(
+                "joined_at", JOINED_AT,
+                "large", false,
+                "unavailable", false,
+                "member_count", members.size(),
+                "members", members,
+                "channels", channels,
+                "threads", List.of(),
+                "voice_states", List.of(),
+                "presences", List.of(),
+                "stage_instances", List.of(),
+                "guild_scheduled_events", scheduledEvents(guildId, textChannelId)));
+        return payload;
+    }
+
+    private List<Map<String, Object>> emojis(long guildId) {
+        List<Map<String, Object>> emojis = new ArrayList<>(extrasPerGuild);
+        for (int i = 0; i < extrasPerGuild; i++) {
+            emojis.add(object(
+                    "id", id(extraId(guildId, 1, i)),
+                    "name", "emoji_" + i,
+                    "roles", List.of(),
+                    "user", user(BOT_USER_ID, true),
+                    "require_colons", true,
+                    "managed", false,
+                    "animated", i % 4 == 0,
+                    "available", true));
+        }
+        return emojis;
+    }
+
+    private List<Map<String, Object>> stickers(long guildId) {
+        List<Map<String, Object>> stickers = new ArrayList<>(extrasPerGuild);
+        for (int i = 0; i < extrasPerGuild; i++) {
+            stickers.add(object(
+                    "id", id(extraId(guildId, 2, i)),
+                    "name", "sticker-" + i,
+                    "description", "Sticker number " + i + " of guild " + guildId,
+                    "tags", "sticker",
+                    "type", 2,
+                    "format_type", 1,
+                    "available", true,
+                    "guild_id", id(guildId),
+                    "user", user(BOT_USER_ID, true)));
+        }
+        return stickers;
+    }
+
+    private List<Map<String, Object>> scheduledEvents(long guildId, long textChannelId) {
+        List<Map<String, Object>> events = new ArrayList<>(extrasPerGuild);
+        for (int i = 0; i < extrasPerGuild; i++) {
+            events.add(object(
+                    "id", id(extraId(guildId, 3, i)),
+                    "guild_id", id(guildId),
+                    "channel_id", null,
+                    "creator_id", id(BOT_USER_ID),
+                    "creator", user(BOT_USER_ID, true),
+                    "name", "Event " + i,
+                    "description", "Scheduled event number " + i + " of guild " + guildId,
+                    "scheduled_start_time", "2030-01-01T00:00:00.000000+00:00",
+                    "scheduled_end_time", "2030-01-01T02:00:00.000000+00:00",
+                    "privacy_level", 2,
+                    "status", 1,
+                    "entity_type", 3,
+                    "entity_id", null,
+                    "entity_metadata", object("location", "Channel " + textChannelId),
+                    "user_count", 0,
+                    "image", null));
+        }
+        return events;
+    }
+
+    private static long extraId(long guildId, int kind, int index) {
+        return EXTRA_ID_BASE * kind + guildId * 100_000L + index;
+    }
+
+    private Map<String, Object> voiceState(VoiceEventScript.Event event) {
+        long channelId = event.joinedChannelId();
+        return object(
+                "guild_id", id(event.guildId()),
+                "channel_id", channelId == 0 ? null : id(channelId),
+                "user_id", id(event.userId()),
+                "member", member(event.userId(), false),
+                "session_id", "voice-" + event.userId(),
+                "deaf", false,
+                "mute", false,
+                "self_deaf", false,
+                "self_mute", false,
+                "self_stream", false,
+                "self_video", false,
+                "suppress", false,
+                "request_to_speak_timestamp", null);
+    }
+
+    private Map<String, Object> member(long userId, boolean bot) {
+        return object(
+                "user", user(userId, bot),
+                "nick", null,
+                "avatar", null,
+                "roles", List.of(),
+                "joined_at", JOINED_AT,
+                "premium_since", null,
+                "deaf", false,
+                "mute", false,
+                "pending", false,
+                "flags", 0,
+                "communication_disabled_until", null);
+    }
+
+    private Map<String, Object> botUser() {
+        Map<String, Object> user = user(BOT_USER_ID, true);
+        user.putAll(object("verified", true, "mfa_enabled", false, "flags", 0));
+        return user;
+    }
+
+    private static Map<String, Object> user(long userId, boolean bot) {
+        return object(
+                "id", id(userId),
+                "username", bot ? "fitz-bot" : "user-" + userId,
+                "discriminator", "0",
+                "global_name", null,
+                "avatar", null,
+                "bot", bot,
+                "system", false,
+                "public_flags", 0);
+    }
+
+    private static String id(long id) {
+        return Long.toString(id);
+    }
+
+    /**
+     * @param pairs alternating keys and values; values may be null, which is written as JSON null
+     */
+    private static Map<String, Object> object(Object... pairs) {
+        Map<String, Object> object = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            object.put((String) pairs[i], pairs[i + 1]);
+        }
+        return object;
+    }
+}
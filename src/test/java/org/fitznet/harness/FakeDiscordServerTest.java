@@ -0,0 +1,100 @@
+package org.fitznet.harness;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.guild.voice.GuildVoiceUpdateEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.fitznet.DiscordClientFactory;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FakeDiscordServerTest {
+
+    @Test
+    @Timeout(60)
+    void shouldDriveJdaThroughGatewayAndRecordPostedMessages() throws Exception {
+        // Given
+        VoiceEventScript script = VoiceEventScript.synthetic(500, 10_000, 20, 2, 3, 7L);
+        long expectedUpdates = script.events().stream().filter(VoiceEventScript.Event::changesChannel).count();
+        AtomicInteger updates = new AtomicInteger();
+        ListenerAdapter counter = new ListenerAdapter() {
+            @Override
+            public void onGuildVoiceUpdate(@NotNull GuildVoiceUpdateEvent event) {
+                updates.incrementAndGet();
+            }
+        };
+
+        try (FakeDiscordServer server = new FakeDiscordServer(script).start()) {
+            JDA jda = new DiscordClientFactory("fake-token", DiscordClientFactory.GatewayProfile.DEFAULT,
+                    server.getRestBaseUrl(), server.getGatewayUrl())
+                    .builder()
+                    .addEventListeners(counter)
+                    .build();
+            try {
+                jda.awaitReady();
+
+                // When
+                int sent = server.replay(script);
+                while (updates.get() < expectedUpdates) {
+                    Thread.sleep(5);
+                }
+                jda.getTextChannelById(FakeDiscordServer.textChannelId(1)).sendMessage("hello").complete();
+
+                // Then
+                assertEquals(500, sent);
+                assertEquals(expectedUpdates, updates.get());
+                assertEquals(2, jda.getGuilds().size());
+                assertEquals(FakeDiscordServer.BOT_USER_ID, jda.getSelfUser().getIdLong());
+                List<FakeDiscordServer.PostedMessage> posted = server.getPostedMessages();
+                assertEquals(1, posted.size());
+                assertEquals(FakeDiscordServer.textChannelId(1), posted.get(0).channelId());
+                assertTrue(posted.get(0).body().contains("hello"));
+            } finally {
+                jda.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    @Timeout(60)
+    void shouldDeliverVoiceUpdatesToLeanProfile() throws Exception {
+        // Given
+        VoiceEventScript script = VoiceEventScript.synthetic(200, 10_000, 20, 2, 3, 11L);
+        long expectedUpdates = script.events().stream().filter(VoiceEventScript.Event::changesChannel).count();
+        AtomicInteger updates = new AtomicInteger();
+        ListenerAdapter counter = new ListenerAdapter() {
+            @Override
+            public void onGuildVoiceUpdate(@NotNull GuildVoiceUpdateEvent event) {
+                updates.incrementAndGet();
+            }
+        };
+
+        try (FakeDiscordServer server = new FakeDiscordServer(script).start()) {
+            JDA jda = new DiscordClientFactory("fake-token", DiscordClientFactory.GatewayProfile.LEAN,
+                    server.getRestBaseUrl(), server.getGatewayUrl())
+                    .builder()
+                    .addEventListeners(counter)
+                    .build();
+            try {
+                jda.awaitReady();
+
+                // When
+                server.replay(script);
+                while (updates.get() < expectedUpdates) {
+                    Thread.sleep(5);
+                }
+
+                // Then
+                assertEquals(2, jda.getGuilds().size());
+                assertEquals(expectedUpdates, updates.get());
+            } finally {
+                jda.shutdownNow();
+            }
+        }
+    }
+}
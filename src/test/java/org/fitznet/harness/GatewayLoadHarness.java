@@ -0,0 +1,239 @@
+package org.fitznet.harness;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.fitznet.BotLifecycle;
+import org.fitznet.DiscordClientFactory;
+import org.fitznet.Main;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs the whole application against a {@link FakeDiscordServer} and reports end-to-end
+ * throughput and memory: JDA decodes every VOICE_STATE_UPDATE off a websocket, updates its caches
+ * and dispatches the event to the listeners {@link Main} wires up, which count it and announce
+ * milestones back through REST.
+ * <p>
+ * The bot starts the same way it does in production, with the arguments below overriding
+ * {@code application.properties}, so it reads and writes its data files in the working
+ * directory. Throughput is events sent divided by the time until the last of them was processed;
+ * scripted moves to the channel a user is already in are decoded by JDA but not dispatched, so
+ * they are sent without being waited for.
+ * Heap figures are taken after a full GC: before the bot starts, once the guilds are loaded and
+ * after the run; the peak is the highest heap use seen during the run. Allocation is summed over
+ * every live thread, the fake server's included.
+ * </p>
+ * Run with {@code ./gradlew gatewayHarness --args="events=200000 rate=20000"}; see {@link #main} for options.
+ */
+@Slf4j
+@Builder
+public class GatewayLoadHarness {
+    @Builder.Default
+    private final DiscordClientFactory.GatewayProfile profile = DiscordClientFactory.GatewayProfile.DEFAULT;
+    @Builder.Default
+    private final int guildExtras = 0;
+    @Builder.Default
+    private final String store = "json";
+    @Builder.Default
+    private final int lanes = 4;
+    @Builder.Default
+    private final int queueCapacity = 10_000;
+    @Builder.Default
+    private final long debounceMillis = 0L;
+    @Builder.Default
+    private final long timeoutMillis = 120_000L;
+    @Builder.Default
+    private final long settleMillis = 3_000L;
+
+    /**
+     * Results of one end-to-end run.
+     */
+    public record Report(int events, int joins, long processed, long elapsedNanos, double eventsPerSecond,
+                         double handlerMeanMicros, long heapIdleBytes, long heapLoadedBytes, long heapAfterBytes,
+                         long heapPeakBytes, long allocatedBytes, double allocatedBytesPerSecond,
+                         long milestonesSent, int messagesPosted) {
+        @Override
+        public String toString() {
+            return String.format("""
+                            events:            %,d sent (%,d joins), %,d processed
+                            elapsed:           %.2f s
+                            throughput:        %,.0f events/s
+                            handler mean:      %,.1f us
+                            heap before login: %,d MB
+                            heap after ready:  %,d MB
+                            heap after run:    %,d MB
+                            heap peak:         %,d MB
+                            allocated:         %,d MB (%,.1f MB/s)
+                            milestones sent:   %,d in %,d messages""",
+                    events, joins, processed, elapsedNanos / 1e9, eventsPerSecond, handlerMeanMicros,
+                    heapIdleBytes / 1_000_000, heapLoadedBytes / 1_000_000, heapAfterBytes / 1_000_000,
+                    heapPeakBytes / 1_000_000, allocatedBytes / 1_000_000, allocatedBytesPerSecond / 1_000_000,
+                    milestonesSent, messagesPosted);
+        }
+    }
+
+    /**
+     * Start the application against a fake Discord loaded with the script's guilds, replay the
+     * script once the gateway is ready and shut the application down again.
+     */
+    public Report run(VoiceEventScript script) throws IOException, InterruptedException {
+        int joins = 0;
+        int updates = 0;
+        for (VoiceEventScript.Event event : script.events()) {
+            joins += event.isJoin() ? 1 : 0;
+            updates += event.changesChannel() ? 1 : 0;
+        }
+        int expected = updates;
+
+        long heapIdle = usedHeapAfterGc();
+        try (FakeDiscordServer server = new FakeDiscordServer(script, guildExtras).start()) {
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class).run(arguments(server));
+            try {
+                BotLifecycle lifecycle = context.getBean(BotLifecycle.class);
+                if (!await(lifecycle::isReady, timeoutMillis)) {
+                    throw new IllegalStateException("Bot did not connect to the fake gateway within " + timeoutMillis + " ms");
+                }
+                MeterRegistry registry = context.getBean(MeterRegistry.class);
+                Counter processed = registry.get("fitzbot.voice.events.processed").counter();
+                Timer handler = registry.get("fitzbot.voice.handler.latency").timer();
+                Counter milestones = registry.get("fitzbot.milestones").tag("result", "sent").counter();
+
+                long heapLoaded = usedHeapAfterGc();
+                resetPeakHeap();
+                long allocatedBefore = VoiceEventReplayHarness.allocatedBytes();
+                long start = System.nanoTime();
+                int sent = server.replay(script);
+                boolean drained = await(() -> processed.count() >= expected, timeoutMillis);
+                long elapsed = System.nanoTime() - start;
+                long allocated = VoiceEventReplayHarness.allocatedBytes() - allocatedBefore;
+                long heapPeak = peakHeap();
+                if (!drained) {
+                    log.warn("Only {} of {} voice updates were processed within {} ms",
+                            (long) processed.count(), expected, timeoutMillis);
+                }
+
+                // Announcements are batched per channel, so give the last ones time to go out
+                Thread.sleep(settleMillis);
+                long heapAfter = usedHeapAfterGc();
+                return new Report(sent, joins, (long) processed.count(), elapsed, sent / (elapsed / 1e9),
+                        handler.mean(TimeUnit.MICROSECONDS), heapIdle, heapLoaded, heapAfter, heapPeak,
+                        allocated, allocated / (elapsed / 1e9), (long) milestones.count(),
+                        server.getPostedMessages().size());
+            } finally {
+                SpringApplication.exit(context);
+            }
+        }
+    }
+
+    /**
+     * @return command line arguments, which unlike default properties take precedence over {@code application.properties}
+     */
+    private String[] arguments(FakeDiscordServer server) {
+        return new String[]{
+                "--discord.bot.token=fake-token",
+                "--discord.rest.base-url=" + server.getRestBaseUrl(),
+                "--discord.gateway.url=" + server.getGatewayUrl(),
+                "--discord.gateway.profile=" + profile,
+                "--discord.shards.enabled=false",
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--voicejoin.store=" + store,
+                "--voicejoin.pipeline.lanes=" + lanes,
+                "--voicejoin.pipeline.queue-capacity=" + queueCapacity,
+                "--voicejoin.debounce.window-ms=" + debounceMillis,
+                // Per-join INFO logging would otherwise dominate the run
+                "--logging.level.org.fitznet=WARN"
+        };
+    }
+
+    private static boolean await(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return the sum of each heap pool's peak since {@link #resetPeakHeap()}; pools peak at
+     *         different moments, so this is an upper bound
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Options, all {@code key=value}: {@code events} (100000), {@code rate} per second (10000),
+     * {@code users} (5000), {@code guilds} (5), {@code channels} per guild (8), {@code seed} (42),
+     * {@code script} (CSV to replay instead of generating), {@code speed} (1.0, for scripts),
+     * {@code profile} (DEFAULT or LEAN), {@code extras} emojis, stickers and scheduled events per guild (0),
+     * {@code store} (json), {@code lanes} (4), {@code queue} (10000),
+     * {@code debounceMs} (0), {@code timeoutMs} (120000) and {@code settleMs} (3000).
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            options.put(pair[0], pair.length > 1 ? pair[1] : "");
+        }
+
+        VoiceEventScript script = options.containsKey("script")
+                ? VoiceEventScript.load(Path.of(options.get("script")), Double.parseDouble(options.getOrDefault("speed", "1.0")))
+                : VoiceEventScript.synthetic(
+                        Integer.parseInt(options.getOrDefault("events", "100000")),
+                        Integer.parseInt(options.getOrDefault("rate", "10000")),
+                        Integer.parseInt(options.getOrDefault("users", "5000")),
+                        Integer.parseInt(options.getOrDefault("guilds", "5")),
+                        Integer.parseInt(options.getOrDefault("channels", "8")),
+                        Long.parseLong(options.getOrDefault("seed", "42")));
+
+        Report report = GatewayLoadHarness.builder()
+                .profile(DiscordClientFactory.GatewayProfile.valueOf(options.getOrDefault("profile", "DEFAULT")))
+                .guildExtras(Integer.parseInt(options.getOrDefault("extras", "0")))
+                .store(options.getOrDefault("store", "json"))
+                .lanes(Integer.parseInt(options.getOrDefault("lanes", "4")))
+                .queueCapacity(Integer.parseInt(options.getOrDefault("queue", "10000")))
+                .debounceMillis(Long.parseLong(options.getOrDefault("debounceMs", "0")))
+                .timeoutMillis(Long.parseLong(options.getOrDefault("timeoutMs", "120000")))
+                .settleMillis(Long.parseLong(options.getOrDefault("settleMs", "3000")))
+                .build()
+                .run(script);
+        System.out.println(report);
+    }
+}
@@ -0,0 +1,292 @@
+package org.fitznet.harness;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.entities.channel.unions.AudioChannelUnion;
+import net.dv8tion.jda.api.events.guild.voice.GuildVoiceUpdateEvent;
+import net.dv8tion.jda.api.requests.restaction.MessageCreateAction;
+import org.fitznet.data.VoiceJoinDatabase;
+import org.fitznet.data.VoiceJoinHistory;
+import org.fitznet.listener.LoginListener;
+import org.fitznet.listener.VoiceEventPipeline;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Replays a {@link VoiceEventScript} into a {@link LoginListener} at a fixed schedule, with no
+ * Discord connection, and reports throughput, handling latency, disk writes and allocation.
+ * <p>
+ * JDA events are Mockito stand-ins like those in {@code LoginListenerTest}; they are all built
+ * before the clock starts. Latency is measured from each event's scheduled time rather than the
+ * time it was actually dispatched, so a stall shows up in the latency of every event queued behind
+ * it instead of being hidden. Disk bytes come from {@code /proc/self/io} and are only reported on
+ * Linux; allocation is summed over every live thread.
+ * </p>
+ * Run with {@code ./gradlew replayHarness --args="events=200000 rate=20000"}; see {@link #main} for options.
+ */
+@Slf4j
+@Builder
+public class VoiceEventReplayHarness {
+    @Builder.Default
+    private final Path workDir = Path.of("build", "replay");
+    @Builder.Default
+    private final long flushIntervalMillis = 5_000L;
+    @Builder.Default
+    private final int dirtyThreshold = 100;
+    @Builder.Default
+    private final int lanes = 0;
+    @Builder.Default
+    private final int queueCapacity = 10_000;
+
+    /**
+     * Results of one replay run.
+     */
+    public record Report(int events, int joins, long elapsedNanos, double eventsPerSecond,
+                         long p50Nanos, long p99Nanos, long p999Nanos, long maxNanos,
+                         long diskBytesWritten, long flushes, long allocatedBytes, double allocatedBytesPerSecond) {
+        @Override
+        public String toString() {
+            return String.format("""
+                            events:            %,d (%,d joins)
+                            elapsed:           %.2f s
+                            throughput:        %,.0f events/s
+                            latency p50:       %,.1f us
+                            latency p99:       %,.1f us
+                            latency p99.9:     %,.1f us
+                            latency max:       %,.1f us
+                            disk written:      %s
+                            database flushes:  %,d
+                            allocated:         %,d MB (%,.1f MB/s)""",
+                    events, joins, elapsedNanos / 1e9, eventsPerSecond,
+                    p50Nanos / 1e3, p99Nanos / 1e3, p999Nanos / 1e3, maxNanos / 1e3,
+                    diskBytesWritten < 0 ? "n/a" : String.format("%,d KB", diskBytesWritten / 1024),
+                    flushes, allocatedBytes / 1_000_000, allocatedBytesPerSecond / 1_000_000);
+        }
+    }
+
+    /**
+     * Replay the script against a fresh database in the work directory.
+     */
+    public Report run(VoiceEventScript script) throws IOException {
+        Files.createDirectories(workDir);
+        Path databaseFile = workDir.resolve("replay-" + System.nanoTime() + ".json");
+        List<VoiceEventScript.Event> events = script.events();
+
+        StandIns standIns = new StandIns();
+        GuildVoiceUpdateEvent[] prepared = new GuildVoiceUpdateEvent[events.size()];
+        int joins = 0;
+        for (int i = 0; i < prepared.length; i++) {
+            prepared[i] = standIns.event(events.get(i));
+            joins += events.get(i).isJoin() ? 1 : 0;
+        }
+
+        VoiceJoinDatabase database = new VoiceJoinDatabase(databaseFile.toString(), flushIntervalMillis, dirtyThreshold);
+        VoiceJoinHistory history = new VoiceJoinHistory();
+        VoiceEventPipeline pipeline = new VoiceEventPipeline(lanes, queueCapacity, VoiceEventPipeline.OverflowPolicy.BLOCK);
+        LoginListener listener = LoginListener.builder()
+                .jda(standIns.jda)
+                .voiceDatabase(database)
+                .voiceHistory(history)
+                .pipeline(pipeline)
+                .build();
+        long[] latencies = new long[prepared.length];
+
+        long diskBefore = diskBytesWritten();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < prepared.length; i++) {
+            long scheduled = start + events.get(i).offsetNanos();
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            listener.onGuildVoiceUpdate(prepared[i]);
+            latencies[i] = System.nanoTime() - scheduled;
+        }
+        pipeline.close();
+        database.close();
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        long diskAfter = diskBytesWritten();
+        history.close();
+        Files.deleteIfExists(databaseFile);
+
+        Arrays.sort(latencies);
+        return new Report(prepared.length, joins, elapsed, prepared.length / (elapsed / 1e9),
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                latencies.length == 0 ? 0 : latencies[latencies.length - 1],
+                diskBefore < 0 || diskAfter < 0 ? -1 : diskAfter - diskBefore,
+                database.getFlushCount(), allocated, allocated / (elapsed / 1e9));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    /**
+     * @return bytes this process has passed to write calls, or -1 where /proc/self/io is unavailable
+     */
+    private static long diskBytesWritten() {
+        Path io = Path.of("/proc/self/io");
+        if (!Files.isReadable(io)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(io)) {
+                if (line.startsWith("wchar:")) {
+                    return Long.parseLong(line.substring("wchar:".length()).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.debug("Could not read {}", io, e);
+        }
+        return -1;
+    }
+
+    static long allocatedBytes() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)) {
+            return 0;
+        }
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(0, allocated);
+        }
+        return total;
+    }
+
+    /**
+     * Mockito stand-ins for the JDA objects an event touches, shared between events so that a long
+     * script needs one mock per distinct (user, from, to) transition rather than one per event.
+     */
+    private static final class StandIns {
+        final JDA jda = mock(JDA.class);
+        private final Map<Long, Guild> guilds = new HashMap<>();
+        private final Map<Long, AudioChannelUnion> channels = new HashMap<>();
+        private final Map<Long, Member> members = new HashMap<>();
+        private final Map<VoiceEventScript.Event, GuildVoiceUpdateEvent> events = new HashMap<>();
+
+        private final TextChannel botChannel = mock(TextChannel.class);
+
+        StandIns() {
+            when(jda.getTextChannelById(anyLong())).thenReturn(botChannel);
+            when(botChannel.sendMessageEmbeds(any(MessageEmbed.class))).thenReturn(mock(MessageCreateAction.class));
+        }
+
+        GuildVoiceUpdateEvent event(VoiceEventScript.Event scripted) {
+            VoiceEventScript.Event key = new VoiceEventScript.Event(0, scripted.userId(), scripted.guildId(),
+                    scripted.leftChannelId(), scripted.joinedChannelId());
+            return events.computeIfAbsent(key, ignored -> {
+                Guild guild = guild(scripted.guildId());
+                GuildVoiceUpdateEvent event = mock(GuildVoiceUpdateEvent.class);
+                Member member = member(guild, scripted.userId());
+                AudioChannelUnion left = channel(scripted.leftChannelId());
+                AudioChannelUnion joined = channel(scripted.joinedChannelId());
+                when(event.getMember()).thenReturn(member);
+                when(event.getGuild()).thenReturn(guild);
+                when(event.getChannelLeft()).thenReturn(left);
+                when(event.getChannelJoined()).thenReturn(joined);
+                return event;
+            });
+        }
+
+        private Guild guild(long guildId) {
+            return guilds.computeIfAbsent(guildId, id -> {
+                Guild guild = mock(Guild.class);
+                when(guild.getIdLong()).thenReturn(id);
+                when(guild.getName()).thenReturn("Guild " + id);
+                when(guild.getSystemChannel()).thenReturn(botChannel);
+                return guild;
+            });
+        }
+
+        private AudioChannelUnion channel(long channelId) {
+            if (channelId == 0) {
+                return null;
+            }
+            return channels.computeIfAbsent(channelId, id -> {
+                AudioChannelUnion channel = mock(AudioChannelUnion.class);
+                when(channel.getIdLong()).thenReturn(id);
+                return channel;
+            });
+        }
+
+        private Member member(Guild guild, long userId) {
+            return members.computeIfAbsent(userId, id -> {
+                Member member = mock(Member.class);
+                User user = mock(User.class);
+                when(member.getIdLong()).thenReturn(id);
+                when(member.getGuild()).thenReturn(guild);
+                when(member.getUser()).thenReturn(user);
+                when(member.getEffectiveName()).thenReturn("user-" + id);
+                when(member.getAsMention()).thenReturn("<@" + id + ">");
+                when(user.getEffectiveAvatarUrl()).thenReturn("https://example.com/avatar.png");
+                return member;
+            });
+        }
+    }
+
+    /**
+     * Options, all {@code key=value}: {@code events} (100000), {@code rate} per second (10000),
+     * {@code users} (5000), {@code guilds} (5), {@code channels} per guild (8), {@code seed} (42),
+     * {@code script} (CSV to replay instead of generating), {@code speed} (1.0, for scripts),
+     * {@code save} (write the generated script to a CSV), {@code flushMs} (5000),
+     * {@code threshold} (100), {@code lanes} (0) and {@code queue} (10000).
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            options.put(pair[0], pair.length > 1 ? pair[1] : "");
+        }
+
+        // Per-join INFO logging would otherwise dominate both the latency and the bytes written
+        ((Logger) LoggerFactory.getLogger("org.fitznet")).setLevel(Level.WARN);
+
+        VoiceEventScript script = options.containsKey("script")
+                ? VoiceEventScript.load(Path.of(options.get("script")), Double.parseDouble(options.getOrDefault("speed", "1.0")))
+                : VoiceEventScript.synthetic(
+                        Integer.parseInt(options.getOrDefault("events", "100000")),
+                        Integer.parseInt(options.getOrDefault("rate", "10000")),
+                        Integer.parseInt(options.getOrDefault("users", "5000")),
+                        Integer.parseInt(options.getOrDefault("guilds", "5")),
+                        Integer.parseInt(options.getOrDefault("channels", "8")),
+                        Long.parseLong(options.getOrDefault("seed", "42")));
+        if (options.containsKey("save")) {
+            script.save(Path.of(options.get("save")));
+        }
+
+        Report report = VoiceEventReplayHarness.builder()
+                .flushIntervalMillis(Long.parseLong(options.getOrDefault("flushMs", "5000")))
+                .dirtyThreshold(Integer.parseInt(options.getOrDefault("threshold", "100")))
+                .lanes(Integer.parseInt(options.getOrDefault("lanes", "0")))
+                .queueCapacity(Integer.parseInt(options.getOrDefault("queue", "10000")))
+                .build()
+                .run(script);
+        System.out.println(report);
+    }
+}
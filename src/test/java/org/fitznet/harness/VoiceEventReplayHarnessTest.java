@@ -0,0 +1,49 @@
+package org.fitznet.harness;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoiceEventReplayHarnessTest {
+
+    @Test
+    void shouldReplaySyntheticScript(@TempDir Path tempDir) throws IOException {
+        // Given
+        VoiceEventScript script = VoiceEventScript.synthetic(2_000, 100_000, 50, 2, 3, 7L);
+        VoiceEventReplayHarness harness = VoiceEventReplayHarness.builder()
+                .workDir(tempDir)
+                .dirtyThreshold(50)
+                .build();
+
+        // When
+        VoiceEventReplayHarness.Report report = harness.run(script);
+
+        // Then
+        assertEquals(2_000, report.events());
+        assertTrue(report.joins() > 0);
+        assertTrue(report.flushes() > 0);
+        assertTrue(report.p50Nanos() <= report.p99Nanos());
+        assertTrue(report.p99Nanos() <= report.p999Nanos());
+        assertTrue(report.eventsPerSecond() > 0);
+    }
+
+    @Test
+    void shouldRoundTripRecordedScript(@TempDir Path tempDir) throws IOException {
+        // Given
+        VoiceEventScript script = VoiceEventScript.synthetic(100, 1_000, 10, 1, 2, 1L);
+        Path file = tempDir.resolve("script.csv");
+
+        // When
+        script.save(file);
+        VoiceEventScript loaded = VoiceEventScript.load(file, 1.0);
+
+        // Then
+        assertEquals(script.events().size(), loaded.events().size());
+        assertEquals(script.events().get(5).userId(), loaded.events().get(5).userId());
+        assertEquals(script.events().get(5).joinedChannelId(), loaded.events().get(5).joinedChannelId());
+    }
+}
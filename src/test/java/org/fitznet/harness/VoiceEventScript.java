@@ -0,0 +1,119 @@
+package org.fitznet.harness;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A timed stream of voice state changes to replay into the listener.
+ * <p>
+ * Recorded scripts are CSV files with one event per line:
+ * {@code offsetMillis,userId,guildId,leftChannelId,joinedChannelId}, where a channel ID of 0
+ * means "not in voice". A join has no left channel, a leave no joined channel, and a move has both.
+ * Lines starting with {@code #} are ignored.
+ * </p>
+ */
+public final class VoiceEventScript {
+    private final List<Event> events;
+
+    private VoiceEventScript(List<Event> events) {
+        this.events = events;
+    }
+
+    /**
+     * One voice state change.
+     *
+     * @param offsetNanos when to replay it, relative to the start of the run
+     */
+    public record Event(long offsetNanos, long userId, long guildId, long leftChannelId, long joinedChannelId) {
+        public boolean isJoin() {
+            return leftChannelId == 0 && joinedChannelId != 0;
+        }
+
+        /**
+         * @return false for a "move" to the channel the user is already in, which JDA does not report as a voice update
+         */
+        public boolean changesChannel() {
+            return leftChannelId != joinedChannelId;
+        }
+    }
+
+    public List<Event> events() {
+        return events;
+    }
+
+    /**
+     * Generate a stream where each user alternates between joining, moving and leaving.
+     *
+     * @param eventCount number of events to generate
+     * @param ratePerSecond events per second to schedule them at
+     * @param users number of distinct users
+     * @param guilds number of guilds users are spread over
+     * @param channelsPerGuild voice channels in each guild
+     * @param seed random seed, so runs are repeatable
+     */
+    public static VoiceEventScript synthetic(int eventCount, int ratePerSecond, int users, int guilds,
+                                             int channelsPerGuild, long seed) {
+        Random random = new Random(seed);
+        long[] currentChannel = new long[users];
+        long intervalNanos = 1_000_000_000L / Math.max(1, ratePerSecond);
+        List<Event> events = new ArrayList<>(eventCount);
+
+        for (int i = 0; i < eventCount; i++) {
+            int user = random.nextInt(users);
+            long guildId = 1 + user % guilds;
+            long left = currentChannel[user];
+            long joined;
+            if (left == 0) {
+                joined = channelId(guildId, random.nextInt(channelsPerGuild));
+            } else if (random.nextBoolean() || channelsPerGuild == 1) {
+                joined = 0;
+            } else {
+                joined = channelId(guildId, random.nextInt(channelsPerGuild));
+            }
+            currentChannel[user] = joined;
+            events.add(new Event(i * intervalNanos, 1_000_000L + user, guildId, left, joined));
+        }
+        return new VoiceEventScript(events);
+    }
+
+    private static long channelId(long guildId, int channel) {
+        return guildId * 1_000L + channel + 1;
+    }
+
+    /**
+     * Load a recorded CSV script.
+     *
+     * @param speed replay speed multiplier; 2 replays twice as fast as recorded
+     */
+    public static VoiceEventScript load(Path file, double speed) throws IOException {
+        List<Event> events = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            long offsetNanos = (long) (Long.parseLong(fields[0].trim()) * 1_000_000L / speed);
+            events.add(new Event(offsetNanos, Long.parseLong(fields[1].trim()), Long.parseLong(fields[2].trim()),
+                    Long.parseLong(fields[3].trim()), Long.parseLong(fields[4].trim())));
+        }
+        return new VoiceEventScript(events);
+    }
+
+    /**
+     * Write the script in the recorded CSV format, so a synthetic run can be replayed again later.
+     */
+    public void save(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            writer.write("# offsetMillis,userId,guildId,leftChannelId,joinedChannelId\n");
+            for (Event event : events) {
+                writer.write(event.offsetNanos() / 1_000_000L + "," + event.userId() + "," + event.guildId() + ","
+                        + event.leftChannelId() + "," + event.joinedChannelId() + "\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.fitznet.listener;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JoinDebouncerTest {
+    private static final long GUILD_ID = 111L;
+    private static final long USER_ID = 12345L;
+
+    private final long now = System.currentTimeMillis();
+
+    @Test
+    void shouldSuppressRejoinWithinWindow() {
+        // Given
+        JoinDebouncer debouncer = new JoinDebouncer(10_000, 64);
+        debouncer.recordLeave(GUILD_ID, USER_ID, now);
+
+        // When
+        boolean suppressed = debouncer.suppressRejoin(GUILD_ID, USER_ID, now + 2_000);
+
+        // Then
+        assertTrue(suppressed);
+        assertEquals(1, debouncer.getSuppressedCount());
+    }
+
+    @Test
+    void shouldCountRejoinAfterWindow() {
+        // Given
+        JoinDebouncer debouncer = new JoinDebouncer(10_000, 64);
+        debouncer.recordLeave(GUILD_ID, USER_ID, now);
+
+        // When
+        boolean suppressed = debouncer.suppressRejoin(GUILD_ID, USER_ID, now + 10_000);
+
+        // Then
+        assertFalse(suppressed);
+        assertEquals(0, debouncer.getSuppressedCount());
+    }
+
+    @Test
+    void shouldSuppressOnlyOneRejoinPerLeave() {
+        // Given
+        JoinDebouncer debouncer = new JoinDebouncer(10_000, 64);
+        debouncer.recordLeave(GUILD_ID, USER_ID, now);
+
+        // When
+        boolean first = debouncer.suppressRejoin(GUILD_ID, USER_ID, now + 1_000);
+        boolean second = debouncer.suppressRejoin(GUILD_ID, USER_ID, now + 2_000);
+
+        // Then
+        assertTrue(first);
+        assertFalse(second);
+    }
+
+    @Test
+    void shouldKeepGuildsAndUsersApart() {
+        // Given
+        JoinDebouncer debouncer = new JoinDebouncer(10_000, 64);
+        debouncer.recordLeave(GUILD_ID, USER_ID, now);
+
+        // When / Then
+        assertFalse(debouncer.suppressRejoin(222L, USER_ID, now + 1_000));
+        assertFalse(debouncer.suppressRejoin(GUILD_ID, 67890L, now + 1_000));
+        assertTrue(debouncer.suppressRejoin(GUILD_ID, USER_ID, now + 1_000));
+    }
+
+    @Test
+    void shouldCountEveryJoinWhenDisabled() {
+        // Given
+        JoinDebouncer debouncer = JoinDebouncer.disabled();
+        debouncer.recordLeave(GUILD_ID, USER_ID, now);
+
+        // When
+        boolean suppressed = debouncer.suppressRejoin(GUILD_ID, USER_ID, now);
+
+        // Then
+        assertFalse(debouncer.isEnabled());
+        assertFalse(suppressed);
+    }
+
+    @Test
+    void shouldEvictOldestLeavesWhenFull() {
+        // Given
+        JoinDebouncer debouncer = new JoinDebouncer(60_000, 16);
+
+        // When
+        for (int user = 1; user <= 1_000; user++) {
+            debouncer.recordLeave(GUILD_ID, user, now + user);
+        }
+
+        // Then
+        assertTrue(debouncer.getEvictedCount() >= 1_000 - 16);
+        assertTrue(debouncer.suppressRejoin(GUILD_ID, 1_000, now + 1_001));
+        assertFalse(debouncer.suppressRejoin(GUILD_ID, 1, now + 1_001));
+    }
+
+    @Test
+    void shouldReuseExpiredSlotsWithoutEvicting() {
+        // Given
+        JoinDebouncer debouncer = new JoinDebouncer(1_000, 16);
+
+        // When
+        for (int user = 1; user <= 1_000; user++) {
+            debouncer.recordLeave(GUILD_ID, user, now + user * 1_000L);
+        }
+
+        // Then
+        assertEquals(0, debouncer.getEvictedCount());
+    }
+
+    @Test
+    void shouldKeepOneLeavePerUserWhenAnEarlierSlotIsFree() {
+        for (long user = 1; user <= 50; user++) {
+            // Given: every slot taken, and only the user's own leave still within the window
+            JoinDebouncer debouncer = new JoinDebouncer(10_000, 8);
+            for (long other = 1_001; other <= 1_007; other++) {
+                debouncer.recordLeave(GUILD_ID, other, now);
+            }
+            debouncer.recordLeave(GUILD_ID, user, now + 5_000);
+
+            // When
+            debouncer.recordLeave(GUILD_ID, user, now + 12_000);
+
+            // Then
+            assertTrue(debouncer.suppressRejoin(GUILD_ID, user, now + 13_000), "user " + user);
+            assertFalse(debouncer.suppressRejoin(GUILD_ID, user, now + 14_000), "user " + user);
+        }
+    }
+
+    @Test
+    void shouldSuppressEachLeaveOnceUnderConcurrentJoins() throws InterruptedException {
+        // Given
+        JoinDebouncer debouncer = new JoinDebouncer(10_000, 1 << 12);
+        int users = 1_000;
+        for (int user = 1; user <= users; user++) {
+            debouncer.recordLeave(GUILD_ID, user, now);
+        }
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicInteger suppressed = new AtomicInteger();
+
+        // When
+        for (int t = 0; t < 4; t++) {
+            threads.execute(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int user = 1; user <= users; user++) {
+                    if (debouncer.suppressRejoin(GUILD_ID, user, now + 500)) {
+                        suppressed.incrementAndGet();
+                    }
+                }
+            });
+        }
+        go.countDown();
+        threads.shutdown();
+        assertTrue(threads.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Then
+        assertEquals(users, suppressed.get());
+        assertEquals(users, debouncer.getSuppressedCount());
+    }
+
+    @Test
+    void shouldRejectNegativeWindow() {
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> new JoinDebouncer(-1, 64));
+    }
+}
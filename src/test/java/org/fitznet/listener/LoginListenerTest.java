@@ -9,10 +9,15 @@ import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
 import net.dv8tion.jda.api.entities.channel.unions.AudioChannelUnion;
 import net.dv8tion.jda.api.events.guild.voice.GuildVoiceUpdateEvent;
 import net.dv8tion.jda.api.requests.restaction.MessageCreateAction;
+import org.fitznet.archive.ArchiveQuery;
+import org.fitznet.archive.VoiceEventArchive;
 import org.fitznet.data.VoiceJoinDatabase;
+import org.fitznet.guild.GuildConfigService;
+import org.fitznet.guild.GuildSettings;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -20,6 +25,8 @@ import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 
 import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.util.List;
 
 import static org.fitznet.util.Constants.BOT_MESSAGE_CHANNEL_ID;
 import static org.junit.jupiter.api.Assertions.*;
@@ -56,6 +63,7 @@ class LoginListenerTest {
 
         lenient().when(mockEvent.getMember()).thenReturn(mockMember);
         lenient().when(mockEvent.getGuild()).thenReturn(mockGuild);
+        lenient().when(mockTextChannel.getGuild()).thenReturn(mockGuild);
 
         // Create listener and inject mock database
         listener = new LoginListener(mockJda);
@@ -158,6 +166,53 @@ class LoginListenerTest {
         verify(mockJda).getTextChannelById(BOT_MESSAGE_CHANNEL_ID);
     }
 
+    @Test
+    void shouldSendMilestoneToConfiguredChannel() {
+        // Given
+        GuildConfigService guildConfig = new GuildConfigService();
+        guildConfig.update(0L, settings -> settings.withAnnouncementChannelId(42L));
+        LoginListener configured = LoginListener.builder()
+                .jda(mockJda)
+                .voiceDatabase(mockDatabase)
+                .guildConfig(guildConfig)
+                .build();
+        TextChannel mockConfiguredChannel = mock(TextChannel.class);
+        when(mockEvent.getChannelLeft()).thenReturn(null);
+        when(mockEvent.getChannelJoined()).thenReturn(mockVoiceChannel);
+        when(mockDatabase.incrementVoiceJoinCount(123L)).thenReturn(1L);
+        when(mockJda.getTextChannelById(42L)).thenReturn(mockConfiguredChannel);
+        when(mockConfiguredChannel.sendMessageEmbeds(any(MessageEmbed.class))).thenReturn(mockMessageAction);
+
+        // When
+        configured.onGuildVoiceUpdate(mockEvent);
+
+        // Then
+        verify(mockConfiguredChannel).sendMessageEmbeds(any(MessageEmbed.class));
+        verify(mockTextChannel, never()).sendMessageEmbeds(any(MessageEmbed.class));
+    }
+
+    @Test
+    void shouldNotSendMilestoneWhenGuildDisabledMilestones() {
+        // Given
+        GuildConfigService guildConfig = new GuildConfigService();
+        guildConfig.update(0L, settings -> settings.withFeature(GuildSettings.Feature.MILESTONES, false));
+        LoginListener disabled = LoginListener.builder()
+                .jda(mockJda)
+                .voiceDatabase(mockDatabase)
+                .guildConfig(guildConfig)
+                .build();
+        when(mockEvent.getChannelLeft()).thenReturn(null);
+        when(mockEvent.getChannelJoined()).thenReturn(mockVoiceChannel);
+        when(mockDatabase.incrementVoiceJoinCount(123L)).thenReturn(1L);
+
+        // When
+        disabled.onGuildVoiceUpdate(mockEvent);
+
+        // Then
+        verify(mockDatabase).incrementVoiceJoinCount(123L);
+        verify(mockJda, never()).getTextChannelById(anyLong());
+    }
+
     @Test
     void shouldTestAllMilestones() {
         // Given
@@ -171,6 +226,7 @@ class LoginListenerTest {
             when(mockEvent.getChannelJoined()).thenReturn(mockVoiceChannel);
             when(mockDatabase.incrementVoiceJoinCount(123L)).thenReturn((long) milestone);
             when(mockJda.getTextChannelById(BOT_MESSAGE_CHANNEL_ID)).thenReturn(mockTextChannel);
+            when(mockTextChannel.getGuild()).thenReturn(mockGuild);
             when(mockTextChannel.sendMessageEmbeds(any(MessageEmbed.class))).thenReturn(mockMessageAction);
 
             // When
@@ -194,4 +250,37 @@ class LoginListenerTest {
         // Then
         verify(mockDatabase, never()).incrementVoiceJoinCount(anyLong());
     }
+
+    @Test
+    void shouldArchiveEveryVoiceEvent(@TempDir Path tempDir) {
+        // Given
+        VoiceEventArchive archive = new VoiceEventArchive(tempDir, 1_000, 60_000, 0);
+        LoginListener archiving = LoginListener.builder()
+                .jda(mockJda)
+                .voiceDatabase(mockDatabase)
+                .archive(archive)
+                .build();
+        AudioChannelUnion mockOtherChannel = mock(AudioChannelUnion.class);
+        when(mockGuild.getIdLong()).thenReturn(1L);
+        when(mockVoiceChannel.getIdLong()).thenReturn(10L);
+        when(mockOtherChannel.getIdLong()).thenReturn(11L);
+
+        // When
+        when(mockEvent.getChannelLeft()).thenReturn(null);
+        when(mockEvent.getChannelJoined()).thenReturn(mockVoiceChannel);
+        archiving.onGuildVoiceUpdate(mockEvent);
+        when(mockEvent.getChannelLeft()).thenReturn(mockVoiceChannel);
+        when(mockEvent.getChannelJoined()).thenReturn(mockOtherChannel);
+        archiving.onGuildVoiceUpdate(mockEvent);
+        when(mockEvent.getChannelLeft()).thenReturn(mockOtherChannel);
+        when(mockEvent.getChannelJoined()).thenReturn(null);
+        archiving.onGuildVoiceUpdate(mockEvent);
+        archive.close();
+
+        // Then
+        List<ArchiveQuery.ChannelJoins> channels = new ArchiveQuery(tempDir)
+                .busiestChannels(1L, 0, Long.MAX_VALUE, 10);
+        assertEquals(List.of(new ArchiveQuery.ChannelJoins(1L, 10L, 1)), channels);
+        assertEquals(3, archive.getArchivedCount());
+    }
 }
@@ -0,0 +1,113 @@
+package org.fitznet.listener;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoiceEventPipelineTest {
+
+    @Test
+    void shouldRunInlineWithoutLanes() {
+        // Given
+        VoiceEventPipeline pipeline = VoiceEventPipeline.direct();
+        List<Thread> ranOn = new ArrayList<>();
+
+        // When
+        pipeline.submit(1L, () -> ranOn.add(Thread.currentThread()));
+
+        // Then
+        assertEquals(List.of(Thread.currentThread()), ranOn);
+    }
+
+    @Test
+    void shouldKeepPerUserOrder() {
+        // Given
+        VoiceEventPipeline pipeline = new VoiceEventPipeline(4, 1_000, VoiceEventPipeline.OverflowPolicy.BLOCK);
+        Map<Long, List<Integer>> seen = new ConcurrentHashMap<>();
+
+        // When
+        for (int i = 0; i < 10_000; i++) {
+            long user = i % 16;
+            int sequence = i;
+            pipeline.submit(user, () -> seen.computeIfAbsent(user, key -> Collections.synchronizedList(new ArrayList<>())).add(sequence));
+        }
+        pipeline.close();
+
+        // Then
+        assertEquals(16, seen.size());
+        seen.values().forEach(sequence -> {
+            assertEquals(625, sequence.size());
+            for (int i = 1; i < sequence.size(); i++) {
+                assertTrue(sequence.get(i - 1) < sequence.get(i));
+            }
+        });
+    }
+
+    @Test
+    void shouldDropWhenLaneIsFull() throws InterruptedException {
+        // Given
+        VoiceEventPipeline pipeline = new VoiceEventPipeline(1, 1, VoiceEventPipeline.OverflowPolicy.DROP);
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        pipeline.submit(1L, () -> {
+            started.countDown();
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // When
+        boolean queued = pipeline.submit(1L, () -> {});
+        boolean overflowed = pipeline.submit(1L, () -> {});
+
+        // Then
+        assertTrue(queued);
+        assertFalse(overflowed);
+        assertEquals(1, pipeline.getStats().dropped());
+        assertEquals(1, pipeline.getQueueDepth());
+        blocker.countDown();
+        pipeline.close();
+    }
+
+    @Test
+    void shouldReportOverloadOnceLanesAreHalfFull() throws InterruptedException {
+        // Given
+        VoiceEventPipeline pipeline = new VoiceEventPipeline(1, 4, VoiceEventPipeline.OverflowPolicy.DROP);
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        pipeline.submit(1L, () -> {
+            started.countDown();
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // When
+        pipeline.submit(1L, () -> {});
+        boolean belowThreshold = pipeline.isOverloaded();
+        pipeline.submit(1L, () -> {});
+
+        // Then
+        assertFalse(belowThreshold);
+        assertTrue(pipeline.isOverloaded());
+        assertEquals(2, pipeline.getStats().shedDepth());
+        assertFalse(VoiceEventPipeline.direct().isOverloaded());
+        blocker.countDown();
+        pipeline.close();
+        assertFalse(pipeline.isOverloaded());
+    }
+}
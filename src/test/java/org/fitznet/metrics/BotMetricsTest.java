@@ -0,0 +1,83 @@
+package org.fitznet.metrics;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.fitznet.data.VoiceJoinStore;
+import org.fitznet.listener.JoinDebouncer;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BotMetricsTest {
+
+    @Test
+    void shouldCountEventsByType() {
+        // Given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BotMetrics metrics = new BotMetrics(registry);
+
+        // When
+        metrics.eventReceived(BotMetrics.VoiceEventType.JOIN);
+        metrics.eventReceived(BotMetrics.VoiceEventType.JOIN);
+        metrics.eventReceived(BotMetrics.VoiceEventType.LEAVE);
+        metrics.eventProcessed(System.nanoTime());
+
+        // Then
+        assertEquals(2.0, registry.get("fitzbot.voice.events.received").tag("type", "join").counter().count());
+        assertEquals(1.0, registry.get("fitzbot.voice.events.received").tag("type", "leave").counter().count());
+        assertEquals(0.0, registry.get("fitzbot.voice.events.received").tag("type", "move").counter().count());
+        assertEquals(1L, registry.get("fitzbot.voice.handler.latency").timer().count());
+    }
+
+    @Test
+    void shouldReadFlushStatsFromStore() {
+        // Given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BotMetrics metrics = new BotMetrics(registry);
+        VoiceJoinStore store = mock(VoiceJoinStore.class);
+        when(store.getFlushStats()).thenReturn(new VoiceJoinStore.FlushStats(3, 6_000_000, 4_096));
+
+        // When
+        metrics.bindStore(store);
+
+        // Then
+        FunctionTimer flushes = registry.get("fitzbot.persistence.flush").functionTimer();
+        assertEquals(3.0, flushes.count());
+        assertEquals(6.0, flushes.totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(4_096.0, registry.get("fitzbot.persistence.flushed").functionCounter().count());
+    }
+
+    @Test
+    void shouldCountSuppressedRejoins() {
+        // Given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BotMetrics metrics = new BotMetrics(registry);
+        JoinDebouncer debouncer = new JoinDebouncer(10_000, 64);
+        long now = System.currentTimeMillis();
+        metrics.bindDebouncer(debouncer);
+
+        // When
+        debouncer.recordLeave(1L, 2L, now);
+        debouncer.suppressRejoin(1L, 2L, now + 1_000);
+
+        // Then
+        assertEquals(1.0, registry.get("fitzbot.voice.joins.suppressed").functionCounter().count());
+        assertEquals(0.0, registry.get("fitzbot.voice.debounce.evicted").functionCounter().count());
+    }
+
+    @Test
+    void shouldReportNoGatewayPingBeforeJdaIsBound() {
+        // Given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        // When
+        new BotMetrics(registry);
+
+        // Then
+        assertTrue(Double.isNaN(registry.get("fitzbot.jda.gateway.ping").gauge().value()));
+    }
+}
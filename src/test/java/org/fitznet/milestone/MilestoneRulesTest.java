@@ -0,0 +1,137 @@
+package org.fitznet.milestone;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MilestoneRulesTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldComputeNextMilestoneForEachRuleType() {
+        // Given
+        MilestoneRule explicit = MilestoneRule.explicit(500, 1, 100);
+        MilestoneRule every = MilestoneRule.every(250);
+        MilestoneRule geometric = MilestoneRule.geometric(10, 2);
+
+        // When / Then
+        assertEquals(1, explicit.nextAfter(0));
+        assertEquals(100, explicit.nextAfter(1));
+        assertEquals(500, explicit.nextAfter(499));
+        assertEquals(MilestoneRule.NONE, explicit.nextAfter(500));
+        assertEquals(250, every.nextAfter(0));
+        assertEquals(750, every.nextAfter(500));
+        assertEquals(10, geometric.nextAfter(0));
+        assertEquals(40, geometric.nextAfter(20));
+        assertTrue(geometric.isMilestone(80));
+        assertFalse(geometric.isMilestone(81));
+    }
+
+    @Test
+    void shouldMatchDefaultMilestones() {
+        // Given
+        MilestoneRules rules = new MilestoneRules();
+        List<Long> reached = new ArrayList<>();
+
+        // When
+        for (long count = 1; count <= 6_000; count++) {
+            if (rules.reached(1L, 42L, count)) {
+                reached.add(count);
+            }
+        }
+
+        // Then
+        assertEquals(List.of(1L, 100L, 500L, 1000L, 2000L, 5000L), reached);
+    }
+
+    @Test
+    void shouldApplyGuildOverrides() {
+        // Given
+        MilestoneRules rules = new MilestoneRules(new MilestoneConfig(
+                List.of(MilestoneConfig.RuleSpec.explicit(1)),
+                Map.of(7L, List.of(MilestoneConfig.RuleSpec.every(3), MilestoneConfig.RuleSpec.explicit(5)))));
+
+        // When / Then
+        assertTrue(rules.reached(1L, 42L, 1));
+        assertFalse(rules.reached(1L, 42L, 3));
+        assertFalse(rules.reached(7L, 42L, 1));
+        assertTrue(rules.reached(7L, 42L, 3));
+        assertTrue(rules.reached(7L, 42L, 5));
+        assertTrue(rules.reached(7L, 42L, 6));
+        assertFalse(rules.reached(7L, 42L, 7));
+    }
+
+    @Test
+    void shouldPickUpCountsMidSeriesAfterApply() {
+        // Given
+        MilestoneRules rules = new MilestoneRules();
+        rules.reached(1L, 42L, 150);
+
+        // When
+        rules.apply(new MilestoneConfig(List.of(MilestoneConfig.RuleSpec.every(50)), Map.of()));
+
+        // Then
+        assertFalse(rules.reached(1L, 42L, 151));
+        assertTrue(rules.reached(1L, 42L, 200));
+    }
+
+    @Test
+    void shouldKeepGuildOverrideWhenRulesAreApplied() {
+        // Given
+        MilestoneRules rules = new MilestoneRules();
+        rules.overrideGuild(7L, List.of(MilestoneConfig.RuleSpec.every(3)));
+
+        // When
+        rules.apply(new MilestoneConfig(List.of(MilestoneConfig.RuleSpec.every(50)),
+                Map.of(7L, List.of(MilestoneConfig.RuleSpec.explicit(1)))));
+
+        // Then
+        assertFalse(rules.reached(7L, 42L, 1));
+        assertTrue(rules.reached(7L, 42L, 3));
+        assertTrue(rules.reached(1L, 42L, 50));
+
+        // When
+        rules.overrideGuild(7L, null);
+
+        // Then
+        assertTrue(rules.reached(7L, 43L, 1));
+    }
+
+    @Test
+    void shouldReloadRulesFileAndKeepRulesOnBadFile() throws Exception {
+        // Given
+        File file = tempDir.resolve("milestones.json").toFile();
+        Files.writeString(file.toPath(), "{\"defaults\": [{\"type\": \"every\", \"interval\": 10}]}");
+        MilestoneRules rules = new MilestoneRules(file, 0);
+
+        // When
+        Files.writeString(file.toPath(), "{\"defaults\": [{\"type\": \"every\", \"interval\": 0}]}");
+        boolean reloaded = rules.reload();
+
+        // Then
+        assertFalse(reloaded);
+        assertEquals(10, rules.nextMilestone(1L, 0));
+        assertTrue(rules.reached(1L, 42L, 20));
+    }
+
+    @Test
+    void shouldRejectInvalidRules() {
+        // Given
+        MilestoneRules rules = new MilestoneRules();
+        MilestoneConfig invalid = new MilestoneConfig(List.of(MilestoneConfig.RuleSpec.geometric(10, 1.0)), Map.of());
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> rules.apply(invalid));
+        assertTrue(rules.reached(1L, 42L, 1));
+    }
+}